@@ -98,6 +98,18 @@ public class ApmAgent implements ApmAgentMBean, ApmConfigurationChangeListener {
         }
     }
 
+    public static void enterMethod(int methodId) {
+        if (INSTANCE.started.get()) {
+            INSTANCE.apmAgentContext.enterMethod(Thread.currentThread(), methodId, false);
+        }
+    }
+
+    public static void exitMethod(int methodId) {
+        if (INSTANCE.started.get()) {
+            INSTANCE.apmAgentContext.exitMethod(Thread.currentThread(), methodId, false);
+        }
+    }
+
     public List<String> getTransformedMethods() {
         if (isInitialized()) {
             return apmAgentContext.getTransformedMethods();
@@ -112,6 +124,22 @@ public class ApmAgent implements ApmAgentMBean, ApmConfigurationChangeListener {
         return Collections.EMPTY_LIST;
     }
 
+    @Override
+    public String collapsedStacks() {
+        if (isInitialized()) {
+            return apmAgentContext.getCallTree().toCollapsedStacks();
+        }
+        return "";
+    }
+
+    @Override
+    public String callTreeJson() {
+        if (isInitialized()) {
+            return apmAgentContext.getCallTree().toJson();
+        }
+        return "{}";
+    }
+
     public List<ThreadMetrics> getThreadMetrics() {
         if (isInitialized()) {
             return apmAgentContext.getThreadMetrics();
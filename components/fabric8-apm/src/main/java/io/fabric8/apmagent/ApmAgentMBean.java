@@ -36,4 +36,15 @@ public interface ApmAgentMBean {
      * @return List of all <className>@<methodName>
      */
     List<String> getAllMethods();
+
+    /**
+     * @return the call tree in collapsed stack format - one <caller>;<callee> path per line followed
+     * by its self time in nanoseconds (trace strategy) or sample count (sampling strategy)
+     */
+    String collapsedStacks();
+
+    /**
+     * @return the call tree as nested name/value/children JSON objects, as used by d3-flame-graph
+     */
+    String callTreeJson();
 }
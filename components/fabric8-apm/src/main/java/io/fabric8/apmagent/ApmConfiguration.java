@@ -15,6 +15,7 @@
  */
 package io.fabric8.apmagent;
 
+import io.fabric8.apmagent.metrics.CallTree;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -26,7 +27,11 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ApmConfiguration implements ApmConfigurationMBean {
     public enum STRATEGY {
@@ -51,6 +56,8 @@ public class ApmConfiguration implements ApmConfigurationMBean {
     private boolean autoStartMetrics = false;
     private boolean usePlatformMBeanServer = true;
     private boolean verifyClasses = false;
+    private boolean threadLocalMetrics = false;
+    private boolean histogramMetrics = false;
     private int methodMetricDepth = 10;
     private int threadMetricDepth = 5;
     private boolean filterChanged = false;
@@ -58,8 +65,26 @@ public class ApmConfiguration implements ApmConfigurationMBean {
     private boolean threadMetricDepthChanged = false;
     private boolean strategyChanged = false;
     private int samplingInterval = 1;
-    private List<FilterItem> whiteFilterList = new ArrayList<>();
-    private List<FilterItem> blackFilterList = new ArrayList<>();
+    private int samplingStackDepth = 64;
+    private double samplingCpuBudget = 1.0;
+    private String samplingThreadGroups = "";
+    private long houseKeepingTimeBudget = 100;
+    private int callTreeMaxNodes = CallTree.DEFAULT_MAX_NODES;
+    private boolean traceCallTree = false;
+    private double traceCpuBudget = 0;
+    private long traceRateThreshold = 10000;
+    private long traceNoiseFloor = 1000;
+    private int retransformBatchSize = 100;
+    private boolean compactTransform = false;
+    private int transformThreads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    private final AtomicLong retransformQueuedCount = new AtomicLong();
+    private final AtomicLong retransformedCount = new AtomicLong();
+    private final AtomicLong retransformFailedCount = new AtomicLong();
+    private volatile long retransformStartTime;
+    private volatile long retransformEndTime;
+    private volatile List<FilterItem> whiteFilterList = new ArrayList<>();
+    private volatile List<FilterItem> blackFilterList = new ArrayList<>();
+    private volatile CompiledFilters compiledFilters = new CompiledFilters(whiteFilterList, blackFilterList);
     private List<ApmConfigurationChangeListener> changeListeners = new CopyOnWriteArrayList<>();
     private STRATEGY strategy = STRATEGY.TRACE;
 
@@ -100,8 +125,11 @@ public class ApmConfiguration implements ApmConfigurationMBean {
 
     @Override
     public void setWhiteList(String whiteList) {
-        whiteFilterList = new ArrayList<>();
-        initializeList(whiteList, this.whiteFilterList);
+        List<FilterItem> list = new ArrayList<>();
+        initializeList(whiteList, list);
+        synchronized (this) {
+            setFilters(list, blackFilterList);
+        }
         filterChanged = true;
         fireConfigurationChanged();
     }
@@ -113,8 +141,11 @@ public class ApmConfiguration implements ApmConfigurationMBean {
 
     @Override
     public void setBlackList(String blackList) {
-        this.blackFilterList = new ArrayList<>();
-        initializeList(blackList, this.blackFilterList);
+        List<FilterItem> list = new ArrayList<>();
+        initializeList(blackList, list);
+        synchronized (this) {
+            setFilters(whiteFilterList, list);
+        }
         filterChanged = true;
         fireConfigurationChanged();
     }
@@ -127,7 +158,11 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         if (classAndMethod.length > 1) {
             filterItem.setMethodName(classAndMethod[1]);
         }
-        blackFilterList.add(filterItem);
+        synchronized (this) {
+            List<FilterItem> list = new ArrayList<>(blackFilterList);
+            list.add(filterItem);
+            setFilters(whiteFilterList, list);
+        }
         filterChanged = true;
         fireConfigurationChanged();
     }
@@ -140,7 +175,11 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         if (classAndMethod.length > 1) {
             filterItem.setMethodName(classAndMethod[1]);
         }
-        whiteFilterList.add(filterItem);
+        synchronized (this) {
+            List<FilterItem> list = new ArrayList<>(whiteFilterList);
+            list.add(filterItem);
+            setFilters(list, blackFilterList);
+        }
         filterChanged = true;
         fireConfigurationChanged();
     }
@@ -207,6 +246,26 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         this.verifyClasses = verifyClasses;
     }
 
+    @Override
+    public boolean isThreadLocalMetrics() {
+        return threadLocalMetrics;
+    }
+
+    @Override
+    public void setThreadLocalMetrics(boolean threadLocalMetrics) {
+        this.threadLocalMetrics = threadLocalMetrics;
+    }
+
+    @Override
+    public boolean isHistogramMetrics() {
+        return histogramMetrics;
+    }
+
+    @Override
+    public void setHistogramMetrics(boolean histogramMetrics) {
+        this.histogramMetrics = histogramMetrics;
+    }
+
     public int getThreadMetricDepth() {
         return threadMetricDepth;
     }
@@ -251,6 +310,178 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         this.samplingInterval = samplingInterval;
     }
 
+    @Override
+    public int getSamplingStackDepth() {
+        return samplingStackDepth;
+    }
+
+    @Override
+    public void setSamplingStackDepth(int samplingStackDepth) {
+        this.samplingStackDepth = samplingStackDepth;
+    }
+
+    @Override
+    public double getSamplingCpuBudget() {
+        return samplingCpuBudget;
+    }
+
+    @Override
+    public void setSamplingCpuBudget(double samplingCpuBudget) {
+        this.samplingCpuBudget = samplingCpuBudget;
+    }
+
+    @Override
+    public String getSamplingThreadGroups() {
+        return samplingThreadGroups;
+    }
+
+    @Override
+    public void setSamplingThreadGroups(String samplingThreadGroups) {
+        this.samplingThreadGroups = samplingThreadGroups != null ? samplingThreadGroups : "";
+    }
+
+    @Override
+    public long getHouseKeepingTimeBudget() {
+        return houseKeepingTimeBudget;
+    }
+
+    @Override
+    public void setHouseKeepingTimeBudget(long houseKeepingTimeBudget) {
+        this.houseKeepingTimeBudget = houseKeepingTimeBudget;
+    }
+
+    @Override
+    public int getCallTreeMaxNodes() {
+        return callTreeMaxNodes;
+    }
+
+    @Override
+    public void setCallTreeMaxNodes(int callTreeMaxNodes) {
+        this.callTreeMaxNodes = callTreeMaxNodes;
+    }
+
+    @Override
+    public boolean isTraceCallTree() {
+        return traceCallTree;
+    }
+
+    @Override
+    public void setTraceCallTree(boolean traceCallTree) {
+        this.traceCallTree = traceCallTree;
+    }
+
+    @Override
+    public double getTraceCpuBudget() {
+        return traceCpuBudget;
+    }
+
+    @Override
+    public void setTraceCpuBudget(double traceCpuBudget) {
+        this.traceCpuBudget = traceCpuBudget;
+    }
+
+    @Override
+    public long getTraceRateThreshold() {
+        return traceRateThreshold;
+    }
+
+    @Override
+    public void setTraceRateThreshold(long traceRateThreshold) {
+        this.traceRateThreshold = traceRateThreshold;
+    }
+
+    @Override
+    public long getTraceNoiseFloor() {
+        return traceNoiseFloor;
+    }
+
+    @Override
+    public void setTraceNoiseFloor(long traceNoiseFloor) {
+        this.traceNoiseFloor = traceNoiseFloor;
+    }
+
+    @Override
+    public boolean isCompactTransform() {
+        return compactTransform;
+    }
+
+    @Override
+    public void setCompactTransform(boolean compactTransform) {
+        this.compactTransform = compactTransform;
+    }
+
+    @Override
+    public int getRetransformBatchSize() {
+        return retransformBatchSize;
+    }
+
+    @Override
+    public void setRetransformBatchSize(int retransformBatchSize) {
+        this.retransformBatchSize = retransformBatchSize;
+    }
+
+    @Override
+    public int getTransformThreads() {
+        return transformThreads;
+    }
+
+    @Override
+    public void setTransformThreads(int transformThreads) {
+        this.transformThreads = transformThreads;
+    }
+
+    @Override
+    public long getRetransformQueuedCount() {
+        return retransformQueuedCount.get();
+    }
+
+    @Override
+    public long getRetransformedCount() {
+        return retransformedCount.get();
+    }
+
+    @Override
+    public long getRetransformFailedCount() {
+        return retransformFailedCount.get();
+    }
+
+    @Override
+    public long getRetransformPendingCount() {
+        return Math.max(0, retransformQueuedCount.get() - retransformedCount.get());
+    }
+
+    @Override
+    public double getRetransformThroughput() {
+        long start = retransformStartTime;
+        long end = getRetransformPendingCount() > 0 ? System.nanoTime() : retransformEndTime;
+        if (start == 0 || end <= start) {
+            return 0;
+        }
+        return retransformedCount.get() / ((end - start) / (double) TimeUnit.SECONDS.toNanos(1));
+    }
+
+    /**
+     * Records classes queued for retransformation, starting a new throughput measurement if
+     * nothing else was pending
+     */
+    public void retransformQueued(int count) {
+        if (getRetransformPendingCount() == 0) {
+            retransformQueuedCount.set(0);
+            retransformedCount.set(0);
+            retransformStartTime = System.nanoTime();
+        }
+        retransformQueuedCount.addAndGet(count);
+    }
+
+    /**
+     * Records classes that have been through retransformation, including the ones that failed
+     */
+    public void retransformCompleted(int count, int failed) {
+        retransformedCount.addAndGet(count);
+        retransformFailedCount.addAndGet(failed);
+        retransformEndTime = System.nanoTime();
+    }
+
     public String getStrategy() {
         return strategy.name();
     }
@@ -277,50 +508,27 @@ public class ApmConfiguration implements ApmConfigurationMBean {
     }
 
     public boolean isAudit(String className) {
-        return isWhiteListed(className) || !isBlackListed(className);
+        return compiledFilters.isAudit(className);
     }
 
     public boolean isAudit(String className, String methodName) {
-        return isWhiteListed(className, methodName) || !isBlackListed(className, methodName);
+        return compiledFilters.isAudit(className, methodName);
     }
 
     public boolean isBlackListed(String className) {
-        for (FilterItem item : blackFilterList) {
-            if (item.matches(className)) {
-                return true;
-            }
-        }
-        return false;
+        return compiledFilters.blackList.matches(className);
     }
 
     public boolean isBlackListed(String className, String methodName) {
-        for (FilterItem item : blackFilterList) {
-            if (item.matches(className, methodName, true)) {
-                return true;
-            }
-        }
-        return false;
+        return compiledFilters.blackList.matches(className, methodName, true);
     }
 
     public boolean isWhiteListed(String className) {
-        if (whiteFilterList.isEmpty()) {
-            return false;
-        }
-        for (FilterItem item : whiteFilterList) {
-            if (className.matches(item.getClassName())) {
-                return true;
-            }
-        }
-        return false;
+        return compiledFilters.whiteList.matchesPattern(className);
     }
 
     public boolean isWhiteListed(String className, String methodName) {
-        for (FilterItem item : whiteFilterList) {
-            if (item.matches(className, methodName, false)) {
-                return true;
-            }
-        }
-        return false;
+        return compiledFilters.whiteList.matches(className, methodName, false);
     }
 
     public void addChangeListener(ApmConfigurationChangeListener changeListener) {
@@ -338,6 +546,20 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         resetChanged();
     }
 
+    /**
+     * Compiles the lists before replacing the current ones, so an invalid regular expression
+     * leaves the filters unchanged. Callers hold the lock on this configuration so concurrent
+     * additions to the lists are not lost.
+     *
+     * @throws IllegalArgumentException if a class or method name is not a valid regular expression
+     */
+    private void setFilters(List<FilterItem> whiteList, List<FilterItem> blackList) {
+        CompiledFilters compiled = new CompiledFilters(whiteList, blackList);
+        whiteFilterList = whiteList;
+        blackFilterList = blackList;
+        compiledFilters = compiled;
+    }
+
     private void resetChanged() {
         filterChanged = false;
         methodMetricDepthChanged = false;
@@ -414,4 +636,56 @@ public class ApmConfiguration implements ApmConfigurationMBean {
         }
         return result;
     }
+
+    /**
+     * The white and black lists compiled together, with the audit decision cached per class
+     * (and per method within a class). Replaced as a whole when either list changes, which
+     * discards the cached decisions with it.
+     */
+    private static final class CompiledFilters {
+        private final FilterMatcher whiteList;
+        private final FilterMatcher blackList;
+        private final ConcurrentMap<String, ClassDecision> decisions = new ConcurrentHashMap<>();
+
+        CompiledFilters(List<FilterItem> whiteFilterList, List<FilterItem> blackFilterList) {
+            this.whiteList = new FilterMatcher(whiteFilterList);
+            this.blackList = new FilterMatcher(blackFilterList);
+        }
+
+        boolean isAudit(String className) {
+            return getDecision(className).audit;
+        }
+
+        boolean isAudit(String className, String methodName) {
+            ClassDecision decision = getDecision(className);
+            String key = methodName != null ? methodName : "";
+            Boolean result = decision.methods.get(key);
+            if (result == null) {
+                result = whiteList.matches(className, methodName, false) || !blackList.matches(className, methodName, true);
+                decision.methods.putIfAbsent(key, result);
+            }
+            return result;
+        }
+
+        private ClassDecision getDecision(String className) {
+            ClassDecision result = decisions.get(className);
+            if (result == null) {
+                result = new ClassDecision(whiteList.matchesPattern(className) || !blackList.matches(className));
+                ClassDecision existing = decisions.putIfAbsent(className, result);
+                if (existing != null) {
+                    result = existing;
+                }
+            }
+            return result;
+        }
+    }
+
+    private static final class ClassDecision {
+        private final boolean audit;
+        private final ConcurrentMap<String, Boolean> methods = new ConcurrentHashMap<>();
+
+        ClassDecision(boolean audit) {
+            this.audit = audit;
+        }
+    }
 }
@@ -41,6 +41,18 @@ public interface ApmConfigurationMBean {
 
     void setAsyncTransformation(boolean asyncTransformation);
 
+    /**
+     * @return true if per-thread metrics are kept in a ThreadLocal rather than a shared map,
+     * a change takes effect the next time the agent is initialized
+     */
+    boolean isThreadLocalMetrics();
+
+    void setThreadLocalMetrics(boolean threadLocalMetrics);
+
+    boolean isHistogramMetrics();
+
+    void setHistogramMetrics(boolean histogramMetrics);
+
     int getThreadMetricDepth();
 
     void setThreadMetricDepth(int threadMetricDepth);
@@ -49,6 +61,101 @@ public interface ApmConfigurationMBean {
 
     void setMethodMetricDepth(int methodMetricDepth);
 
+    int getSamplingStackDepth();
+
+    void setSamplingStackDepth(int samplingStackDepth);
+
+    /**
+     * @return the percentage of one CPU the sampling strategy may use, the sampling interval grows to stay within it
+     */
+    double getSamplingCpuBudget();
+
+    void setSamplingCpuBudget(double samplingCpuBudget);
+
+    /**
+     * @return comma separated names of the thread groups to sample, empty to sample all threads
+     */
+    String getSamplingThreadGroups();
+
+    void setSamplingThreadGroups(String samplingThreadGroups);
+
+    /**
+     * @return the time in milliseconds each housekeeping cycle may spend sorting metrics
+     * and recalculating thread metrics, work that does not fit is carried over to the next cycle
+     */
+    long getHouseKeepingTimeBudget();
+
+    void setHouseKeepingTimeBudget(long houseKeepingTimeBudget);
+
+    /**
+     * @return the maximum number of nodes in each call tree, further frames are counted against their parents
+     */
+    int getCallTreeMaxNodes();
+
+    void setCallTreeMaxNodes(int callTreeMaxNodes);
+
+    /**
+     * @return true if the trace strategy records the caller/callee call tree, which costs a lookup on
+     * every method entry. A change applies to threads whose metrics are created afterwards
+     */
+    boolean isTraceCallTree();
+
+    void setTraceCallTree(boolean traceCallTree);
+
+    /**
+     * @return the percentage of the available CPUs the trace probes may use, hot trivial methods are
+     * sampled or no longer instrumented to stay within it. Zero disables the adaptive control
+     */
+    double getTraceCpuBudget();
+
+    void setTraceCpuBudget(double traceCpuBudget);
+
+    /**
+     * @return the calls per second above which a method may be sampled or no longer instrumented
+     */
+    long getTraceRateThreshold();
+
+    void setTraceRateThreshold(long traceRateThreshold);
+
+    /**
+     * @return the mean duration in nanoseconds below which a method is too quick to be worth timing every call
+     */
+    long getTraceNoiseFloor();
+
+    void setTraceNoiseFloor(long traceNoiseFloor);
+
+    /**
+     * @return true to transform classes keeping their stack map frames instead of recomputing them,
+     * holding the original class bytes compressed and not retaining the transformed bytes
+     */
+    boolean isCompactTransform();
+
+    void setCompactTransform(boolean compactTransform);
+
+    int getRetransformBatchSize();
+
+    void setRetransformBatchSize(int retransformBatchSize);
+
+    /**
+     * @return the number of threads rewriting classes in parallel, takes effect when the agent is next initialized
+     */
+    int getTransformThreads();
+
+    void setTransformThreads(int transformThreads);
+
+    long getRetransformQueuedCount();
+
+    long getRetransformedCount();
+
+    long getRetransformFailedCount();
+
+    long getRetransformPendingCount();
+
+    /**
+     * @return classes retransformed per second over the current (or last) retransformation
+     */
+    double getRetransformThroughput();
+
     String getStrategy();
 
     void setStrategy(String strategy);
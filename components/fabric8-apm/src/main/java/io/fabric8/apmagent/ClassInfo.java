@@ -15,19 +15,25 @@
  */
 package io.fabric8.apmagent;
 
+import java.io.ByteArrayOutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
 
 public class ClassInfo {
     private ClassLoader classLoader;
     private Class originalClass;
     private String className;
     private byte[] original;
+    private int originalLength = -1;
     private byte[] transformed;
+    private boolean transformedState;
     private boolean canTransform;
     private ConcurrentMap<String, MethodDescription> transformedMethods = new ConcurrentHashMap<>();
     private ConcurrentMap<String, MethodDescription> allMethods = new ConcurrentHashMap<>();
@@ -48,12 +54,28 @@ public class ClassInfo {
         this.className = className != null ? className.replace("/", ".") : null;
     }
 
-    public byte[] getOriginal() {
+    public synchronized byte[] getOriginal() {
+        if (original != null && originalLength >= 0) {
+            return inflate(original, originalLength);
+        }
         return original;
     }
 
-    public void setOriginal(byte[] original) {
+    public synchronized void setOriginal(byte[] original) {
         this.original = original;
+        this.originalLength = -1;
+    }
+
+    /**
+     * Keeps the original class bytes deflated, they are inflated again by {@link #getOriginal()}
+     */
+    public synchronized void setCompressedOriginal(byte[] original) {
+        if (original == null) {
+            setOriginal(null);
+        } else {
+            this.original = deflate(original);
+            this.originalLength = original.length;
+        }
     }
 
     public Class getOriginalClass() {
@@ -69,7 +91,15 @@ public class ClassInfo {
     }
 
     public void setTransformed(byte[] transformed) {
-        this.transformed = transformed;
+        setTransformed(transformed, true);
+    }
+
+    /**
+     * @param retain false to only record whether the class was transformed, without keeping the bytes
+     */
+    public void setTransformed(byte[] transformed, boolean retain) {
+        this.transformed = retain ? transformed : null;
+        this.transformedState = transformed != null && transformed.length > 0;
     }
 
     public boolean isCanTransform() {
@@ -120,12 +150,46 @@ public class ClassInfo {
     }
 
     public boolean isTransformed() {
-        return transformed != null && transformed.length > 0;
+        return transformedState;
     }
 
     public void resetTransformed() {
         transformed = null;
+        transformedState = false;
         transformedMethods.clear();
     }
 
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 2 + 16);
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            byte[] result = new byte[length];
+            int offset = 0;
+            while (offset < length && !inflater.finished()) {
+                offset += inflater.inflate(result, offset, length - offset);
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt original class data", e);
+        } finally {
+            inflater.end();
+        }
+    }
 }
@@ -0,0 +1,217 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * A list of {@link FilterItem}s compiled for matching: class name prefixes go into a trie so
+ * a lookup walks the name once, class name patterns that are literal apart from '.' are
+ * compared by length bucket, and only real regular expressions fall back to a precompiled
+ * {@link Pattern}. Matches exactly what iterating {@link FilterItem#matches} would.
+ * Immutable - a new matcher is built whenever the filters change, failing with an
+ * {@link IllegalArgumentException} if a filter is not a valid regular expression.
+ */
+class FilterMatcher {
+    private static final String REGEX_CHARS = "\\[](){}*+?^$|";
+    private final Entry[] entries;
+    private final TrieNode root = new TrieNode();
+    private final Map<Integer, Entry[]> literalsByLength = new HashMap<>();
+    private final Entry[] regexEntries;
+
+    FilterMatcher(List<FilterItem> items) {
+        entries = new Entry[items.size()];
+        List<Entry> regexList = new ArrayList<>();
+        for (int i = 0; i < entries.length; i++) {
+            Entry entry = new Entry(items.get(i));
+            entries[i] = entry;
+            root.add(entry.className, 0, entry);
+            if (entry.classPattern != null) {
+                regexList.add(entry);
+            } else if (entry.literal) {
+                Entry[] bucket = literalsByLength.get(entry.className.length());
+                bucket = bucket == null ? new Entry[1] : Arrays.copyOf(bucket, bucket.length + 1);
+                bucket[bucket.length - 1] = entry;
+                literalsByLength.put(entry.className.length(), bucket);
+            }
+        }
+        regexEntries = regexList.toArray(new Entry[regexList.size()]);
+    }
+
+    /**
+     * @return true if any item's class name is a prefix of, or a pattern matching, the class name
+     */
+    boolean matches(String className) {
+        return matches(className, null, false, true);
+    }
+
+    /**
+     * @return true if any item's class name pattern matches the whole class name, ignoring prefixes
+     */
+    boolean matchesPattern(String className) {
+        for (Entry entry : entries) {
+            if (entry.matchesPattern(className, false)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean matches(String className, String methodName, boolean matchIfNoFilterMethod) {
+        return matches(className, methodName, matchIfNoFilterMethod, false);
+    }
+
+    private boolean matches(String className, String methodName, boolean matchIfNoFilterMethod, boolean classOnly) {
+        TrieNode node = root;
+        for (int i = 0; node != null; i++) {
+            for (Entry entry : node.terminals) {
+                if (classOnly || entry.matchesMethod(methodName, matchIfNoFilterMethod)) {
+                    return true;
+                }
+            }
+            if (i == className.length()) {
+                break;
+            }
+            node = node.child(normalize(className.charAt(i)));
+        }
+        Entry[] literals = literalsByLength.get(className.length());
+        if (literals != null) {
+            for (Entry entry : literals) {
+                if (entry.matchesPattern(className, true) && (classOnly || entry.matchesMethod(methodName, matchIfNoFilterMethod))) {
+                    return true;
+                }
+            }
+        }
+        if (regexEntries.length > 0) {
+            String normalized = className.replace('/', '.');
+            for (Entry entry : regexEntries) {
+                if (entry.matchesPattern(normalized, false) && (classOnly || entry.matchesMethod(methodName, matchIfNoFilterMethod))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static char normalize(char c) {
+        return c == '/' ? '.' : c;
+    }
+
+    private static Pattern compile(String regex) {
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            throw new IllegalArgumentException("Invalid filter " + regex + ": " + e.getDescription(), e);
+        }
+    }
+
+    private static final class Entry {
+        private final String className;
+        private final boolean literal;
+        private final Pattern classPattern;
+        private final String methodName;
+        private final Pattern methodPattern;
+
+        Entry(FilterItem item) {
+            this.className = item.getClassName() != null ? item.getClassName() : "";
+            boolean isLiteral = true;
+            for (int i = 0; i < className.length(); i++) {
+                if (REGEX_CHARS.indexOf(className.charAt(i)) >= 0) {
+                    isLiteral = false;
+                    break;
+                }
+            }
+            this.literal = isLiteral;
+            this.classPattern = isLiteral ? null : compile(className);
+            this.methodName = item.getMethodName();
+            this.methodPattern = methodName != null && !methodName.isEmpty() ? compile(methodName) : null;
+        }
+
+        /**
+         * @param normalize true to treat '/' in the class name as '.'
+         */
+        boolean matchesPattern(String name, boolean normalize) {
+            if (literal) {
+                if (name.length() != className.length()) {
+                    return false;
+                }
+                for (int i = 0; i < name.length(); i++) {
+                    char expected = className.charAt(i);
+                    char c = normalize ? normalize(name.charAt(i)) : name.charAt(i);
+                    if (expected != '.' && expected != c) {
+                        return false;
+                    }
+                    if (expected == '.' && (c == '\n' || c == '\r')) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+            return classPattern != null && classPattern.matcher(name).matches();
+        }
+
+        boolean matchesMethod(String method, boolean matchIfNoFilterMethod) {
+            boolean noFilterMethod = methodName == null || methodName.isEmpty();
+            if (method == null || method.isEmpty()) {
+                return noFilterMethod;
+            }
+            if (!noFilterMethod) {
+                return methodPattern != null && methodPattern.matcher(method).matches();
+            }
+            return matchIfNoFilterMethod;
+        }
+    }
+
+    private static final class TrieNode {
+        private static final Entry[] NO_ENTRIES = new Entry[0];
+        private char[] keys = new char[0];
+        private TrieNode[] children = new TrieNode[0];
+        private Entry[] terminals = NO_ENTRIES;
+
+        void add(String prefix, int index, Entry entry) {
+            if (index == prefix.length()) {
+                terminals = Arrays.copyOf(terminals, terminals.length + 1);
+                terminals[terminals.length - 1] = entry;
+                return;
+            }
+            char c = prefix.charAt(index);
+            TrieNode node = child(c);
+            if (node == null) {
+                node = new TrieNode();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                keys[keys.length - 1] = c;
+                children = Arrays.copyOf(children, children.length + 1);
+                children[children.length - 1] = node;
+            }
+            node.add(prefix, index + 1, entry);
+        }
+
+        TrieNode child(char c) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == c) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.fabric8.apmagent.ApmAgent;
+import io.fabric8.apmagent.ApmConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the overhead of the trace probes within the configured CPU budget. Every housekeeping
+ * cycle the call rate of each method is worked out from its count, and the cost of the probes is
+ * estimated from a calibrated per-call cost. While over budget, methods that are called more often
+ * than the rate threshold but take less than the noise floor are timed one call in N, with N
+ * growing each cycle, and once N reaches its maximum they are no longer instrumented at all.
+ * Sampled methods are timed more often again when the overhead drops well below the budget.
+ */
+class AdaptiveTraceController {
+    private static final Logger LOG = LoggerFactory.getLogger(ApmAgent.class);
+    private static final int SAMPLE_RATE_STEP = 8;
+    private static final int MAX_SAMPLE_RATE = 512;
+    private static final int CALIBRATION_CALLS = 20000;
+    private final ApmAgentContext context;
+    private final Map<String, Long> lastCounts = new HashMap<>();
+    private long lastTime;
+    private double tracedCallCost = -1;
+    private double sampledCallCost;
+
+    AdaptiveTraceController(ApmAgentContext context) {
+        this.context = context;
+    }
+
+    /**
+     * Called on the housekeeping thread with the method metrics of this cycle
+     */
+    void adjust(List<? extends MethodMetrics> methodMetricsList) {
+        ApmConfiguration configuration = context.getConfiguration();
+        double budget = configuration.getTraceCpuBudget();
+        long now = System.nanoTime();
+        long interval = now - lastTime;
+        lastTime = now;
+        if (budget <= 0 || configuration.getStrategyImpl() != ApmConfiguration.STRATEGY.TRACE) {
+            lastCounts.clear();
+            return;
+        }
+        if (tracedCallCost < 0) {
+            calibrate();
+        }
+        double seconds = (double) interval / TimeUnit.SECONDS.toNanos(1);
+        double budgetNanos = budget / 100 * Runtime.getRuntime().availableProcessors() * TimeUnit.SECONDS.toNanos(1);
+        double noiseFloor = (double) configuration.getTraceNoiseFloor() / TimeUnit.MILLISECONDS.toNanos(1);
+
+        Map<String, Long> counts = new HashMap<>();
+        List<Candidate> candidates = new ArrayList<>();
+        double overhead = 0;
+        for (MethodMetrics methodMetrics : methodMetricsList) {
+            String name = methodMetrics.getName();
+            int methodId = context.getMethodIdRegistry().findMethodId(name);
+            if (methodId < 0 || context.isMethodDisabled(name)) {
+                continue;
+            }
+            long count = methodMetrics.getCount();
+            counts.put(name, count);
+            Long lastCount = lastCounts.get(name);
+            if (lastCount == null || count < lastCount || seconds <= 0) {
+                continue;
+            }
+            int sampleRate = context.getSampleRate(methodId);
+            //only the timed calls are counted
+            double callRate = (count - lastCount) * sampleRate / seconds;
+            double cost = callRate * callCost(sampleRate);
+            overhead += cost;
+            boolean trivial = callRate > configuration.getTraceRateThreshold() && methodMetrics.getMean() < noiseFloor;
+            if (trivial || sampleRate > 1) {
+                candidates.add(new Candidate(name, methodId, sampleRate, callRate, cost, trivial));
+            }
+        }
+        lastCounts.clear();
+        lastCounts.putAll(counts);
+
+        if (overhead > budgetNanos) {
+            //go for the most expensive probes first
+            Collections.sort(candidates, new Comparator<Candidate>() {
+                @Override
+                public int compare(Candidate candidate1, Candidate candidate2) {
+                    return Double.compare(candidate2.cost, candidate1.cost);
+                }
+            });
+            List<String> disable = new ArrayList<>();
+            for (Candidate candidate : candidates) {
+                if (overhead <= budgetNanos) {
+                    break;
+                }
+                if (!candidate.trivial) {
+                    continue;
+                }
+                if (candidate.sampleRate < MAX_SAMPLE_RATE) {
+                    int sampleRate = Math.min(MAX_SAMPLE_RATE, candidate.sampleRate * SAMPLE_RATE_STEP);
+                    overhead -= candidate.cost - candidate.callRate * callCost(sampleRate);
+                    context.setSampleRate(candidate.methodId, sampleRate);
+                    LOG.debug("Timing one in {} calls to {}", sampleRate, candidate.name);
+                } else {
+                    overhead -= candidate.cost;
+                    disable.add(candidate.name);
+                }
+            }
+            if (!disable.isEmpty()) {
+                LOG.info("Removing instrumentation from {} hot methods to stay within the trace CPU budget: {}", disable.size(), disable);
+                context.disableMethods(disable);
+            }
+        } else if (overhead < budgetNanos / 2) {
+            //time the cheapest sampled methods more often again, as long as that stays well within budget
+            Collections.sort(candidates, new Comparator<Candidate>() {
+                @Override
+                public int compare(Candidate candidate1, Candidate candidate2) {
+                    return Double.compare(candidate1.cost, candidate2.cost);
+                }
+            });
+            for (Candidate candidate : candidates) {
+                if (candidate.sampleRate > 1) {
+                    int sampleRate = Math.max(1, candidate.sampleRate / SAMPLE_RATE_STEP);
+                    double increase = candidate.callRate * callCost(sampleRate) - candidate.cost;
+                    if (overhead + increase >= budgetNanos / 2) {
+                        break;
+                    }
+                    overhead += increase;
+                    context.setSampleRate(candidate.methodId, sampleRate);
+                }
+            }
+        }
+    }
+
+    void reset() {
+        lastCounts.clear();
+    }
+
+    private double callCost(int sampleRate) {
+        return (tracedCallCost + sampledCallCost * (sampleRate - 1)) / sampleRate;
+    }
+
+    /**
+     * Measures the cost of the probes by running them on a private stack
+     */
+    private void calibrate() {
+        CallTree callTree = context.getConfiguration().isTraceCallTree() ? new CallTree() : null;
+        ThreadContextMethodMetrics probe = new ThreadContextMethodMetrics("calibration", 0,
+            new AtomicReference<>(new ThreadContextMethodMetricsStack(callTree)), 0,
+            "calibration@probe()", context.createMetricsRecorder(true));
+        MethodMetrics methodMetrics = new MethodMetrics("calibration@probe()", context.createMetricsRecorder(false));
+        tracedCallCost = Math.max(1, measure(probe, methodMetrics, true));
+        sampledCallCost = Math.max(1, measure(probe, methodMetrics, false));
+        LOG.debug("Calibrated trace probe cost at {}ns per timed call, {}ns per untimed call", tracedCallCost, sampledCallCost);
+    }
+
+    private static double measure(ThreadContextMethodMetrics probe, MethodMetrics methodMetrics, boolean timed) {
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 3; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < CALIBRATION_CALLS; i++) {
+                probe.onEnter(timed);
+                methodMetrics.update(probe.onExit());
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        return (double) best / CALIBRATION_CALLS;
+    }
+
+    private static final class Candidate {
+        private final String name;
+        private final int methodId;
+        private final int sampleRate;
+        private final double callRate;
+        private final double cost;
+        private final boolean trivial;
+
+        Candidate(String name, int methodId, int sampleRate, double callRate, double cost, boolean trivial) {
+            this.name = name;
+            this.methodId = methodId;
+            this.sampleRate = sampleRate;
+            this.callRate = callRate;
+            this.cost = cost;
+            this.trivial = trivial;
+        }
+    }
+}
@@ -16,16 +16,22 @@
 package io.fabric8.apmagent.metrics;
 
 import java.lang.management.ManagementFactory;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.management.InstanceAlreadyExistsException;
 import javax.management.MBeanRegistrationException;
 import javax.management.MBeanServer;
@@ -37,6 +43,7 @@ import io.fabric8.apmagent.ApmAgent;
 import io.fabric8.apmagent.ApmConfiguration;
 import io.fabric8.apmagent.ClassInfo;
 import io.fabric8.apmagent.MethodDescription;
+import io.fabric8.apmagent.strategy.trace.TraceStrategy;
 import org.jolokia.jmx.JolokiaMBeanServerUtil;
 import org.jolokia.jvmagent.JolokiaServer;
 import org.slf4j.Logger;
@@ -46,11 +53,34 @@ public class ApmAgentContext {
     private static final Logger LOG = LoggerFactory.getLogger(ApmAgent.class);
     private final String DEFAULT_DOMAIN = "io.fabric8.apmagent";
     private final long HOUSE_KEEPING_TIME = TimeUnit.SECONDS.toMillis(2);
+    private static final int SORT_METHOD_METRICS = 0;
+    private static final int CALCULATE_THREAD_METRICS = 1;
+    private static final int SORT_THREAD_METRICS = 2;
+    private static final int HOUSE_KEEPING_PHASES = 3;
+    /**
+     * How often the counts of the call trees of dead threads are halved
+     */
+    private static final long RETIRED_CALL_TREE_HALF_LIFE = TimeUnit.MINUTES.toNanos(10);
     private final ConcurrentMap<String, ClassInfo> allMethods = new ConcurrentHashMap<>();
     private AtomicBoolean initialized = new AtomicBoolean();
     private AtomicBoolean started = new AtomicBoolean();
     private ConcurrentMap<Thread, ThreadMetrics> threadMetricsMap = new ConcurrentHashMap<>();
+    private volatile ThreadLocal<ThreadMetrics> threadMetricsLocal = new ThreadLocal<>();
+    /**
+     * Whether thread local metrics are used, latched when the agent is initialized so that
+     * the exit of a method always finds the metrics its enter was recorded in
+     */
+    private volatile boolean threadLocalMetrics;
+    private final Set<ThreadMetricsReference> threadMetricsReferences = Collections.newSetFromMap(new ConcurrentHashMap<ThreadMetricsReference, Boolean>());
+    private final ReferenceQueue<Thread> threadReferenceQueue = new ReferenceQueue<>();
     private ConcurrentMap<String, MethodMetrics> methodMetricsMap = new ConcurrentHashMap<>();
+    private final MethodIdRegistry methodIdRegistry = new MethodIdRegistry();
+    private volatile MethodMetrics[] methodMetricsArray = new MethodMetrics[0];
+    private volatile int[] sampleRates = new int[0];
+    private final Set<String> disabledMethods = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final Set<ClassInfo> pendingRetransforms = Collections.newSetFromMap(new ConcurrentHashMap<ClassInfo, Boolean>());
+    private final AdaptiveTraceController adaptiveTraceController = new AdaptiveTraceController(this);
+    private volatile TraceStrategy traceStrategy;
     private ConcurrentMap<Object, ObjectName> objectNameMap = new ConcurrentHashMap<>();
     private MBeanServer mBeanServer;
     private JolokiaServer jolokiaServer;
@@ -59,56 +89,221 @@ public class ApmAgentContext {
     private ObjectName configurationObjectName;
     private final ApmConfiguration configuration;
     private final MonitoredMethodMetrics monitoredMethodMetrics;
-    private AtomicBoolean doHouseKeeping = new AtomicBoolean();
+    private final Object houseKeepingLock = new Object();
+    private final AtomicReference<List<? extends MethodMetrics>> methodMetricsSnapshot = new AtomicReference<List<? extends MethodMetrics>>(Collections.<MethodMetrics>emptyList());
+    private final AtomicReference<List<ThreadMetrics>> threadMetricsSnapshot = new AtomicReference<>(Collections.<ThreadMetrics>emptyList());
+    private int houseKeepingPhase;
+    private long lastCalculatedThreadId = Long.MIN_VALUE;
+    private volatile CallTree sampledCallTree = new CallTree();
+    private volatile CallTree traceCallTree;
+    private volatile long traceCallTreeTime;
+    private volatile CallTree retiredCallTree;
+    private long retiredCallTreeDecayTime = System.nanoTime();
     private Thread backgroundThread;
     private boolean monitorByDefault = true;
 
     public ApmAgentContext(ApmAgent agent) {
         this.apmAgent = agent;
         this.configuration = agent.getConfiguration();
+        this.retiredCallTree = new CallTree(configuration.getCallTreeMaxNodes());
         this.monitoredMethodMetrics = new MonitoredMethodMetrics(this);
         this.monitoredMethodMetrics.setMonitorSize(configuration.getMethodMetricDepth());
     }
 
     public void enterMethod(Thread currentThread, String fullMethodName, boolean alwaysActive) {
         if (isInitialized()) {
-            ThreadMetrics threadMetrics = threadMetricsMap.get(currentThread);
-            if (threadMetrics == null) {
-                threadMetrics = new ThreadMetrics(this, currentThread);
-                threadMetricsMap.put(currentThread, threadMetrics);
-            }
-            threadMetrics.enter(fullMethodName, alwaysActive);
+            enterMethod(currentThread, methodIdRegistry.getMethodId(fullMethodName), alwaysActive);
+        }
+    }
 
-            MethodMetrics methodMetrics = methodMetricsMap.get(fullMethodName);
-            if (methodMetrics == null) {
-                methodMetrics = new MethodMetrics(fullMethodName);
-                methodMetrics.setActive(isMonitorByDefault());
-                methodMetricsMap.putIfAbsent(fullMethodName, methodMetrics);
-            }
+    public void exitMethod(Thread currentThread, String methodName, boolean alwaysActive) {
+        if (isInitialized()) {
+            exitMethod(currentThread, methodIdRegistry.getMethodId(methodName), alwaysActive);
         }
+    }
 
+    public void enterMethod(Thread currentThread, int methodId, boolean alwaysActive) {
+        if (isInitialized()) {
+            ThreadMetrics threadMetrics = getThreadMetrics(currentThread);
+            threadMetrics.enter(methodId, alwaysActive, getSampleRate(methodId));
+            getMethodMetrics(methodId);
+        }
     }
 
-    public void exitMethod(Thread currentThread, String methodName, boolean alwaysActive) {
+    public void exitMethod(Thread currentThread, int methodId, boolean alwaysActive) {
         if (isInitialized()) {
-            ThreadMetrics threadMetrics = threadMetricsMap.get(currentThread);
+            ThreadMetrics threadMetrics = findThreadMetrics(currentThread);
 
             long elapsed = -1;
             if (threadMetrics != null) {
-                elapsed = threadMetrics.exit(methodName, alwaysActive);
+                elapsed = threadMetrics.exit(methodId, alwaysActive);
             }
 
             if (elapsed >= 0) {
-                MethodMetrics methodMetrics = methodMetricsMap.get(methodName);
+                MethodMetrics methodMetrics = getMethodMetrics(methodId);
                 if (methodMetrics != null) {
                     methodMetrics.update(elapsed);
                 }
             }
-            doHouseKeeping();
         }
     }
 
+    public int getMethodId(String fullMethodName) {
+        return methodIdRegistry.getMethodId(fullMethodName);
+    }
+
+    /**
+     * @return how many calls to the method there are for every call that is timed
+     */
+    int getSampleRate(int methodId) {
+        int[] rates = sampleRates;
+        return methodId >= 0 && methodId < rates.length && rates[methodId] > 1 ? rates[methodId] : 1;
+    }
+
+    synchronized void setSampleRate(int methodId, int sampleRate) {
+        int[] rates = sampleRates;
+        if (methodId >= rates.length) {
+            rates = Arrays.copyOf(rates, Math.max(methodId + 1, rates.length * 2));
+        } else {
+            rates = rates.clone();
+        }
+        rates[methodId] = sampleRate;
+        sampleRates = rates;
+    }
+
+    /**
+     * @return true if the method is no longer instrumented to keep within the trace CPU budget
+     */
+    public boolean isMethodDisabled(String fullMethodName) {
+        return disabledMethods.contains(fullMethodName);
+    }
+
+    /**
+     * Stops instrumenting the methods. Their classes are retransformed in the background once
+     * the current housekeeping cycle has released its lock.
+     */
+    void disableMethods(Collection<String> fullMethodNames) {
+        for (String fullMethodName : fullMethodNames) {
+            disabledMethods.add(fullMethodName);
+            int index = fullMethodName.indexOf('@');
+            ClassInfo classInfo = index > 0 ? allMethods.get(fullMethodName.substring(0, index)) : null;
+            if (classInfo != null && classInfo.isTransformed()) {
+                pendingRetransforms.add(classInfo);
+            }
+        }
+    }
+
+    /**
+     * Hands the classes of newly disabled methods to the trace strategy's transform thread
+     */
+    private void retransformDisabledMethods() {
+        if (pendingRetransforms.isEmpty()) {
+            return;
+        }
+        Set<ClassInfo> classInfos = new HashSet<>();
+        for (Iterator<ClassInfo> iter = pendingRetransforms.iterator(); iter.hasNext(); ) {
+            classInfos.add(iter.next());
+            iter.remove();
+        }
+        TraceStrategy strategy = traceStrategy;
+        if (strategy != null) {
+            strategy.retransformInBackground(classInfos);
+        }
+    }
+
+    public void setTraceStrategy(TraceStrategy traceStrategy) {
+        this.traceStrategy = traceStrategy;
+    }
+
+    /**
+     * @param singleWriter true if the recorder will only be updated by one thread
+     */
+    MetricsRecorder createMetricsRecorder(boolean singleWriter) {
+        if (configuration.isHistogramMetrics()) {
+            return new HistogramMetricsRecorder(singleWriter);
+        }
+        return new TimerMetricsRecorder();
+    }
+
+    MethodIdRegistry getMethodIdRegistry() {
+        return methodIdRegistry;
+    }
+
+    private ThreadMetrics getThreadMetrics(Thread currentThread) {
+        ThreadMetrics result = findThreadMetrics(currentThread);
+        if (result == null) {
+            result = new ThreadMetrics(this, currentThread);
+            if (isThreadLocal(currentThread)) {
+                threadMetricsLocal.set(result);
+                threadMetricsReferences.add(new ThreadMetricsReference(currentThread, result, threadReferenceQueue));
+            } else {
+                threadMetricsMap.put(currentThread, result);
+            }
+        }
+        return result;
+    }
+
+    private ThreadMetrics findThreadMetrics(Thread currentThread) {
+        if (isThreadLocal(currentThread)) {
+            return threadMetricsLocal.get();
+        }
+        return threadMetricsMap.get(currentThread);
+    }
+
+    /**
+     * The sampling strategy records metrics on behalf of other threads, so those
+     * always go through the shared map
+     */
+    private boolean isThreadLocal(Thread currentThread) {
+        return threadLocalMetrics && currentThread == Thread.currentThread();
+    }
+
+    private List<ThreadMetrics> allThreadMetrics() {
+        List<ThreadMetrics> result = new ArrayList<>(threadMetricsMap.values());
+        for (ThreadMetricsReference reference : threadMetricsReferences) {
+            result.add(reference.threadMetrics);
+        }
+        return result;
+    }
+
+    private MethodMetrics getMethodMetrics(int methodId) {
+        MethodMetrics[] array = methodMetricsArray;
+        if (methodId >= 0 && methodId < array.length) {
+            MethodMetrics result = array[methodId];
+            if (result != null) {
+                return result;
+            }
+        }
+        return createMethodMetrics(methodId);
+    }
+
+    private synchronized MethodMetrics createMethodMetrics(int methodId) {
+        String fullMethodName = methodIdRegistry.getMethodName(methodId);
+        if (fullMethodName == null) {
+            return null;
+        }
+        MethodMetrics[] array = methodMetricsArray;
+        if (methodId >= array.length) {
+            array = Arrays.copyOf(array, Math.max(methodId + 1, array.length * 2));
+        }
+        MethodMetrics result = array[methodId];
+        if (result == null) {
+            result = methodMetricsMap.get(fullMethodName);
+            if (result == null) {
+                result = new MethodMetrics(fullMethodName, createMetricsRecorder(false));
+                result.setActive(isMonitorByDefault());
+                methodMetricsMap.put(fullMethodName, result);
+            }
+            array[methodId] = result;
+        }
+        methodMetricsArray = array;
+        return result;
+    }
+
     public void initialize() {
+        if (!initialized.get()) {
+            threadLocalMetrics = configuration.isThreadLocalMetrics();
+        }
         if (initialized.compareAndSet(false, true)) {
             try {
                 agentObjectName = new ObjectName(DEFAULT_DOMAIN, "type", "apmAgent");
@@ -130,7 +325,7 @@ public class ApmAgentContext {
                         while (started.get()) {
                             try {
                                 Thread.sleep(HOUSE_KEEPING_TIME);
-                                doHouseKeeping.set(true);
+                                doHouseKeeping();
                             } catch (Throwable e) {
                             }
                         }
@@ -142,36 +337,170 @@ public class ApmAgentContext {
         }
     }
 
+    /**
+     * Runs on the background thread only, so instrumented methods never pay for sorting
+     * or MBean registration. Results are published by swapping in new snapshot lists.
+     * The work is split into phases which run in turn until the time budget is used up;
+     * the phase that did not fit runs first in the next cycle, and per-thread metrics are
+     * recalculated round robin so a large number of threads is spread over several cycles.
+     */
     void doHouseKeeping() {
-        //the time is going to be the elapsed time from the latest method call
-        //its not going to be terribly accurate - but then it doesn't really need to be
-        if (doHouseKeeping.compareAndSet(true, false)) {
+        synchronized (houseKeepingLock) {
+            if (!started.get()) {
+                return;
+            }
             try {
-                List<ThreadMetrics> threadMetricsList = getThreadMetrics();
-                for (ThreadMetrics tm : threadMetricsList) {
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(configuration.getHouseKeepingTimeBudget());
+                ThreadMetricsReference reference;
+                while ((reference = (ThreadMetricsReference) threadReferenceQueue.poll()) != null) {
+                    if (threadMetricsReferences.remove(reference)) {
+                        retire(reference.threadMetrics);
+                    }
+                }
+                for (ThreadMetricsReference threadMetricsReference : threadMetricsReferences) {
+                    if (threadMetricsReference.threadMetrics.isDead()) {
+                        threadMetricsReferences.remove(threadMetricsReference);
+                        retire(threadMetricsReference.threadMetrics);
+                    }
+                }
+                for (ThreadMetrics tm : threadMetricsMap.values()) {
                     if (tm.isDead()) {
-                        tm.destroy();
-                        threadMetricsMap.remove(tm.getThread());
+                        retire(tm);
+                        Thread thread = tm.getThread();
+                        if (thread != null) {
+                            threadMetricsMap.remove(thread);
+                        }
                     }
                 }
-                monitoredMethodMetrics.calculateMethodMetrics(getMethodMetrics());
-                for (ThreadMetrics threadMetrics : threadMetricsList) {
-                    threadMetrics.calculateMethodMetrics();
+
+                if (System.nanoTime() - retiredCallTreeDecayTime >= RETIRED_CALL_TREE_HALF_LIFE) {
+                    retiredCallTree.decay();
+                    retiredCallTreeDecayTime = System.nanoTime();
+                }
+
+                List<ThreadMetrics> threadMetricsList = allThreadMetrics();
+                // always run one phase so housekeeping makes progress whatever the budget
+                for (int phases = 0; phases < HOUSE_KEEPING_PHASES; phases++) {
+                    if (phases > 0 && System.nanoTime() - deadline >= 0) {
+                        LOG.debug("Housekeeping time budget exhausted before phase {}", houseKeepingPhase);
+                        break;
+                    }
+                    if (!runHouseKeepingPhase(houseKeepingPhase, threadMetricsList, deadline)) {
+                        break;
+                    }
+                    houseKeepingPhase = (houseKeepingPhase + 1) % HOUSE_KEEPING_PHASES;
                 }
             } catch (Throwable e) {
                 LOG.warn("Error during housekeeping due " + e.getMessage() + ". This exception is ignored.", e);
             }
         }
+        retransformDisabledMethods();
+    }
+
+    /**
+     * @return false if the phase has not completed and should be continued in the next cycle
+     */
+    private boolean runHouseKeepingPhase(int phase, List<ThreadMetrics> threadMetricsList, long deadline) {
+        switch (phase) {
+            case SORT_METHOD_METRICS:
+                List<? extends MethodMetrics> methodMetricsList = MethodMetrics.sortedMetrics(methodMetricsMap.values());
+                methodMetricsSnapshot.set(Collections.unmodifiableList(methodMetricsList));
+                monitoredMethodMetrics.calculateMethodMetrics(methodMetricsList);
+                adaptiveTraceController.adjust(methodMetricsList);
+                return true;
+            case CALCULATE_THREAD_METRICS:
+                return calculateThreadMetrics(threadMetricsList, deadline);
+            case SORT_THREAD_METRICS:
+                for (ThreadMetrics threadMetrics : threadMetricsList) {
+                    threadMetrics.updateCpuTimeSnapshot();
+                }
+                Collections.sort(threadMetricsList, new Comparator<ThreadMetrics>() {
+                    @Override
+                    public int compare(ThreadMetrics threadMetrics1, ThreadMetrics threadMetrics2) {
+                        return Long.compare(threadMetrics2.getCpuTimeSnapshot(), threadMetrics1.getCpuTimeSnapshot());
+                    }
+                });
+                threadMetricsSnapshot.set(Collections.unmodifiableList(threadMetricsList));
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Recalculates per-thread metrics in thread id order, resuming after the last thread done in
+     * the previous cycle, until every thread has been done once or the deadline passes, always
+     * doing at least one thread. Threads which start or die in between do not shift the others,
+     * so none are skipped or done twice.
+     *
+     * @return true once every thread has been recalculated since the phase started
+     */
+    private boolean calculateThreadMetrics(List<ThreadMetrics> threadMetricsList, long deadline) {
+        Collections.sort(threadMetricsList, new Comparator<ThreadMetrics>() {
+            @Override
+            public int compare(ThreadMetrics threadMetrics1, ThreadMetrics threadMetrics2) {
+                return Long.compare(threadMetrics1.getThreadId(), threadMetrics2.getThreadId());
+            }
+        });
+        int size = threadMetricsList.size();
+        int index = 0;
+        while (index < size && threadMetricsList.get(index).getThreadId() <= lastCalculatedThreadId) {
+            index++;
+        }
+        int calculated = 0;
+        while (index < size && (calculated == 0 || System.nanoTime() - deadline < 0)) {
+            ThreadMetrics threadMetrics = threadMetricsList.get(index++);
+            threadMetrics.calculateMethodMetrics();
+            lastCalculatedThreadId = threadMetrics.getThreadId();
+            calculated++;
+        }
+        if (index < size) {
+            LOG.debug("Housekeeping time budget exhausted after thread {} of {} threads", lastCalculatedThreadId, size);
+            return false;
+        }
+        lastCalculatedThreadId = Long.MIN_VALUE;
+        return true;
+    }
+
+    /**
+     * Keeps the call tree of a dead thread in the aggregate, whose counts decay over time,
+     * and releases its MBeans
+     */
+    private void retire(ThreadMetrics threadMetrics) {
+        retiredCallTree.merge(threadMetrics.getCallTree());
+        threadMetrics.destroy();
     }
 
     public void stop() {
         if (initialized.get() && started.compareAndSet(true, false)) {
-            for (ObjectName objectName : objectNameMap.values()) {
-                unregisterMBean(objectName);
+            Thread t = backgroundThread;
+            backgroundThread = null;
+            if (t != null) {
+                t.interrupt();
+            }
+            synchronized (houseKeepingLock) {
+                for (ObjectName objectName : objectNameMap.values()) {
+                    unregisterMBean(objectName);
+                }
+                objectNameMap.clear();
+                synchronized (this) {
+                    methodMetricsMap.clear();
+                    methodMetricsArray = new MethodMetrics[0];
+                    sampleRates = new int[0];
+                }
+                disabledMethods.clear();
+                pendingRetransforms.clear();
+                adaptiveTraceController.reset();
+                threadMetricsMap.clear();
+                threadMetricsReferences.clear();
+                //values held by application threads are dropped with the old ThreadLocal
+                threadMetricsLocal = new ThreadLocal<>();
+                methodMetricsSnapshot.set(Collections.<MethodMetrics>emptyList());
+                threadMetricsSnapshot.set(Collections.<ThreadMetrics>emptyList());
+                sampledCallTree = new CallTree();
+                traceCallTree = null;
+                retiredCallTree = new CallTree(configuration.getCallTreeMaxNodes());
             }
-            objectNameMap.clear();
-            methodMetricsMap.clear();
-            threadMetricsMap.clear();
         }
     }
 
@@ -224,20 +553,51 @@ public class ApmAgentContext {
         return result;
     }
 
+    /**
+     * @return thread metrics sorted by cpu time, as of the last housekeeping cycle
+     */
     public List<ThreadMetrics> getThreadMetrics() {
-        List<ThreadMetrics> result = new ArrayList<>(threadMetricsMap.values());
+        return threadMetricsSnapshot.get();
+    }
 
-        Collections.sort(result, new Comparator<ThreadMetrics>() {
-            @Override
-            public int compare(ThreadMetrics threadMetrics1, ThreadMetrics threadMetrics2) {
-                return (int) (threadMetrics2.getCpuTime() - threadMetrics1.getCpuTime());
+    /**
+     * @return method metrics sorted by load, as of the last housekeeping cycle
+     */
+    public List<? extends MethodMetrics> getMethodMetrics() {
+        return methodMetricsSnapshot.get();
+    }
+
+    /**
+     * @return the call tree for the current strategy: elapsed nanoseconds per caller/callee path
+     * when tracing, or the number of samples per stack when sampling
+     */
+    public CallTree getCallTree() {
+        if (configuration.getStrategyImpl() == ApmConfiguration.STRATEGY.SAMPLE) {
+            return sampledCallTree;
+        }
+        CallTree result = traceCallTree;
+        long now = System.nanoTime();
+        if (result == null || now - traceCallTreeTime > TimeUnit.MILLISECONDS.toNanos(HOUSE_KEEPING_TIME)) {
+            // only merged when asked for, and at most once per housekeeping period
+            result = retiredCallTree.copy();
+            for (ThreadMetrics threadMetrics : allThreadMetrics()) {
+                result.merge(threadMetrics.getCallTree());
             }
-        });
+            traceCallTree = result;
+            traceCallTreeTime = now;
+        }
         return result;
     }
 
-    public List<? extends MethodMetrics> getMethodMetrics() {
-        return MethodMetrics.sortedMetrics(methodMetricsMap.values());
+    /**
+     * @return the call tree aggregated from sampled stacks, as last published by the sampling strategy
+     */
+    public CallTree getSampledCallTree() {
+        return sampledCallTree;
+    }
+
+    public void setSampledCallTree(CallTree sampledCallTree) {
+        this.sampledCallTree = sampledCallTree;
     }
 
     public boolean isInitialized() {
@@ -258,7 +618,7 @@ public class ApmAgentContext {
 
     public void setActive(String fullMethodName, boolean flag) {
         if (isInitialized()) {
-            for (ThreadMetrics threadMetrics : threadMetricsMap.values()) {
+            for (ThreadMetrics threadMetrics : allThreadMetrics()) {
                 threadMetrics.setActive(fullMethodName, flag);
             }
 
@@ -315,8 +675,10 @@ public class ApmAgentContext {
     public void resetMethods(ClassInfo classInfo) {
         Collection<MethodDescription> list = classInfo.getTransformedMethodDescriptions();
         for (MethodDescription methodDescription : list) {
-            if (!configuration.isAudit(classInfo.getClassName(), methodDescription.getMethodName())) {
+            if (!configuration.isAudit(classInfo.getClassName(), methodDescription.getMethodName())
+                || isMethodDisabled(methodDescription.getFullMethodName())) {
                 remove(methodDescription);
+                classInfo.removeTransformedMethod(methodDescription.getMethodSignature());
             }
         }
     }
@@ -334,14 +696,23 @@ public class ApmAgentContext {
     }
 
     public void threadMetricsDepthChanged() {
-        for (ThreadMetrics threadMetrics : threadMetricsMap.values()) {
+        for (ThreadMetrics threadMetrics : allThreadMetrics()) {
             threadMetrics.setMonitorSize(configuration.getThreadMetricDepth());
         }
     }
 
     private void remove(MethodDescription methodDescription) {
-        methodMetricsMap.remove(methodDescription.getFullMethodName());
-        for (ThreadMetrics threadMetrics : threadMetricsMap.values()) {
+        synchronized (this) {
+            methodMetricsMap.remove(methodDescription.getFullMethodName());
+            int methodId = methodIdRegistry.findMethodId(methodDescription.getFullMethodName());
+            MethodMetrics[] array = methodMetricsArray;
+            if (methodId >= 0 && methodId < array.length) {
+                array = array.clone();
+                array[methodId] = null;
+                methodMetricsArray = array;
+            }
+        }
+        for (ThreadMetrics threadMetrics : allThreadMetrics()) {
             threadMetrics.remove(methodDescription.getFullMethodName());
         }
     }
@@ -408,4 +779,17 @@ public class ApmAgentContext {
         }
         return mBeanServer;
     }
+
+    /**
+     * Keeps the metrics of a thread using thread local metrics reachable for aggregation,
+     * without keeping the thread itself alive
+     */
+    private static class ThreadMetricsReference extends WeakReference<Thread> {
+        private final ThreadMetrics threadMetrics;
+
+        ThreadMetricsReference(Thread thread, ThreadMetrics threadMetrics, ReferenceQueue<Thread> queue) {
+            super(thread, queue);
+            this.threadMetrics = threadMetrics;
+        }
+    }
 }
@@ -0,0 +1,389 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Aggregates call stacks into a tree keyed by frame, with a self count and a total count
+ * per node. Repeated stacks only walk the tree and do not allocate. Each tree has a single
+ * writer; children are held in concurrent maps and counts are volatile so another thread can
+ * {@link #merge(CallTree)}, {@link #copy()} or render it while it is being written to,
+ * seeing slightly stale counts.
+ * <p/>
+ * The tree is bounded: frames deeper than {@link #MAX_DEPTH} are counted against their
+ * deepest ancestor, a node has at most {@link #MAX_CHILDREN} children after which other
+ * frames are counted against an {@link #OTHER_FRAME} child, and once the tree holds its
+ * maximum number of nodes new frames are counted against their parent.
+ * <p/>
+ * The trace strategy looks children up by method id with {@link Node#getOrCreateChild(int, String)},
+ * which keeps an int keyed index per node for the writing thread so that entering a method does not hash
+ * its name. Trees written to that way must not be {@link #decay() decayed} or {@link #clear() cleared}.
+ */
+public class CallTree {
+    public static final String OTHER_FRAME = "[other]";
+    public static final int MAX_DEPTH = 256;
+    public static final int MAX_CHILDREN = 256;
+    public static final int DEFAULT_MAX_NODES = 65536;
+    private final int maxNodes;
+    private final Node root = new Node(this, "all", 0);
+    private volatile int nodeCount = 1;
+
+    public CallTree() {
+        this(DEFAULT_MAX_NODES);
+    }
+
+    /**
+     * @param maxNodes the maximum number of nodes in the tree
+     */
+    public CallTree(int maxNodes) {
+        this.maxNodes = Math.max(1, maxNodes);
+    }
+
+    /**
+     * @param frames the frames, outermost caller first
+     * @param length the number of frames to use from the array
+     * @param count  the number of times the stack was seen
+     */
+    public void addStack(String[] frames, int length, long count) {
+        Node node = root;
+        node.total += count;
+        for (int i = 0; i < length; i++) {
+            Node child = node.getOrCreateChild(frames[i]);
+            if (child == null) {
+                break;
+            }
+            node = child;
+            node.total += count;
+        }
+        node.self += count;
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    public long getTotalCount() {
+        return root.total;
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    public boolean isEmpty() {
+        return root.children.isEmpty();
+    }
+
+    public void merge(CallTree other) {
+        root.merge(other.root);
+    }
+
+    /**
+     * Halves every count and removes the nodes whose total drops to zero, so the tree keeps
+     * the shape of recent calls and stacks which are no longer seen are evicted over time
+     */
+    public void decay() {
+        nodeCount -= root.decay();
+    }
+
+    public CallTree copy() {
+        CallTree result = new CallTree(maxNodes);
+        result.merge(this);
+        return result;
+    }
+
+    public void clear() {
+        root.self = 0;
+        root.total = 0;
+        root.children.clear();
+        nodeCount = 1;
+    }
+
+    /**
+     * @return the tree in the collapsed stack format used by flame graph tools:
+     * one line per distinct stack, frames separated by ';', followed by the count
+     */
+    public String toCollapsedStacks() {
+        StringBuilder builder = new StringBuilder();
+        for (Node child : root.sortedChildren()) {
+            child.appendCollapsed(builder, new StringBuilder());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * @return the tree as nested JSON objects with name, value and children attributes,
+     * as consumed by d3-flame-graph
+     */
+    public String toJson() {
+        StringBuilder builder = new StringBuilder();
+        root.appendJson(builder);
+        return builder.toString();
+    }
+
+    public String toString() {
+        return "CallTree[" + getTotalCount() + "]";
+    }
+
+    public static class Node {
+        /**
+         * Marks a frame id whose child would be too deep or not fit in the tree
+         */
+        private static final Node NO_CHILD = new Node(null, OTHER_FRAME, 0);
+        private final CallTree tree;
+        private final String frame;
+        private final int depth;
+        private final ConcurrentMap<String, Node> children = new ConcurrentHashMap<>();
+        private volatile long self;
+        private volatile long total;
+        // open addressing index of the children by frame id + 1, only used by the writing thread
+        private int[] childIds;
+        private Node[] childrenById;
+        private int childIdCount;
+
+        Node(CallTree tree, String frame, int depth) {
+            this.tree = tree;
+            this.frame = frame;
+            this.depth = depth;
+        }
+
+        public String getFrame() {
+            return frame;
+        }
+
+        public long getSelf() {
+            return self;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        void add(long selfCount, long totalCount) {
+            self += selfCount;
+            total += totalCount;
+        }
+
+        /**
+         * @return the child for the frame, the {@link #OTHER_FRAME} child if this node has too many
+         * children, or null if the child would be too deep or the tree is full
+         */
+        Node getOrCreateChild(String childFrame) {
+            Node result = children.get(childFrame);
+            if (result != null) {
+                return result;
+            }
+            if (depth >= MAX_DEPTH || tree.nodeCount >= tree.maxNodes) {
+                return null;
+            }
+            if (children.size() >= MAX_CHILDREN - 1 && !OTHER_FRAME.equals(childFrame)) {
+                // the last slot is kept for the other child
+                return getOrCreateChild(OTHER_FRAME);
+            }
+            result = new Node(tree, childFrame, depth + 1);
+            children.put(childFrame, result);
+            tree.nodeCount++;
+            return result;
+        }
+
+        /**
+         * Returns the same as {@link #getOrCreateChild(String)} but looks the child up by the id of
+         * its frame, so must only be called by the thread writing to the tree
+         *
+         * @param childFrameId the id of the frame, or a negative value to look the child up by name
+         */
+        Node getOrCreateChild(int childFrameId, String childFrame) {
+            if (childFrameId < 0) {
+                return getOrCreateChild(childFrame);
+            }
+            int key = childFrameId + 1;
+            int[] ids = childIds;
+            if (ids != null) {
+                int mask = ids.length - 1;
+                for (int i = indexOf(key, mask); ids[i] != 0; i = (i + 1) & mask) {
+                    if (ids[i] == key) {
+                        Node result = childrenById[i];
+                        return result != NO_CHILD ? result : null;
+                    }
+                }
+            }
+            Node result = getOrCreateChild(childFrame);
+            putChildId(key, result != null ? result : NO_CHILD);
+            return result;
+        }
+
+        private void putChildId(int key, Node child) {
+            if (childIds == null) {
+                childIds = new int[8];
+                childrenById = new Node[8];
+            } else if ((childIdCount + 1) * 2 > childIds.length) {
+                int[] oldIds = childIds;
+                Node[] oldChildren = childrenById;
+                childIds = new int[oldIds.length * 2];
+                childrenById = new Node[oldIds.length * 2];
+                for (int i = 0; i < oldIds.length; i++) {
+                    if (oldIds[i] != 0) {
+                        insertChildId(oldIds[i], oldChildren[i]);
+                    }
+                }
+            }
+            insertChildId(key, child);
+            childIdCount++;
+        }
+
+        private void insertChildId(int key, Node child) {
+            int mask = childIds.length - 1;
+            int i = indexOf(key, mask);
+            while (childIds[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            childIds[i] = key;
+            childrenById[i] = child;
+        }
+
+        private static int indexOf(int key, int mask) {
+            int hash = key * 0x9E3779B9;
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+
+        void merge(Node other) {
+            self += other.self;
+            total += other.total;
+            for (Node otherChild : other.children.values()) {
+                Node child = getOrCreateChild(otherChild.frame);
+                if (child != null) {
+                    child.merge(otherChild);
+                } else {
+                    // the subtree does not fit so count it against this node
+                    self += otherChild.total;
+                }
+            }
+        }
+
+        /**
+         * @return the number of nodes removed
+         */
+        private int decay() {
+            self /= 2;
+            total /= 2;
+            int removed = 0;
+            for (Iterator<Node> iter = children.values().iterator(); iter.hasNext(); ) {
+                Node child = iter.next();
+                if (child.total / 2 == 0) {
+                    iter.remove();
+                    removed += child.size();
+                } else {
+                    removed += child.decay();
+                }
+            }
+            return removed;
+        }
+
+        private int size() {
+            int answer = 1;
+            for (Node child : children.values()) {
+                answer += child.size();
+            }
+            return answer;
+        }
+
+        private List<Node> sortedChildren() {
+            List<Node> result = new ArrayList<>(children.values());
+            Collections.sort(result, new Comparator<Node>() {
+                @Override
+                public int compare(Node node1, Node node2) {
+                    return Long.compare(node2.total, node1.total);
+                }
+            });
+            return result;
+        }
+
+        private void appendCollapsed(StringBuilder builder, StringBuilder path) {
+            int length = path.length();
+            if (length > 0) {
+                path.append(';');
+            }
+            path.append(frame);
+            if (self > 0) {
+                builder.append(path).append(' ').append(self).append('\n');
+            }
+            for (Node child : sortedChildren()) {
+                child.appendCollapsed(builder, path);
+            }
+            path.setLength(length);
+        }
+
+        private void appendJson(StringBuilder builder) {
+            builder.append("{\"name\":");
+            appendJsonString(builder, frame);
+            builder.append(",\"value\":").append(total);
+            List<Node> list = sortedChildren();
+            if (!list.isEmpty()) {
+                builder.append(",\"children\":[");
+                for (int i = 0; i < list.size(); i++) {
+                    if (i > 0) {
+                        builder.append(',');
+                    }
+                    list.get(i).appendJson(builder);
+                }
+                builder.append(']');
+            }
+            builder.append('}');
+        }
+
+        private static void appendJsonString(StringBuilder builder, String value) {
+            builder.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"':
+                        builder.append("\\\"");
+                        break;
+                    case '\\':
+                        builder.append("\\\\");
+                        break;
+                    case '\n':
+                        builder.append("\\n");
+                        break;
+                    case '\r':
+                        builder.append("\\r");
+                        break;
+                    case '\t':
+                        builder.append("\\t");
+                        break;
+                    default:
+                        if (c < 0x20) {
+                            builder.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            builder.append(c);
+                        }
+                }
+            }
+            builder.append('"');
+        }
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import com.codahale.metrics.Meter;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramIterationValue;
+import org.HdrHistogram.Recorder;
+import org.HdrHistogram.SingleWriterRecorder;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link MetricsRecorder} backed by an HdrHistogram recorder. Writers record into the
+ * active interval histogram without locking; {@link #snapshot()} swaps the interval out and
+ * merges it into the accumulated histogram, so memory stays constant however many
+ * durations are recorded.
+ * <p/>
+ * Like the exponentially decaying reservoir of the Codahale timer, which favours the last five
+ * minutes, the accumulated histogram only covers a sliding window of the last {@link #WINDOW_SLOTS}
+ * minutes; each minute is kept in its own histogram which is subtracted again once it falls out of the window.
+ * <p/>
+ * To keep the same meaning as the Codahale timer, the snapshot size and values describe a sample
+ * of at most {@link #SAMPLE_SIZE} durations (the size of the timer's reservoir), spread evenly
+ * over the accumulated distribution, rather than every recorded duration.
+ */
+public class HistogramMetricsRecorder implements MetricsRecorder {
+    /**
+     * The number of significant decimal digits kept, 3 keeps values within 0.1%
+     */
+    private static final int SIGNIFICANT_DIGITS = 3;
+
+    /**
+     * The default reservoir size of the Codahale timer
+     */
+    static final int SAMPLE_SIZE = 1028;
+
+    /**
+     * The number of slots in the sliding window, each covering {@link #SLOT_NANOS}
+     */
+    static final int WINDOW_SLOTS = 5;
+
+    static final long SLOT_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final Meter meter = new Meter();
+    private final Recorder recorder;
+    private final SingleWriterRecorder singleWriterRecorder;
+    private final Histogram accumulated = new Histogram(SIGNIFICANT_DIGITS);
+    private final Histogram[] slots = new Histogram[WINDOW_SLOTS];
+    private int slot;
+    private long slotStart = System.nanoTime();
+    private Histogram interval;
+
+    /**
+     * @param singleWriter true if only one thread will ever call {@link #update(long)}
+     */
+    public HistogramMetricsRecorder(boolean singleWriter) {
+        if (singleWriter) {
+            this.recorder = null;
+            this.singleWriterRecorder = new SingleWriterRecorder(SIGNIFICANT_DIGITS);
+        } else {
+            this.recorder = new Recorder(SIGNIFICANT_DIGITS);
+            this.singleWriterRecorder = null;
+        }
+    }
+
+    @Override
+    public void update(long elapsed) {
+        if (recorder != null) {
+            recorder.recordValue(elapsed);
+        } else {
+            singleWriterRecorder.recordValue(elapsed);
+        }
+        meter.mark();
+    }
+
+    @Override
+    public long getCount() {
+        return meter.getCount();
+    }
+
+    @Override
+    public double getMeanRate() {
+        return meter.getMeanRate();
+    }
+
+    @Override
+    public double getOneMinuteRate() {
+        return meter.getOneMinuteRate();
+    }
+
+    @Override
+    public double getFiveMinuteRate() {
+        return meter.getFiveMinuteRate();
+    }
+
+    @Override
+    public double getFifteenMinuteRate() {
+        return meter.getFifteenMinuteRate();
+    }
+
+    @Override
+    public synchronized MetricsSnapshot snapshot() {
+        return snapshot(System.nanoTime());
+    }
+
+    synchronized MetricsSnapshot snapshot(long now) {
+        if (recorder != null) {
+            interval = recorder.getIntervalHistogram(interval);
+        } else {
+            interval = singleWriterRecorder.getIntervalHistogram(interval);
+        }
+        expireSlots(now);
+        if (interval.getTotalCount() > 0) {
+            if (slots[slot] == null) {
+                slots[slot] = new Histogram(SIGNIFICANT_DIGITS);
+            }
+            slots[slot].add(interval);
+            accumulated.add(interval);
+        }
+
+        long total = accumulated.getTotalCount();
+        if (total == 0) {
+            return MetricsSnapshot.EMPTY;
+        }
+        long[] values = sample(accumulated, (int) Math.min(total, SAMPLE_SIZE));
+        return new MetricsSnapshot(values.length, accumulated.getMinValue(), accumulated.getMaxValue(), accumulated.getMean(),
+                                   accumulated.getStdDeviation(), accumulated.getValueAtPercentile(50),
+                                   accumulated.getValueAtPercentile(75), accumulated.getValueAtPercentile(95),
+                                   accumulated.getValueAtPercentile(98), accumulated.getValueAtPercentile(99),
+                                   accumulated.getValueAtPercentile(99.9), accumulated.getValueAtPercentile(99.99),
+                                   values);
+    }
+
+    /**
+     * Moves on to the slot for the given time, removing the durations of the slots which have
+     * fallen out of the window from the accumulated histogram
+     */
+    private void expireSlots(long now) {
+        if (now - slotStart >= WINDOW_SLOTS * SLOT_NANOS) {
+            // nothing recorded before now is still in the window
+            for (Histogram histogram : slots) {
+                if (histogram != null) {
+                    histogram.reset();
+                }
+            }
+            accumulated.reset();
+            slotStart = now;
+            return;
+        }
+        while (now - slotStart >= SLOT_NANOS) {
+            slot = (slot + 1) % WINDOW_SLOTS;
+            slotStart += SLOT_NANOS;
+            Histogram expired = slots[slot];
+            if (expired != null && expired.getTotalCount() > 0) {
+                accumulated.subtract(expired);
+                expired.reset();
+            }
+        }
+    }
+
+    /**
+     * Returns the sorted values at evenly spaced ranks of the histogram, which are all the recorded
+     * values when the size is the total count
+     */
+    static long[] sample(Histogram histogram, int size) {
+        long total = histogram.getTotalCount();
+        long[] answer = new long[size];
+        int idx = 0;
+        long cumulative = 0;
+        for (HistogramIterationValue value : histogram.recordedValues()) {
+            cumulative += value.getCountAtValueIteratedTo();
+            // the rank of the idx'th sample is idx * total / size
+            while (idx < size && (double) idx * total / size < cumulative) {
+                answer[idx++] = value.getValueIteratedTo();
+            }
+        }
+        return idx == size ? answer : Arrays.copyOf(answer, idx);
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Assigns a compact integer id to every fully qualified method name, so instrumented
+ * code can index metrics by array slot instead of hashing the method name.
+ * Ids are never reused for the lifetime of the agent.
+ */
+public class MethodIdRegistry {
+    private static final int INITIAL_CAPACITY = 256;
+    private final ConcurrentMap<String, Integer> methodIds = new ConcurrentHashMap<>();
+    private volatile String[] methodNames = new String[INITIAL_CAPACITY];
+    private int size;
+
+    public int getMethodId(String fullMethodName) {
+        Integer result = methodIds.get(fullMethodName);
+        if (result == null) {
+            result = register(fullMethodName);
+        }
+        return result;
+    }
+
+    /**
+     * @return the id for the method name, or -1 if it has never been registered
+     */
+    public int findMethodId(String fullMethodName) {
+        Integer result = methodIds.get(fullMethodName);
+        return result != null ? result : -1;
+    }
+
+    public String getMethodName(int methodId) {
+        String[] names = methodNames;
+        return methodId >= 0 && methodId < names.length ? names[methodId] : null;
+    }
+
+    public int size() {
+        return methodIds.size();
+    }
+
+    private synchronized Integer register(String fullMethodName) {
+        Integer result = methodIds.get(fullMethodName);
+        if (result == null) {
+            result = size++;
+            String[] names = methodNames;
+            if (result >= names.length) {
+                names = Arrays.copyOf(names, names.length * 2);
+            }
+            names[result] = fullMethodName;
+            methodNames = names;
+            methodIds.put(fullMethodName, result);
+        }
+        return result;
+    }
+}
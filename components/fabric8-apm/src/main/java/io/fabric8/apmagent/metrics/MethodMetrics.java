@@ -15,8 +15,6 @@
  */
 package io.fabric8.apmagent.metrics;
 
-import com.codahale.metrics.Timer;
-
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -25,10 +23,11 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 public class MethodMetrics {
-    protected final Timer timer;
+    protected final MetricsRecorder recorder;
     private final String name;
     private final double rateFactor;
     private final double durationFactor;
+    private volatile MetricsSnapshot snapshot;
     private int percentage;
     private boolean active = true;
 
@@ -38,8 +37,18 @@ public class MethodMetrics {
      * @param name - the fully qualified method name
      */
     public MethodMetrics(String name) {
+        this(name, new TimerMetricsRecorder());
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param name     - the fully qualified method name
+     * @param recorder - records the durations of the method
+     */
+    public MethodMetrics(String name, MetricsRecorder recorder) {
         this.name = name;
-        this.timer = new Timer();
+        this.recorder = recorder;
 
         this.rateFactor = TimeUnit.SECONDS.toSeconds(1);
         this.durationFactor = 1.0 / TimeUnit.MILLISECONDS.toNanos(1);
@@ -58,63 +67,67 @@ public class MethodMetrics {
     }
 
     public long getCount() {
-        return timer.getCount();
+        return recorder.getCount();
     }
 
     public double getMeanRate() {
-        return timer.getMeanRate() * rateFactor;
+        return recorder.getMeanRate() * rateFactor;
     }
 
     public double getOneMinuteRate() {
-        return timer.getOneMinuteRate() * rateFactor;
+        return recorder.getOneMinuteRate() * rateFactor;
     }
 
     public double getFiveMinuteRate() {
-        return timer.getFiveMinuteRate() * rateFactor;
+        return recorder.getFiveMinuteRate() * rateFactor;
     }
 
     public double getFifteenMinuteRate() {
-        return timer.getFifteenMinuteRate() * rateFactor;
+        return recorder.getFifteenMinuteRate() * rateFactor;
     }
 
     public double getMin() {
-        return timer.getSnapshot().getMin() * durationFactor;
+        return getSnapshot().getMin() * durationFactor;
     }
 
     public double getMax() {
-        return timer.getSnapshot().getMax() * durationFactor;
+        return getSnapshot().getMax() * durationFactor;
     }
 
     public double getMean() {
-        return timer.getSnapshot().getMean() * durationFactor;
+        return getSnapshot().getMean() * durationFactor;
     }
 
     public double getStdDev() {
-        return timer.getSnapshot().getStdDev() * durationFactor;
+        return getSnapshot().getStdDev() * durationFactor;
     }
 
     public double get50thPercentile() {
-        return timer.getSnapshot().getMedian() * durationFactor;
+        return getSnapshot().getMedian() * durationFactor;
     }
 
     public double get75thPercentile() {
-        return timer.getSnapshot().get75thPercentile() * durationFactor;
+        return getSnapshot().get75thPercentile() * durationFactor;
     }
 
     public double get95thPercentile() {
-        return timer.getSnapshot().get95thPercentile() * durationFactor;
+        return getSnapshot().get95thPercentile() * durationFactor;
     }
 
     public double get98thPercentile() {
-        return timer.getSnapshot().get98thPercentile() * durationFactor;
+        return getSnapshot().get98thPercentile() * durationFactor;
     }
 
     public double get99thPercentile() {
-        return timer.getSnapshot().get99thPercentile() * durationFactor;
+        return getSnapshot().get99thPercentile() * durationFactor;
     }
 
     public double get999thPercentile() {
-        return timer.getSnapshot().get999thPercentile() * durationFactor;
+        return getSnapshot().get999thPercentile() * durationFactor;
+    }
+
+    public double get9999thPercentile() {
+        return getSnapshot().get9999thPercentile() * durationFactor;
     }
 
     /**
@@ -123,7 +136,7 @@ public class MethodMetrics {
      * @return estimated load
      */
     public double getLoad() {
-        return timer.getSnapshot().size() * getMean();
+        return getSnapshot().size() * getMean();
     }
 
     public int getPercentage() {
@@ -135,26 +148,45 @@ public class MethodMetrics {
     }
 
     public long[] values() {
-        return timer.getSnapshot().getValues();
+        return getSnapshot().getValues();
     }
 
     public void update(long elapsed) {
         if (elapsed >= 0) {
-            timer.update(elapsed, TimeUnit.NANOSECONDS);
+            recorder.update(elapsed);
         }
     }
 
+    /**
+     * Refreshes the cached snapshot that the getters report on
+     */
+    public void updateSnapshot() {
+        snapshot = recorder.snapshot();
+    }
+
+    private MetricsSnapshot getSnapshot() {
+        MetricsSnapshot result = snapshot;
+        if (result == null) {
+            result = recorder.snapshot();
+            snapshot = result;
+        }
+        return result;
+    }
+
     public String toString() {
         return "MethodMetrics:" + getName();
     }
 
     public static List<? extends MethodMetrics> sortedMetrics(Collection<? extends MethodMetrics> collection) {
         ArrayList<? extends MethodMetrics> list = new ArrayList<>(collection);
+        for (MethodMetrics m : list) {
+            m.updateSnapshot();
+        }
 
         Collections.sort(list, new Comparator<MethodMetrics>() {
             @Override
             public int compare(MethodMetrics methodMetrics1, MethodMetrics methodMetrics2) {
-                return (int) ((int) methodMetrics2.getLoad() - (int) methodMetrics1.getLoad());
+                return Double.compare(methodMetrics2.getLoad(), methodMetrics1.getLoad());
             }
         });
         //calculate the percentage
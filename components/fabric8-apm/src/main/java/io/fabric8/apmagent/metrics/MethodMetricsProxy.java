@@ -118,6 +118,12 @@ public class MethodMetricsProxy implements MethodMetricsProxyMBean {
         return mm != null ? mm.get999thPercentile() : 0;
     }
 
+    @Override
+    public double get9999thPercentile() {
+        MethodMetrics mm = this.methodMetrics;
+        return mm != null ? mm.get9999thPercentile() : 0;
+    }
+
     @Override
     public long[] values() {
         MethodMetrics mm = this.methodMetrics;
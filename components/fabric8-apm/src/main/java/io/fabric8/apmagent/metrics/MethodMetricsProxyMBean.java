@@ -15,6 +15,12 @@
  */
 package io.fabric8.apmagent.metrics;
 
+/**
+ * The metrics of a method. The count and rates are live, while the load, percentage, durations,
+ * percentiles and values come from a snapshot taken by the housekeeping thread so they lag behind by
+ * up to a housekeeping cycle, or a few cycles for per-thread metrics when there are many threads.
+ * The durations cover roughly the last five minutes.
+ */
 public interface MethodMetricsProxyMBean {
 
     String getName();
@@ -53,6 +59,8 @@ public interface MethodMetricsProxyMBean {
 
     double get999thPercentile();
 
+    double get9999thPercentile();
+
     long[] values();
 
 }
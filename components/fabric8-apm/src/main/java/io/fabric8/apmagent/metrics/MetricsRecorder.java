@@ -0,0 +1,40 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+/**
+ * Records method durations (in nanoseconds) for {@link MethodMetrics}
+ */
+public interface MetricsRecorder {
+
+    void update(long elapsed);
+
+    long getCount();
+
+    double getMeanRate();
+
+    double getOneMinuteRate();
+
+    double getFiveMinuteRate();
+
+    double getFifteenMinuteRate();
+
+    /**
+     * Takes a snapshot of the durations recorded so far. This is called once per
+     * housekeeping cycle, getters on {@link MethodMetrics} read the cached result.
+     */
+    MetricsSnapshot snapshot();
+}
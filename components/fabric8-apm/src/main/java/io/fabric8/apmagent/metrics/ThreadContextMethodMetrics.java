@@ -15,53 +15,103 @@
  */
 package io.fabric8.apmagent.metrics;
 
-import com.codahale.metrics.Timer;
-
 import java.util.concurrent.atomic.AtomicReference;
 
 public class ThreadContextMethodMetrics extends MethodMetrics {
-    private final Thread thread;
+    private final String threadName;
+    private final long threadId;
     private final AtomicReference<ThreadContextMethodMetricsStack> stackRef;
-    private Timer.Context timerContext;
+    private final int methodId;
+    private long startTime;
+    private int sampleCount;
+
+    public ThreadContextMethodMetrics(String threadName, long threadId, AtomicReference<ThreadContextMethodMetricsStack> stackRef, String name) {
+        this(threadName, threadId, stackRef, name, new TimerMetricsRecorder());
+    }
+
+    public ThreadContextMethodMetrics(String threadName, long threadId, AtomicReference<ThreadContextMethodMetricsStack> stackRef, String name, MetricsRecorder recorder) {
+        this(threadName, threadId, stackRef, -1, name, recorder);
+    }
 
-    public ThreadContextMethodMetrics(Thread thread, AtomicReference<ThreadContextMethodMetricsStack> stackRef, String name) {
-        super(name);
-        this.thread = thread;
+    /**
+     * @param methodId the id of the method from the {@link MethodIdRegistry}, or -1 if it has none
+     */
+    public ThreadContextMethodMetrics(String threadName, long threadId, AtomicReference<ThreadContextMethodMetricsStack> stackRef, int methodId, String name, MetricsRecorder recorder) {
+        super(name, recorder);
+        this.threadName = threadName;
+        this.threadId = threadId;
         this.stackRef = stackRef;
+        this.methodId = methodId;
     }
 
     public String getThreadName() {
-        return thread.getName();
+        return threadName;
     }
 
     public long getThreadId() {
-        return thread.getId();
+        return threadId;
+    }
+
+    public int getMethodId() {
+        return methodId;
     }
 
     public void onEnter() {
-        timerContext = timer.time();
-        stackRef.get().push(this);
+        onEnter(true);
+    }
+
+    /**
+     * @param timed false to keep track of the call without timing it
+     */
+    public void onEnter(boolean timed) {
+        if (timed) {
+            startTime = System.nanoTime();
+        }
+        stackRef.get().push(this, timed);
+    }
+
+    /**
+     * @return true for one in every sampleRate calls
+     */
+    public boolean sample(int sampleRate) {
+        if (++sampleCount >= sampleRate) {
+            sampleCount = 0;
+            return true;
+        }
+        return false;
     }
 
     public long onExit() {
         long result = -1;
         ThreadContextMethodMetrics last = stackRef.get().pop();
         if (last == this) {
-            result = timerContext.stop();
+            result = stopTimer();
         } else {
             //the exit could have jumped a few methods if its
             //caused by an exception
             while (last != null && last != this) {
-                result = last.timerContext.stop();
+                result = last.stopTimer();
                 last = stackRef.get().pop();
             }
             if (last == this) {
-                result = timerContext.stop();
+                result = stopTimer();
             }
         }
         return result;
     }
 
+    private long stopTimer() {
+        ThreadContextMethodMetricsStack stack = stackRef.get();
+        if (!stack.isPoppedTimed()) {
+            stack.popped(-1);
+            return -1;
+        }
+        long elapsed = System.nanoTime() - startTime;
+        update(elapsed);
+        stack.popped(elapsed);
+        return elapsed;
+    }
+
     public String toString() {
         return "ThreadContextMethodMetrics:" + getName();
     }
@@ -17,17 +17,46 @@ package io.fabric8.apmagent.metrics;
 
 class ThreadContextMethodMetricsStack {
 
+    /**
+     * The call tree to record into, or null if the call tree is not traced
+     */
+    private final CallTree callTree;
     private ThreadContextMethodMetrics[] stack;
+    private CallTree.Node[] nodes;
+    private long[] childTimes;
+    private boolean[] timed;
     private int pointer;
 
-    ThreadContextMethodMetricsStack() {
+    /**
+     * @param callTree the call tree to record into, or null to only keep the stack
+     */
+    ThreadContextMethodMetricsStack(CallTree callTree) {
+        this.callTree = callTree;
         stack = new ThreadContextMethodMetrics[2];
+        nodes = new CallTree.Node[2];
+        childTimes = new long[2];
+        timed = new boolean[2];
     }
 
     ThreadContextMethodMetrics push(ThreadContextMethodMetrics value) {
+        return push(value, true);
+    }
+
+    /**
+     * @param isTimed false if the call is not being timed, it is still pushed so that
+     *                enter and exit stay paired and the callees keep their caller
+     */
+    ThreadContextMethodMetrics push(ThreadContextMethodMetrics value, boolean isTimed) {
         if (pointer + 1 >= stack.length) {
             resizeStack(stack.length * 2);
         }
+        if (callTree != null) {
+            // a null parent means the caller was beyond the bounds of the call tree
+            CallTree.Node parent = pointer > 0 ? nodes[pointer - 1] : callTree.getRoot();
+            nodes[pointer] = parent != null ? parent.getOrCreateChild(value.getMethodId(), value.getName()) : null;
+        }
+        childTimes[pointer] = 0;
+        timed[pointer] = isTimed;
         stack[pointer++] = value;
         return value;
     }
@@ -38,10 +67,42 @@ class ThreadContextMethodMetricsStack {
         return result;
     }
 
+    /**
+     * @return true if the entry that was last popped was being timed
+     */
+    boolean isPoppedTimed() {
+        return timed[pointer];
+    }
+
+    /**
+     * Records the elapsed time of the entry that was last popped against its call tree node
+     */
+    void popped(long elapsed) {
+        CallTree.Node node = nodes[pointer];
+        nodes[pointer] = null;
+        if (node != null && elapsed >= 0) {
+            node.add(elapsed - childTimes[pointer], elapsed);
+            if (pointer > 0) {
+                childTimes[pointer - 1] += elapsed;
+            } else {
+                callTree.getRoot().add(0, elapsed);
+            }
+        }
+    }
+
     private void resizeStack(int newCapacity) {
         ThreadContextMethodMetrics[] newStack = new ThreadContextMethodMetrics[newCapacity];
         System.arraycopy(stack, 0, newStack, 0, Math.min(pointer, newCapacity));
         stack = newStack;
+        CallTree.Node[] newNodes = new CallTree.Node[newCapacity];
+        System.arraycopy(nodes, 0, newNodes, 0, Math.min(pointer, newCapacity));
+        nodes = newNodes;
+        long[] newChildTimes = new long[newCapacity];
+        System.arraycopy(childTimes, 0, newChildTimes, 0, Math.min(pointer, newCapacity));
+        childTimes = newChildTimes;
+        boolean[] newTimed = new boolean[newCapacity];
+        System.arraycopy(timed, 0, newTimed, 0, Math.min(pointer, newCapacity));
+        timed = newTimed;
     }
 
     public String toString() {
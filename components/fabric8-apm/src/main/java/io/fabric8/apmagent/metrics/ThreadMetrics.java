@@ -17,9 +17,11 @@ package io.fabric8.apmagent.metrics;
 
 import io.fabric8.apmagent.ApmConfiguration;
 
+import java.lang.ref.WeakReference;
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
 import java.util.List;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -29,40 +31,80 @@ public class ThreadMetrics {
     private final AtomicReference<ThreadContextMethodMetricsStack> methodStackRef;
     private final ApmAgentContext apmAgentContext;
     private final ThreadInfo threadInfo;
-    private final Thread thread;
+    private final WeakReference<Thread> threadRef;
+    private final String threadName;
+    private final long threadId;
     private final ThreadMXBean threadMXBean;
     private final ConcurrentMap<String, ThreadContextMethodMetrics> methods = new ConcurrentHashMap<>();
+    private volatile ThreadContextMethodMetrics[] methodsArray = new ThreadContextMethodMetrics[0];
     private final MonitoredThreadMethodMetrics monitoredThreadMethodMetrics;
+    private final CallTree callTree;
+    /**
+     * The call tree the stack records into, or null if the call tree is not traced
+     */
+    private final CallTree stackCallTree;
+    private long cpuTimeSnapshot;
 
     public ThreadMetrics(ApmAgentContext apmAgentContext, Thread thread) {
-        this.methodStackRef = new AtomicReference<>(new ThreadContextMethodMetricsStack());
+        this.callTree = new CallTree(apmAgentContext.getConfiguration().getCallTreeMaxNodes());
+        this.stackCallTree = apmAgentContext.getConfiguration().isTraceCallTree() ? callTree : null;
+        this.methodStackRef = new AtomicReference<>(new ThreadContextMethodMetricsStack(stackCallTree));
         this.apmAgentContext = apmAgentContext;
         this.threadMXBean = ManagementFactory.getThreadMXBean();
         this.threadInfo = threadMXBean.getThreadInfo(thread.getId());
-        this.thread = thread;
+        this.threadRef = new WeakReference<>(thread);
+        this.threadName = thread.getName();
+        this.threadId = thread.getId();
         ApmConfiguration configuration = apmAgentContext.getConfiguration();
-        this.monitoredThreadMethodMetrics = new MonitoredThreadMethodMetrics(thread, apmAgentContext);
+        this.monitoredThreadMethodMetrics = new MonitoredThreadMethodMetrics(threadName, threadId, apmAgentContext);
         this.monitoredThreadMethodMetrics.setMonitorSize(configuration.getThreadMetricDepth());
     }
 
     public String getName() {
-        return thread.getName() + "[" + thread.getId() + "]";
+        return threadName + "[" + threadId + "]";
     }
 
+    /**
+     * @return the thread, or null if it has already been garbage collected
+     */
     Thread getThread() {
-        return thread;
+        return threadRef.get();
+    }
+
+    public long getThreadId() {
+        return threadId;
     }
 
     public boolean isDead() {
-        return !thread.isAlive();
+        Thread thread = threadRef.get();
+        return thread == null || !thread.isAlive();
     }
 
     public long getCpuTime() {
-        return threadMXBean.getThreadCpuTime(thread.getId());
+        return threadMXBean.getThreadCpuTime(threadId);
+    }
+
+    /**
+     * Reads the CPU time once so sorting compares values which do not change during the sort
+     */
+    void updateCpuTimeSnapshot() {
+        cpuTimeSnapshot = getCpuTime();
+    }
+
+    long getCpuTimeSnapshot() {
+        return cpuTimeSnapshot;
     }
 
     public long getUserTime() {
-        return threadMXBean.getThreadUserTime(thread.getId());
+        return threadMXBean.getThreadUserTime(threadId);
+    }
+
+    /**
+     * @return the callers and callees seen on this thread, with elapsed nanoseconds per node,
+     * which stays empty unless the call tree is traced
+     */
+    public CallTree getCallTree() {
+        return callTree;
     }
 
     public ThreadInfo getThreadInfo() {
@@ -74,31 +116,87 @@ public class ThreadMetrics {
     }
 
     public void enter(String methodName, boolean alwaysActive) {
-        ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
-        if (threadContextMethodMetrics == null) {
-            threadContextMethodMetrics = new ThreadContextMethodMetrics(thread, this.methodStackRef, methodName);
-            threadContextMethodMetrics.setActive(apmAgentContext.isMonitorByDefault());
-            methods.putIfAbsent(methodName, threadContextMethodMetrics);
-        }
-        if (alwaysActive || threadContextMethodMetrics.isActive()) {
-            threadContextMethodMetrics.onEnter();
-        }
+        enter(apmAgentContext.getMethodId(methodName), alwaysActive);
     }
 
     public long exit(String methodName, boolean alwaysActive) {
+        return exit(apmAgentContext.getMethodId(methodName), alwaysActive);
+    }
+
+    public void enter(int methodId, boolean alwaysActive) {
+        enter(methodId, alwaysActive, 1);
+    }
+
+    /**
+     * @param sampleRate time one in this many calls to the method
+     */
+    public void enter(int methodId, boolean alwaysActive, int sampleRate) {
+        ThreadContextMethodMetrics threadContextMethodMetrics = getMethodMetrics(methodId);
+        if (threadContextMethodMetrics != null && (alwaysActive || threadContextMethodMetrics.isActive())) {
+            threadContextMethodMetrics.onEnter(sampleRate <= 1 || threadContextMethodMetrics.sample(sampleRate));
+        }
+    }
+
+    public long exit(int methodId, boolean alwaysActive) {
         long result = -1;
-        ThreadContextMethodMetrics threadContextMethodMetrics = methods.get(methodName);
+        ThreadContextMethodMetrics threadContextMethodMetrics = findMethodMetrics(methodId);
         if (threadContextMethodMetrics != null) {
             if (alwaysActive || threadContextMethodMetrics.isActive()) {
                 result = threadContextMethodMetrics.onExit();
             }
         } else {
             //something weird happended reset the stack
-            methodStackRef.set(new ThreadContextMethodMetricsStack());
+            methodStackRef.set(new ThreadContextMethodMetricsStack(stackCallTree));
         }
         return result;
     }
 
+    private ThreadContextMethodMetrics getMethodMetrics(int methodId) {
+        ThreadContextMethodMetrics result = findMethodMetrics(methodId);
+        if (result == null) {
+            String methodName = apmAgentContext.getMethodIdRegistry().getMethodName(methodId);
+            if (methodName != null) {
+                result = new ThreadContextMethodMetrics(threadName, threadId, this.methodStackRef, methodId, methodName,
+                                                        apmAgentContext.createMetricsRecorder(true));
+                result.setActive(apmAgentContext.isMonitorByDefault());
+                ThreadContextMethodMetrics existing = methods.putIfAbsent(methodName, result);
+                if (existing != null) {
+                    result = existing;
+                }
+                setMethodMetrics(methodId, result);
+            }
+        }
+        return result;
+    }
+
+    private ThreadContextMethodMetrics findMethodMetrics(int methodId) {
+        ThreadContextMethodMetrics[] array = methodsArray;
+        ThreadContextMethodMetrics result = null;
+        if (methodId >= 0 && methodId < array.length) {
+            result = array[methodId];
+        }
+        if (result == null) {
+            //fall back to the name - the slot may have been cleared by another thread
+            String methodName = apmAgentContext.getMethodIdRegistry().getMethodName(methodId);
+            if (methodName != null) {
+                result = methods.get(methodName);
+                if (result != null) {
+                    setMethodMetrics(methodId, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    private synchronized void setMethodMetrics(int methodId, ThreadContextMethodMetrics threadContextMethodMetrics) {
+        ThreadContextMethodMetrics[] array = methodsArray;
+        if (methodId >= array.length) {
+            array = Arrays.copyOf(array, Math.max(methodId + 1, array.length * 2));
+        }
+        array[methodId] = threadContextMethodMetrics;
+        methodsArray = array;
+    }
+
     public String toString() {
         return "ThreadMetrics:" + getName();
     }
@@ -109,6 +207,15 @@ public class ThreadMetrics {
 
     public ThreadContextMethodMetrics remove(String fullMethodName) {
         ThreadContextMethodMetrics result = methods.remove(fullMethodName);
+        int methodId = apmAgentContext.getMethodIdRegistry().findMethodId(fullMethodName);
+        synchronized (this) {
+            ThreadContextMethodMetrics[] array = methodsArray;
+            if (methodId >= 0 && methodId < array.length) {
+                array = array.clone();
+                array[methodId] = null;
+                methodsArray = array;
+            }
+        }
         return result;
     }
 
@@ -0,0 +1,68 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.apmagent.metrics;
+
+import com.codahale.metrics.Snapshot;
+import com.codahale.metrics.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link MetricsRecorder} backed by a Codahale {@link Timer} and its exponentially decaying reservoir
+ */
+public class TimerMetricsRecorder implements MetricsRecorder {
+    private final Timer timer = new Timer();
+
+    @Override
+    public void update(long elapsed) {
+        timer.update(elapsed, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public long getCount() {
+        return timer.getCount();
+    }
+
+    @Override
+    public double getMeanRate() {
+        return timer.getMeanRate();
+    }
+
+    @Override
+    public double getOneMinuteRate() {
+        return timer.getOneMinuteRate();
+    }
+
+    @Override
+    public double getFiveMinuteRate() {
+        return timer.getFiveMinuteRate();
+    }
+
+    @Override
+    public double getFifteenMinuteRate() {
+        return timer.getFifteenMinuteRate();
+    }
+
+    @Override
+    public MetricsSnapshot snapshot() {
+        Snapshot snapshot = timer.getSnapshot();
+        return new MetricsSnapshot(snapshot.size(), snapshot.getMin(), snapshot.getMax(), snapshot.getMean(),
+                                   snapshot.getStdDev(), snapshot.getMedian(), snapshot.get75thPercentile(),
+                                   snapshot.get95thPercentile(), snapshot.get98thPercentile(),
+                                   snapshot.get99thPercentile(), snapshot.get999thPercentile(),
+                                   snapshot.getValue(0.9999), snapshot.getValues());
+    }
+}
@@ -18,28 +18,58 @@ package io.fabric8.apmagent.strategy.sampling;
 import io.fabric8.apmagent.ApmConfiguration;
 import io.fabric8.apmagent.Strategy;
 import io.fabric8.apmagent.metrics.ApmAgentContext;
+import io.fabric8.apmagent.metrics.CallTree;
 
 import java.lang.management.ManagementFactory;
 import java.lang.management.ThreadInfo;
 import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Periodically samples the stacks of the threads in the configured thread groups through
+ * {@link ThreadMXBean#getThreadInfo(long[], int)}, recording the top frame as method metrics
+ * and aggregating whole stacks into a bounded {@link CallTree}. The interval between samples grows
+ * so the time spent sampling stays within the configured CPU budget.
+ */
 public class SamplingStrategy implements Strategy, Runnable {
     private static final long CLEANUP_INTERVAL = 1000;
+    private static final long MAX_SAMPLING_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+    /**
+     * The number of classes whose interned frames are kept, the least recently sampled are evicted
+     */
+    private static final int MAX_FRAME_CLASSES = 4096;
     private ApmAgentContext context;
     private ApmConfiguration configuration;
     private AtomicBoolean initialized = new AtomicBoolean();
     private AtomicBoolean started = new AtomicBoolean();
     private Thread samplingThread;
     private final Map<Long, String> currentMethods = new HashMap<>();
+    private final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    private final Map<String, Map<String, String>> frames = new LinkedHashMap<String, Map<String, String>>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Map<String, String>> eldest) {
+            return size() > MAX_FRAME_CLASSES;
+        }
+    };
+    private final CallTree callTree;
+    private Thread[] threads = new Thread[0];
+    private long[] threadIds = new long[0];
+    private String[] stackFrames = new String[64];
+    private long samplingInterval;
 
     public SamplingStrategy(ApmAgentContext context) {
         this.context = context;
         this.configuration = context.getConfiguration();
+        this.callTree = new CallTree(configuration.getCallTreeMaxNodes());
     }
 
     @Override
@@ -83,26 +113,107 @@ public class SamplingStrategy implements Strategy, Runnable {
     @Override
     public void run() {
         long lastTime = 0;
+        boolean useCpuTime = threadMXBean.isCurrentThreadCpuTimeSupported() && threadMXBean.isThreadCpuTimeEnabled();
         while (started.get()) {
             try {
-                for (Map.Entry<Thread, StackTraceElement[]> threadEntry : Thread.getAllStackTraces().entrySet()) {
-                    if (threadEntry.getKey() != Thread.currentThread()) {
-                        addMeasurement(threadEntry.getKey(), threadEntry.getValue());
-                    }
-                }
                 long currentTime = System.currentTimeMillis();
 
                 if ((currentTime - lastTime) > CLEANUP_INTERVAL) {
                     cleanup();
+                    selectThreads();
+                    // readers render the live tree, which is safe while it is written to, so it is never copied
+                    if (context.getSampledCallTree() != callTree) {
+                        context.setSampledCallTree(callTree);
+                    }
                     lastTime = currentTime;
                 }
-                Thread.sleep(configuration.getSamplingInterval());
+                long startCost = useCpuTime ? threadMXBean.getCurrentThreadCpuTime() : System.nanoTime();
+                sample();
+                long cost = (useCpuTime ? threadMXBean.getCurrentThreadCpuTime() : System.nanoTime()) - startCost;
+                TimeUnit.NANOSECONDS.sleep(nextSamplingInterval(cost));
             } catch (InterruptedException e) {
                 Thread.currentThread().interrupt();
             }
         }
     }
 
+    private void sample() {
+        long[] ids = threadIds;
+        if (ids.length == 0) {
+            return;
+        }
+        ThreadInfo[] threadInfos = threadMXBean.getThreadInfo(ids, configuration.getSamplingStackDepth());
+        for (int i = 0; i < threadInfos.length; i++) {
+            ThreadInfo threadInfo = threadInfos[i];
+            if (threadInfo != null) {
+                StackTraceElement[] stackTraceElements = threadInfo.getStackTrace();
+                addMeasurement(threads[i], stackTraceElements);
+                addStack(stackTraceElements);
+            }
+        }
+    }
+
+    /**
+     * Grows the interval so that cost / (cost + interval) stays within the CPU budget,
+     * smoothing it so a single slow sample does not stall sampling
+     */
+    private long nextSamplingInterval(long cost) {
+        long minimum = TimeUnit.MILLISECONDS.toNanos(configuration.getSamplingInterval());
+        long interval = minimum;
+        double budget = configuration.getSamplingCpuBudget() / 100;
+        if (budget > 0 && budget < 1) {
+            interval = Math.max(minimum, (long) (cost * (1 - budget) / budget));
+        }
+        samplingInterval = samplingInterval == 0 ? interval : (samplingInterval * 3 + interval) / 4;
+        samplingInterval = Math.min(MAX_SAMPLING_INTERVAL, Math.max(minimum, samplingInterval));
+        return samplingInterval;
+    }
+
+    private void selectThreads() {
+        ThreadGroup root = Thread.currentThread().getThreadGroup();
+        while (root.getParent() != null) {
+            root = root.getParent();
+        }
+        Thread[] all = new Thread[root.activeCount() * 2 + 1];
+        int count = root.enumerate(all, true);
+
+        Set<String> groupNames = new HashSet<>();
+        for (String name : configuration.getSamplingThreadGroups().split(",")) {
+            if (!name.trim().isEmpty()) {
+                groupNames.add(name.trim());
+            }
+        }
+        List<Thread> selected = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Thread thread = all[i];
+            if (thread != Thread.currentThread() && thread.isAlive() && isSampledGroup(thread.getThreadGroup(), groupNames)) {
+                selected.add(thread);
+            }
+        }
+        Thread[] newThreads = selected.toArray(new Thread[selected.size()]);
+        long[] newThreadIds = new long[newThreads.length];
+        for (int i = 0; i < newThreads.length; i++) {
+            newThreadIds[i] = newThreads[i].getId();
+        }
+        threads = newThreads;
+        threadIds = newThreadIds;
+    }
+
+    private boolean isSampledGroup(ThreadGroup threadGroup, Set<String> groupNames) {
+        if (threadGroup == null) {
+            return false;
+        }
+        if (groupNames.isEmpty()) {
+            return true;
+        }
+        for (ThreadGroup group = threadGroup; group != null; group = group.getParent()) {
+            if (groupNames.contains(group.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private void cleanup() {
         List<ThreadInfo> removeList = null;
         ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
@@ -128,8 +239,8 @@ public class SamplingStrategy implements Strategy, Runnable {
         if (thread != null && thread.isAlive() &&
                 stackTraceElements != null && stackTraceElements.length > 0) {
             StackTraceElement topOfStack = stackTraceElements[0];
-            String currentMethod = getCurrentMethod(topOfStack);
             if (configuration.isAudit(topOfStack.getClassName(), topOfStack.getMethodName())) {
+                String currentMethod = getFrame(topOfStack);
                 String lastMethod = currentMethods.put(thread.getId(), currentMethod);
                 if (lastMethod == null) {
                     context.enterMethod(thread, currentMethod, true);
@@ -142,10 +253,39 @@ public class SamplingStrategy implements Strategy, Runnable {
         }
     }
 
-    private String getCurrentMethod(StackTraceElement topOfStack) {
-        StringBuilder stringBuilder = new StringBuilder(topOfStack.getClassName().length() + topOfStack.getMethodName().length() + 1);
-        stringBuilder.append(topOfStack.getClassName()).append(".").append(topOfStack.getMethodName());
-        return stringBuilder.toString();
+    /**
+     * Adds the stack to the call tree, outermost caller first. Stacks deeper than the
+     * configured depth are rooted at the deepest frame that was captured.
+     */
+    private void addStack(StackTraceElement[] stackTraceElements) {
+        int length = stackTraceElements.length;
+        if (length > 0) {
+            if (stackFrames.length < length) {
+                stackFrames = Arrays.copyOf(stackFrames, length);
+            }
+            for (int i = 0; i < length; i++) {
+                stackFrames[i] = getFrame(stackTraceElements[length - 1 - i]);
+            }
+            callTree.addStack(stackFrames, length, 1);
+        }
     }
-}
 
+    /**
+     * @return the interned className.methodName for the stack frame
+     */
+    private String getFrame(StackTraceElement stackTraceElement) {
+        Map<String, String> methods = frames.get(stackTraceElement.getClassName());
+        if (methods == null) {
+            methods = new HashMap<>();
+            frames.put(stackTraceElement.getClassName(), methods);
+        }
+        String result = methods.get(stackTraceElement.getMethodName());
+        if (result == null) {
+            StringBuilder stringBuilder = new StringBuilder(stackTraceElement.getClassName().length() + stackTraceElement.getMethodName().length() + 1);
+            stringBuilder.append(stackTraceElement.getClassName()).append(".").append(stackTraceElement.getMethodName());
+            result = stringBuilder.toString();
+            methods.put(stackTraceElement.getMethodName(), result);
+        }
+        return result;
+    }
+}
@@ -20,28 +20,49 @@ import org.objectweb.asm.MethodVisitor;
 import static org.objectweb.asm.Opcodes.*;
 
 public class ApmMethodVisitor extends MethodVisitor {
-    private final String fullMethodName;
+    private final int methodId;
 
-    public ApmMethodVisitor(MethodVisitor mv, String className, String methodName) {
+    public ApmMethodVisitor(MethodVisitor mv, int methodId) {
         super(ASM5, mv);
-        this.fullMethodName = className + "@" + methodName;
+        this.methodId = methodId;
     }
 
     @Override
     public void visitCode() {
         super.visitCode();
-        super.visitLdcInsn(fullMethodName);
+        pushMethodId();
         super.visitMethodInsn(INVOKESTATIC, "io/fabric8/apmagent/ApmAgent",
-                                 "enterMethod", "(Ljava/lang/String;)V", false);
+                                 "enterMethod", "(I)V", false);
     }
 
     @Override
     public void visitInsn(int opcode) {
         if ((opcode >= IRETURN && opcode <= RETURN) || opcode == ATHROW) {
-            super.visitLdcInsn(fullMethodName);
+            pushMethodId();
             super.visitMethodInsn(INVOKESTATIC, "io/fabric8/apmagent/ApmAgent",
-                                     "exitMethod", "(Ljava/lang/String;)V", false);
+                                     "exitMethod", "(I)V", false);
         }
         super.visitInsn(opcode);
     }
+
+    /**
+     * The probes need one extra stack slot. This keeps the maximums valid when the class
+     * writer is not computing them, and is ignored when it is.
+     */
+    @Override
+    public void visitMaxs(int maxStack, int maxLocals) {
+        super.visitMaxs(maxStack + 1, maxLocals);
+    }
+
+    private void pushMethodId() {
+        if (methodId <= 5) {
+            super.visitInsn(ICONST_0 + methodId);
+        } else if (methodId <= Byte.MAX_VALUE) {
+            super.visitIntInsn(BIPUSH, methodId);
+        } else if (methodId <= Short.MAX_VALUE) {
+            super.visitIntInsn(SIPUSH, methodId);
+        } else {
+            super.visitLdcInsn(methodId);
+        }
+    }
 }
@@ -32,10 +32,18 @@ import java.lang.instrument.IllegalClassFormatException;
 import java.lang.instrument.Instrumentation;
 import java.lang.instrument.UnmodifiableClassException;
 import java.security.ProtectionDomain;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TraceStrategy implements Strategy, ClassFileTransformer {
     private static final org.slf4j.Logger LOG = LoggerFactory.getLogger(TraceStrategy.class);
@@ -48,6 +56,7 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
     private AtomicBoolean started = new AtomicBoolean();
     private AtomicBoolean cleanUp = new AtomicBoolean();
     private Thread transformThread;
+    private ExecutorService transformExecutor;
 
     public TraceStrategy(ApmAgentContext context, Instrumentation instrumentation) {
         this.context = context;
@@ -59,6 +68,16 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
     public void initialize() throws Exception {
         if (initialized.compareAndSet(false, true)) {
             configuration.addChangeListener(this);
+            context.setTraceStrategy(this);
+            final AtomicInteger threadCount = new AtomicInteger();
+            transformExecutor = Executors.newFixedThreadPool(Math.max(1, configuration.getTransformThreads()), new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "Fabric8-ApmAgent-Transform-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
         }
     }
 
@@ -82,6 +101,7 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
         if (initialized.compareAndSet(true, false)) {
             stop();
             configuration.removeChangeListener(this);
+            context.setTraceStrategy(null);
             instrumentation.removeTransformer(this);
             Thread t = transformThread;
             transformThread = null;
@@ -95,6 +115,11 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
             } catch (Throwable e) {
                 LOG.warn("Failed to shutdown due " + e.getMessage() + ". This exception is ignored.", e);
             }
+            ExecutorService executor = transformExecutor;
+            transformExecutor = null;
+            if (executor != null) {
+                executor.shutdown();
+            }
         }
     }
 
@@ -111,34 +136,46 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
         byte[] buffer = null;
         ClassInfo classInfo = context.getClassInfo(className);
         classInfo.setOriginalClass(classBeingRedefined);
-        if (classInfo.getTransformed() == null) {
+        boolean compact = configuration.isCompactTransform();
+        if (!classInfo.isTransformed()) {
             //we haven't been transformed before
-            classInfo.setOriginal(classfileBuffer);
+            if (compact) {
+                classInfo.setCompressedOriginal(classfileBuffer);
+            } else {
+                classInfo.setOriginal(classfileBuffer);
+            }
         }
         if (!cleanUp.get()) {
-            byte[] classBufferToRedefine = classInfo.getOriginal();
-
             if (configuration.isAudit(className)) {
+                byte[] classBufferToRedefine = compact ? classfileBuffer : classInfo.getOriginal();
                 if (classInfo.isTransformed()) {
                     //remove metrics from methods no longer defined
                     context.resetMethods(classInfo);
                 }
                 ClassReader cr = new ClassReader(classBufferToRedefine);
-
-                ClassWriter cw = new ClassWriter(cr, ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
-
-                ApmClassVisitor visitor = new ApmClassVisitor(this, cw, classInfo);
-                cr.accept(visitor, ClassReader.SKIP_FRAMES);
+                ClassWriter cw;
+                if (compact) {
+                    //the probes neither touch locals nor leave anything on the stack, so the existing
+                    //stack map frames stay valid and methods we don't instrument are copied as is
+                    cw = new ClassWriter(cr, 0);
+                    ApmClassVisitor visitor = new ApmClassVisitor(this, cw, classInfo);
+                    cr.accept(visitor, 0);
+                } else {
+                    cw = new ClassWriter(cr, ClassWriter.COMPUTE_MAXS | ClassWriter.COMPUTE_FRAMES);
+                    ApmClassVisitor visitor = new ApmClassVisitor(this, cw, classInfo);
+                    cr.accept(visitor, ClassReader.SKIP_FRAMES);
+                }
                 buffer = cw.toByteArray();
                 if (!verifyClass(className, buffer)) {
                     classInfo.setCanTransform(false);
                     buffer = null;
                 }
-                classInfo.setTransformed(buffer);
+                classInfo.setTransformed(buffer, !compact);
             }
         } else {
-            if (classInfo.getOriginal() != null) {
-                buffer = classInfo.getOriginal();
+            byte[] original = classInfo.getOriginal();
+            if (original != null) {
+                buffer = original;
                 context.resetAll(classInfo);
             }
         }
@@ -151,30 +188,51 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
             if (configuration.isFilterChanged()) {
                 List<ClassInfo> deltas = context.buildDeltaList();
                 if (deltas != null && !deltas.isEmpty()) {
-                    for (ClassInfo classInfo : deltas) {
-                        if (configuration.isAsyncTransformation()) {
-                            try {
-                                blockingQueue.put(classInfo.getOriginalClass());
-                            } catch (InterruptedException e) {
-                                Thread.currentThread().interrupt();
-                                break;
-                            }
-                        } else {
-                            try {
-                                instrumentation.retransformClasses(new Class[]{classInfo.getOriginalClass()});
-                            } catch (Throwable e) {
-                                LOG.warn("Could not transform " + classInfo.getClassName() + " due " + e.getMessage(), e);
-                            }
-                        }
-                    }
-                    if (configuration.isAsyncTransformation() && !blockingQueue.isEmpty()) {
-                        startTransformThread();
-                    }
+                    retransform(deltas);
                 }
             }
         }
     }
 
+    /**
+     * Retransforms the classes so they pick up the current filters and disabled methods
+     */
+    public void retransform(Collection<ClassInfo> classInfos) {
+        if (started.get()) {
+            List<Class<?>> classes = new ArrayList<>(classInfos.size());
+            for (ClassInfo classInfo : classInfos) {
+                if (classInfo.getOriginalClass() != null) {
+                    classes.add(classInfo.getOriginalClass());
+                }
+            }
+            configuration.retransformQueued(classes.size());
+            if (configuration.isAsyncTransformation()) {
+                blockingQueue.addAll(classes);
+                startTransformThread();
+            } else {
+                retransform(classes);
+            }
+        }
+    }
+
+    /**
+     * Queues the classes for retransformation on the transform thread, whether or not
+     * asynchronous transformation is configured, so the caller never waits for it
+     */
+    public void retransformInBackground(Collection<ClassInfo> classInfos) {
+        if (started.get()) {
+            List<Class<?>> classes = new ArrayList<>(classInfos.size());
+            for (ClassInfo classInfo : classInfos) {
+                if (classInfo.getOriginalClass() != null) {
+                    classes.add(classInfo.getOriginalClass());
+                }
+            }
+            configuration.retransformQueued(classes.size());
+            blockingQueue.addAll(classes);
+            startTransformThread();
+        }
+    }
+
     public Instrumentation getInstrumentation() {
         return instrumentation;
     }
@@ -199,26 +257,74 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
 
         instrumentation.addTransformer(this, true);
 
+        List<Class<?>> classes = new ArrayList<>();
         for (Class<?> c : instrumentation.getAllLoadedClasses()) {
             if (isInstrumentClass(c)) {
-                if (configuration.isAsyncTransformation()) {
-                    try {
-                        blockingQueue.put(c);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        break;
-                    }
-                } else {
-                    try {
-                        instrumentation.retransformClasses(new Class[]{c});
-                    } catch (Throwable e) {
-                        LOG.error("Could not transform " + c.getName(), e);
-                    }
-                }
+                classes.add(c);
             }
         }
-        if (configuration.isAsyncTransformation() && !blockingQueue.isEmpty()) {
+        configuration.retransformQueued(classes.size());
+        //restoring the original classes on shutdown is always done before returning
+        if (configuration.isAsyncTransformation() && !cleanUp.get()) {
+            blockingQueue.addAll(classes);
             startTransformThread();
+        } else {
+            retransform(classes);
+        }
+    }
+
+    /**
+     * Retransforms the classes in batches of the configured size, spreading the batches across
+     * the transform threads. The JVM calls {@link #transform} on the thread that asked for the
+     * retransformation, so the bytecode rewriting of different batches runs in parallel.
+     */
+    private void retransform(List<Class<?>> classes) {
+        int batchSize = Math.max(1, configuration.getRetransformBatchSize());
+        ExecutorService executor = transformExecutor;
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < classes.size(); i += batchSize) {
+            final List<Class<?>> batch = classes.subList(i, Math.min(i + batchSize, classes.size()));
+            Runnable task = new Runnable() {
+                @Override
+                public void run() {
+                    retransformBatch(batch);
+                }
+            };
+            if (executor != null && !executor.isShutdown()) {
+                futures.add(executor.submit(task));
+            } else {
+                task.run();
+            }
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                LOG.warn("Failed to retransform batch due " + e.getMessage() + ". This exception is ignored.", e);
+            }
+        }
+    }
+
+    private void retransformBatch(List<Class<?>> batch) {
+        try {
+            instrumentation.retransformClasses(batch.toArray(new Class[batch.size()]));
+            configuration.retransformCompleted(batch.size(), 0);
+        } catch (Throwable e) {
+            //one bad class fails the whole batch - retry individually so the rest get transformed
+            LOG.debug("Could not transform batch of " + batch.size() + " classes due " + e.getMessage() + ". Retrying individually.");
+            int failed = 0;
+            for (Class<?> c : batch) {
+                try {
+                    instrumentation.retransformClasses(new Class[]{c});
+                } catch (Throwable t) {
+                    failed++;
+                    LOG.error("Could not transform " + c.getName(), t);
+                }
+            }
+            configuration.retransformCompleted(batch.size(), failed);
         }
     }
 
@@ -240,33 +346,42 @@ public class TraceStrategy implements Strategy, ClassFileTransformer {
     }
 
     private synchronized void startTransformThread() {
-        if (configuration.isAsyncTransformation() && transformThread == null) {
+        // classes are only queued for asynchronous transformation or by retransformInBackground
+        if (transformThread == null && !blockingQueue.isEmpty()) {
             transformThread = new Thread(new Runnable() {
                 @Override
                 public void run() {
-                    while (initialized.get() && !blockingQueue.isEmpty()) {
-                        try {
-                            Class<?> aClass = blockingQueue.take();
-                            if (aClass != null) {
+                    try {
+                        while (initialized.get() && !blockingQueue.isEmpty()) {
+                            List<Class<?>> classes = new ArrayList<>();
+                            blockingQueue.drainTo(classes);
+                            List<Class<?>> toTransform = new ArrayList<>(classes.size());
+                            for (Class<?> aClass : classes) {
                                 if (isInstrumentClass(aClass)) {
-                                    try {
-                                        instrumentation.retransformClasses(new Class[]{aClass});
-                                    } catch (Throwable e) {
-                                        LOG.error("Could not transform " + aClass.getName(), e);
-                                    }
+                                    toTransform.add(aClass);
                                 }
                             }
-                        } catch (InterruptedException e) {
-                            shutDown();
+                            configuration.retransformCompleted(classes.size() - toTransform.size(), 0);
+                            retransform(toTransform);
                         }
+                    } finally {
+                        transformThreadFinished();
                     }
                 }
-            });
+            }, "Fabric8-ApmAgent-TransformThread");
             transformThread.setDaemon(true);
             transformThread.start();
         }
     }
 
+    private synchronized void transformThreadFinished() {
+        transformThread = null;
+        if (initialized.get()) {
+            //pick up anything queued while we were finishing
+            startTransformThread();
+        }
+    }
+
     private boolean verifyClass(String className, byte[] transformed) {
         boolean result = true;
         if (configuration.isVerifyClasses()) {
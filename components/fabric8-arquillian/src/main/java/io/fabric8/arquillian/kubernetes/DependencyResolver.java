@@ -55,7 +55,7 @@ public class DependencyResolver {
                 if (f.getName().endsWith("jar") && hasKubernetesJson(f)) {
                     Path dir = Files.createTempDirectory(session.getId());
                     try (FileInputStream fis = new FileInputStream(f); JarInputStream jis = new JarInputStream(fis)) {
-                        Zips.unzip(new FileInputStream(f), dir.toFile());
+                        Zips.unzipInParallel(f, dir.toFile());
                         File jsonPath = dir.resolve(DEFAULT_CONFIG_FILE_NAME).toFile();
                         if (jsonPath.exists()) {
                             dependencies.add(jsonPath.toURI().toString());
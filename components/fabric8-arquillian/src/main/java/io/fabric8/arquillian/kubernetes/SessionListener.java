@@ -28,6 +28,7 @@ import io.fabric8.arquillian.utils.SecretKeys;
 import io.fabric8.arquillian.utils.Secrets;
 import io.fabric8.arquillian.utils.URLs;
 import io.fabric8.arquillian.utils.Util;
+import io.fabric8.kubernetes.api.ClusterCapabilities;
 import io.fabric8.kubernetes.api.Controller;
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.builder.Visitable;
@@ -86,6 +87,9 @@ public class SessionListener {
 
         log.status("Using Kubernetes at: " + client.getMasterUrl());
         log.status("Creating kubernetes resources inside namespace: " + namespace);
+
+        // the cluster may have been upgraded since the last session so lets probe it again
+        ClusterCapabilities.invalidate(client);
         log.info("if you use OpenShift then type this switch namespaces:     oc project " + namespace);
         log.info("if you use kubernetes then type this to switch namespaces: kubectl namespace " + namespace);
 
@@ -119,13 +123,11 @@ public class SessionListener {
                     log.info("Found dependency: " + dependency);
                     loadDependency(log, kubeConfigs, dependency, controller, configuration, namespace);
                 }
-                OpenShiftClient openShiftClient = controller.getOpenShiftClientOrNull();
                 if (configUrl == null) {
                     // lets try find the default configuration generated by the new fabric8-maven-plugin
                     String resourceName = "kubernetes.yml";
-                    if (openShiftClient != null &&
-                            openShiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.IMAGE) &&
-                            openShiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.ROUTE)) {
+                    if (controller.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.IMAGE) &&
+                            controller.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.ROUTE)) {
                         resourceName = "openshift.yml";
                     }
                     configUrl = findConfigResource("/META-INF/fabric8/" + resourceName);
@@ -148,8 +150,7 @@ public class SessionListener {
                 }
 
                 // Lets also try to load the image stream for the project.
-                if (openShiftClient != null &&
-                        openShiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.IMAGE)) {
+                if (controller.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.IMAGE)) {
                     File targetDir = new File(System.getProperty("basedir", ".") +"/target");
                     if( targetDir.exists() && targetDir.isDirectory() ) {
                         File[] files = targetDir.listFiles();
@@ -376,8 +377,12 @@ public class SessionListener {
                 // these are global so lets create a custom one for the new namespace
                 ObjectMeta metadata = KubernetesHelper.getOrCreateMetadata(oc);
                 String name = metadata.getName();
-                if (isOpenshift) {
-                    OpenShiftClient openShiftClient = client.adapt(OpenShiftClient.class);
+                // the client may not be adapted to OpenShift if the cluster could not be reached
+                OpenShiftClient openShiftClient = isOpenshift ? ClusterCapabilities.getOpenShiftClientOrNull(client) : null;
+                if (isOpenshift && openShiftClient == null) {
+                    log.warn("Could not connect to OpenShift so not applying OAuthClient:" + name);
+                }
+                if (openShiftClient != null) {
                     OAuthClient current = openShiftClient.oAuthClients().withName(name).get();
                     boolean create = false;
                     if (current == null) {
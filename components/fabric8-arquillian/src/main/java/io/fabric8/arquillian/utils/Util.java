@@ -19,6 +19,7 @@ import io.fabric8.arquillian.kubernetes.Configuration;
 import io.fabric8.arquillian.kubernetes.Constants;
 import io.fabric8.arquillian.kubernetes.Session;
 import io.fabric8.arquillian.kubernetes.log.Logger;
+import io.fabric8.kubernetes.api.ClusterCapabilities;
 import io.fabric8.kubernetes.api.Controller;
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.HasMetadata;
@@ -62,8 +63,8 @@ public class Util {
             session.getLogger().warn("No KubernetesClient for session: " + session.getId());
             return;
         }
-        if (client.isAdaptable(OpenShiftClient.class)){
-            OpenShiftClient oClient = client.adapt(OpenShiftClient.class);
+        OpenShiftClient oClient = ClusterCapabilities.getOpenShiftClientOrNull(client);
+        if (oClient != null) {
             List<DeploymentConfig> deploymentConfigs =  oClient.deploymentConfigs().inNamespace(session.getNamespace()).list().getItems();
             if (deploymentConfigs == null) {
                 throw new MultiException("No deployment configs found in namespace" + session.getNamespace());
@@ -25,6 +25,7 @@ import io.fabric8.kubernetes.api.Annotations;
 import io.fabric8.kubernetes.api.Controller;
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.ServiceNames;
+import io.fabric8.kubernetes.api.ServiceURLResolver;
 import io.fabric8.kubernetes.api.builds.Builds;
 import io.fabric8.kubernetes.api.model.ConfigMap;
 import io.fabric8.kubernetes.api.model.LocalObjectReference;
@@ -487,7 +488,7 @@ public class DevOpsConnector {
         }
         for (String namespace : namespaceList) {
             try {
-                return KubernetesHelper.getServiceURL(getKubernetes(), serviceName, namespace, "http", serviceExternal);
+                return new ServiceURLResolver(getKubernetes(), false).getServiceURL(serviceName, namespace, "http", null, serviceExternal);
             } catch (Exception e) {
                 // ignore
             }
@@ -1454,7 +1455,7 @@ public class DevOpsConnector {
 
         log.info("A Gerrit git repo will be created for this name : " + repoName);
 
-        String gerritAddress = KubernetesHelper.getServiceURL(kubernetes,ServiceNames.GERRIT, namespace, "http", true);
+        String gerritAddress = new ServiceURLResolver(kubernetes, false).getServiceURL(ServiceNames.GERRIT, namespace, "http", null, true);
         log.info("Found gerrit address: " + gerritAddress + " for namespace: " + namespace + " on Kubernetes address: " + kubernetes.getMasterUrl());
 
         if (Strings.isNullOrBlank(gerritAddress)) {
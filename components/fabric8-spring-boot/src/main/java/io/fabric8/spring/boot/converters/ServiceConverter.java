@@ -16,12 +16,11 @@
 package io.fabric8.spring.boot.converters;
 
 import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.ServiceURLResolver;
 import io.fabric8.kubernetes.api.model.Service;
 import io.fabric8.kubernetes.api.model.ServicePort;
 import io.fabric8.kubernetes.client.KubernetesClient;
 import io.fabric8.openshift.api.model.Route;
-import io.fabric8.openshift.api.model.RouteList;
-import io.fabric8.openshift.client.OpenShiftClient;
 import io.fabric8.utils.KubernetesServices;
 import io.fabric8.utils.Strings;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -112,12 +111,9 @@ public class ServiceConverter implements GenericConverter {
         String serviceProto = serviceProtocol != null ? serviceProtocol : KubernetesServices.serviceToProtocol(serviceName, servicePortName);
 
         if (Strings.isNullOrBlank(servicePortName) && KubernetesHelper.isOpenShift(client)) {
-            OpenShiftClient openShiftClient = client.adapt(OpenShiftClient.class);
-            RouteList routeList = openShiftClient.routes().list();
-            for (Route route : routeList.getItems()) {
-                if (route.getSpec().getTo().getName().equals(serviceName)) {
-                    return (serviceProto + "://" + route.getSpec().getHost()).toLowerCase();
-                }
+            Route route = ServiceURLResolver.getInstance(client).findRoute(client.getNamespace(), serviceName);
+            if (route != null) {
+                return (serviceProto + "://" + route.getSpec().getHost()).toLowerCase();
             }
         }
         ServicePort port = KubernetesHelper.findServicePortByName(srv, servicePortName);
@@ -0,0 +1,296 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * An index of the CRC32 checksums of the files in a directory tree which records the size and last modified time
+ * of each file, so that updating it only checksums the files which have changed and checking an unchanged tree
+ * only costs reading the attributes of its files.
+ * <p/>
+ * Files are checksummed in parallel on a bounded pool, with large files split into memory mapped chunks. The index
+ * is saved in a compact binary file, by default {@link ChecksumUtils#FOLDER_CHECKSUM_INDEX} in the directory, which
+ * is replaced atomically.
+ */
+public class ChecksumIndex {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ChecksumIndex.class);
+
+    private static final int MAGIC = 0x46384349;
+    private static final int VERSION = 1;
+
+    /**
+     * Files modified this close to the time the index was updated are checksummed again, as they may have changed
+     * again within the resolution of the last modified time
+     */
+    private static final long RACY_MILLIS = 2000;
+
+    private final File dir;
+    private final File indexFile;
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private long updateTime;
+    private int computedCount;
+
+    public ChecksumIndex(File dir) {
+        this(dir, new File(dir, ChecksumUtils.FOLDER_CHECKSUM_INDEX));
+    }
+
+    public ChecksumIndex(File dir, File indexFile) {
+        this.dir = dir;
+        this.indexFile = indexFile;
+    }
+
+    /**
+     * Loads the index file if it exists; an index file which cannot be read is ignored so every file is checksummed
+     */
+    public void load() throws IOException {
+        entries.clear();
+        updateTime = 0;
+        if (!indexFile.isFile()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOG.warn("Ignoring checksum index " + indexFile + " as it has an unknown format");
+                return;
+            }
+            long time = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String path = in.readUTF();
+                long size = in.readLong();
+                long lastModified = in.readLong();
+                long checksum = in.readLong();
+                entries.put(path, new Entry(size, lastModified, checksum));
+            }
+            updateTime = time;
+        } catch (IOException e) {
+            LOG.warn("Ignoring checksum index " + indexFile + " as it could not be read. " + e, e);
+            entries.clear();
+        }
+    }
+
+    /**
+     * Saves the index by writing a temporary file then moving it over the index file
+     */
+    public void save() throws IOException {
+        File parent = indexFile.getAbsoluteFile().getParentFile();
+        File tempFile = new File(parent, indexFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(updateTime);
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                Entry entry = mapEntry.getValue();
+                out.writeUTF(mapEntry.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.lastModified);
+                out.writeLong(entry.checksum);
+            }
+        }
+        try {
+            java.nio.file.Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            java.nio.file.Files.move(tempFile.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Reads the size and last modified time of every file in the directory, checksums the new and changed files
+     * and forgets the deleted files; returning the checksums keyed by the path relative to the directory
+     */
+    public SortedMap<String, Long> update() throws IOException {
+        final long startTime = System.currentTimeMillis();
+        final long racyTime = updateTime - RACY_MILLIS;
+        final Map<String, Entry> previous = new HashMap<String, Entry>(entries);
+        final List<Pending> pending = new ArrayList<Pending>();
+        final Map<String, Entry> current = new HashMap<String, Entry>();
+        final Path root = dir.toPath();
+        final Path index = indexFile.getAbsoluteFile().toPath();
+
+        java.nio.file.Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                if (!attributes.isRegularFile() || isIndexFile(file, index)) {
+                    return FileVisitResult.CONTINUE;
+                }
+                String path = toRelativePath(root.relativize(file));
+                long size = attributes.size();
+                long lastModified = attributes.lastModifiedTime().toMillis();
+                Entry entry = previous.get(path);
+                if (entry != null && entry.size == size && entry.lastModified == lastModified && lastModified < racyTime) {
+                    current.put(path, entry);
+                } else {
+                    pending.add(new Pending(path, file.toFile(), size, lastModified));
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+
+        // submit every checksum before waiting for any so the pool works on them all in parallel
+        for (Pending file : pending) {
+            file.submit();
+        }
+        for (Pending file : pending) {
+            try {
+                current.put(file.path, new Entry(file.size, file.lastModified, file.getChecksum()));
+            } catch (FileNotFoundException e) {
+                LOG.debug("Ignoring " + file.file + " as it was deleted while updating the checksum index");
+            } catch (NoSuchFileException e) {
+                LOG.debug("Ignoring " + file.file + " as it was deleted while updating the checksum index");
+            }
+        }
+        computedCount = pending.size();
+        entries.clear();
+        entries.putAll(current);
+        updateTime = startTime;
+        return getChecksums();
+    }
+
+    /**
+     * Returns the checksums keyed by the path relative to the directory
+     */
+    public SortedMap<String, Long> getChecksums() {
+        SortedMap<String, Long> answer = new TreeMap<String, Long>();
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            answer.put(entry.getKey(), entry.getValue().checksum);
+        }
+        return answer;
+    }
+
+    /**
+     * Returns a checksum of the whole directory from the paths and checksums of its files
+     */
+    public long getChecksum() {
+        CRC32 crc = new CRC32();
+        byte[] bytes = new byte[8];
+        for (Map.Entry<String, Long> entry : getChecksums().entrySet()) {
+            crc.update(entry.getKey().getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            long checksum = entry.getValue();
+            for (int i = 0; i < 8; i++) {
+                bytes[i] = (byte) (checksum >>> (56 - 8 * i));
+            }
+            crc.update(bytes);
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Returns the number of files checksummed by the last {@link #update()}
+     */
+    public int getComputedCount() {
+        return computedCount;
+    }
+
+    public File getDir() {
+        return dir;
+    }
+
+    public File getIndexFile() {
+        return indexFile;
+    }
+
+    private static boolean isIndexFile(Path file, Path index) {
+        String name = file.getFileName().toString();
+        return name.startsWith(ChecksumUtils.FOLDER_CHECKSUM_INDEX) || file.toAbsolutePath().equals(index)
+                || name.equals(index.getFileName() + ".tmp");
+    }
+
+    private static String toRelativePath(Path path) {
+        String answer = path.toString();
+        if (File.separatorChar != '/') {
+            answer = answer.replace(File.separatorChar, '/');
+        }
+        return answer;
+    }
+
+    private static final class Entry {
+        private final long size;
+        private final long lastModified;
+        private final long checksum;
+
+        private Entry(long size, long lastModified, long checksum) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.checksum = checksum;
+        }
+    }
+
+    /**
+     * A file which needs to be checksummed
+     */
+    private static final class Pending {
+        private final String path;
+        private final File file;
+        private final long size;
+        private final long lastModified;
+        private List<Future<Long>> futures = Collections.emptyList();
+
+        private Pending(String path, File file, long size, long lastModified) {
+            this.path = path;
+            this.file = file;
+            this.size = size;
+            this.lastModified = lastModified;
+        }
+
+        void submit() {
+            if (size >= ChecksumUtils.LARGE_FILE_SIZE) {
+                futures = ChecksumUtils.submitChunks(file, size, ChecksumUtils.CHUNK_SIZE);
+            } else {
+                futures = Collections.singletonList(ChecksumUtils.getExecutor().submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        return ChecksumUtils.checksum(new FileInputStream(file));
+                    }
+                }));
+            }
+        }
+
+        long getChecksum() throws IOException {
+            int chunkSize = size >= ChecksumUtils.LARGE_FILE_SIZE ? ChecksumUtils.CHUNK_SIZE : Integer.MAX_VALUE;
+            return ChecksumUtils.combineChunks(futures, size, chunkSize);
+        }
+    }
+}
@@ -24,15 +24,39 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.CRC32;
 
 public class ChecksumUtils {
     public static final String FOLDER_CHECKSUM_CACHE = ".fabric8.checksums.properties";
+    public static final String FOLDER_CHECKSUM_INDEX = ".fabric8.checksums.index";
+
+    /**
+     * Files of at least this size are checksummed with memory mapped chunks in parallel
+     */
+    public static final long LARGE_FILE_SIZE = 16 * 1024 * 1024;
+    public static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+    private static final long CRC32_POLYNOMIAL = 0xedb88320L;
+
+    private static ExecutorService executor;
 
     private static final transient Logger LOG = LoggerFactory.getLogger(ChecksumUtils.class);
 
@@ -67,10 +91,173 @@ public class ChecksumUtils {
     }
 
 
+    /**
+     * Returns the CRC32 checksum of the file; reading large files as memory mapped chunks in parallel
+     */
     public static long checksumFile(File file) throws IOException {
+        if (file.length() >= LARGE_FILE_SIZE) {
+            return checksumFileInChunks(file, CHUNK_SIZE);
+        }
         return checksum(new FileInputStream(file));
     }
 
+    /**
+     * Returns the CRC32 checksum of the file by checksumming memory mapped chunks of the given size in parallel
+     * on the checksum thread pool then combining their checksums
+     */
+    public static long checksumFileInChunks(File file, int chunkSize) throws IOException {
+        List<Future<Long>> futures = submitChunks(file, file.length(), chunkSize);
+        return combineChunks(futures, file.length(), chunkSize);
+    }
+
+    /**
+     * Submits the tasks to checksum each chunk of the file to the checksum thread pool
+     */
+    static List<Future<Long>> submitChunks(final File file, long length, int chunkSize) {
+        List<Future<Long>> answer = new ArrayList<Future<Long>>();
+        long position = 0;
+        do {
+            final long start = position;
+            final long size = Math.min(chunkSize, length - position);
+            answer.add(getExecutor().submit(new Callable<Long>() {
+                @Override
+                public Long call() throws Exception {
+                    return checksumMapped(file, start, size);
+                }
+            }));
+            position += chunkSize;
+        } while (position < length);
+        return answer;
+    }
+
+    /**
+     * Waits for the checksums of the chunks of a file and combines them into the checksum of the whole file
+     */
+    static long combineChunks(List<Future<Long>> futures, long length, int chunkSize) throws IOException {
+        long answer = 0;
+        long position = 0;
+        for (Future<Long> future : futures) {
+            long size = Math.min(chunkSize, length - position);
+            long checksum;
+            try {
+                checksum = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while calculating checksum");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                }
+                throw new IOException("Failed to calculate checksum. " + cause, cause);
+            }
+            answer = position == 0 ? checksum : crc32Combine(answer, checksum, size);
+            position += size;
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the CRC32 checksum of the region of the file read by mapping it into memory
+     */
+    public static long checksumMapped(File file, long position, long size) throws IOException {
+        CRC32 crc = new CRC32();
+        if (size > 0) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+                crc.update(buffer);
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Combines the CRC32 checksums of two consecutive blocks of data into the checksum of both blocks,
+     * given the length of the second block; as zlib's crc32_combine does
+     */
+    public static long crc32Combine(long crc1, long crc2, long length2) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+        long[] even = new long[32];
+        long[] odd = new long[32];
+
+        // the operator for one zero bit
+        odd[0] = CRC32_POLYNOMIAL;
+        long row = 1;
+        for (int n = 1; n < 32; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        // the operators for two then four zero bits
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+
+        // apply length2 zero bytes to crc1
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((length2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(even, crc1);
+            }
+            length2 >>= 1;
+            if (length2 == 0) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if ((length2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(odd, crc1);
+            }
+            length2 >>= 1;
+        } while (length2 != 0);
+        return crc1 ^ crc2;
+    }
+
+    /**
+     * Returns the checksums of the files in the directory keyed by file, only checksumming the files whose size or
+     * last modified time has changed since the {@link #FOLDER_CHECKSUM_INDEX} index file was last saved
+     */
+    public static Map<File, Long> checksumDirectory(File dir) throws IOException {
+        ChecksumIndex index = new ChecksumIndex(dir);
+        index.load();
+        Map<String, Long> checksums = index.update();
+        index.save();
+        Map<File, Long> answer = new HashMap<File, Long>();
+        for (Map.Entry<String, Long> entry : checksums.entrySet()) {
+            answer.put(new File(dir, entry.getKey()), entry.getValue());
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the bounded pool of threads used to checksum files in parallel
+     */
+    static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 5, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory("Fabric Checksum", true));
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
+    private static long gf2MatrixTimes(long[] matrix, long vector) {
+        long sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(long[] square, long[] matrix) {
+        for (int n = 0; n < 32; n++) {
+            square[n] = gf2MatrixTimes(matrix, matrix[n]);
+        }
+    }
+
     /**
      * If there is a file called {@link #FOLDER_CHECKSUM_CACHE} load it where the key is the file name and the value is the checksum
      */
@@ -0,0 +1,93 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A lock free unbounded queue for many producers and a single consumer; a linked list where producers
+ * swap the tail and the consumer follows the links from the head.
+ * <p/>
+ * Only one thread at a time may call {@link #poll()}; {@link #offer(Object, long)}, {@link #isEmpty()} and
+ * {@link #size()} can be called from any thread.
+ */
+class MpscQueue<E> {
+    private final AtomicReference<Node<E>> tail;
+    private final AtomicInteger size = new AtomicInteger();
+    private volatile Node<E> head;
+
+    MpscQueue() {
+        Node<E> stub = new Node<E>(null, 0L);
+        head = stub;
+        tail = new AtomicReference<Node<E>>(stub);
+    }
+
+    /**
+     * Adds the value to the end of the queue recording the time it was queued
+     */
+    public void offer(E value, long queuedNanos) {
+        Node<E> node = new Node<E>(value, queuedNanos);
+        Node<E> previous = tail.getAndSet(node);
+        size.incrementAndGet();
+        previous.next = node;
+    }
+
+    /**
+     * Removes the value at the head of the queue, returning its node or null if the queue is empty
+     */
+    public Node<E> poll() {
+        Node<E> next = head.next;
+        if (next == null) {
+            return null;
+        }
+        head = next;
+        size.decrementAndGet();
+        return next;
+    }
+
+    public boolean isEmpty() {
+        return head.next == null;
+    }
+
+    public int size() {
+        return Math.max(0, size.get());
+    }
+
+    static final class Node<E> {
+        private E value;
+        private final long queuedNanos;
+        volatile Node<E> next;
+
+        Node(E value, long queuedNanos) {
+            this.value = value;
+            this.queuedNanos = queuedNanos;
+        }
+
+        /**
+         * Returns the value, clearing it so the node at the head of the queue does not retain it
+         */
+        E take() {
+            E answer = value;
+            value = null;
+            return answer;
+        }
+
+        long getQueuedNanos() {
+            return queuedNanos;
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An ExecutorService which runs its tasks one at a time in the order they were queued, using the carrier threads
+ * of a shared {@link SerialExecutorPool} rather than a thread of its own. Tasks are queued on a lock free queue and
+ * run in batches of at most {@link SerialExecutorPool#getQuantum()} tasks.
+ * <p/>
+ * Every task accepted by {@link #execute(Runnable)} is queued before the executor shuts down, so it is either run
+ * or returned by {@link #shutdownNow()}; tasks submitted once the executor is shut down are rejected.
+ */
+public class PooledSerialExecutor extends AbstractExecutorService {
+    private static final int SHUTDOWN = Integer.MIN_VALUE;
+
+    private final SerialExecutorPool pool;
+    private final MpscQueue<Runnable> queue = new MpscQueue<Runnable>();
+    private final Object consumerLock = new Object();
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    /**
+     * The number of threads queueing a task, with the sign bit set once shut down
+     */
+    private final AtomicInteger state = new AtomicInteger();
+    private final CountDownLatch terminatedLatch = new CountDownLatch(1);
+    private volatile boolean terminated;
+    private volatile String label;
+
+    private final Runnable terminateTask = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drainBatch();
+        }
+    };
+
+    public PooledSerialExecutor(SerialExecutorPool pool, String label) {
+        if (pool == null) {
+            throw new NullPointerException("pool cannot be null");
+        }
+        this.pool = pool;
+        this.label = label;
+        pool.laneCreated();
+    }
+
+    /**
+     * Queues the runnable for execution.
+     */
+    @Override
+    public void execute(Runnable runnable) {
+        if (runnable == null)
+            throw new NullPointerException("runnable cannot be null");
+        int current;
+        do {
+            current = state.get();
+            if ((current & SHUTDOWN) != 0)
+                throw new RejectedExecutionException("shutdown");
+        } while (!state.compareAndSet(current, current + 1));
+        try {
+            offer(runnable);
+        } finally {
+            state.decrementAndGet();
+        }
+        triggerDrain();
+    }
+
+    protected void offer(Runnable runnable) {
+        pool.taskQueued();
+        queue.offer(runnable, System.nanoTime());
+    }
+
+    protected void triggerDrain() {
+        if (scheduled.compareAndSet(false, true)) {
+            try {
+                pool.getCarrier().execute(drainTask);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Runs up to the quantum of queued tasks then hands the carrier thread back to the pool, queueing
+     * another batch if there are more tasks
+     */
+    protected void drainBatch() {
+        try {
+            int quantum = pool.getQuantum();
+            for (int i = 0; i < quantum; i++) {
+                MpscQueue.Node<Runnable> node;
+                synchronized (consumerLock) {
+                    node = queue.poll();
+                }
+                if (node == null) {
+                    break;
+                }
+                Runnable runnable = node.take();
+                if (runnable == terminateTask) {
+                    pool.taskDiscarded();
+                    terminate();
+                    break;
+                }
+                pool.taskStarted(node.getQueuedNanos());
+                try {
+                    runnable.run();
+                } catch (Throwable e) {
+                    Thread thread = Thread.currentThread();
+                    thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+                }
+            }
+        } finally {
+            scheduled.set(false);
+            if (!terminated && !queue.isEmpty()) {
+                triggerDrain();
+            }
+        }
+    }
+
+    protected void terminate() {
+        if (!terminated) {
+            terminated = true;
+            pool.laneTerminated();
+            terminatedLatch.countDown();
+        }
+    }
+
+    /**
+     * Stops accepting tasks; the executor terminates once the tasks already queued have run
+     */
+    @Override
+    public void shutdown() {
+        int current;
+        do {
+            current = state.get();
+            if ((current & SHUTDOWN) != 0) {
+                return;
+            }
+        } while (!state.compareAndSet(current, current | SHUTDOWN));
+        // wait for the tasks being queued so that the terminate task is queued after them
+        while ((state.get() & ~SHUTDOWN) != 0) {
+            Thread.yield();
+        }
+        offer(terminateTask);
+        triggerDrain();
+    }
+
+    /**
+     * Stops accepting tasks, returning the tasks which have not started yet instead of running them.
+     * A task which is running is left to complete.
+     */
+    @Override
+    public List<Runnable> shutdownNow() {
+        shutdown();
+        List<Runnable> answer = new ArrayList<Runnable>();
+        boolean terminating = false;
+        synchronized (consumerLock) {
+            MpscQueue.Node<Runnable> node;
+            while ((node = queue.poll()) != null) {
+                Runnable runnable = node.take();
+                pool.taskDiscarded();
+                if (runnable == terminateTask) {
+                    terminating = true;
+                } else {
+                    answer.add(runnable);
+                }
+            }
+        }
+        if (terminating) {
+            // terminate once any running task has completed
+            offer(terminateTask);
+            triggerDrain();
+        }
+        return answer;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return (state.get() & SHUTDOWN) != 0;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return terminated;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminatedLatch.await(timeout, unit);
+    }
+
+    /**
+     * Returns the number of queued tasks which have not started
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    public SerialExecutorPool getPool() {
+        return pool;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -19,12 +19,23 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.stream.BaseStream;
 
 import static java.lang.String.format;
 
@@ -36,10 +47,56 @@ public class Processes {
 
     private static boolean isWindows = System.getProperty("os.name").toLowerCase().contains("windows");
 
+    private static final File PROC_DIR = new File("/proc");
+
+    /**
+     * The directory in which HotSpot JVMs create their <code>hsperfdata_&lt;user&gt;</code> directories on Linux
+     */
+    private static final File PERF_DATA_DIR = new File("/tmp");
+
+    /**
+     * Whether processes can be found by reading <code>/proc</code> directly rather than running commands
+     */
+    private static final boolean hasProcDir = !isWindows && new File(PROC_DIR, "self/cmdline").exists();
+
+    /**
+     * The java launcher options which take the following argument as their value
+     */
+    private static final Set<String> JAVA_OPTIONS_WITH_VALUE = new HashSet<>(Arrays.asList(
+            "-cp", "-classpath", "--class-path", "-p", "--module-path", "--upgrade-module-path",
+            "--add-modules", "--add-exports", "--add-opens", "--add-reads", "--limit-modules", "--patch-module",
+            "--enable-native-access", "--source"));
+
+    // the ProcessHandle methods on Java 9 or later
+    private static Method allProcessesMethod;
+    private static Method ofMethod;
+    private static Method pidMethod;
+    private static Method isAliveMethod;
+
+    static {
+        try {
+            Class<?> processHandle = Class.forName("java.lang.ProcessHandle");
+            allProcessesMethod = processHandle.getMethod("allProcesses");
+            ofMethod = processHandle.getMethod("of", long.class);
+            pidMethod = processHandle.getMethod("pid");
+            isAliveMethod = processHandle.getMethod("isAlive");
+        } catch (Exception e) {
+            LOG.debug("ProcessHandle is not available so processes will be found using commands: " + e);
+            allProcessesMethod = null;
+        }
+    }
+
     /**
      * Returns true if the given PID is still alive
      */
     public static boolean isProcessAlive(long pid) {
+        if (hasProcDir) {
+            return isProcessAlive(PROC_DIR, pid);
+        }
+        Boolean alive = isProcessAliveFromProcessHandle(pid);
+        if (alive != null) {
+            return alive;
+        }
         List<Long> processIds = getProcessIds();
         if (processIds.isEmpty()) {
             // we must be on a platform that the PID list doesn't work like windows
@@ -52,6 +109,88 @@ public class Processes {
      * Returns the list of current active PIDs
      */
     public static List<Long> getProcessIds() {
+        if (hasProcDir) {
+            return getProcessIds(PROC_DIR);
+        }
+        List<Long> answer = getProcessIdsFromProcessHandle();
+        if (answer != null) {
+            return answer;
+        }
+        return getProcessIdsFromCommand();
+    }
+
+    /**
+     * Returns the PIDs of the numeric directories in the given <code>/proc</code> directory
+     */
+    static List<Long> getProcessIds(File procDir) {
+        List<Long> answer = new ArrayList<Long>();
+        String[] names = procDir.list();
+        if (names != null) {
+            for (String name : names) {
+                if (isDigits(name)) {
+                    answer.add(Long.parseLong(name));
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns true if the given <code>/proc</code> directory contains the PID and it is not a zombie
+     */
+    static boolean isProcessAlive(File procDir, long pid) {
+        ProcFileReader reader = new ProcFileReader(512);
+        int length = reader.read(new File(procDir, pid + "/stat"));
+        if (length < 0) {
+            return false;
+        }
+        // the state follows the command name which is in brackets and may itself contain brackets
+        byte[] buffer = reader.buffer;
+        int idx = length - 1;
+        while (idx > 0 && buffer[idx] != ')') {
+            idx--;
+        }
+        byte state = idx + 2 < length ? buffer[idx + 2] : 0;
+        return state != 'Z' && state != 'X';
+    }
+
+    /**
+     * Returns the PIDs from <code>ProcessHandle.allProcesses()</code> or null if it is not available
+     */
+    static List<Long> getProcessIdsFromProcessHandle() {
+        if (allProcessesMethod == null) {
+            return null;
+        }
+        try {
+            List<Long> answer = new ArrayList<Long>();
+            Iterator<?> iter = ((BaseStream<?, ?>) allProcessesMethod.invoke(null)).iterator();
+            while (iter.hasNext()) {
+                answer.add((Long) pidMethod.invoke(iter.next()));
+            }
+            return answer;
+        } catch (Exception e) {
+            LOG.debug("Failed to find processes using ProcessHandle: " + e, e);
+            return null;
+        }
+    }
+
+    private static Boolean isProcessAliveFromProcessHandle(long pid) {
+        if (allProcessesMethod == null) {
+            return null;
+        }
+        try {
+            Optional<?> handle = (Optional<?>) ofMethod.invoke(null, pid);
+            return handle.isPresent() && (Boolean) isAliveMethod.invoke(handle.get());
+        } catch (Exception e) {
+            LOG.debug("Failed to find process " + pid + " using ProcessHandle: " + e, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the list of current active PIDs using <code>ps</code> or <code>tasklist</code>
+     */
+    static List<Long> getProcessIdsFromCommand() {
         if (isWindows) {
             return getProcessIdsWindows();
         } else {
@@ -94,15 +233,137 @@ public class Processes {
     }
 
     /**
-     * Returns the list of current active PIDs for any java based process
+     * Returns the list of current active PIDs for any java based process of the current user
      * that has a main class which contains any of the given bits of text
      */
     public static List<Long> getJavaProcessIds(String... classNameFilter) {
+        Filter<String> filter = Filters.containsAnyString(classNameFilter);
+        if (hasProcDir) {
+            return getJavaProcessIds(PROC_DIR, PERF_DATA_DIR, System.getProperty("user.name"), filter);
+        }
+        return getJavaProcessIdsFromCommand(filter);
+    }
+
+    /**
+     * Returns the PIDs in the given <code>/proc</code> directory of the java processes owned by the given user
+     * whose main class or jar, as <code>jps -l</code> would show it, matches the filter.
+     *
+     * Processes started by the <code>java</code> launcher are matched from their command line. If the user's
+     * <code>hsperfdata</code> directory shows JVMs whose main class cannot be found that way, such as those
+     * started by jsvc or an IDE launcher or using an <code>@argfile</code>, they are matched using <code>jps</code>.
+     */
+    static List<Long> getJavaProcessIds(File procDir, File perfDataDir, String user, Filter<String> filter) {
+        List<Long> answer = new ArrayList<Long>();
+        Set<Long> jvmPids = getPerfDataProcessIds(perfDataDir, user);
+        Set<Long> unknownJvmPids = new HashSet<Long>();
+        ProcFileReader reader = new ProcFileReader(4096);
+        for (Long pid : getProcessIds(procDir)) {
+            int length = reader.read(new File(procDir, pid + "/cmdline"));
+            if (length > 0) {
+                String mainClass = getJavaMainClass(reader.buffer, length);
+                if (mainClass == null) {
+                    if (jvmPids.contains(pid)) {
+                        unknownJvmPids.add(pid);
+                    }
+                } else if (filter.matches(mainClass) && isOwnedBy(new File(procDir, pid.toString()), user)) {
+                    answer.add(pid);
+                }
+            }
+        }
+        if (!unknownJvmPids.isEmpty()) {
+            for (Long pid : getJavaProcessIdsFromCommand(filter)) {
+                if (unknownJvmPids.contains(pid)) {
+                    answer.add(pid);
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the PIDs of the JVMs of the given user which have a file in its <code>hsperfdata_&lt;user&gt;</code>
+     * directory in the given directory, as used by <code>jps</code> to find them
+     */
+    static Set<Long> getPerfDataProcessIds(File perfDataDir, String user) {
+        Set<Long> answer = new HashSet<Long>();
+        String[] names = new File(perfDataDir, "hsperfdata_" + user).list();
+        if (names != null) {
+            for (String name : names) {
+                if (isDigits(name)) {
+                    answer.add(Long.parseLong(name));
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns true if the file exists and is owned by the given user; a <code>/proc/&lt;pid&gt;</code>
+     * directory is owned by the effective user of the process
+     */
+    private static boolean isOwnedBy(File file, String user) {
+        try {
+            return user.equals(Files.getOwner(file.toPath()).getName());
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the main class, module/class or jar of the given NUL separated command line
+     * or null if it is not a java command
+     */
+    static String getJavaMainClass(byte[] cmdline, int length) {
+        int end = 0;
+        while (end < length && cmdline[end] != 0) {
+            end++;
+        }
+        String command = new String(cmdline, 0, end, StandardCharsets.UTF_8);
+        if (!command.equals("java") && !command.endsWith("/java")) {
+            return null;
+        }
+        List<String> arguments = new ArrayList<>();
+        int start = end + 1;
+        while (start < length) {
+            end = start;
+            while (end < length && cmdline[end] != 0) {
+                end++;
+            }
+            arguments.add(new String(cmdline, start, end - start, StandardCharsets.UTF_8));
+            start = end + 1;
+        }
+        return getJavaMainClass(arguments);
+    }
+
+    /**
+     * Returns the main class, module/class or jar from the arguments passed to the java command.
+     *
+     * Argument files are not read so null is returned if the main class is only given in one.
+     */
+    static String getJavaMainClass(List<String> arguments) {
+        for (int i = 0; i < arguments.size(); i++) {
+            String argument = arguments.get(i);
+            if (argument.equals("-jar") || argument.equals("-m") || argument.equals("--module")) {
+                return i + 1 < arguments.size() ? arguments.get(i + 1) : null;
+            } else if (argument.startsWith("--module=")) {
+                return argument.substring("--module=".length());
+            } else if (JAVA_OPTIONS_WITH_VALUE.contains(argument)) {
+                i++;
+            } else if (!argument.startsWith("-") && !argument.startsWith("@")) {
+                return argument;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the PIDs of the java processes listed by <code>jps -l</code> which match the filter
+     */
+    static List<Long> getJavaProcessIdsFromCommand(Filter<String> filter) {
         String commands = "jps -l";
         String message = commands;
         LOG.debug("Executing commands: " + message);
         List<Long> answer = new ArrayList<Long>();
-        Filter<String> filter = Filters.containsAnyString(classNameFilter);
         try {
             Process process = Runtime.getRuntime().exec(commands);
             parseProcesses(process.getInputStream(), answer, message, filter, null);
@@ -271,6 +532,58 @@ public class Processes {
         }
     }
 
+    private static boolean isDigits(String text) {
+        int length = text.length();
+        if (length == 0) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            if (ch < '0' || ch > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads small files from <code>/proc</code> reusing the same buffer, which is grown as required
+     */
+    private static class ProcFileReader {
+        private byte[] buffer;
+
+        ProcFileReader(int size) {
+            this.buffer = new byte[size];
+        }
+
+        /**
+         * Returns the number of bytes read into the buffer or -1 if the file could not be read,
+         * such as when the process has exited
+         */
+        int read(File file) {
+            try {
+                FileInputStream in = new FileInputStream(file);
+                try {
+                    int length = 0;
+                    while (true) {
+                        if (length == buffer.length) {
+                            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                        }
+                        int count = in.read(buffer, length, buffer.length - length);
+                        if (count < 0) {
+                            return length;
+                        }
+                        length += count;
+                    }
+                } finally {
+                    Closeables.closeQuietly(in);
+                }
+            } catch (IOException e) {
+                return -1;
+            }
+        }
+    }
+
     protected static void parseProcesses(InputStream inputStream, List<Long> answer, String message,
                                          Filter<String> lineFilter, Function<String, String> preFunction) throws Exception {
         BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
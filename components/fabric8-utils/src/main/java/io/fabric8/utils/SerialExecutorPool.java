@@ -0,0 +1,211 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded pool of carrier threads shared by many {@link PooledSerialExecutor} lanes, each of which runs its
+ * tasks one at a time in order. A lane runs at most {@link #getQuantum()} tasks before handing its carrier thread
+ * back to the pool, so that a busy lane cannot starve the others.
+ * <p/>
+ * The default pool has {@link #THREADS_PROPERTY} threads, which time out when idle, or uses virtual threads if
+ * {@link #VIRTUAL_THREADS_PROPERTY} is true and the JVM supports them. The pool exposes the number of lanes,
+ * the number of queued tasks and the latency between queueing and starting tasks for tests and monitoring.
+ * <p/>
+ * As the pool is bounded, tasks which block waiting for tasks on other lanes can deadlock once every carrier
+ * thread is blocked; so {@link SerialExecutorService} only uses the default pool if {@link #POOLED_PROPERTY} is true.
+ */
+public class SerialExecutorPool {
+    public static final String THREADS_PROPERTY = "io.fabric8.utils.SERIAL_EXECUTOR_THREADS";
+    public static final String QUANTUM_PROPERTY = "io.fabric8.utils.SERIAL_EXECUTOR_QUANTUM";
+    public static final String VIRTUAL_THREADS_PROPERTY = "io.fabric8.utils.SERIAL_EXECUTOR_VIRTUAL_THREADS";
+    public static final String POOLED_PROPERTY = "io.fabric8.utils.SERIAL_EXECUTOR_POOLED";
+
+    public static final int DEFAULT_QUANTUM = 64;
+
+    private static SerialExecutorPool defaultPool;
+
+    private final Executor carrier;
+    private final int quantum;
+    private final AtomicInteger laneCount = new AtomicInteger();
+    private final AtomicInteger queueSize = new AtomicInteger();
+    private final AtomicLong taskCount = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public SerialExecutorPool(int threads) {
+        this(threads, DEFAULT_QUANTUM);
+    }
+
+    public SerialExecutorPool(int threads, int quantum) {
+        this(createThreadPool(threads), quantum);
+    }
+
+    public SerialExecutorPool(Executor carrier, int quantum) {
+        if (carrier == null) {
+            throw new NullPointerException("carrier cannot be null");
+        }
+        if (quantum < 1) {
+            throw new IllegalArgumentException("quantum must be at least 1 but was " + quantum);
+        }
+        this.carrier = carrier;
+        this.quantum = quantum;
+    }
+
+    /**
+     * Returns the pool shared by default, configured using the system properties
+     */
+    public static synchronized SerialExecutorPool getDefault() {
+        if (defaultPool == null) {
+            int quantum = Integer.getInteger(QUANTUM_PROPERTY, DEFAULT_QUANTUM);
+            Executor carrier = null;
+            if (Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY)) {
+                carrier = createVirtualThreadExecutor();
+            }
+            if (carrier == null) {
+                int threads = Integer.getInteger(THREADS_PROPERTY, Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+                carrier = createThreadPool(threads);
+            }
+            defaultPool = new SerialExecutorPool(carrier, quantum);
+        }
+        return defaultPool;
+    }
+
+    /**
+     * Creates a new serial executor which runs its tasks on this pool
+     */
+    public PooledSerialExecutor createExecutor(String label) {
+        return new PooledSerialExecutor(this, label);
+    }
+
+    /**
+     * Creates a fixed size pool of daemon threads which time out after being idle for
+     * {@link SerialExecutorService#THREAD_POOL_KEEP_ALIVE} milliseconds
+     */
+    public static ThreadPoolExecutor createThreadPool(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be at least 1 but was " + threads);
+        }
+        ThreadPoolExecutor answer = new ThreadPoolExecutor(threads, threads,
+                Math.max(1, SerialExecutorService.THREAD_POOL_KEEP_ALIVE), TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory("Fabric Task", true));
+        answer.allowCoreThreadTimeOut(true);
+        return answer;
+    }
+
+    /**
+     * Returns an executor which starts a virtual thread per task or null if the JVM does not support them
+     */
+    public static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method method = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public Executor getCarrier() {
+        return carrier;
+    }
+
+    public int getQuantum() {
+        return quantum;
+    }
+
+    /**
+     * Returns the number of executors created by this pool which have not terminated
+     */
+    public int getLaneCount() {
+        return laneCount.get();
+    }
+
+    /**
+     * Returns the number of tasks queued on all the executors of this pool which have not started
+     */
+    public int getQueueSize() {
+        return Math.max(0, queueSize.get());
+    }
+
+    /**
+     * Returns the number of tasks which have been started
+     */
+    public long getTaskCount() {
+        return taskCount.get();
+    }
+
+    /**
+     * Returns the average time in nanoseconds between queueing and starting a task
+     */
+    public long getAverageLatencyNanos() {
+        long count = taskCount.get();
+        return count > 0 ? totalLatencyNanos.get() / count : 0;
+    }
+
+    /**
+     * Returns the longest time in nanoseconds between queueing and starting a task
+     */
+    public long getMaxLatencyNanos() {
+        return maxLatencyNanos.get();
+    }
+
+    public void resetStatistics() {
+        taskCount.set(0);
+        totalLatencyNanos.set(0);
+        maxLatencyNanos.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "SerialExecutorPool{lanes=" + getLaneCount() + ", queued=" + getQueueSize() + ", tasks=" + getTaskCount()
+                + ", averageLatencyNanos=" + getAverageLatencyNanos() + "}";
+    }
+
+    void laneCreated() {
+        laneCount.incrementAndGet();
+    }
+
+    void laneTerminated() {
+        laneCount.decrementAndGet();
+    }
+
+    void taskQueued() {
+        queueSize.incrementAndGet();
+    }
+
+    void taskDiscarded() {
+        queueSize.decrementAndGet();
+    }
+
+    void taskStarted(long queuedNanos) {
+        queueSize.decrementAndGet();
+        long latency = Math.max(0, System.nanoTime() - queuedNanos);
+        taskCount.incrementAndGet();
+        totalLatencyNanos.addAndGet(latency);
+        long max = maxLatencyNanos.get();
+        while (latency > max && !maxLatencyNanos.compareAndSet(max, latency)) {
+            max = maxLatencyNanos.get();
+        }
+    }
+}
@@ -26,6 +26,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * objects which it is asked to execute.  By default it delegates
  * execution of those tasks to a thread pool, but can be configured
  * to use any Executor.
+ * <p/>
+ * Use {@link PooledSerialExecutor} for many serial queues sharing a bounded {@link SerialExecutorPool} fairly.
  */
 public class SerialExecutorService extends AbstractExecutorService {
 
@@ -75,6 +77,28 @@ public class SerialExecutorService extends AbstractExecutorService {
         }
     };
 
+    /**
+     * Runs the tasks on the carrier threads of the default {@link SerialExecutorPool}, which is bounded,
+     * rather than starting a new thread whenever no idle thread is waiting for a task
+     */
+    static final Executor pooledThreadPool = new Executor() {
+        @Override
+        public void execute(final Runnable task) {
+            if (task == null) {
+                throw new NullPointerException();
+            }
+            SerialExecutorPool.getDefault().getCarrier().execute(task);
+        }
+    };
+
+    /**
+     * Returns the executor used when none is given; which starts a new thread whenever no idle thread is waiting
+     * for a task, unless {@link SerialExecutorPool#POOLED_PROPERTY} is true when it is the bounded default pool
+     */
+    static Executor getDefaultExecutor() {
+        return Boolean.getBoolean(SerialExecutorPool.POOLED_PROPERTY) ? pooledThreadPool : threadPool;
+    }
+
     protected Executor target;
     protected volatile String label;
     protected AtomicBoolean shutdown = new AtomicBoolean(false);
@@ -96,7 +120,7 @@ public class SerialExecutorService extends AbstractExecutorService {
     }
 
     public SerialExecutorService(String label) {
-        this(threadPool, label);
+        this(getDefaultExecutor(), label);
     }
 
     public SerialExecutorService(Executor target) {
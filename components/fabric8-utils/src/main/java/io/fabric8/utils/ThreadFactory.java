@@ -27,16 +27,29 @@ public final class ThreadFactory implements java.util.concurrent.ThreadFactory {
     private static final AtomicInteger counter = new AtomicInteger();
 
     private final String name;
+    private final boolean daemon;
 
     /**
      * Prefix of the thread name
      */
     public ThreadFactory(final String name) {
+        this(name, false);
+    }
+
+    /**
+     * Prefix of the thread name and whether the threads are daemon threads which do not prevent the JVM exiting
+     */
+    public ThreadFactory(final String name, final boolean daemon) {
         this.name = name;
+        this.daemon = daemon;
     }
 
     @Override
     public Thread newThread(Runnable r) {
-        return new Thread(r, name + " #" + counter.incrementAndGet());
+        Thread thread = new Thread(r, name + " #" + counter.incrementAndGet());
+        if (daemon) {
+            thread.setDaemon(true);
+        }
+        return thread;
     }
 }
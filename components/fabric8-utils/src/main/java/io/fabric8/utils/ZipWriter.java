@@ -0,0 +1,238 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.zip.ZipEntry;
+
+/**
+ * Writes entries whose data has already been stored or deflated (with raw deflate) to a ZIP file,
+ * which {@link java.util.zip.ZipOutputStream} cannot do as it always compresses the data it is given.
+ * ZIP64 is not supported so archives are limited to 65535 entries and 4GB.
+ */
+class ZipWriter implements Closeable {
+    private static final int LOCAL_HEADER = 0x04034b50;
+    private static final int CENTRAL_HEADER = 0x02014b50;
+    private static final int END_HEADER = 0x06054b50;
+    private static final int VERSION = 20;
+    private static final int UTF8_FLAG = 0x0800;
+    private static final int DIRECTORY_ATTRIBUTE = 0x10;
+    private static final long MAX_SIZE = 0xFFFFFFFFL;
+    private static final int MAX_ENTRIES = 0xFFFF;
+
+    private final OutputStream out;
+    private final ByteArrayOutputStream centralDirectory = new ByteArrayOutputStream();
+    private final byte[] header = new byte[46];
+    private long offset;
+    private int count;
+
+    /**
+     * An entry which is ready to be written, with its data either in memory or in a file
+     * which is deleted once it has been written if it is temporary
+     */
+    static class Entry {
+        final String name;
+        final int method;
+        final long crc;
+        final long size;
+        final long time;
+        final byte[] data;
+        final File file;
+        final boolean temporary;
+        final long length;
+
+        Entry(String name, int method, long crc, long size, long time, byte[] data, int length) {
+            this(name, method, crc, size, time, data, null, false, length);
+        }
+
+        Entry(String name, int method, long crc, long size, long time, File file, boolean temporary, long length) {
+            this(name, method, crc, size, time, null, file, temporary, length);
+        }
+
+        private Entry(String name, int method, long crc, long size, long time, byte[] data, File file, boolean temporary, long length) {
+            this.name = name;
+            this.method = method;
+            this.crc = crc;
+            this.size = size;
+            this.time = time;
+            this.data = data;
+            this.file = file;
+            this.temporary = temporary;
+            this.length = length;
+        }
+
+        /**
+         * Deletes the data of this entry if it is held in a temporary file
+         */
+        void discard() {
+            if (temporary) {
+                file.delete();
+            }
+        }
+
+        static Entry directory(String name, long time) {
+            return new Entry(name, ZipEntry.STORED, 0, 0, time, new byte[0], 0);
+        }
+
+        boolean isDirectory() {
+            return name.endsWith("/");
+        }
+    }
+
+    ZipWriter(OutputStream out) {
+        this.out = out;
+    }
+
+    public void write(Entry entry) throws IOException {
+        try {
+            writeEntry(entry);
+        } finally {
+            entry.discard();
+        }
+    }
+
+    private void writeEntry(Entry entry) throws IOException {
+        byte[] name = entry.name.getBytes(StandardCharsets.UTF_8);
+        if (++count > MAX_ENTRIES || entry.size > MAX_SIZE || entry.length > MAX_SIZE || offset > MAX_SIZE) {
+            throw new IOException("Cannot add " + entry.name + " as the ZIP file would require ZIP64 extensions");
+        }
+        int dosTime = dosTime(entry.time);
+
+        int p = 0;
+        p = putInt(header, p, LOCAL_HEADER);
+        p = putShort(header, p, VERSION);
+        p = putShort(header, p, UTF8_FLAG);
+        p = putShort(header, p, entry.method);
+        p = putInt(header, p, dosTime);
+        p = putInt(header, p, (int) entry.crc);
+        p = putInt(header, p, (int) entry.length);
+        p = putInt(header, p, (int) entry.size);
+        p = putShort(header, p, name.length);
+        p = putShort(header, p, 0);
+        out.write(header, 0, p);
+        out.write(name);
+        if (entry.data != null) {
+            out.write(entry.data, 0, (int) entry.length);
+        } else {
+            writeFile(entry);
+        }
+
+        p = 0;
+        p = putInt(header, p, CENTRAL_HEADER);
+        p = putShort(header, p, VERSION);
+        p = putShort(header, p, VERSION);
+        p = putShort(header, p, UTF8_FLAG);
+        p = putShort(header, p, entry.method);
+        p = putInt(header, p, dosTime);
+        p = putInt(header, p, (int) entry.crc);
+        p = putInt(header, p, (int) entry.length);
+        p = putInt(header, p, (int) entry.size);
+        p = putShort(header, p, name.length);
+        p = putShort(header, p, 0);
+        p = putShort(header, p, 0);
+        p = putShort(header, p, 0);
+        p = putShort(header, p, 0);
+        p = putInt(header, p, entry.isDirectory() ? DIRECTORY_ATTRIBUTE : 0);
+        p = putInt(header, p, (int) offset);
+        centralDirectory.write(header, 0, p);
+        centralDirectory.write(name);
+
+        offset += 30 + name.length + entry.length;
+    }
+
+    /**
+     * Copies the data of the entry from its file, failing if the file no longer has the expected length
+     */
+    private void writeFile(Entry entry) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long remaining = entry.length;
+        InputStream in = new FileInputStream(entry.file);
+        try {
+            int read;
+            while (remaining > 0 && (read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining))) >= 0) {
+                out.write(buffer, 0, read);
+                remaining -= read;
+            }
+            if (remaining > 0 || in.read() >= 0) {
+                throw new IOException("File " + entry.file + " for " + entry.name + " changed while it was being zipped");
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Writes the central directory and closes the underlying stream
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (offset > MAX_SIZE) {
+                throw new IOException("The ZIP file would require ZIP64 extensions");
+            }
+            centralDirectory.writeTo(out);
+            int p = 0;
+            p = putInt(header, p, END_HEADER);
+            p = putShort(header, p, 0);
+            p = putShort(header, p, 0);
+            p = putShort(header, p, count);
+            p = putShort(header, p, count);
+            p = putInt(header, p, centralDirectory.size());
+            p = putInt(header, p, (int) offset);
+            p = putShort(header, p, 0);
+            out.write(header, 0, p);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * Converts the given time in millis to the MS-DOS date and time format used in ZIP headers
+     */
+    static int dosTime(long time) {
+        LocalDateTime date = LocalDateTime.ofInstant(Instant.ofEpochMilli(time), ZoneId.systemDefault());
+        int year = date.getYear();
+        if (year < 1980) {
+            return (1 << 21) | (1 << 16);
+        }
+        return (year - 1980) << 25 | date.getMonthValue() << 21 | date.getDayOfMonth() << 16
+                | date.getHour() << 11 | date.getMinute() << 5 | date.getSecond() >> 1;
+    }
+
+    private static int putShort(byte[] buffer, int position, int value) {
+        buffer[position] = (byte) value;
+        buffer[position + 1] = (byte) (value >> 8);
+        return position + 2;
+    }
+
+    private static int putInt(byte[] buffer, int position, int value) {
+        buffer[position] = (byte) value;
+        buffer[position + 1] = (byte) (value >> 8);
+        buffer[position + 2] = (byte) (value >> 16);
+        buffer[position + 3] = (byte) (value >> 24);
+        return position + 4;
+    }
+}
@@ -18,14 +18,43 @@ package io.fabric8.utils;
 import org.slf4j.Logger;
 
 import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileFilter;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
 import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import java.util.zip.ZipInputStream;
 import java.util.zip.ZipOutputStream;
 
@@ -34,6 +63,19 @@ import static io.fabric8.utils.Closeables.closeQuietly;
 /**
  */
 public class Zips {
+    private static final int THREADS = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    /**
+     * The number of entries which may be compressed ahead of the entry being written
+     */
+    private static final int MAX_ENTRIES_IN_FLIGHT = THREADS * 4;
+
+    /**
+     * Files larger than this are streamed through a temporary file rather than compressed in memory
+     */
+    private static final long MAX_IN_MEMORY_ENTRY_SIZE = 4 * 1024 * 1024;
+
+    private static ExecutorService executor;
 
     /**
      * Creates a zip fie from the given source directory and output zip file name
@@ -99,6 +141,201 @@ public class Zips {
         }
     }
 
+    /**
+     * Creates a zip file from the given source directory compressing the files concurrently.
+     *
+     * Entries are added in sorted order so the same directory always results in the same ZIP file.
+     * Small files are compressed in memory, with a bounded number of entries in flight at once, while
+     * larger files are streamed through temporary files so their size does not affect the memory used.
+     * If the ZIP file cannot be created the partially written file is deleted.
+     *
+     * @param stored if true the files are stored uncompressed rather than deflated
+     */
+    public static void createZipFileInParallel(Logger log, File sourceDir, File outputZipFile, FileFilter filter, boolean stored) throws IOException {
+        createZipFileInParallel(log, sourceDir, outputZipFile, filter, stored, MAX_IN_MEMORY_ENTRY_SIZE);
+    }
+
+    static void createZipFileInParallel(Logger log, File sourceDir, File outputZipFile, FileFilter filter, boolean stored, long maxInMemorySize) throws IOException {
+        List<File> files = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        listEntries(sourceDir, "", filter, files, names);
+
+        outputZipFile.getParentFile().mkdirs();
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(outputZipFile), 64 * 1024);
+        ZipWriter writer = new ZipWriter(os);
+        Deque<Future<ZipWriter.Entry>> inFlight = new ArrayDeque<>();
+        boolean completed = false;
+        try {
+            int submitted = 0;
+            for (int i = 0; i < files.size(); i++) {
+                while (submitted < files.size() && submitted - i < MAX_ENTRIES_IN_FLIGHT) {
+                    inFlight.add(submitEntry(files.get(submitted), names.get(submitted), stored, maxInMemorySize));
+                    submitted++;
+                }
+                writer.write(await(inFlight.poll()));
+                if (log.isDebugEnabled()) {
+                    log.debug("zipping file " + names.get(i));
+                }
+            }
+            writer.close();
+            completed = true;
+        } finally {
+            if (!completed) {
+                for (Future<ZipWriter.Entry> future : inFlight) {
+                    if (!future.cancel(true)) {
+                        discard(future);
+                    }
+                }
+                closeQuietly(os);
+                if (!outputZipFile.delete() && outputZipFile.exists()) {
+                    log.warn("Failed to delete the incomplete ZIP file " + outputZipFile);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the files and directories matching the filter to the given lists in sorted order,
+     * using the same rules as {@link #zipDirectory(Logger, File, ZipOutputStream, String, FileFilter)}
+     */
+    private static void listEntries(File directory, String path, FileFilter filter, List<File> files, List<String> names) {
+        File[] dirList = directory.listFiles();
+        if (dirList != null) {
+            Arrays.sort(dirList);
+            for (File f : dirList) {
+                if (matches(filter, f)) {
+                    if (f.isDirectory()) {
+                        String prefix = path + f.getName() + "/";
+                        files.add(f);
+                        names.add(prefix);
+                        listEntries(f, prefix, filter, files, names);
+                    } else {
+                        files.add(f);
+                        names.add(path + f.getName());
+                    }
+                }
+            }
+        }
+    }
+
+    private static Future<ZipWriter.Entry> submitEntry(final File file, final String name, final boolean stored, final long maxInMemorySize) {
+        if (name.endsWith("/")) {
+            FutureTask<ZipWriter.Entry> answer = new FutureTask<>(new Callable<ZipWriter.Entry>() {
+                @Override
+                public ZipWriter.Entry call() throws Exception {
+                    return ZipWriter.Entry.directory(name, file.lastModified());
+                }
+            });
+            answer.run();
+            return answer;
+        }
+        return getExecutor().submit(new Callable<ZipWriter.Entry>() {
+            @Override
+            public ZipWriter.Entry call() throws Exception {
+                if (file.length() > maxInMemorySize) {
+                    return compressLargeEntry(file, name, stored);
+                }
+                return compressEntry(file, name, stored);
+            }
+        });
+    }
+
+    /**
+     * Deletes any temporary file of an entry which was compressed but will not be written
+     */
+    private static void discard(Future<ZipWriter.Entry> future) {
+        try {
+            future.get().discard();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // nothing was created
+        }
+    }
+
+    /**
+     * Reads the file into memory and deflates it, storing it instead if it does not get any smaller
+     */
+    static ZipWriter.Entry compressEntry(File file, String name, boolean stored) throws IOException {
+        long time = file.lastModified();
+        byte[] data = Files.readAllBytes(file.toPath());
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        if (!stored && data.length > 0) {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try {
+                deflater.setInput(data);
+                deflater.finish();
+                byte[] buffer = new byte[data.length];
+                int length = 0;
+                while (!deflater.finished() && length < buffer.length) {
+                    length += deflater.deflate(buffer, length, buffer.length - length);
+                }
+                if (deflater.finished() && length < data.length) {
+                    return new ZipWriter.Entry(name, ZipEntry.DEFLATED, crc.getValue(), data.length, time, buffer, length);
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+        return new ZipWriter.Entry(name, ZipEntry.STORED, crc.getValue(), data.length, time, data, data.length);
+    }
+
+    /**
+     * Streams the file to calculate its checksum, deflating it into a temporary file unless it is stored
+     * or does not get any smaller, in which case the file itself is copied into the ZIP file when written
+     */
+    static ZipWriter.Entry compressLargeEntry(File file, String name, boolean stored) throws IOException {
+        long time = file.lastModified();
+        CRC32 crc = new CRC32();
+        byte[] buffer = new byte[64 * 1024];
+        long size = 0;
+        File tempFile = null;
+        Deflater deflater = null;
+        OutputStream out = null;
+        boolean keepTempFile = false;
+        InputStream in = new FileInputStream(file);
+        try {
+            if (!stored) {
+                tempFile = File.createTempFile("fabric8-zip-", ".tmp");
+                deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+                out = new DeflaterOutputStream(new FileOutputStream(tempFile), deflater, buffer.length);
+            }
+            int read;
+            while ((read = in.read(buffer)) >= 0) {
+                crc.update(buffer, 0, read);
+                size += read;
+                if (out != null) {
+                    out.write(buffer, 0, read);
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedIOException("Interrupted while compressing " + file);
+                }
+            }
+            ZipWriter.Entry answer;
+            if (out != null) {
+                out.close();
+                out = null;
+            }
+            if (tempFile != null && tempFile.length() < size) {
+                answer = new ZipWriter.Entry(name, ZipEntry.DEFLATED, crc.getValue(), size, time, tempFile, true, tempFile.length());
+            } else {
+                answer = new ZipWriter.Entry(name, ZipEntry.STORED, crc.getValue(), size, time, file, false, size);
+            }
+            keepTempFile = answer.temporary;
+            return answer;
+        } finally {
+            closeQuietly(in);
+            closeQuietly(out);
+            if (deflater != null) {
+                deflater.end();
+            }
+            if (!keepTempFile && tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
     protected static boolean matches(FileFilter filter, File f) {
         return filter == null || filter.accept(f);
     }
@@ -109,11 +346,11 @@ public class Zips {
     public static void unzip(InputStream in, File toDir) throws IOException {
         ZipInputStream zis = new ZipInputStream(new BufferedInputStream(in));
         try {
+            Path root = toDir.getCanonicalFile().toPath();
             ZipEntry entry = zis.getNextEntry();
             while (entry != null) {
                 if (!entry.isDirectory()) {
-                    String entryName = entry.getName();
-                    File toFile = new File(toDir, entryName);
+                    File toFile = resolveEntry(root, entry.getName()).toFile();
                     toFile.getParentFile().mkdirs();
                     OutputStream os = new FileOutputStream(toFile);
                     try {
@@ -133,6 +370,112 @@ public class Zips {
         }
     }
 
+    /**
+     * Unzips the given ZIP file to the given directory, reading the entries from the central directory
+     * and extracting them concurrently.
+     *
+     * Every entry is checked before anything is extracted so a ZIP with entries outside of the directory
+     * is rejected as a whole, then each distinct directory is created once. Entries which would be written
+     * to the same file (including names which only differ by case) are extracted one after the other in the
+     * order they appear in the ZIP so, as with {@link #unzip(InputStream, File)}, the last one wins.
+     */
+    public static void unzipInParallel(File zipFile, File toDir) throws IOException {
+        final ZipFile zip = new ZipFile(zipFile);
+        List<Future<Void>> futures = new ArrayList<>();
+        try {
+            Path root = toDir.getCanonicalFile().toPath();
+            Set<Path> directories = new TreeSet<>();
+            Map<String, List<ZipEntry>> entriesByTarget = new LinkedHashMap<>();
+            Map<String, List<Path>> pathsByTarget = new HashMap<>();
+            Enumeration<? extends ZipEntry> enumeration = zip.entries();
+            while (enumeration.hasMoreElements()) {
+                ZipEntry entry = enumeration.nextElement();
+                Path target = resolveEntry(root, entry.getName());
+                if (entry.isDirectory()) {
+                    directories.add(target);
+                } else {
+                    directories.add(target.getParent());
+                    String key = target.toString().toLowerCase(Locale.ENGLISH);
+                    List<ZipEntry> entries = entriesByTarget.get(key);
+                    if (entries == null) {
+                        entries = new ArrayList<>();
+                        entriesByTarget.put(key, entries);
+                        pathsByTarget.put(key, new ArrayList<Path>());
+                    }
+                    entries.add(entry);
+                    pathsByTarget.get(key).add(target);
+                }
+            }
+            for (Path directory : directories) {
+                Files.createDirectories(directory);
+            }
+
+            for (Map.Entry<String, List<ZipEntry>> mapEntry : entriesByTarget.entrySet()) {
+                final List<ZipEntry> entries = mapEntry.getValue();
+                final List<Path> targets = pathsByTarget.get(mapEntry.getKey());
+                futures.add(getExecutor().submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (int i = 0; i < entries.size(); i++) {
+                            InputStream in = zip.getInputStream(entries.get(i));
+                            try {
+                                Files.copy(in, targets.get(i), StandardCopyOption.REPLACE_EXISTING);
+                            } finally {
+                                closeQuietly(in);
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                await(future);
+            }
+        } finally {
+            for (Future<Void> future : futures) {
+                future.cancel(true);
+            }
+            closeQuietly(zip);
+        }
+    }
+
+    /**
+     * Returns the path of the entry within the given canonical directory, failing if the entry
+     * name would place it outside of the directory
+     */
+    static Path resolveEntry(Path root, String entryName) throws IOException {
+        Path answer = root.resolve(entryName).normalize();
+        if (!answer.startsWith(root)) {
+            throw new IOException("ZIP entry " + entryName + " is outside of the target directory " + root);
+        }
+        return answer;
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while processing ZIP entries");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException("Failed to process ZIP entry. " + cause, cause);
+        }
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(THREADS, THREADS, 5, TimeUnit.SECONDS,
+                    new LinkedBlockingQueue<Runnable>(), new ThreadFactory("Fabric Zip", true));
+            pool.allowCoreThreadTimeOut(true);
+            executor = pool;
+        }
+        return executor;
+    }
+
     static void copy(InputStream is, OutputStream os) throws IOException {
         try {
             byte[] b = new byte[4096];
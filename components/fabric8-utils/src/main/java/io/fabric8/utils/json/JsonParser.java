@@ -0,0 +1,769 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils.json;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A pull parser for JSON which reads through a buffer and returns one {@link Event} at a time, so that large
+ * documents can be processed without building them in memory.
+ * <p/>
+ * String values and numbers are only turned into objects when asked for with {@link #getText()},
+ * {@link #getLong()}, {@link #getDouble()} or {@link #getNumber()}, and field names are interned through a small
+ * cache so that repeated keys share the same String.
+ * <p/>
+ * If paths are given, such as <code>/items/&#42;/metadata/name</code> where <code>&#42;</code> matches any field name
+ * or array index, then only values on those paths, their ancestors and their descendants are returned and any other
+ * subtree is skipped by scanning for its end; skipped values are only checked for balanced brackets and strings.
+ */
+public class JsonParser implements Closeable {
+
+    public enum Event {
+        START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, FIELD_NAME, STRING, NUMBER, TRUE, FALSE, NULL
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int NAME_CACHE_SIZE = 1024;
+
+    private static final byte OBJECT = 1;
+    private static final byte ARRAY = 2;
+
+    // the state of a container
+    private static final byte FIRST = 0;
+    private static final byte AFTER_NAME = 1;
+    private static final byte AFTER_VALUE = 2;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    private long offset;
+    private int line = 1;
+    private long lineStart;
+
+    private char[] text = new char[256];
+    private int textLength;
+    private final String[] names = new String[NAME_CACHE_SIZE];
+
+    private byte[] types = new byte[16];
+    private byte[] states = new byte[16];
+    private int[] indexes = new int[16];
+    private String[] segments = new String[16];
+    private long[] masks = new long[17];
+    private int depth;
+
+    private final String[][] paths;
+    private Event event;
+    private String name;
+    private boolean started;
+
+    public JsonParser(Reader reader) {
+        this(reader, (String[]) null);
+    }
+
+    public JsonParser(InputStream is) {
+        this(new InputStreamReader(is, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Creates a parser which only returns the values on the given paths, their ancestors and their descendants
+     */
+    public JsonParser(Reader reader, String... paths) {
+        this.reader = reader;
+        this.paths = parsePaths(paths);
+        if (this.paths != null) {
+            masks[0] = this.paths.length == 64 ? -1L : (1L << this.paths.length) - 1;
+        }
+    }
+
+    /**
+     * Reads the document building maps, lists, strings, doubles, booleans and nulls as {@link JsonReader#read(Reader)}
+     * does, keeping only the values on the given paths if any are given
+     */
+    public static Object read(Reader reader, String... paths) throws IOException {
+        JsonParser parser = new JsonParser(reader, paths);
+        try {
+            if (parser.next() == null) {
+                throw parser.error("Unexpected end of input");
+            }
+            Object answer = parser.readValue();
+            if (parser.next() != null) {
+                throw parser.error("Unexpected character");
+            }
+            return answer;
+        } finally {
+            parser.close();
+        }
+    }
+
+    public static Object read(InputStream is, String... paths) throws IOException {
+        return read(new InputStreamReader(is, StandardCharsets.UTF_8), paths);
+    }
+
+    /**
+     * Returns the next event or null at the end of the document
+     */
+    public Event next() throws IOException {
+        while (true) {
+            int ch = skipWhiteSpace();
+            if (depth == 0) {
+                if (started) {
+                    if (ch != -1) {
+                        throw error("Unexpected character");
+                    }
+                    event = null;
+                    return null;
+                }
+                if (ch == -1) {
+                    throw error("Unexpected end of input");
+                }
+                started = true;
+                return event = readValueEvent(ch);
+            }
+            int level = depth - 1;
+            if (types[level] == OBJECT) {
+                if (states[level] == AFTER_NAME) {
+                    if (ch != ':') {
+                        throw expected("':'");
+                    }
+                    position++;
+                    ch = skipWhiteSpace();
+                    states[level] = AFTER_VALUE;
+                    return event = readValueEvent(ch);
+                }
+                if (ch == '}') {
+                    position++;
+                    return event = pop();
+                }
+                if (states[level] == AFTER_VALUE) {
+                    if (ch != ',') {
+                        throw expected("',' or '}'");
+                    }
+                    position++;
+                    ch = skipWhiteSpace();
+                }
+                if (ch != '"') {
+                    throw expected("name");
+                }
+                position++;
+                readString();
+                name = internName();
+                segments[level] = name;
+                if (isIncluded(level, name, -1)) {
+                    states[level] = AFTER_NAME;
+                    return event = Event.FIELD_NAME;
+                }
+                ch = skipWhiteSpace();
+                if (ch != ':') {
+                    throw expected("':'");
+                }
+                position++;
+                skipValue(skipWhiteSpace());
+                states[level] = AFTER_VALUE;
+            } else {
+                if (ch == ']') {
+                    position++;
+                    return event = pop();
+                }
+                if (states[level] == AFTER_VALUE) {
+                    if (ch != ',') {
+                        throw expected("',' or ']'");
+                    }
+                    position++;
+                    ch = skipWhiteSpace();
+                }
+                int index = ++indexes[level];
+                segments[level] = null;
+                states[level] = AFTER_VALUE;
+                if (isIncluded(level, null, index)) {
+                    return event = readValueEvent(ch);
+                }
+                skipValue(ch);
+            }
+        }
+    }
+
+    /**
+     * Returns the current event
+     */
+    public Event getEvent() {
+        return event;
+    }
+
+    /**
+     * Returns the name of the current field; which is interned so repeated names are the same instance
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the text of the current string, number or field name
+     */
+    public String getText() {
+        if (event == Event.FIELD_NAME) {
+            return name;
+        }
+        return new String(text, 0, textLength);
+    }
+
+    public boolean getBoolean() {
+        return event == Event.TRUE;
+    }
+
+    public long getLong() throws IOException {
+        checkNumber();
+        if (textLength <= 18 && isIntegral()) {
+            long answer = 0;
+            int i = text[0] == '-' ? 1 : 0;
+            for (; i < textLength; i++) {
+                answer = answer * 10 + (text[i] - '0');
+            }
+            return text[0] == '-' ? -answer : answer;
+        }
+        return (long) getDouble();
+    }
+
+    public double getDouble() throws IOException {
+        checkNumber();
+        return Double.parseDouble(getText());
+    }
+
+    /**
+     * Returns the current number as a Long if it is an integer which fits in a long otherwise as a Double
+     */
+    public Number getNumber() throws IOException {
+        checkNumber();
+        if (textLength <= 18 && isIntegral()) {
+            return getLong();
+        }
+        return getDouble();
+    }
+
+    /**
+     * Returns the depth of nesting of the current event; which is 1 for the fields of the root object
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Returns the path of the current event such as <code>/items/0/metadata</code>
+     */
+    public String getPath() {
+        StringBuilder builder = new StringBuilder();
+        int levels = depth;
+        if (event == Event.START_OBJECT || event == Event.START_ARRAY) {
+            levels--;
+        }
+        for (int i = 0; i < levels; i++) {
+            builder.append('/');
+            builder.append(types[i] == OBJECT ? segments[i] : Integer.toString(indexes[i]));
+        }
+        return builder.length() > 0 ? builder.toString() : "/";
+    }
+
+    /**
+     * Skips the children of the current object or array so that the next event is its end
+     */
+    public void skipChildren() throws IOException {
+        if (event != Event.START_OBJECT && event != Event.START_ARRAY) {
+            return;
+        }
+        int nested = 0;
+        while (true) {
+            int ch = peek();
+            if (ch == -1) {
+                throw error("Unexpected end of input");
+            }
+            if (ch == '"') {
+                position++;
+                skipString();
+                continue;
+            }
+            if (ch == '{' || ch == '[') {
+                nested++;
+            } else if (ch == '}' || ch == ']') {
+                if (nested == 0) {
+                    // leave the end for next() to return
+                    return;
+                }
+                nested--;
+            } else if (ch == '\n') {
+                newLine();
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Builds the current value, and any children, as {@link JsonReader#read(Reader)} does
+     */
+    public Object readValue() throws IOException {
+        if (event == null) {
+            throw error("No current value");
+        }
+        switch (event) {
+            case START_OBJECT:
+                Map<String, Object> object = new HashMap<String, Object>();
+                while (next() != Event.END_OBJECT) {
+                    String key = name;
+                    next();
+                    object.put(key, readValue());
+                }
+                return object;
+            case START_ARRAY:
+                List<Object> array = new ArrayList<Object>();
+                while (next() != Event.END_ARRAY) {
+                    array.add(readValue());
+                }
+                return array;
+            case STRING:
+                return getText();
+            case NUMBER:
+                return getDouble();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            case NULL:
+                return null;
+            default:
+                throw error("Unexpected " + event);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    //
+    // Implementation
+    //
+
+    private Event readValueEvent(int ch) throws IOException {
+        switch (ch) {
+            case '{':
+                position++;
+                push(OBJECT);
+                return Event.START_OBJECT;
+            case '[':
+                position++;
+                push(ARRAY);
+                return Event.START_ARRAY;
+            case '"':
+                position++;
+                readString();
+                return Event.STRING;
+            case 't':
+                readLiteral("true");
+                return Event.TRUE;
+            case 'f':
+                readLiteral("false");
+                return Event.FALSE;
+            case 'n':
+                readLiteral("null");
+                return Event.NULL;
+            case '-':
+            case '0':
+            case '1':
+            case '2':
+            case '3':
+            case '4':
+            case '5':
+            case '6':
+            case '7':
+            case '8':
+            case '9':
+                readNumber();
+                return Event.NUMBER;
+            default:
+                throw expected("value");
+        }
+    }
+
+    private void push(byte type) {
+        if (depth == types.length) {
+            int size = depth * 2;
+            types = Arrays.copyOf(types, size);
+            states = Arrays.copyOf(states, size);
+            indexes = Arrays.copyOf(indexes, size);
+            segments = Arrays.copyOf(segments, size);
+            masks = Arrays.copyOf(masks, size + 1);
+        }
+        types[depth] = type;
+        states[depth] = FIRST;
+        indexes[depth] = -1;
+        segments[depth] = null;
+        depth++;
+    }
+
+    private Event pop() {
+        depth--;
+        segments[depth] = null;
+        return types[depth] == OBJECT ? Event.END_OBJECT : Event.END_ARRAY;
+    }
+
+    /**
+     * Returns true if the child of the container at the level with the given name or index is on one of the paths,
+     * recording which paths it matches for its own children
+     */
+    private boolean isIncluded(int level, String segment, int index) {
+        if (paths == null) {
+            return true;
+        }
+        long parent = masks[level];
+        long answer = 0;
+        String indexText = null;
+        for (long remaining = parent; remaining != 0; remaining &= remaining - 1) {
+            int i = Long.numberOfTrailingZeros(remaining);
+            String[] path = paths[i];
+            boolean matches;
+            if (path.length <= level) {
+                matches = true;
+            } else if ("*".equals(path[level])) {
+                matches = true;
+            } else if (segment != null) {
+                matches = path[level].equals(segment);
+            } else {
+                if (indexText == null) {
+                    indexText = Integer.toString(index);
+                }
+                matches = path[level].equals(indexText);
+            }
+            if (matches) {
+                answer |= 1L << i;
+            }
+        }
+        masks[level + 1] = answer;
+        return answer != 0;
+    }
+
+    private void readString() throws IOException {
+        textLength = 0;
+        while (true) {
+            if (position == limit && !fill()) {
+                throw error("Unexpected end of input");
+            }
+            // copy the run of plain characters in one go
+            int start = position;
+            while (position < limit) {
+                char ch = buffer[position];
+                if (ch == '"' || ch == '\\' || ch < 0x20) {
+                    break;
+                }
+                position++;
+            }
+            appendText(buffer, start, position - start);
+            if (position == limit) {
+                continue;
+            }
+            char ch = buffer[position++];
+            if (ch == '"') {
+                return;
+            } else if (ch == '\\') {
+                readEscape();
+            } else {
+                position--;
+                throw expected("valid string character");
+            }
+        }
+    }
+
+    private void readEscape() throws IOException {
+        int ch = read();
+        switch (ch) {
+            case '"':
+            case '/':
+            case '\\':
+                appendText((char) ch);
+                break;
+            case 'b':
+                appendText('\b');
+                break;
+            case 'f':
+                appendText('\f');
+                break;
+            case 'n':
+                appendText('\n');
+                break;
+            case 'r':
+                appendText('\r');
+                break;
+            case 't':
+                appendText('\t');
+                break;
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) {
+                        throw expected("hexadecimal digit");
+                    }
+                    value = value * 16 + digit;
+                }
+                appendText((char) value);
+                break;
+            default:
+                throw expected("valid escape sequence");
+        }
+    }
+
+    private void readNumber() throws IOException {
+        textLength = 0;
+        if (peek() == '-') {
+            appendText((char) read());
+        }
+        int first = peek();
+        if (!readDigits()) {
+            throw expected("digit");
+        }
+        if (first == '0' && textLength > (text[0] == '-' ? 2 : 1)) {
+            throw error("Unexpected digit after leading zero");
+        }
+        if (peek() == '.') {
+            appendText((char) read());
+            if (!readDigits()) {
+                throw expected("digit");
+            }
+        }
+        int ch = peek();
+        if (ch == 'e' || ch == 'E') {
+            appendText((char) read());
+            ch = peek();
+            if (ch == '+' || ch == '-') {
+                appendText((char) read());
+            }
+            if (!readDigits()) {
+                throw expected("digit");
+            }
+        }
+    }
+
+    private boolean readDigits() throws IOException {
+        boolean answer = false;
+        while (true) {
+            int ch = peek();
+            if (ch < '0' || ch > '9') {
+                return answer;
+            }
+            appendText((char) ch);
+            position++;
+            answer = true;
+        }
+    }
+
+    private void readLiteral(String literal) throws IOException {
+        for (int i = 0; i < literal.length(); i++) {
+            char expected = literal.charAt(i);
+            if (peek() != expected) {
+                throw expected("'" + expected + "'");
+            }
+            position++;
+        }
+    }
+
+    /**
+     * Skips the value starting with the given character without building it
+     */
+    private void skipValue(int ch) throws IOException {
+        if (ch == '"') {
+            position++;
+            skipString();
+        } else if (ch == '{' || ch == '[') {
+            position++;
+            int nested = 1;
+            while (nested > 0) {
+                ch = peek();
+                if (ch == -1) {
+                    throw error("Unexpected end of input");
+                }
+                position++;
+                if (ch == '"') {
+                    skipString();
+                } else if (ch == '{' || ch == '[') {
+                    nested++;
+                } else if (ch == '}' || ch == ']') {
+                    nested--;
+                } else if (ch == '\n') {
+                    newLine();
+                }
+            }
+        } else {
+            readValueEvent(ch);
+        }
+    }
+
+    private void skipString() throws IOException {
+        while (true) {
+            if (position == limit && !fill()) {
+                throw error("Unexpected end of input");
+            }
+            char ch = buffer[position++];
+            if (ch == '"') {
+                return;
+            } else if (ch == '\\') {
+                read();
+            }
+        }
+    }
+
+    private String internName() {
+        int hash = 0;
+        for (int i = 0; i < textLength; i++) {
+            hash = 31 * hash + text[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+        String cached = names[slot];
+        if (cached != null && cached.length() == textLength) {
+            boolean same = true;
+            for (int i = 0; i < textLength; i++) {
+                if (cached.charAt(i) != text[i]) {
+                    same = false;
+                    break;
+                }
+            }
+            if (same) {
+                return cached;
+            }
+        }
+        String answer = new String(text, 0, textLength);
+        names[slot] = answer;
+        return answer;
+    }
+
+    private void appendText(char ch) {
+        if (textLength == text.length) {
+            text = Arrays.copyOf(text, textLength * 2);
+        }
+        text[textLength++] = ch;
+    }
+
+    private void appendText(char[] chars, int start, int length) {
+        if (textLength + length > text.length) {
+            text = Arrays.copyOf(text, Math.max(text.length * 2, textLength + length));
+        }
+        System.arraycopy(chars, start, text, textLength, length);
+        textLength += length;
+    }
+
+    private boolean isIntegral() {
+        for (int i = 0; i < textLength; i++) {
+            char ch = text[i];
+            if (ch == '.' || ch == 'e' || ch == 'E') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void checkNumber() throws IOException {
+        if (event != Event.NUMBER) {
+            throw error("Current event " + event + " is not a number");
+        }
+    }
+
+    private int skipWhiteSpace() throws IOException {
+        while (true) {
+            if (position == limit && !fill()) {
+                return -1;
+            }
+            char ch = buffer[position];
+            if (ch == '\n') {
+                position++;
+                newLine();
+            } else if (ch == ' ' || ch == '\t' || ch == '\r') {
+                position++;
+            } else {
+                return ch;
+            }
+        }
+    }
+
+    private void newLine() {
+        line++;
+        lineStart = offset + position;
+    }
+
+    private int peek() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private int read() throws IOException {
+        if (position == limit && !fill()) {
+            throw error("Unexpected end of input");
+        }
+        return buffer[position++];
+    }
+
+    private boolean fill() throws IOException {
+        offset += limit;
+        position = 0;
+        limit = 0;
+        int count;
+        do {
+            count = reader.read(buffer, 0, buffer.length);
+        } while (count == 0);
+        if (count < 0) {
+            return false;
+        }
+        limit = count;
+        return true;
+    }
+
+    private IOException expected(String expected) throws IOException {
+        if (peek() == -1) {
+            return error("Unexpected end of input");
+        }
+        return error("Expected " + expected);
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at " + line + ":" + (offset + position - lineStart));
+    }
+
+    private static String[][] parsePaths(String[] paths) {
+        if (paths == null || paths.length == 0) {
+            return null;
+        }
+        if (paths.length > 64) {
+            throw new IllegalArgumentException("At most 64 paths are supported but was given " + paths.length);
+        }
+        String[][] answer = new String[paths.length][];
+        for (int i = 0; i < paths.length; i++) {
+            String path = paths[i];
+            while (path.startsWith("/")) {
+                path = path.substring(1);
+            }
+            answer[i] = path.isEmpty() ? new String[0] : path.split("/");
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChecksumIndexTest {
+
+    @Test
+    public void testChunkedChecksumMatchesStreamChecksum() throws IOException {
+        File dir = java.nio.file.Files.createTempDirectory("checksum").toFile();
+        try {
+            byte[] data = new byte[1000003];
+            new Random(1).nextBytes(data);
+            File file = writeFile(dir, "data.bin", data);
+            long expected = ChecksumUtils.checksum(new ByteArrayInputStream(data));
+            assertEquals(expected, ChecksumUtils.checksumFileInChunks(file, 4096));
+            assertEquals(expected, ChecksumUtils.checksumFileInChunks(file, 1000003));
+            assertEquals(expected, ChecksumUtils.checksumFile(file));
+            assertEquals(0, ChecksumUtils.checksumFileInChunks(writeFile(dir, "empty.bin", new byte[0]), 4096));
+        } finally {
+            Files.recursiveDelete(dir);
+        }
+    }
+
+    @Test
+    public void testUpdateOnlyChecksumsChangedFiles() throws IOException {
+        File dir = java.nio.file.Files.createTempDirectory("checksum").toFile();
+        try {
+            long lastModified = System.currentTimeMillis() - 60000;
+            for (int i = 0; i < 20; i++) {
+                writeFile(dir, "dir" + (i % 3) + "/file" + i + ".txt", ("file " + i).getBytes("UTF-8")).setLastModified(lastModified);
+            }
+
+            ChecksumIndex index = new ChecksumIndex(dir);
+            index.load();
+            Map<String, Long> checksums = index.update();
+            assertEquals(20, index.getComputedCount());
+            assertEquals(20, checksums.size());
+            assertEquals(ChecksumUtils.checksumFile(new File(dir, "dir1/file4.txt")), checksums.get("dir1/file4.txt").longValue());
+            long dirChecksum = index.getChecksum();
+            index.save();
+            assertTrue(index.getIndexFile().isFile());
+
+            ChecksumIndex reloaded = new ChecksumIndex(dir);
+            reloaded.load();
+            assertEquals(checksums, reloaded.update());
+            assertEquals(0, reloaded.getComputedCount());
+            assertEquals(dirChecksum, reloaded.getChecksum());
+
+            writeFile(dir, "dir1/file4.txt", "changed".getBytes("UTF-8")).setLastModified(lastModified + 1000);
+            assertTrue(new File(dir, "dir2/file5.txt").delete());
+            Map<String, Long> updated = reloaded.update();
+            assertEquals(1, reloaded.getComputedCount());
+            assertEquals(19, updated.size());
+            assertFalse(updated.containsKey("dir2/file5.txt"));
+            assertEquals(ChecksumUtils.checksum(new ByteArrayInputStream("changed".getBytes("UTF-8"))), updated.get("dir1/file4.txt").longValue());
+            assertFalse(dirChecksum == reloaded.getChecksum());
+        } finally {
+            Files.recursiveDelete(dir);
+        }
+    }
+
+    protected static File writeFile(File dir, String path, byte[] data) throws IOException {
+        File file = new File(dir, path);
+        file.getParentFile().mkdirs();
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+        return file;
+    }
+}
@@ -0,0 +1,201 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ */
+public class PooledSerialExecutorTest {
+
+    @Test
+    public void testManyLanesRunInOrderOnBoundedPool() throws InterruptedException {
+        ThreadPoolExecutor threadPool = SerialExecutorPool.createThreadPool(2);
+        SerialExecutorPool pool = new SerialExecutorPool(threadPool, 8);
+        final Set<Thread> threads = Collections.newSetFromMap(new ConcurrentHashMap<Thread, Boolean>());
+        List<PooledSerialExecutor> executors = new ArrayList<>();
+        final List<List<Integer>> results = new ArrayList<>();
+        for (int lane = 0; lane < 50; lane++) {
+            executors.add(pool.createExecutor("lane " + lane));
+            results.add(Collections.synchronizedList(new ArrayList<Integer>()));
+        }
+        assertEquals(50, pool.getLaneCount());
+
+        for (int i = 0; i < 1000; i++) {
+            for (int lane = 0; lane < executors.size(); lane++) {
+                final int id = i;
+                final List<Integer> result = results.get(lane);
+                executors.get(lane).execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        threads.add(Thread.currentThread());
+                        result.add(id);
+                    }
+                });
+            }
+        }
+        for (PooledSerialExecutor executor : executors) {
+            executor.shutdown();
+        }
+        for (PooledSerialExecutor executor : executors) {
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertTrue(executor.isTerminated());
+        }
+        for (List<Integer> result : results) {
+            assertEquals(1000, result.size());
+            for (int i = 0; i < result.size(); i++) {
+                assertEquals(i, result.get(i).intValue());
+            }
+        }
+        assertTrue("Used " + threads.size() + " threads", threads.size() <= 2);
+        assertEquals(0, pool.getLaneCount());
+        assertEquals(0, pool.getQueueSize());
+        assertEquals(50000, pool.getTaskCount());
+        assertTrue(pool.getMaxLatencyNanos() >= pool.getAverageLatencyNanos());
+        threadPool.shutdown();
+    }
+
+    @Test
+    public void testShutdownNowDiscardsQueuedTasks() throws InterruptedException {
+        ThreadPoolExecutor threadPool = SerialExecutorPool.createThreadPool(1);
+        SerialExecutorPool pool = new SerialExecutorPool(threadPool, 4);
+        PooledSerialExecutor executor = pool.createExecutor("test");
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final boolean[] ran = new boolean[1];
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                ran[0] = true;
+            }
+        });
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertEquals(1, executor.getQueueSize());
+
+        List<Runnable> discarded = executor.shutdownNow();
+        assertEquals(1, discarded.size());
+        assertFalse(executor.isTerminated());
+        release.countDown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertFalse(ran[0]);
+        assertEquals(0, pool.getQueueSize());
+        threadPool.shutdown();
+    }
+
+    @Test
+    public void testEveryAcceptedTaskRunsOrIsReturned() throws Exception {
+        ThreadPoolExecutor threadPool = SerialExecutorPool.createThreadPool(2);
+        SerialExecutorPool pool = new SerialExecutorPool(threadPool, 4);
+        for (int round = 0; round < 50; round++) {
+            final PooledSerialExecutor executor = pool.createExecutor("test");
+            final AtomicInteger accepted = new AtomicInteger();
+            final AtomicInteger rejected = new AtomicInteger();
+            final AtomicInteger ran = new AtomicInteger();
+            final CountDownLatch submitted = new CountDownLatch(4);
+            for (int i = 0; i < 4; i++) {
+                new Thread() {
+                    @Override
+                    public void run() {
+                        for (int j = 0; j < 500; j++) {
+                            try {
+                                executor.execute(new Runnable() {
+                                    @Override
+                                    public void run() {
+                                        ran.incrementAndGet();
+                                    }
+                                });
+                                accepted.incrementAndGet();
+                            } catch (RejectedExecutionException e) {
+                                rejected.incrementAndGet();
+                            }
+                        }
+                        submitted.countDown();
+                    }
+                }.start();
+            }
+            List<Runnable> discarded = round % 2 == 0 ? executor.shutdownNow() : Collections.<Runnable>emptyList();
+            if (round % 2 != 0) {
+                executor.shutdown();
+            }
+            assertTrue(submitted.await(10, TimeUnit.SECONDS));
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertEquals(2000, accepted.get() + rejected.get());
+            assertEquals(accepted.get(), ran.get() + discarded.size());
+        }
+        assertEquals(0, pool.getLaneCount());
+        assertEquals(0, pool.getQueueSize());
+        threadPool.shutdown();
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void testExecuteAfterShutdownIsRejected() throws Exception {
+        ThreadPoolExecutor threadPool = SerialExecutorPool.createThreadPool(1);
+        try {
+            PooledSerialExecutor executor = new SerialExecutorPool(threadPool, 4).createExecutor("test");
+            executor.shutdown();
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                }
+            });
+        } finally {
+            threadPool.shutdown();
+        }
+    }
+
+    @Test
+    public void testCarrierThreadsAreDaemons() throws Exception {
+        ThreadPoolExecutor threadPool = SerialExecutorPool.createThreadPool(1);
+        PooledSerialExecutor executor = new SerialExecutorPool(threadPool, 4).createExecutor("test");
+        final boolean[] daemon = new boolean[1];
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                daemon[0] = Thread.currentThread().isDaemon();
+            }
+        });
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(daemon[0]);
+        threadPool.shutdown();
+    }
+}
@@ -0,0 +1,92 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Compares the time taken to list the current processes by reading <code>/proc</code>,
+ * by using <code>ProcessHandle</code> and by running <code>ps</code> and <code>jps</code>.
+ * <p/>
+ * Run it via: <code>mvn -Pprocesses-benchmark</code>
+ */
+public class ProcessesBenchmark {
+    private static final int WARMUP_SECONDS = 3;
+    private static final int MEASURE_SECONDS = 5;
+
+    public static void main(String... args) throws Exception {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        final long pid = Long.parseLong(name.substring(0, name.indexOf('@')));
+        System.out.println("Listing " + Processes.getProcessIds().size() + " processes");
+
+        run("getProcessIds                 ", new Listing() {
+            public Object list() {
+                return Processes.getProcessIds();
+            }
+        });
+        run("getProcessIdsFromProcessHandle", new Listing() {
+            public Object list() {
+                return Processes.getProcessIdsFromProcessHandle();
+            }
+        });
+        run("getProcessIdsFromCommand      ", new Listing() {
+            public Object list() {
+                return Processes.getProcessIdsFromCommand();
+            }
+        });
+        run("isProcessAlive                ", new Listing() {
+            public Object list() {
+                return Processes.isProcessAlive(pid) ? Boolean.TRUE : null;
+            }
+        });
+        run("getJavaProcessIds             ", new Listing() {
+            public Object list() {
+                return Processes.getJavaProcessIds("ProcessesBenchmark", "karaf");
+            }
+        });
+        run("getJavaProcessIdsFromCommand  ", new Listing() {
+            public Object list() {
+                return Processes.getJavaProcessIdsFromCommand(Filters.containsAnyString("ProcessesBenchmark", "karaf"));
+            }
+        });
+    }
+
+    protected interface Listing {
+        Object list();
+    }
+
+    protected static void run(String name, Listing listing) {
+        if (listing.list() == null) {
+            System.out.println(name + ": not available");
+            return;
+        }
+        measure(listing, WARMUP_SECONDS);
+        long nanosPerOp = measure(listing, MEASURE_SECONDS);
+        System.out.println(name + ": " + nanosPerOp / 1000 + " us/op");
+    }
+
+    protected static long measure(Listing listing, int seconds) {
+        long start = System.nanoTime();
+        long end = start + seconds * 1000000000L;
+        int count = 0;
+        while (System.nanoTime() < end) {
+            listing.list();
+            count++;
+        }
+        return (System.nanoTime() - start) / count;
+    }
+}
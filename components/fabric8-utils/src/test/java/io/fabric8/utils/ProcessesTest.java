@@ -0,0 +1,145 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProcessesTest {
+
+    @Test
+    public void testJavaMainClass() {
+        assertEquals("org.apache.karaf.main.Main", Processes.getJavaMainClass(Arrays.asList(
+                "-Xmx512m", "-cp", "lib/karaf.jar:lib/boot.jar", "-Dkaraf.home=/opt/karaf", "org.apache.karaf.main.Main", "server")));
+        assertEquals("/opt/app/app.jar", Processes.getJavaMainClass(Arrays.asList("-Dfoo=bar", "-jar", "/opt/app/app.jar", "Main")));
+        assertEquals("app/io.fabric8.Main", Processes.getJavaMainClass(Arrays.asList("--module-path", "mods", "-m", "app/io.fabric8.Main")));
+        assertEquals("app/io.fabric8.Main", Processes.getJavaMainClass(Arrays.asList("--module=app/io.fabric8.Main")));
+        assertEquals("io.fabric8.Main", Processes.getJavaMainClass(Arrays.asList(
+                "--enable-native-access", "ALL-UNNAMED", "--add-exports", "java.base/sun.nio.ch=ALL-UNNAMED", "io.fabric8.Main")));
+        assertEquals("Main.java", Processes.getJavaMainClass(Arrays.asList("--source", "11", "Main.java")));
+        assertEquals("io.fabric8.Main", Processes.getJavaMainClass(Arrays.asList("@jvm.options", "io.fabric8.Main")));
+        assertNull(Processes.getJavaMainClass(Arrays.asList("@argfile")));
+        assertNull(Processes.getJavaMainClass(Arrays.asList("-version")));
+        assertNull(Processes.getJavaMainClass(Collections.<String>emptyList()));
+    }
+
+    @Test
+    public void testProcessesFromProcDirectory() throws IOException {
+        File procDir = java.nio.file.Files.createTempDirectory("proc").toFile();
+        try {
+            writeProcFile(procDir, "1", "stat", "1 (systemd) S 0 1 1 0 -1");
+            writeProcFile(procDir, "1", "cmdline", "/sbin/init\0splash\0");
+            writeProcFile(procDir, "42", "stat", "42 (java) S 1 42 42 0 -1");
+            writeProcFile(procDir, "42", "cmdline", "/usr/bin/java\0-cp\0lib/*\0org.apache.catalina.startup.Bootstrap\0start\0");
+            writeProcFile(procDir, "43", "stat", "43 (my (odd) java) Z 1 43 43 0 -1");
+            writeProcFile(procDir, "43", "cmdline", "");
+            writeProcFile(procDir, "44", "stat", "44 (java) S 1 44 44 0 -1");
+            writeProcFile(procDir, "44", "cmdline", "java\0-jar\0target/karaf.jar\0");
+            writeProcFile(procDir, "self", "stat", "42 (java) S 1 42 42 0 -1");
+            new File(procDir, "sys").mkdirs();
+
+            List<Long> pids = Processes.getProcessIds(procDir);
+            Collections.sort(pids);
+            assertEquals(Arrays.asList(1L, 42L, 43L, 44L), pids);
+
+            assertTrue(Processes.isProcessAlive(procDir, 1));
+            assertFalse(Processes.isProcessAlive(procDir, 43));
+            assertFalse(Processes.isProcessAlive(procDir, 99));
+
+            File perfDataDir = new File(procDir, "tmp");
+            String user = System.getProperty("user.name");
+            assertEquals(Arrays.asList(42L), Processes.getJavaProcessIds(procDir, perfDataDir, user, Filters.containsAnyString("catalina")));
+            assertEquals(Arrays.asList(44L), Processes.getJavaProcessIds(procDir, perfDataDir, user, Filters.containsAnyString("karaf")));
+            assertEquals(Collections.<Long>emptyList(), Processes.getJavaProcessIds(procDir, perfDataDir, user, Filters.containsAnyString("init")));
+
+            // processes of other users are never returned
+            assertEquals(Collections.<Long>emptyList(), Processes.getJavaProcessIds(procDir, perfDataDir, user + "-other", Filters.containsAnyString("karaf")));
+        } finally {
+            Files.recursiveDelete(procDir);
+        }
+    }
+
+    @Test
+    public void testJvmsStartedByOtherLaunchersAreFoundUsingJps() throws IOException {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        long pid = Long.parseLong(name.substring(0, name.indexOf('@')));
+
+        File procDir = java.nio.file.Files.createTempDirectory("proc").toFile();
+        try {
+            writeProcFile(procDir, "42", "cmdline", "/usr/bin/java\0-cp\0lib/*\0org.apache.catalina.startup.Bootstrap\0");
+            writeProcFile(procDir, "" + pid, "cmdline", "/usr/bin/jsvc\0-pidfile\0/var/run/app.pid\0-cp\0app.jar\0App\0");
+            writeProcFile(procDir, "7", "cmdline", "/usr/bin/jsvc\0-cp\0app.jar\0App\0");
+            File perfDataDir = new File(procDir, "tmp");
+            String user = System.getProperty("user.name");
+            new File(perfDataDir, "hsperfdata_" + user + "/" + pid).mkdirs();
+            new File(perfDataDir, "hsperfdata_" + user + "/42").mkdirs();
+            new File(perfDataDir, "hsperfdata_" + user + "/attach.lock").mkdirs();
+            new File(perfDataDir, "hsperfdata_" + user + "-other/7").mkdirs();
+            new File(perfDataDir, "other/8").mkdirs();
+
+            Set<Long> jvmPids = Processes.getPerfDataProcessIds(perfDataDir, user);
+            assertEquals(new HashSet<>(Arrays.asList(42L, pid)), jvmPids);
+
+            // only JVMs of the user can be found so the jsvc process of another user is never matched
+            List<Long> pids = Processes.getJavaProcessIds(procDir, perfDataDir, user, Filters.<String>trueFilter());
+            assertTrue(pids.contains(42L));
+            assertFalse(pids.contains(7L));
+            if (Processes.getJavaProcessIdsFromCommand(Filters.<String>trueFilter()).contains(pid)) {
+                assertTrue(pids.contains(pid));
+            }
+        } finally {
+            Files.recursiveDelete(procDir);
+        }
+    }
+
+    @Test
+    public void testCurrentProcessIsFound() {
+        String name = ManagementFactory.getRuntimeMXBean().getName();
+        long pid = Long.parseLong(name.substring(0, name.indexOf('@')));
+
+        assertTrue(Processes.isProcessAlive(pid));
+        assertTrue(Processes.getProcessIds().contains(pid));
+        List<Long> processHandlePids = Processes.getProcessIdsFromProcessHandle();
+        if (processHandlePids != null) {
+            assertTrue(processHandlePids.contains(pid));
+        }
+    }
+
+    private static void writeProcFile(File procDir, String pid, String name, String content) throws IOException {
+        File dir = new File(procDir, pid);
+        dir.mkdirs();
+        FileOutputStream out = new FileOutputStream(new File(dir, name));
+        try {
+            out.write(content.getBytes("UTF-8"));
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -17,6 +17,7 @@ package io.fabric8.utils;
 
 import org.junit.Test;
 
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
@@ -45,4 +46,26 @@ public class SerialExecutorServiceTest {
         assertEquals(10000, data[0]);
     }
 
+    @Test
+    public void testDefaultExecutorIsNotBounded() throws InterruptedException {
+        // more tasks blocking on each other than the default SerialExecutorPool has threads
+        int count = 2 * Math.max(4, 2 * Runtime.getRuntime().availableProcessors()) + 1;
+        final CountDownLatch running = new CountDownLatch(count);
+        for (int i = 0; i < count; i++) {
+            SerialExecutorService executor = new SerialExecutorService("test " + i);
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    running.countDown();
+                    try {
+                        running.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            executor.shutdown();
+        }
+        assertTrue(running.await(10, TimeUnit.SECONDS));
+    }
 }
@@ -0,0 +1,241 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ZipsTest {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ZipsTest.class);
+
+    @Test
+    public void testParallelZipRoundTrip() throws IOException {
+        File dir = java.nio.file.Files.createTempDirectory("zips").toFile();
+        try {
+            File source = new File(dir, "source");
+            Random random = new Random(1);
+            for (int i = 0; i < 50; i++) {
+                byte[] data;
+                if (i % 2 == 0) {
+                    data = new byte[random.nextInt(100000)];
+                    random.nextBytes(data);
+                } else {
+                    StringBuilder builder = new StringBuilder();
+                    for (int j = 0; j < i * 100; j++) {
+                        builder.append("hello ").append(j).append('\n');
+                    }
+                    data = builder.toString().getBytes();
+                }
+                writeFile(new File(source, "dir" + (i % 5) + "/nested/file" + i + ".txt"), data);
+            }
+            writeFile(new File(source, "empty.txt"), new byte[0]);
+            new File(source, "emptyDir").mkdirs();
+
+            for (boolean stored : new boolean[]{false, true}) {
+                File zip = new File(dir, "out-" + stored + ".zip");
+                Zips.createZipFileInParallel(LOG, source, zip, null, stored);
+
+                File sequential = new File(dir, "sequential-" + stored);
+                Zips.unzip(new FileInputStream(zip), sequential);
+                // unzip only creates the directories of files
+                new File(sequential, "emptyDir").mkdirs();
+                assertSameFiles(source, sequential);
+
+                File parallel = new File(dir, "parallel-" + stored);
+                Zips.unzipInParallel(zip, parallel);
+                assertSameFiles(source, parallel);
+                assertTrue(new File(parallel, "emptyDir").isDirectory());
+            }
+
+            File first = new File(dir, "first.zip");
+            File second = new File(dir, "second.zip");
+            Zips.createZipFileInParallel(LOG, source, first, null, false);
+            Zips.createZipFileInParallel(LOG, source, second, null, false);
+            assertArrayEquals(Files.readBytes(first), Files.readBytes(second));
+            assertTrue(first.length() < new File(dir, "out-true.zip").length());
+        } finally {
+            Files.recursiveDelete(dir);
+        }
+    }
+
+    @Test
+    public void testUnzipRejectsEntriesOutsideDirectory() throws IOException {
+        File dir = java.nio.file.Files.createTempDirectory("zips").toFile();
+        try {
+            File zip = new File(dir, "evil.zip");
+            ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip));
+            try {
+                zos.putNextEntry(new ZipEntry("good.txt"));
+                zos.write("good".getBytes());
+                zos.closeEntry();
+                zos.putNextEntry(new ZipEntry("../evil.txt"));
+                zos.write("evil".getBytes());
+                zos.closeEntry();
+            } finally {
+                zos.close();
+            }
+
+            File target = new File(dir, "target");
+            try {
+                Zips.unzipInParallel(zip, target);
+                fail("Should have rejected the entry outside of the directory");
+            } catch (IOException e) {
+                // expected
+            }
+            assertFalse(new File(dir, "evil.txt").exists());
+            assertFalse(new File(target, "good.txt").exists());
+
+            try {
+                Zips.unzip(new FileInputStream(zip), target);
+                fail("Should have rejected the entry outside of the directory");
+            } catch (IOException e) {
+                // expected
+            }
+            assertFalse(new File(dir, "evil.txt").exists());
+        } finally {
+            Files.recursiveDelete(dir);
+        }
+    }
+
+    @Test
+    public void testParallelZipStreamsLargeFiles() throws IOException {
+        File dir = java.nio.file.Files.createTempDirectory("zips").toFile();
+        try {
+            File source = new File(dir, "source");
+            byte[] random = new byte[50000];
+            new Random(2).nextBytes(random);
+            writeFile(new File(source, "random.bin"), random);
+            StringBuilder builder = new StringBuilder();
+            for (int i = 0; i < 10000; i++) {
+                builder.append("hello ").append(i).append('\n');
+            }
+            writeFile(new File(source, "text.txt"), builder.toString().getBytes());
+            writeFile(new File(source, "small.txt"), "small".getBytes());
+
+            for (boolean stored : new boolean[]{false, true}) {
+                File zip = new File(dir, "out-" + stored + ".zip");
+                Zips.createZipFileInParallel(LOG, source, zip, null, stored, 1000);
+
+                File target = new File(dir, "target-" + stored);
+                Zips.unzip(new FileInputStream(zip), target);
+                assertSameFiles(source, target);
+            }
+            assertTrue(new File(dir, "out-false.zip").length() < new File(dir, "out-true.zip").length());
+        } finally {
+            Files.recursiveDelete(dir);
+        }
+    }
+
+    @Test
+    public void testParallelZipDeletesIncompleteFile() throws IOException {
+        File dir = java.nio.file.Files.createTempDirectory("zips").toFile();
+        try {
+            File source = new File(dir, "source");
+            final File missing = new File(source, "a.txt");
+            writeFile(missing, "a".getBytes());
+            writeFile(new File(source, "b.txt"), "b".getBytes());
+
+            File zip = new File(dir, "out.zip");
+            try {
+                Zips.createZipFileInParallel(LOG, source, zip, new FileFilter() {
+                    @Override
+                    public boolean accept(File file) {
+                        if (file.getName().equals("b.txt")) {
+                            missing.delete();
+                        }
+                        return true;
+                    }
+                }, false);
+                fail("Should have failed to zip the missing file");
+            } catch (IOException e) {
+                // expected
+            }
+            assertFalse(zip.exists());
+        } finally {
+            Files.recursiveDelete(dir);
+        }
+    }
+
+    @Test
+    public void testUnzipInParallelKeepsLastDuplicateEntry() throws IOException {
+        File dir = java.nio.file.Files.createTempDirectory("zips").toFile();
+        try {
+            File zip = new File(dir, "duplicates.zip");
+            ZipWriter writer = new ZipWriter(new FileOutputStream(zip));
+            for (int i = 0; i < 20; i++) {
+                writer.write(storedEntry("dir/same.txt", "content " + i));
+            }
+            writer.write(storedEntry("dir/other.txt", "other"));
+            writer.close();
+
+            File target = new File(dir, "target");
+            Zips.unzipInParallel(zip, target);
+            assertEquals("content 19", Files.toString(new File(target, "dir/same.txt")));
+            assertEquals("other", Files.toString(new File(target, "dir/other.txt")));
+        } finally {
+            Files.recursiveDelete(dir);
+        }
+    }
+
+    private static ZipWriter.Entry storedEntry(String name, String content) {
+        byte[] data = content.getBytes();
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, data.length);
+        return new ZipWriter.Entry(name, ZipEntry.STORED, crc.getValue(), data.length, System.currentTimeMillis(), data, data.length);
+    }
+
+    private static void assertSameFiles(File expected, File actual) throws IOException {
+        File[] files = expected.listFiles();
+        for (File file : files) {
+            File other = new File(actual, file.getName());
+            if (file.isDirectory()) {
+                assertTrue("Missing directory " + other, other.isDirectory());
+                assertSameFiles(file, other);
+            } else {
+                assertTrue("Missing file " + other, other.isFile());
+                assertArrayEquals(Files.readBytes(file), Files.readBytes(other));
+            }
+        }
+        assertEquals(files.length, actual.listFiles().length);
+    }
+
+    private static void writeFile(File file, byte[] data) throws IOException {
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+}
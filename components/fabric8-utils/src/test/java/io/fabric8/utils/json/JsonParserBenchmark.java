@@ -0,0 +1,127 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils.json;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Map;
+
+/**
+ * Compares the time taken to read a large Kubernetes PodList with {@link JsonParser}, {@link JsonReader}
+ * and Jackson.
+ * <p/>
+ * Run it via: <code>mvn -Pjson-benchmark</code>
+ */
+public class JsonParserBenchmark {
+    private static final int WARMUP_SECONDS = 5;
+    private static final int MEASURE_SECONDS = 10;
+
+    public static void main(String... args) throws Exception {
+        final String json = createPodList(5000);
+        final ObjectMapper mapper = new ObjectMapper();
+        System.out.println("Reading a PodList of 5000 pods which is " + json.length() / 1024 + " KB");
+
+        run("JsonReader.read               ", new Reading() {
+            public Object read() throws IOException {
+                return JsonReader.read(new StringReader(json));
+            }
+        });
+        run("JsonParser.read               ", new Reading() {
+            public Object read() throws IOException {
+                return JsonParser.read(new StringReader(json));
+            }
+        });
+        run("JsonParser.read pod names     ", new Reading() {
+            public Object read() throws IOException {
+                return JsonParser.read(new StringReader(json), "/items/*/metadata/name");
+            }
+        });
+        run("JsonParser events             ", new Reading() {
+            public Object read() throws IOException {
+                JsonParser parser = new JsonParser(new StringReader(json));
+                int count = 0;
+                while (parser.next() != null) {
+                    count++;
+                }
+                return count;
+            }
+        });
+        run("Jackson ObjectMapper          ", new Reading() {
+            public Object read() throws IOException {
+                return mapper.readValue(new StringReader(json), Map.class);
+            }
+        });
+        run("Jackson streaming             ", new Reading() {
+            public Object read() throws IOException {
+                com.fasterxml.jackson.core.JsonParser parser = mapper.getFactory().createParser(new StringReader(json));
+                int count = 0;
+                while (parser.nextToken() != null) {
+                    count++;
+                }
+                parser.close();
+                return count;
+            }
+        });
+    }
+
+    protected interface Reading {
+        Object read() throws IOException;
+    }
+
+    protected static void run(String name, Reading reading) throws IOException {
+        measure(reading, WARMUP_SECONDS);
+        long nanosPerOp = measure(reading, MEASURE_SECONDS);
+        System.out.println(name + ": " + nanosPerOp / 1000 + " us/op");
+    }
+
+    protected static long measure(Reading reading, int seconds) throws IOException {
+        long start = System.nanoTime();
+        long end = start + seconds * 1000000000L;
+        int count = 0;
+        Object last = null;
+        while (System.nanoTime() < end) {
+            last = reading.read();
+            count++;
+        }
+        if (last == null) {
+            throw new IllegalStateException("Nothing read");
+        }
+        return (System.nanoTime() - start) / count;
+    }
+
+    protected static String createPodList(int pods) {
+        StringBuilder builder = new StringBuilder("{\"apiVersion\": \"v1\", \"kind\": \"PodList\", \"metadata\": {}, \"items\": [");
+        for (int i = 0; i < pods; i++) {
+            if (i > 0) {
+                builder.append(",");
+            }
+            builder.append("\n  {\"apiVersion\": \"v1\", \"kind\": \"Pod\", \"metadata\": {\"name\": \"app-").append(i)
+                    .append("\", \"namespace\": \"default\", \"uid\": \"").append(Integer.toHexString(i * 7919))
+                    .append("\", \"resourceVersion\": \"").append(100000 + i)
+                    .append("\", \"labels\": {\"app\": \"app-").append(i % 50).append("\", \"group\": \"io.fabric8\", \"version\": \"1.0.").append(i % 7)
+                    .append("\"}, \"annotations\": {\"fabric8.io/build-url\": \"http://jenkins/job/app/").append(i).append("\"}},")
+                    .append(" \"spec\": {\"containers\": [{\"name\": \"app\", \"image\": \"fabric8/app:1.0.").append(i % 7)
+                    .append("\", \"ports\": [{\"containerPort\": 8080, \"protocol\": \"TCP\"}, {\"containerPort\": 8778, \"name\": \"jolokia\"}],")
+                    .append(" \"env\": [{\"name\": \"KUBERNETES_NAMESPACE\", \"value\": \"default\"}, {\"name\": \"JAVA_OPTIONS\", \"value\": \"-Xmx256m\"}],")
+                    .append(" \"resources\": {\"limits\": {\"cpu\": \"500m\", \"memory\": \"512Mi\"}}}], \"restartPolicy\": \"Always\"},")
+                    .append(" \"status\": {\"phase\": \"Running\", \"podIP\": \"172.17.").append(i / 250).append(".").append(i % 250)
+                    .append("\", \"containerStatuses\": [{\"name\": \"app\", \"ready\": true, \"restartCount\": ").append(i % 3).append("}]}}");
+        }
+        return builder.append("\n]}").toString();
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.utils.json;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ */
+public class JsonParserTest {
+    private static final String POD_LIST = "{\"kind\": \"PodList\", \"items\": [\n" +
+            "  {\"metadata\": {\"name\": \"a\", \"labels\": {\"app\": \"foo\"}}, \"spec\": {\"containers\": [{\"image\": \"x\\\"y\\u0041\"}]}},\n" +
+            "  {\"metadata\": {\"name\": \"b\", \"labels\": {}}, \"spec\": {\"replicas\": -12, \"ratio\": 1.5e2, \"ok\": true, \"none\": null}}\n" +
+            "]}";
+
+    @Test
+    public void testReadMatchesJsonReader() throws Exception {
+        String[] documents = {POD_LIST, "[]", "{}", "\"text\"", "-0.5", "[1, [2, [3]], {\"a\": [false, null]}]"};
+        for (String document : documents) {
+            assertEquals(document, JsonReader.read(new StringReader(document)), JsonParser.read(new StringReader(document)));
+        }
+    }
+
+    @Test
+    public void testEvents() throws Exception {
+        JsonParser parser = new JsonParser(new StringReader("{\"a\": [1, \"two\", 3.5, true], \"b\": {\"c\": null}}"));
+        List<String> events = new ArrayList<>();
+        JsonParser.Event event;
+        while ((event = parser.next()) != null) {
+            switch (event) {
+                case FIELD_NAME:
+                    events.add(parser.getPath());
+                    break;
+                case NUMBER:
+                    events.add(parser.getNumber().toString());
+                    break;
+                case STRING:
+                    events.add(parser.getText());
+                    break;
+                default:
+                    events.add(event.name());
+            }
+        }
+        assertEquals(Arrays.asList("START_OBJECT", "/a", "START_ARRAY", "1", "two", "3.5", "TRUE", "END_ARRAY",
+                "/b", "START_OBJECT", "/b/c", "NULL", "END_OBJECT", "END_OBJECT"), events);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPathsSkipOtherSubtrees() throws Exception {
+        Map<String, Object> list = (Map<String, Object>) JsonParser.read(new StringReader(POD_LIST), "/items/*/metadata/name");
+        assertEquals(1, list.size());
+        List<Object> items = (List<Object>) list.get("items");
+        assertEquals(2, items.size());
+        Map<String, Object> metadata = (Map<String, Object>) ((Map<String, Object>) items.get(1)).get("metadata");
+        assertEquals(1, metadata.size());
+        assertEquals("b", metadata.get("name"));
+
+        Map<String, Object> spec = (Map<String, Object>) JsonParser.read(new StringReader(POD_LIST), "/items/1/spec");
+        items = (List<Object>) spec.get("items");
+        assertEquals(1, items.size());
+        assertEquals(-12.0, ((Map<String, Object>) ((Map<String, Object>) items.get(0)).get("spec")).get("replicas"));
+    }
+
+    @Test
+    public void testNamesAreInternedAndNumbersDecodedOnDemand() throws Exception {
+        JsonParser parser = new JsonParser(new StringReader("[{\"name\": 12345678901234}, {\"name\": 1e3}]"));
+        List<String> names = new ArrayList<>();
+        List<Number> numbers = new ArrayList<>();
+        JsonParser.Event event;
+        while ((event = parser.next()) != null) {
+            if (event == JsonParser.Event.FIELD_NAME) {
+                names.add(parser.getName());
+            } else if (event == JsonParser.Event.NUMBER) {
+                numbers.add(parser.getNumber());
+            }
+        }
+        assertSame(names.get(0), names.get(1));
+        assertEquals(Arrays.<Number>asList(12345678901234L, 1000.0), numbers);
+    }
+
+    @Test
+    public void testSkipChildren() throws Exception {
+        JsonParser parser = new JsonParser(new StringReader("{\"a\": {\"b\": [\"]}\", {}]}, \"c\": 1}"));
+        assertEquals(JsonParser.Event.START_OBJECT, parser.next());
+        assertEquals(JsonParser.Event.FIELD_NAME, parser.next());
+        assertEquals(JsonParser.Event.START_OBJECT, parser.next());
+        parser.skipChildren();
+        assertEquals(JsonParser.Event.END_OBJECT, parser.next());
+        assertEquals(JsonParser.Event.FIELD_NAME, parser.next());
+        assertEquals("c", parser.getName());
+        assertEquals(JsonParser.Event.NUMBER, parser.next());
+        assertEquals(1, parser.getLong());
+        assertEquals(JsonParser.Event.END_OBJECT, parser.next());
+        assertNull(parser.next());
+    }
+
+    @Test
+    public void testInvalidDocuments() throws Exception {
+        String[] documents = {"", "{", "[1,]", "{\"a\" 1}", "[1] 2", "\"abc", "tru", "01", "{\"a\": [}"};
+        for (String document : documents) {
+            try {
+                JsonParser.read(new StringReader(document));
+                fail("Should have failed to parse: " + document);
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains(" at "));
+            }
+        }
+    }
+}
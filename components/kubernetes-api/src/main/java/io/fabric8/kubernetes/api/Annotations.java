@@ -21,6 +21,11 @@ package io.fabric8.kubernetes.api;
 public class Annotations {
     public static class Config {
         public static final String JSON_SCHEMA = "fabric8.io/json-schema";
+
+        /**
+         * The hash of the user configuration a resource was last applied from
+         */
+        public static final String APPLIED_CONFIG_HASH = "fabric8.io/applied-config-hash";
     }
 
     public static class Service {
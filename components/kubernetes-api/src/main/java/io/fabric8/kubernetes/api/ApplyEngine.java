@@ -0,0 +1,212 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.ConfigMap;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.Namespace;
+import io.fabric8.kubernetes.api.model.PersistentVolumeClaim;
+import io.fabric8.kubernetes.api.model.Secret;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceAccount;
+import io.fabric8.kubernetes.api.model.extensions.Ingress;
+import io.fabric8.openshift.api.model.BuildConfig;
+import io.fabric8.openshift.api.model.ImageStream;
+import io.fabric8.openshift.api.model.OAuthClient;
+import io.fabric8.openshift.api.model.PolicyBinding;
+import io.fabric8.openshift.api.model.ProjectRequest;
+import io.fabric8.openshift.api.model.Role;
+import io.fabric8.openshift.api.model.RoleBinding;
+import io.fabric8.openshift.api.model.Route;
+import io.fabric8.openshift.api.model.Template;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.getKind;
+import static io.fabric8.kubernetes.api.KubernetesHelper.getName;
+
+/**
+ * Applies a list of resources through a {@link Controller} in dependency order, running
+ * the resources that don't depend on each other concurrently.
+ * <p>
+ * Resources are grouped into tiers: namespaces first, then the resources others refer to
+ * (secrets, service accounts, config maps, volume claims, roles, image streams and templates),
+ * then services, routes and ingresses, and finally the controllers, pods and anything else.
+ * A tier only starts once the previous one has finished. Within a tier each resource is applied
+ * on the executor, except that repeated entries for the same kind, namespace and name are applied
+ * one after the other in the order they appear.
+ */
+public class ApplyEngine {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ApplyEngine.class);
+
+    private static final int TIER_NAMESPACES = 0;
+    private static final int TIER_DEPENDENCIES = 1;
+    private static final int TIER_SERVICES = 2;
+    private static final int TIER_CONTROLLERS = 3;
+    private static final int TIER_COUNT = 4;
+
+    private final Controller controller;
+    private final int threads;
+
+    public ApplyEngine(Controller controller, int threads) {
+        this.controller = controller;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Applies the entities returning a result for each of them in the order they were given.
+     * If the controller is configured to throw on errors then no further tiers are started once a
+     * resource fails, and the first failure is thrown after the current tier has completed.
+     */
+    public List<ApplyResult> apply(Collection<?> entities, final String sourceName) throws Exception {
+        final List<Object> items = new ArrayList<>(entities.size());
+        for (Object entity : entities) {
+            if (entity != null) {
+                items.add(entity);
+            }
+        }
+        List<Map<String, List<Integer>>> tiers = new ArrayList<>(TIER_COUNT);
+        for (int i = 0; i < TIER_COUNT; i++) {
+            tiers.add(new LinkedHashMap<String, List<Integer>>());
+        }
+        for (int i = 0; i < items.size(); i++) {
+            Object entity = items.get(i);
+            Map<String, List<Integer>> tier = tiers.get(getTier(entity));
+            String key = getKey(entity, i);
+            List<Integer> sequence = tier.get(key);
+            if (sequence == null) {
+                sequence = new ArrayList<>();
+                tier.put(key, sequence);
+            }
+            sequence.add(i);
+        }
+
+        final ApplyResult[] results = new ApplyResult[items.size()];
+        ExecutorService executor = threads > 1 ? createExecutor() : null;
+        Exception failure = null;
+        try {
+            for (Map<String, List<Integer>> tier : tiers) {
+                if (failure != null) {
+                    LOG.warn("Not applying the remaining resources from " + sourceName + " as a resource failed to apply");
+                    break;
+                }
+                List<Future<?>> futures = new ArrayList<>();
+                for (final List<Integer> sequence : tier.values()) {
+                    Callable<Void> task = new Callable<Void>() {
+                        @Override
+                        public Void call() throws Exception {
+                            for (Integer index : sequence) {
+                                results[index] = controller.applyWithResult(items.get(index), sourceName);
+                            }
+                            return null;
+                        }
+                    };
+                    if (executor != null) {
+                        futures.add(executor.submit(task));
+                    } else {
+                        // run inline, capturing any failure like the executor would so the rest of the tier still runs
+                        FutureTask<Void> future = new FutureTask<>(task);
+                        future.run();
+                        futures.add(future);
+                    }
+                }
+                for (Future<?> future : futures) {
+                    try {
+                        future.get();
+                    } catch (ExecutionException e) {
+                        Throwable cause = e.getCause();
+                        throw cause instanceof Exception ? (Exception) cause : e;
+                    }
+                }
+                if (controller.isThrowExceptionOnError()) {
+                    for (List<Integer> sequence : tier.values()) {
+                        for (Integer index : sequence) {
+                            ApplyResult result = results[index];
+                            if (result != null && result.isFailed() && failure == null) {
+                                failure = result.getError();
+                            }
+                        }
+                    }
+                }
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdown();
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+        return Arrays.asList(results);
+    }
+
+    protected int getTier(Object entity) {
+        if (entity instanceof Namespace || entity instanceof ProjectRequest) {
+            return TIER_NAMESPACES;
+        }
+        if (entity instanceof Secret || entity instanceof ServiceAccount || entity instanceof ConfigMap
+                || entity instanceof PersistentVolumeClaim || entity instanceof Role || entity instanceof RoleBinding
+                || entity instanceof PolicyBinding || entity instanceof OAuthClient || entity instanceof ImageStream
+                || entity instanceof Template) {
+            return TIER_DEPENDENCIES;
+        }
+        if (entity instanceof Service || entity instanceof Route || entity instanceof Ingress || entity instanceof BuildConfig) {
+            return TIER_SERVICES;
+        }
+        return TIER_CONTROLLERS;
+    }
+
+    /**
+     * Entries with the same key are applied sequentially
+     */
+    private static String getKey(Object entity, int position) {
+        if (entity instanceof HasMetadata) {
+            HasMetadata hasMetadata = (HasMetadata) entity;
+            String name = getName(hasMetadata);
+            if (name != null) {
+                return getKind(hasMetadata) + "/" + KubernetesHelper.getNamespace(hasMetadata) + "/" + name;
+            }
+        }
+        return "#" + position;
+    }
+
+    private ExecutorService createExecutor() {
+        final AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "kubernetes-apply-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+/**
+ * The outcome of applying a single resource
+ */
+public class ApplyResult {
+    public enum Status {
+        CREATED, UPDATED, UNCHANGED, SKIPPED, FAILED
+    }
+
+    private final String kind;
+    private final String namespace;
+    private final String name;
+    private final Status status;
+    private final Exception error;
+    private final long durationMillis;
+
+    public ApplyResult(String kind, String namespace, String name, Status status, Exception error, long durationMillis) {
+        this.kind = kind;
+        this.namespace = namespace;
+        this.name = name;
+        this.status = status;
+        this.error = error;
+        this.durationMillis = durationMillis;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public String getNamespace() {
+        return namespace;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the error if the resource failed to apply
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public boolean isFailed() {
+        return status == Status.FAILED;
+    }
+
+    @Override
+    public String toString() {
+        return "ApplyResult{" + kind + " " + namespace + "/" + name + " " + status
+                + (error != null ? " " + error.getMessage() : "") + " in " + durationMillis + "ms}";
+    }
+}
@@ -0,0 +1,252 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.RootPaths;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.openshift.client.OpenShiftClient;
+import io.fabric8.openshift.client.OpenShiftNotAvailableException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URL;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the capabilities of a cluster per master URL; whether it is OpenShift, which OpenShift API groups
+ * it supports and the {@link OpenShiftClient} adapted from each client, so that the API server is probed once
+ * rather than on every operation.
+ * <p/>
+ * Entries expire after {@link #getTimeToLiveMillis()} and can be discarded explicitly with {@link #invalidate(URL)}
+ * when reconnecting to a cluster which may have been upgraded. Only definitive answers are cached; if the cluster
+ * cannot be asked the capability is treated as missing for that call and probed again on the next one.
+ */
+public class ClusterCapabilities {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ClusterCapabilities.class);
+
+    public static final long DEFAULT_TIME_TO_LIVE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    private static final ConcurrentMap<URL, ClusterCapabilities> capabilities = new ConcurrentHashMap<>();
+    private static volatile long timeToLiveMillis = DEFAULT_TIME_TO_LIVE_MILLIS;
+
+    private final URL masterUrl;
+    private final long expires;
+    private volatile Boolean openShift;
+    private final ConcurrentMap<String, Boolean> apiGroups = new ConcurrentHashMap<>();
+    private final Map<KubernetesClient, OpenShiftClient> openShiftClients = Collections.synchronizedMap(new WeakHashMap<KubernetesClient, OpenShiftClient>());
+
+    protected ClusterCapabilities(URL masterUrl, long expires) {
+        this.masterUrl = masterUrl;
+        this.expires = expires;
+    }
+
+    /**
+     * Returns the capabilities of the cluster the client talks to, creating them if there are none or they have expired
+     */
+    public static ClusterCapabilities get(KubernetesClient client) {
+        URL masterUrl = client.getMasterUrl();
+        long now = System.currentTimeMillis();
+        ClusterCapabilities answer = capabilities.get(masterUrl);
+        if (answer == null || answer.isExpired(now)) {
+            ClusterCapabilities created = new ClusterCapabilities(masterUrl, now + timeToLiveMillis);
+            if (answer == null) {
+                answer = capabilities.putIfAbsent(masterUrl, created);
+                if (answer == null) {
+                    answer = created;
+                }
+            } else if (capabilities.replace(masterUrl, answer, created)) {
+                answer = created;
+            } else {
+                answer = capabilities.get(masterUrl);
+                if (answer == null) {
+                    answer = created;
+                }
+            }
+        }
+        return answer;
+    }
+
+    /**
+     * Returns true if the cluster the client talks to is OpenShift
+     */
+    public static boolean isOpenShift(KubernetesClient client) {
+        return get(client).isOpenShiftCluster(client);
+    }
+
+    /**
+     * Returns true if the cluster the client talks to is OpenShift and supports the given API group
+     */
+    public static boolean supportsOpenShiftAPIGroup(KubernetesClient client, String apiGroup) {
+        return get(client).supportsAPIGroup(client, apiGroup);
+    }
+
+    /**
+     * Returns the OpenShift client for the given client or null if the cluster is not OpenShift
+     */
+    public static OpenShiftClient getOpenShiftClientOrNull(KubernetesClient client) {
+        return get(client).getOpenShiftClient(client);
+    }
+
+    /**
+     * Discards the capabilities of the cluster with the given master URL so that they are probed again on next use
+     */
+    public static void invalidate(URL masterUrl) {
+        if (masterUrl != null) {
+            capabilities.remove(masterUrl);
+        }
+    }
+
+    /**
+     * Discards the capabilities of the cluster the client talks to so that they are probed again on next use
+     */
+    public static void invalidate(KubernetesClient client) {
+        invalidate(client.getMasterUrl());
+    }
+
+    public static void invalidateAll() {
+        capabilities.clear();
+    }
+
+    public static long getTimeToLiveMillis() {
+        return timeToLiveMillis;
+    }
+
+    /**
+     * Sets how long the capabilities of a cluster are cached before they are probed again
+     */
+    public static void setTimeToLiveMillis(long timeToLiveMillis) {
+        ClusterCapabilities.timeToLiveMillis = timeToLiveMillis;
+    }
+
+    public URL getMasterUrl() {
+        return masterUrl;
+    }
+
+    public boolean isExpired(long now) {
+        return now >= expires;
+    }
+
+    protected boolean isOpenShiftCluster(KubernetesClient client) {
+        Boolean answer = openShift;
+        if (answer == null) {
+            if (client instanceof OpenShiftClient) {
+                answer = true;
+            } else {
+                answer = hasOpenShiftRootPath(client);
+                if (answer == null) {
+                    return false;
+                }
+            }
+            openShift = answer;
+        }
+        return answer;
+    }
+
+    /**
+     * Returns whether the cluster supports the API group; only caching the answer if the cluster could be asked
+     * so that a transient failure doesn't disable the API group until the capabilities expire
+     */
+    protected boolean supportsAPIGroup(KubernetesClient client, String apiGroup) {
+        Boolean answer = apiGroups.get(apiGroup);
+        if (answer == null) {
+            if (!isOpenShiftCluster(client)) {
+                return false;
+            }
+            OpenShiftClient openShiftClient = getOpenShiftClient(client);
+            if (openShiftClient == null) {
+                return false;
+            }
+            try {
+                answer = probeAPIGroup(openShiftClient, apiGroup);
+            } catch (KubernetesClientException e) {
+                LOG.debug("Could not find out if " + masterUrl + " supports API group " + apiGroup + ": " + e, e);
+                return false;
+            }
+            apiGroups.putIfAbsent(apiGroup, answer);
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the OpenShift client adapted from the client or null if the cluster is not OpenShift;
+     * a failure to adapt the client is not cached so it is tried again on the next call
+     */
+    protected OpenShiftClient getOpenShiftClient(KubernetesClient client) {
+        if (client instanceof OpenShiftClient) {
+            return (OpenShiftClient) client;
+        }
+        if (!isOpenShiftCluster(client)) {
+            return null;
+        }
+        synchronized (openShiftClients) {
+            OpenShiftClient answer = openShiftClients.get(client);
+            if (answer == null) {
+                try {
+                    answer = adapt(client);
+                } catch (KubernetesClientException e) {
+                    LOG.debug("Could not adapt client for " + masterUrl + " to OpenShift: " + e, e);
+                } catch (OpenShiftNotAvailableException e) {
+                    LOG.debug("Could not adapt client for " + masterUrl + " to OpenShift: " + e, e);
+                }
+                if (answer != null) {
+                    openShiftClients.put(client, answer);
+                }
+            }
+            return answer;
+        }
+    }
+
+    protected OpenShiftClient adapt(KubernetesClient client) {
+        return client.adapt(OpenShiftClient.class);
+    }
+
+    protected boolean probeAPIGroup(OpenShiftClient openShiftClient, String apiGroup) {
+        return openShiftClient.supportsOpenShiftAPIGroup(apiGroup);
+    }
+
+    protected RootPaths rootPaths(KubernetesClient client) {
+        return client.rootPaths();
+    }
+
+    /**
+     * Returns whether the root paths of the API server include the OpenShift API or null if they are not known,
+     * such as when the root paths are forbidden or the API server cannot be reached
+     */
+    private Boolean hasOpenShiftRootPath(KubernetesClient client) {
+        RootPaths rootPaths;
+        try {
+            rootPaths = rootPaths(client);
+        } catch (KubernetesClientException e) {
+            LOG.debug("Could not find out if " + masterUrl + " is OpenShift: " + e, e);
+            return null;
+        }
+        if (rootPaths == null || rootPaths.getPaths() == null) {
+            return null;
+        }
+        for (String path : rootPaths.getPaths()) {
+            if (java.util.Objects.equals("/oapi", path) || java.util.Objects.equals("oapi", path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
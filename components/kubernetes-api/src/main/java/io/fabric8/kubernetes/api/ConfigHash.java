@@ -0,0 +1,155 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Computes a hash of the user configuration of an entity from its canonical JSON; with object keys sorted,
+ * null values omitted and the status and server managed metadata removed. So an entity and the same entity
+ * read back from the server have the same hash.
+ */
+public class ConfigHash {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    protected static final Set<String> ignoredMetadataProperties = new HashSet<>(Arrays.asList(
+            "creationTimestamp", "deletionGracePeriodSeconds", "deletionTimestamp", "generation",
+            "resourceVersion", "selfLink", "uid"));
+
+    /**
+     * Returns the hex encoded SHA-256 hash of the user configuration of the entity
+     */
+    public static String configHash(HasMetadata entity) {
+        return toHex(digest(canonicalJson(entity)));
+    }
+
+    /**
+     * Returns a copy of the entity annotated with the hash of its user configuration, leaving the entity unchanged
+     */
+    @SuppressWarnings("unchecked")
+    public static <T extends HasMetadata> T withConfigHash(T entity) {
+        String hash = configHash(entity);
+        T copy = (T) OBJECT_MAPPER.convertValue(entity, entity.getClass());
+        KubernetesHelper.getOrCreateAnnotations(copy).put(Annotations.Config.APPLIED_CONFIG_HASH, hash);
+        return copy;
+    }
+
+    /**
+     * Returns the hash annotated on the entity by {@link #withConfigHash(HasMetadata)} or null if there is none
+     */
+    public static String getAppliedConfigHash(HasMetadata entity) {
+        if (entity != null && entity.getMetadata() != null && entity.getMetadata().getAnnotations() != null) {
+            return entity.getMetadata().getAnnotations().get(Annotations.Config.APPLIED_CONFIG_HASH);
+        }
+        return null;
+    }
+
+    /**
+     * Returns the canonical JSON of the user configuration of the entity
+     */
+    public static String canonicalJson(HasMetadata entity) {
+        JsonNode tree = OBJECT_MAPPER.valueToTree(entity);
+        if (tree instanceof ObjectNode) {
+            ObjectNode objectNode = (ObjectNode) tree;
+            objectNode.remove("status");
+            JsonNode metadata = objectNode.get("metadata");
+            if (metadata instanceof ObjectNode) {
+                ObjectNode metadataNode = (ObjectNode) metadata;
+                metadataNode.remove(ignoredMetadataProperties);
+                JsonNode annotations = metadataNode.get("annotations");
+                if (annotations instanceof ObjectNode) {
+                    ((ObjectNode) annotations).remove(Annotations.Config.APPLIED_CONFIG_HASH);
+                    if (annotations.size() == 0) {
+                        metadataNode.remove("annotations");
+                    }
+                }
+            }
+        }
+        StringBuilder buffer = new StringBuilder();
+        appendCanonicalJson(buffer, tree);
+        return buffer.toString();
+    }
+
+    protected static void appendCanonicalJson(StringBuilder buffer, JsonNode node) {
+        if (node.isObject()) {
+            List<String> names = new ArrayList<>();
+            Iterator<String> iter = node.fieldNames();
+            while (iter.hasNext()) {
+                names.add(iter.next());
+            }
+            Collections.sort(names);
+            buffer.append('{');
+            boolean first = true;
+            for (String name : names) {
+                JsonNode value = node.get(name);
+                if (value == null || value.isNull()) {
+                    continue;
+                }
+                if (first) {
+                    first = false;
+                } else {
+                    buffer.append(',');
+                }
+                buffer.append(OBJECT_MAPPER.getNodeFactory().textNode(name).toString());
+                buffer.append(':');
+                appendCanonicalJson(buffer, value);
+            }
+            buffer.append('}');
+        } else if (node.isArray()) {
+            buffer.append('[');
+            for (int i = 0, size = node.size(); i < size; i++) {
+                if (i > 0) {
+                    buffer.append(',');
+                }
+                appendCanonicalJson(buffer, node.get(i));
+            }
+            buffer.append(']');
+        } else {
+            buffer.append(node.toString());
+        }
+    }
+
+    protected static byte[] digest(String text) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Failed to create SHA-256 digest. " + e, e);
+        }
+    }
+
+    protected static String toHex(byte[] bytes) {
+        StringBuilder buffer = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            buffer.append(Character.forDigit((b >> 4) & 0xf, 16));
+            buffer.append(Character.forDigit(b & 0xf, 16));
+        }
+        return buffer.toString();
+    }
+}
@@ -40,7 +40,6 @@ import io.fabric8.kubernetes.api.model.extensions.ReplicaSet;
 import io.fabric8.kubernetes.api.model.extensions.StatefulSet;
 import io.fabric8.kubernetes.client.DefaultKubernetesClient;
 import io.fabric8.kubernetes.client.KubernetesClient;
-import io.fabric8.kubernetes.client.KubernetesClientException;
 import io.fabric8.kubernetes.client.dsl.MixedOperation;
 import io.fabric8.kubernetes.client.dsl.Resource;
 import io.fabric8.openshift.api.model.BuildConfig;
@@ -58,7 +57,6 @@ import io.fabric8.openshift.api.model.TagReference;
 import io.fabric8.openshift.api.model.Template;
 import io.fabric8.openshift.client.OpenShiftAPIGroups;
 import io.fabric8.openshift.client.OpenShiftClient;
-import io.fabric8.openshift.client.OpenShiftNotAvailableException;
 import io.fabric8.utils.Files;
 import io.fabric8.utils.IOHelpers;
 import io.fabric8.utils.Objects;
@@ -75,6 +73,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.function.Predicate;
@@ -82,6 +81,7 @@ import java.util.function.Predicate;
 import static io.fabric8.kubernetes.api.KubernetesHelper.getKind;
 import static io.fabric8.kubernetes.api.KubernetesHelper.getName;
 import static io.fabric8.kubernetes.api.KubernetesHelper.getObjectId;
+import static io.fabric8.kubernetes.api.KubernetesHelper.getOrCreateAnnotations;
 import static io.fabric8.kubernetes.api.KubernetesHelper.getOrCreateLabels;
 import static io.fabric8.kubernetes.api.KubernetesHelper.getOrCreateMetadata;
 import static io.fabric8.kubernetes.api.KubernetesHelper.loadJson;
@@ -112,6 +112,11 @@ public class Controller {
     private String namesapce = KubernetesHelper.defaultNamespace();
     private boolean requireSecretsCreatedBeforeReplicationControllers;
     private boolean rollingUpgradePreserveScale = true;
+    private int applyThreads = 1;
+    private boolean prefetchLiveResources;
+    private boolean hashSkipMode;
+    private volatile LiveResources liveResources;
+    private final ThreadLocal<ApplyResult.Status> applyStatus = new ThreadLocal<>();
 
     public Controller() {
         this(new DefaultKubernetesClient());
@@ -155,8 +160,9 @@ public class Controller {
      * Applies the given JSON to the underlying REST APIs in a single operation without needing to explicitly parse first.
      */
     public String applyJson(File json) throws Exception {
-        Object dto = loadJson(json);
-        apply(dto, "REST call");
+        try (KubernetesResourceReader reader = KubernetesHelper.readJsonResources(new FileInputStream(json))) {
+            apply(reader, "REST call");
+        }
         return "";
     }
 
@@ -174,9 +180,9 @@ public class Controller {
      * Applies the given YAML to the underlying REST APIs in a single operation without needing to explicitly parse first.
      */
     public String applyYaml(File yaml) throws Exception {
-        String json = convertYamlToJson(yaml);
-        Object dto = loadJson(json);
-        apply(dto, "REST call");
+        try (KubernetesResourceReader reader = KubernetesHelper.readYamlResources(new FileInputStream(yaml))) {
+            apply(reader, "REST call");
+        }
         return "";
     }
 
@@ -189,25 +195,38 @@ public class Controller {
         return jsonObject.toString();
     }
 
-    private String convertYamlToJson(File yamlFile) throws FileNotFoundException {
-        Yaml yaml = new Yaml();
-        FileInputStream fstream = new FileInputStream(yamlFile);
-
-        Map<String, Object> map = (Map<String, Object>) yaml.load(fstream);
-        JSONObject jsonObject = new JSONObject(map);
-
-        return jsonObject.toString();
-    }
-
     /**
      * Applies the given JSON to the underlying REST APIs in a single operation without needing to explicitly parse first.
      */
     public String applyJson(InputStream json) throws Exception {
-        Object dto = loadJson(json);
-        apply(dto, "REST call");
+        try (KubernetesResourceReader reader = KubernetesHelper.readJsonResources(json)) {
+            apply(reader, "REST call");
+        }
         return "";
     }
 
+    /**
+     * Applies the resources of the reader as they are parsed, or once they have all been read if they are
+     * applied concurrently or their live state is prefetched
+     */
+    public void apply(KubernetesResourceReader reader, String sourceName) throws Exception {
+        if (applyThreads > 1 || prefetchLiveResources) {
+            KubernetesList list = new KubernetesList();
+            List<HasMetadata> items = new ArrayList<>();
+            HasMetadata entity;
+            while ((entity = reader.read()) != null) {
+                items.add(entity);
+            }
+            list.setItems(items);
+            applyList(list, sourceName);
+        } else {
+            HasMetadata entity;
+            while ((entity = reader.read()) != null) {
+                applyEntity(entity, sourceName);
+            }
+        }
+    }
+
     /**
      * Applies the given DTOs onto the Kubernetes master
      */
@@ -232,6 +251,22 @@ public class Controller {
      * Applies the given DTOs onto the Kubernetes master
      */
     public void applyEntity(Object dto, String sourceName) throws Exception {
+        try {
+            applyEntityByType(dto, sourceName);
+        } finally {
+            LiveResources live = liveResources;
+            if (live != null && dto instanceof HasMetadata) {
+                HasMetadata entity = (HasMetadata) dto;
+                live.invalidate(entity, getNamespace());
+                String namespace = KubernetesHelper.getNamespace(entity);
+                if (Strings.isNotBlank(namespace)) {
+                    live.invalidate(entity, namespace);
+                }
+            }
+        }
+    }
+
+    private void applyEntityByType(Object dto, String sourceName) throws Exception {
         if (dto instanceof Pod) {
             applyPod((Pod) dto, sourceName);
         } else if (dto instanceof ReplicationController) {
@@ -247,10 +282,11 @@ public class Controller {
         } else if (dto instanceof DeploymentConfig) {
             DeploymentConfig resource = (DeploymentConfig) dto;
             OpenShiftClient openShiftClient = getOpenShiftClientOrNull();
-            if (openShiftClient != null && openShiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.APPS)) {
-                applyResource(resource, sourceName, openShiftClient.deploymentConfigs());
+            if (supportsOpenShiftAPIGroup(OpenShiftAPIGroups.APPS)) {
+                applyResource(DeploymentConfig.class, resource, sourceName, openShiftClient.deploymentConfigs());
             } else {
                 LOG.warn("Not connected to OpenShift cluster so cannot apply entity " + dto);
+                applied(ApplyResult.Status.SKIPPED);
             }
         } else if (dto instanceof PolicyBinding) {
             applyPolicyBinding((PolicyBinding) dto, sourceName);
@@ -259,10 +295,11 @@ public class Controller {
         } else if (dto instanceof Role) {
             Role resource = (Role) dto;
             OpenShiftClient openShiftClient = getOpenShiftClientOrNull();
-            if (openShiftClient != null && openShiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.AUTHORIZATION)) {
-                applyResource(resource, sourceName, openShiftClient.roles());
+            if (supportsOpenShiftAPIGroup(OpenShiftAPIGroups.AUTHORIZATION)) {
+                applyResource(Role.class, resource, sourceName, openShiftClient.roles());
             } else {
                 LOG.warn("Not connected to OpenShift cluster so cannot apply entity " + dto);
+                applied(ApplyResult.Status.SKIPPED);
             }
         } else if (dto instanceof ImageStream) {
             applyImageStream((ImageStream) dto, sourceName);
@@ -275,17 +312,17 @@ public class Controller {
         } else if (dto instanceof Secret) {
             applySecret((Secret) dto, sourceName);
         } else if (dto instanceof ConfigMap) {
-            applyResource((ConfigMap) dto, sourceName, kubernetesClient.configMaps());
+            applyResource(ConfigMap.class, (ConfigMap) dto, sourceName, kubernetesClient.configMaps());
         } else if (dto instanceof DaemonSet) {
-            applyResource((DaemonSet) dto, sourceName, kubernetesClient.extensions().daemonSets());
+            applyResource(DaemonSet.class, (DaemonSet) dto, sourceName, kubernetesClient.extensions().daemonSets());
         } else if (dto instanceof Deployment) {
-            applyResource((Deployment) dto, sourceName, kubernetesClient.extensions().deployments());
+            applyResource(Deployment.class, (Deployment) dto, sourceName, kubernetesClient.extensions().deployments());
         } else if (dto instanceof ReplicaSet) {
-            applyResource((ReplicaSet) dto, sourceName, kubernetesClient.extensions().replicaSets());
+            applyResource(ReplicaSet.class, (ReplicaSet) dto, sourceName, kubernetesClient.extensions().replicaSets());
         } else if (dto instanceof StatefulSet) {
-            applyResource((StatefulSet) dto, sourceName, kubernetesClient.apps().statefulSets());
+            applyResource(StatefulSet.class, (StatefulSet) dto, sourceName, kubernetesClient.apps().statefulSets());
         } else if (dto instanceof Ingress) {
-            applyResource((Ingress) dto, sourceName, kubernetesClient.extensions().ingresses());
+            applyResource(Ingress.class, (Ingress) dto, sourceName, kubernetesClient.extensions().ingresses());
         } else if (dto instanceof PersistentVolumeClaim) {
             applyPersistentVolumeClaim((PersistentVolumeClaim) dto, sourceName);
         } else if (dto instanceof HasMetadata) {
@@ -298,6 +335,7 @@ public class Controller {
                 }
                 LOG.info("Applying " + getKind(entity) + " " + getName(entity) + " from " + sourceName);
                 kubernetesClient.resource(entity).inNamespace(namespace).createOrReplace();
+                applied(ApplyResult.Status.UPDATED);
             } catch (Exception e) {
                 onApplyError("Failed to create " + getKind(entity) + " from " + sourceName + ". " + e, e);
             }
@@ -308,12 +346,13 @@ public class Controller {
 
     public void applyOAuthClient(OAuthClient entity, String sourceName) {
         OpenShiftClient openShiftClient = getOpenShiftClientOrNull();
-        if (openShiftClient != null && openShiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.OAUTH)) {
+        if (supportsOpenShiftAPIGroup(OpenShiftAPIGroups.OAUTH)) {
             if (supportOAuthClients) {
                 String id = getName(entity);
                 Objects.notNull(id, "No name for " + entity + " " + sourceName);
                 if (isServicesOnlyMode()) {
                     LOG.debug("Only processing Services right now so ignoring OAuthClient: " + id);
+                    applied(ApplyResult.Status.SKIPPED);
                     return;
                 }
                 OAuthClient old = openShiftClient.oAuthClients().withName(id).get();
@@ -324,6 +363,7 @@ public class Controller {
                     }
                     if (UserConfigurationCompare.configEqual(entity, old)) {
                         LOG.info("OAuthClient has not changed so not doing anything");
+                        applied(ApplyResult.Status.UNCHANGED);
                     } else {
                         if (isRecreateMode()) {
                             openShiftClient.oAuthClients().withName(id).delete();
@@ -332,6 +372,7 @@ public class Controller {
                             try {
                                 Object answer = openShiftClient.oAuthClients().withName(id).replace(entity);
                                 LOG.info("Updated OAuthClient result: " + answer);
+                                applied(ApplyResult.Status.UPDATED);
                             } catch (Exception e) {
                                 onApplyError("Failed to update OAuthClient from " + sourceName + ". " + e + ". " + entity, e);
                             }
@@ -340,6 +381,7 @@ public class Controller {
                 } else {
                     if (!isAllowCreate()) {
                         LOG.warn("Creation disabled so not creating an OAuthClient from " + sourceName + " name " + getName(entity));
+                        applied(ApplyResult.Status.SKIPPED);
                     } else {
                         doCreateOAuthClient(entity, sourceName);
                     }
@@ -350,10 +392,11 @@ public class Controller {
 
     protected void doCreateOAuthClient(OAuthClient entity, String sourceName) {
         OpenShiftClient openShiftClient = getOpenShiftClientOrNull();
-        if (openShiftClient != null && openShiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.OAUTH)) {
+        if (supportsOpenShiftAPIGroup(OpenShiftAPIGroups.OAUTH)) {
             Object result = null;
             try {
                 result = openShiftClient.oAuthClients().create(entity);
+                applied(ApplyResult.Status.CREATED);
             } catch (Exception e) {
                 onApplyError("Failed to create OAuthClient from " + sourceName + ". " + e + ". " + entity, e);
             }
@@ -373,7 +416,7 @@ public class Controller {
      */
     public void installTemplate(Template entity, String sourceName) {
         OpenShiftClient openShiftClient = getOpenShiftClientOrNull();
-        if (openShiftClient == null || !openShiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.TEMPLATE)) {
+        if (!supportsOpenShiftAPIGroup(OpenShiftAPIGroups.TEMPLATE)) {
             // lets not install the template on Kubernetes!
             return;
         }
@@ -381,10 +424,11 @@ public class Controller {
             String namespace = getNamespace();
             String id = getName(entity);
             Objects.notNull(id, "No name for " + entity + " " + sourceName);
-            Template old = openShiftClient.templates().inNamespace(namespace).withName(id).get();
+            Template old = getLiveResource(Template.class, entity, namespace, id, openShiftClient.templates().inNamespace(namespace).withName(id));
             if (isRunning(old)) {
                 if (UserConfigurationCompare.configEqual(entity, old)) {
                     LOG.info("Template has not changed so not doing anything");
+                    applied(ApplyResult.Status.UNCHANGED);
                 } else {
                     boolean recreateMode = isRecreateMode();
                     // TODO seems you can't update templates right now
@@ -405,6 +449,7 @@ public class Controller {
             } else {
                 if (!isAllowCreate()) {
                     LOG.warn("Creation disabled so not creating a Template from " + sourceName + " namespace " + namespace + " name " + getName(entity));
+                    applied(ApplyResult.Status.SKIPPED);
                 } else {
                     doCreateTemplate(entity, namespace, sourceName);
                 }
@@ -412,21 +457,19 @@ public class Controller {
         }
     }
 
+    /**
+     * Returns the OpenShift client for the cluster or null if it is not OpenShift; the answer is cached per
+     * master URL by {@link ClusterCapabilities}
+     */
     public OpenShiftClient getOpenShiftClientOrNull() {
-        OpenShiftClient openShiftClient = null;
-        if (kubernetesClient instanceof OpenShiftClient) {
-            openShiftClient = (OpenShiftClient) kubernetesClient;
-        }
-        if (openShiftClient == null) {
-            try {
-                openShiftClient = kubernetesClient.adapt(OpenShiftClient.class);
-            } catch (KubernetesClientException e) {
-                // ignore
-            } catch (OpenShiftNotAvailableException e) {
-                // ignore
-            }
-        }
-        return openShiftClient;
+        return ClusterCapabilities.getOpenShiftClientOrNull(kubernetesClient);
+    }
+
+    /**
+     * Returns true if the cluster is OpenShift and supports the given API group
+     */
+    public boolean supportsOpenShiftAPIGroup(String apiGroup) {
+        return ClusterCapabilities.supportsOpenShiftAPIGroup(kubernetesClient, apiGroup);
     }
 
     public OpenShiftClient getOpenShiftClientOrJenkinshift() {
@@ -443,11 +486,12 @@ public class Controller {
 
     protected void doCreateTemplate(Template entity, String namespace, String sourceName) {
         OpenShiftClient openShiftClient = getOpenShiftClientOrNull();
-        if (openShiftClient != null && openShiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.TEMPLATE)) {
+        if (supportsOpenShiftAPIGroup(OpenShiftAPIGroups.TEMPLATE)) {
             LOG.info("Creating a Template from " + sourceName + " namespace " + namespace + " name " + getName(entity));
             try {
                 Object answer = openShiftClient.templates().inNamespace(namespace).create(entity);
                 logGeneratedEntity("Created Template: ", namespace, entity, answer);
+                applied(ApplyResult.Status.CREATED);
             } catch (Exception e) {
                 onApplyError("Failed to Template entity from " + sourceName + ". " + e + ". " + entity, e);
             }
@@ -463,12 +507,14 @@ public class Controller {
         Objects.notNull(id, "No name for " + serviceAccount + " " + sourceName);
         if (isServicesOnlyMode()) {
             LOG.debug("Only processing Services right now so ignoring ServiceAccount: " + id);
+            applied(ApplyResult.Status.SKIPPED);
             return;
         }
-        ServiceAccount old = kubernetesClient.serviceAccounts().inNamespace(namespace).withName(id).get();
+        ServiceAccount old = getLiveResource(ServiceAccount.class, serviceAccount, namespace, id, kubernetesClient.serviceAccounts().inNamespace(namespace).withName(id));
         if (isRunning(old)) {
             if (UserConfigurationCompare.configEqual(serviceAccount, old)) {
                 LOG.info("ServiceAccount has not changed so not doing anything");
+                applied(ApplyResult.Status.UNCHANGED);
             } else {
                 if (isRecreateMode()) {
                     kubernetesClient.serviceAccounts().inNamespace(namespace).withName(id).delete();
@@ -478,6 +524,7 @@ public class Controller {
                     try {
                         Object answer = kubernetesClient.serviceAccounts().inNamespace(namespace).withName(id).replace(serviceAccount);
                         logGeneratedEntity("Updated ServiceAccount: ", namespace, serviceAccount, answer);
+                        applied(ApplyResult.Status.UPDATED);
                     } catch (Exception e) {
                         onApplyError("Failed to update ServiceAccount from " + sourceName + ". " + e + ". " + serviceAccount, e);
                     }
@@ -486,6 +533,7 @@ public class Controller {
         } else {
             if (!isAllowCreate()) {
                 LOG.warn("Creation disabled so not creating a ServiceAccount from " + sourceName + " namespace " + namespace + " name " + getName(serviceAccount));
+                applied(ApplyResult.Status.SKIPPED);
             } else {
                 doCreateServiceAccount(serviceAccount, namespace, sourceName);
             }
@@ -503,6 +551,7 @@ public class Controller {
                 answer = kubernetesClient.serviceAccounts().inNamespace(getNamespace()).create(serviceAccount);
             }
             logGeneratedEntity("Created ServiceAccount: ", namespace, serviceAccount, answer);
+            applied(ApplyResult.Status.CREATED);
         } catch (Exception e) {
             onApplyError("Failed to create ServiceAccount from " + sourceName + ". " + e + ". " + serviceAccount, e);
         }
@@ -516,12 +565,14 @@ public class Controller {
         Objects.notNull(id, "No name for " + entity + " " + sourceName);
         if (isServicesOnlyMode()) {
             LOG.debug("Only processing Services right now so ignoring PersistentVolumeClaim: " + id);
+            applied(ApplyResult.Status.SKIPPED);
             return;
         }
-        PersistentVolumeClaim old = kubernetesClient.persistentVolumeClaims().inNamespace(namespace).withName(id).get();
+        PersistentVolumeClaim old = getLiveResource(PersistentVolumeClaim.class, entity, namespace, id, kubernetesClient.persistentVolumeClaims().inNamespace(namespace).withName(id));
         if (isRunning(old)) {
             if (UserConfigurationCompare.configEqual(entity, old)) {
                 LOG.info("PersistentVolumeClaim has not changed so not doing anything");
+                applied(ApplyResult.Status.UNCHANGED);
             } else {
                 if (alwaysRecreate || isRecreateMode()) {
                     kubernetesClient.persistentVolumeClaims().inNamespace(namespace).withName(id).delete();
@@ -531,6 +582,7 @@ public class Controller {
                     try {
                         Object answer = kubernetesClient.persistentVolumeClaims().inNamespace(namespace).withName(id).replace(entity);
                         logGeneratedEntity("Updated PersistentVolumeClaim: ", namespace, entity, answer);
+                        applied(ApplyResult.Status.UPDATED);
                     } catch (Exception e) {
                         onApplyError("Failed to update PersistentVolumeClaim from " + sourceName + ". " + e + ". " + entity, e);
                     }
@@ -539,6 +591,7 @@ public class Controller {
         } else {
             if (!isAllowCreate()) {
                 LOG.warn("Creation disabled so not creating a PersistentVolumeClaim from " + sourceName + " namespace " + namespace + " name " + getName(entity));
+                applied(ApplyResult.Status.SKIPPED);
             } else {
                 doCreatePersistentVolumeClaim(entity, namespace, sourceName);
             }
@@ -555,6 +608,7 @@ public class Controller {
                 answer = kubernetesClient.persistentVolumeClaims().inNamespace(getNamespace()).create(entity);
             }
             logGeneratedEntity("Created PersistentVolumeClaim: ", namespace, entity, answer);
+            applied(ApplyResult.Status.CREATED);
         } catch (Exception e) {
             onApplyError("Failed to create PersistentVolumeClaim from " + sourceName + ". " + e + ". " + entity, e);
         }
@@ -566,15 +620,17 @@ public class Controller {
         Objects.notNull(id, "No name for " + secret + " " + sourceName);
         if (isServicesOnlyMode()) {
             LOG.debug("Only processing Services right now so ignoring Secrets: " + id);
+            applied(ApplyResult.Status.SKIPPED);
             return;
         }
 
-        Secret old = kubernetesClient.secrets().inNamespace(namespace).withName(id).get();
+        Secret old = getLiveResource(Secret.class, secret, namespace, id, kubernetesClient.secrets().inNamespace(namespace).withName(id));
         // check if the secret already exists or not
         if (isRunning(old)) {
             // if the secret already exists and is the same, then do nothing
             if (UserConfigurationCompare.configEqual(secret, old)) {
                 LOG.info("Secret has not changed so not doing anything");
+                applied(ApplyResult.Status.UNCHANGED);
                 return;
             } else {
                 if (isRecreateMode()) {
@@ -585,6 +641,7 @@ public class Controller {
                     try {
                         Object answer = kubernetesClient.secrets().inNamespace(namespace).withName(id).replace(secret);
                         logGeneratedEntity("Updated Secret:", namespace, secret, answer);
+                        applied(ApplyResult.Status.UPDATED);
                     } catch (Exception e) {
                         onApplyError("Failed to update secret from " + sourceName + ". " + e + ". " + secret, e);
                     }
@@ -593,6 +650,7 @@ public class Controller {
         } else {
             if (!isAllowCreate()) {
                 LOG.warn("Creation disabled so not creating a Secret from " + sourceName + " namespace " + namespace + " name " + getName(secret));
+                applied(ApplyResult.Status.SKIPPED);
             } else {
                 doCreateSecret(secret, namespace, sourceName);
             }
@@ -610,6 +668,7 @@ public class Controller {
                 answer = kubernetesClient.secrets().inNamespace(getNamespace()).create(secret);
             }
             logGeneratedEntity("Created Secret: ", namespace, secret, answer);
+            applied(ApplyResult.Status.CREATED);
         } catch (Exception e) {
             onApplyError("Failed to create Secret from " + sourceName + ". " + e + ". " + secret, e);
         }
@@ -627,18 +686,6 @@ public class Controller {
             if (Strings.isNullOrBlank(name)) {
                 LOG.warn("No name for the entity " + entity);
             } else {
-                String fileName = name + ".json";
-                File file = new File(namespaceDir, fileName);
-                if (file.exists()) {
-                    int idx = 1;
-                    while (true) {
-                        fileName = name + "-" + idx++ + ".json";
-                        file = new File(namespaceDir, fileName);
-                        if (!file.exists()) {
-                            break;
-                        }
-                    }
-                }
                 String text;
                 if (result instanceof String) {
                     text = result.toString();
@@ -654,19 +701,36 @@ public class Controller {
                         }
                     }
                 }
-                try {
-                    IOHelpers.writeFully(file, text);
-                    Object fileLocation = file;
-                    if (basedir != null) {
-                        String path = Files.getRelativePath(basedir, file);
-                        if (path != null) {
-                            fileLocation = Strings.stripPrefix(path, "/");
+                File file;
+                // entities may be applied concurrently so pick the file name and write it in one go
+                synchronized (this) {
+                    String fileName = name + ".json";
+                    file = new File(namespaceDir, fileName);
+                    if (file.exists()) {
+                        int idx = 1;
+                        while (true) {
+                            fileName = name + "-" + idx++ + ".json";
+                            file = new File(namespaceDir, fileName);
+                            if (!file.exists()) {
+                                break;
+                            }
                         }
                     }
-                    LOG.info(message + fileLocation);
-                } catch (IOException e) {
-                    LOG.warn("Failed to write to file " + file + ". " + e, e);
+                    try {
+                        IOHelpers.writeFully(file, text);
+                    } catch (IOException e) {
+                        LOG.warn("Failed to write to file " + file + ". " + e, e);
+                        return;
+                    }
+                }
+                Object fileLocation = file;
+                if (basedir != null) {
+                    String path = Files.getRelativePath(basedir, file);
+                    if (path != null) {
+                        fileLocation = Strings.stripPrefix(path, "/");
+                    }
                 }
+                LOG.info(message + fileLocation);
                 return;
             }
         }
@@ -734,18 +798,21 @@ public class Controller {
 
     public void applyRoute(Route entity, String sourceName) {
         OpenShiftClient openShiftClient = getOpenShiftClientOrNull();
-        if (openShiftClient != null && openShiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.ROUTE)) {
+        if (supportsOpenShiftAPIGroup(OpenShiftAPIGroups.ROUTE)) {
             String id = getName(entity);
             Objects.notNull(id, "No name for " + entity + " " + sourceName);
             String namespace = KubernetesHelper.getNamespace(entity);
             if (Strings.isNullOrBlank(namespace)) {
                 namespace = getNamespace();
             }
-            Route route = openShiftClient.routes().inNamespace(namespace).withName(id).get();
-            if (route == null) {
+            Route route = getLiveResource(Route.class, entity, namespace, id, openShiftClient.routes().inNamespace(namespace).withName(id));
+            if (route != null) {
+                applied(ApplyResult.Status.UNCHANGED);
+            } else {
                 try {
                     LOG.info("Creating Route " + namespace + ":" + id + " " + KubernetesHelper.summaryText(entity));
                     openShiftClient.routes().inNamespace(namespace).create(entity);
+                    applied(ApplyResult.Status.CREATED);
                 } catch (Exception e) {
                     onApplyError("Failed to create Route from " + sourceName + ". " + e + ". " + entity, e);
                 }
@@ -764,10 +831,11 @@ public class Controller {
                 namespace = getNamespace();
             }
             applyNamespace(namespace);
-            BuildConfig old = openShiftClient.buildConfigs().inNamespace(namespace).withName(id).get();
+            BuildConfig old = getLiveResource(BuildConfig.class, entity, namespace, id, openShiftClient.buildConfigs().inNamespace(namespace).withName(id));
             if (isRunning(old)) {
                 if (UserConfigurationCompare.configEqual(entity, old)) {
                     LOG.info("BuildConfig has not changed so not doing anything");
+                    applied(ApplyResult.Status.UNCHANGED);
                 } else {
                     if (isRecreateMode()) {
                         LOG.info("Deleting BuildConfig: " + id);
@@ -782,6 +850,7 @@ public class Controller {
                             metadata.setResourceVersion(resourceVersion);
                             Object answer = openShiftClient.buildConfigs().inNamespace(namespace).withName(id).replace(entity);
                             logGeneratedEntity("Updated BuildConfig: ", namespace, entity, answer);
+                            applied(ApplyResult.Status.UPDATED);
                         } catch (Exception e) {
                             onApplyError("Failed to update BuildConfig from " + sourceName + ". " + e + ". " + entity, e);
                         }
@@ -790,6 +859,7 @@ public class Controller {
             } else {
                 if (!isAllowCreate()) {
                     LOG.warn("Creation disabled so not creating BuildConfig from " + sourceName + " namespace " + namespace + " name " + getName(entity));
+                    applied(ApplyResult.Status.SKIPPED);
                 } else {
                     doCreateBuildConfig(entity, namespace, sourceName);
                 }
@@ -802,6 +872,7 @@ public class Controller {
         if (openShiftClient != null) {
             try {
                 openShiftClient.buildConfigs().inNamespace(namespace).create(entity);
+                applied(ApplyResult.Status.CREATED);
             } catch (Exception e) {
                 onApplyError("Failed to create BuildConfig from " + sourceName + ". " + e, e);
             }
@@ -819,10 +890,11 @@ public class Controller {
                 namespace = getNamespace();
             }
             applyNamespace(namespace);
-            RoleBinding old = openShiftClient.roleBindings().inNamespace(namespace).withName(id).get();
+            RoleBinding old = getLiveResource(RoleBinding.class, entity, namespace, id, openShiftClient.roleBindings().inNamespace(namespace).withName(id));
             if (isRunning(old)) {
                 if (UserConfigurationCompare.configEqual(entity, old)) {
                     LOG.info("RoleBinding has not changed so not doing anything");
+                    applied(ApplyResult.Status.UNCHANGED);
                 } else {
                     if (isRecreateMode()) {
                         LOG.info("Deleting RoleBinding: " + id);
@@ -837,6 +909,7 @@ public class Controller {
                             metadata.setResourceVersion(resourceVersion);
                             Object answer = openShiftClient.roleBindings().inNamespace(namespace).withName(id).replace(entity);
                             logGeneratedEntity("Updated RoleBinding: ", namespace, entity, answer);
+                            applied(ApplyResult.Status.UPDATED);
                         } catch (Exception e) {
                             onApplyError("Failed to update RoleBinding from " + sourceName + ". " + e + ". " + entity, e);
                         }
@@ -845,6 +918,7 @@ public class Controller {
             } else {
                 if (!isAllowCreate()) {
                     LOG.warn("Creation disabled so not creating RoleBinding from " + sourceName + " namespace " + namespace + " name " + getName(entity));
+                    applied(ApplyResult.Status.SKIPPED);
                 } else {
                     doCreateRoleBinding(entity, namespace, sourceName);
                 }
@@ -857,6 +931,7 @@ public class Controller {
         if (openShiftClient != null) {
             try {
                 openShiftClient.roleBindings().inNamespace(namespace).create(entity);
+                applied(ApplyResult.Status.CREATED);
             } catch (Exception e) {
                 onApplyError("Failed to create RoleBinding from " + sourceName + ". " + e, e);
             }
@@ -874,10 +949,11 @@ public class Controller {
                 namespace = getNamespace();
             }
             applyNamespace(namespace);
-            PolicyBinding old = openShiftClient.policyBindings().inNamespace(namespace).withName(id).get();
+            PolicyBinding old = getLiveResource(PolicyBinding.class, entity, namespace, id, openShiftClient.policyBindings().inNamespace(namespace).withName(id));
             if (isRunning(old)) {
                 if (UserConfigurationCompare.configEqual(entity, old)) {
                     LOG.info("PolicyBinding has not changed so not doing anything");
+                    applied(ApplyResult.Status.UNCHANGED);
                 } else {
                     if (isRecreateMode()) {
                         LOG.info("Deleting PolicyBinding: " + id);
@@ -892,6 +968,7 @@ public class Controller {
                             metadata.setResourceVersion(resourceVersion);
                             Object answer = openShiftClient.policyBindings().inNamespace(namespace).withName(id).replace(entity);
                             logGeneratedEntity("Updated PolicyBinding: ", namespace, entity, answer);
+                            applied(ApplyResult.Status.UPDATED);
                         } catch (Exception e) {
                             onApplyError("Failed to update PolicyBinding from " + sourceName + ". " + e + ". " + entity, e);
                         }
@@ -900,6 +977,7 @@ public class Controller {
             } else {
                 if (!isAllowCreate()) {
                     LOG.warn("Creation disabled so not creating PolicyBinding from " + sourceName + " namespace " + namespace + " name " + getName(entity));
+                    applied(ApplyResult.Status.SKIPPED);
                 } else {
                     doCreatePolicyBinding(entity, namespace, sourceName);
                 }
@@ -912,6 +990,7 @@ public class Controller {
         if (openShiftClient != null) {
             try {
                 openShiftClient.policyBindings().inNamespace(namespace).create(entity);
+                applied(ApplyResult.Status.CREATED);
             } catch (Exception e) {
                 onApplyError("Failed to create PolicyBinding from " + sourceName + ". " + e, e);
             }
@@ -920,20 +999,22 @@ public class Controller {
 
     public void applyImageStream(ImageStream entity, String sourceName) {
         OpenShiftClient openShiftClient = getOpenShiftClientOrNull();
-        if (openShiftClient != null && openShiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.IMAGE)) {
+        if (supportsOpenShiftAPIGroup(OpenShiftAPIGroups.IMAGE)) {
             String kind = getKind(entity);
             String name = getName(entity);
             String namespace = getNamespace();
             try {
                 Resource<ImageStream, DoneableImageStream> resource = openShiftClient.imageStreams().inNamespace(namespace).withName(name);
-                ImageStream old = resource.get();
+                ImageStream old = getLiveResource(ImageStream.class, entity, namespace, name, resource);
                 if (old == null) {
                     LOG.info("Creating " + kind + " " + name + " from " + sourceName);
                     resource.create(entity);
+                    applied(ApplyResult.Status.CREATED);
                 } else {
                     LOG.info("Updating " + kind + " " + name + " from " + sourceName);
                     copyAllImageStreamTags(entity, old);
                     resource.replace(old);
+                    applied(ApplyResult.Status.UPDATED);
                 }
                 openShiftClient.resource(entity).inNamespace(namespace).apply();
             } catch (Exception e) {
@@ -990,24 +1071,203 @@ public class Controller {
     public void applyList(KubernetesList list, String sourceName) throws Exception {
         List<HasMetadata> entities = list.getItems();
         if (entities != null) {
-            for (Object entity : entities) {
-                applyEntity(entity, sourceName);
+            boolean prefetch = prefetchLiveResources && liveResources == null;
+            if (prefetch) {
+                prefetchLiveResources(entities, false);
+            }
+            try {
+                if (applyThreads > 1) {
+                    applyAll(entities, sourceName);
+                } else {
+                    for (Object entity : entities) {
+                        applyEntity(entity, sourceName);
+                    }
+                }
+            } finally {
+                if (prefetch) {
+                    clearLiveResources();
+                }
+            }
+        }
+    }
+
+    /**
+     * Lists the live resources once for each kind and namespace of the given entities, so that applying
+     * them is decided against an in memory index instead of a GET per resource. If watch is enabled the
+     * index is kept up to date until {@link #clearLiveResources()} is called, so it can be reused for
+     * later applies.
+     */
+    public void prefetchLiveResources(Collection<?> entities, boolean watch) {
+        LiveResources live = liveResources;
+        if (live == null) {
+            live = new LiveResources(watch);
+            liveResources = live;
+        }
+        String defaultNamespace = getNamespace();
+        for (Object entity : entities) {
+            if (entity instanceof HasMetadata) {
+                HasMetadata resource = (HasMetadata) entity;
+                MixedOperation<? extends HasMetadata, ?, ?, ?> operation = getOperation(resource);
+                if (operation != null) {
+                    String kind = getKind(resource);
+                    if (Strings.isNotBlank(defaultNamespace)) {
+                        live.load(kind, defaultNamespace, operation);
+                    }
+                    String namespace = KubernetesHelper.getNamespace(resource);
+                    if (Strings.isNotBlank(namespace) && !namespace.equals(defaultNamespace)) {
+                        live.load(kind, namespace, operation);
+                    }
+                }
             }
         }
     }
 
+    /**
+     * Discards the live resources loaded by {@link #prefetchLiveResources(Collection, boolean)} closing any watches
+     */
+    public void clearLiveResources() {
+        LiveResources live = liveResources;
+        liveResources = null;
+        if (live != null) {
+            live.close();
+        }
+    }
+
+    /**
+     * Returns the live state of the resource from the prefetched resources if they are known,
+     * otherwise looks it up. A null type always looks the resource up.
+     */
+    protected <T extends HasMetadata> T getLiveResource(Class<T> type, T entity, String namespace, String name, Resource<T, ?> resource) {
+        LiveResources live = liveResources;
+        String kind = getKind(entity);
+        if (type != null && live != null && live.isIndexed(kind, namespace, name)) {
+            HasMetadata answer = live.get(kind, namespace, name);
+            if (answer == null || type.isInstance(answer)) {
+                return type.cast(answer);
+            }
+        }
+        return resource.get();
+    }
+
+    /**
+     * Returns the operation used to list the kind of the given resource or null if it is not prefetched
+     */
+    protected MixedOperation<? extends HasMetadata, ?, ?, ?> getOperation(HasMetadata entity) {
+        if (entity instanceof Service) {
+            return kubernetesClient.services();
+        } else if (entity instanceof ReplicationController) {
+            return kubernetesClient.replicationControllers();
+        } else if (entity instanceof Pod) {
+            return kubernetesClient.pods();
+        } else if (entity instanceof Secret) {
+            return kubernetesClient.secrets();
+        } else if (entity instanceof ServiceAccount) {
+            return kubernetesClient.serviceAccounts();
+        } else if (entity instanceof PersistentVolumeClaim) {
+            return kubernetesClient.persistentVolumeClaims();
+        } else if (entity instanceof ConfigMap) {
+            return kubernetesClient.configMaps();
+        } else if (entity instanceof DaemonSet) {
+            return kubernetesClient.extensions().daemonSets();
+        } else if (entity instanceof Deployment) {
+            return kubernetesClient.extensions().deployments();
+        } else if (entity instanceof ReplicaSet) {
+            return kubernetesClient.extensions().replicaSets();
+        } else if (entity instanceof StatefulSet) {
+            return kubernetesClient.apps().statefulSets();
+        } else if (entity instanceof Ingress) {
+            return kubernetesClient.extensions().ingresses();
+        } else if (entity instanceof BuildConfig) {
+            OpenShiftClient openShiftClient = getOpenShiftClientOrJenkinshift();
+            return openShiftClient != null ? openShiftClient.buildConfigs() : null;
+        }
+        OpenShiftClient openShiftClient = getOpenShiftClientOrNull();
+        if (openShiftClient != null) {
+            if (entity instanceof DeploymentConfig && supportsOpenShiftAPIGroup(OpenShiftAPIGroups.APPS)) {
+                return openShiftClient.deploymentConfigs();
+            } else if (entity instanceof Template && supportsOpenShiftAPIGroup(OpenShiftAPIGroups.TEMPLATE)) {
+                return openShiftClient.templates();
+            } else if (entity instanceof Route && supportsOpenShiftAPIGroup(OpenShiftAPIGroups.ROUTE)) {
+                return openShiftClient.routes();
+            } else if (entity instanceof ImageStream && supportsOpenShiftAPIGroup(OpenShiftAPIGroups.IMAGE)) {
+                return openShiftClient.imageStreams();
+            } else if (entity instanceof Role && supportsOpenShiftAPIGroup(OpenShiftAPIGroups.AUTHORIZATION)) {
+                return openShiftClient.roles();
+            } else if (entity instanceof RoleBinding) {
+                return openShiftClient.roleBindings();
+            } else if (entity instanceof PolicyBinding) {
+                return openShiftClient.policyBindings();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Applies the entities in dependency order using up to {@link #getApplyThreads()} threads,
+     * returning the outcome for each entity in the order they were given
+     */
+    public List<ApplyResult> applyAll(Collection<?> entities, String sourceName) throws Exception {
+        return new ApplyEngine(this, applyThreads).apply(entities, sourceName);
+    }
+
+    /**
+     * Applies the given entity returning the outcome rather than throwing an exception if it fails
+     */
+    public ApplyResult applyWithResult(Object entity, String sourceName) {
+        String kind = null;
+        String namespace = null;
+        String name = null;
+        if (entity instanceof HasMetadata) {
+            HasMetadata hasMetadata = (HasMetadata) entity;
+            kind = getKind(hasMetadata);
+            namespace = KubernetesHelper.getNamespace(hasMetadata);
+            name = getName(hasMetadata);
+        } else if (entity != null) {
+            kind = entity.getClass().getSimpleName();
+        }
+        if (Strings.isNullOrBlank(namespace)) {
+            namespace = getNamespace();
+        }
+        long start = System.currentTimeMillis();
+        applyStatus.remove();
+        Exception error = null;
+        try {
+            applyEntity(entity, sourceName);
+        } catch (Exception e) {
+            error = e;
+            applied(ApplyResult.Status.FAILED);
+        }
+        ApplyResult.Status status = applyStatus.get();
+        applyStatus.remove();
+        if (status == null) {
+            status = ApplyResult.Status.SKIPPED;
+        }
+        return new ApplyResult(kind, namespace, name, status, error, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Records the outcome of the entity currently being applied on this thread
+     */
+    protected void applied(ApplyResult.Status status) {
+        applyStatus.set(status);
+    }
+
     public void applyService(Service service, String sourceName) throws Exception {
         String namespace = getNamespace();
         String id = getName(service);
         Objects.notNull(id, "No name for " + service + " " + sourceName);
         if (isIgnoreServiceMode()) {
             LOG.debug("Ignoring Service: " + namespace + ":" + id);
+            applied(ApplyResult.Status.SKIPPED);
             return;
         }
-        Service old = kubernetesClient.services().inNamespace(namespace).withName(id).get();
+        Service old = getLiveResource(Service.class, service, namespace, id, kubernetesClient.services().inNamespace(namespace).withName(id));
+        service = applyConfigHash(service);
+        boolean configHashUnchanged = isConfigHashUnchanged(service, old);
         if (isRunning(old)) {
-            if (UserConfigurationCompare.configEqual(service, old)) {
+            if (configHashUnchanged || UserConfigurationCompare.configEqual(service, old)) {
                 LOG.info("Service has not changed so not doing anything");
+                applied(ApplyResult.Status.UNCHANGED);
             } else {
                 if (isRecreateMode()) {
                     LOG.info("Deleting Service: " + id);
@@ -1018,6 +1278,7 @@ public class Controller {
                     try {
                         Object answer = kubernetesClient.services().inNamespace(namespace).withName(id).replace(service);
                         logGeneratedEntity("Updated Service: ", namespace, service, answer);
+                        applied(ApplyResult.Status.UPDATED);
                     } catch (Exception e) {
                         onApplyError("Failed to update Service from " + sourceName + ". " + e + ". " + service, e);
                     }
@@ -1026,6 +1287,7 @@ public class Controller {
         } else {
             if (!isAllowCreate()) {
                 LOG.warn("Creation disabled so not creating a Service from " + sourceName + " namespace " + namespace + " name " + getName(service));
+                applied(ApplyResult.Status.SKIPPED);
             } else {
                 doCreateService(service, namespace, sourceName);
             }
@@ -1033,6 +1295,13 @@ public class Controller {
     }
 
     public <T extends HasMetadata,L,D> void applyResource(T resource, String sourceName, MixedOperation<T, L, D, ? extends Resource<T, D>> resources) throws Exception {
+        applyResource(null, resource, sourceName, resources);
+    }
+
+    /**
+     * Applies the resource, using the prefetched live resources of the given type if there are any
+     */
+    public <T extends HasMetadata,L,D> void applyResource(Class<T> type, T resource, String sourceName, MixedOperation<T, L, D, ? extends Resource<T, D>> resources) throws Exception {
         String namespace = getNamespace();
         String resourceNamespace = getNamespace(resource);
         if (Strings.isNotBlank(namespace) && Strings.isNullOrBlank(resourceNamespace)) {
@@ -1043,12 +1312,16 @@ public class Controller {
         Objects.notNull(id, "No name for " + resource + " " + sourceName);
         if (isServicesOnlyMode()) {
             LOG.debug("Ignoring " + kind + ": " + namespace + ":" + id);
+            applied(ApplyResult.Status.SKIPPED);
             return;
         }
-        T old = resources.inNamespace(namespace).withName(id).get();
+        T old = getLiveResource(type, resource, namespace, id, resources.inNamespace(namespace).withName(id));
+        resource = applyConfigHash(resource);
+        boolean configHashUnchanged = isConfigHashUnchanged(resource, old);
         if (isRunning(old)) {
-            if (UserConfigurationCompare.configEqual(resource, old)) {
+            if (configHashUnchanged || UserConfigurationCompare.configEqual(resource, old)) {
                 LOG.info(kind + " has not changed so not doing anything");
+                applied(ApplyResult.Status.UNCHANGED);
             } else {
                 if (isRecreateMode()) {
                     LOG.info("Deleting " + kind + ": " + id);
@@ -1059,6 +1332,7 @@ public class Controller {
                     try {
                         Object answer = resources.inNamespace(namespace).withName(id).replace(resource);
                         logGeneratedEntity("Updated " + kind + ": ", namespace, resource, answer);
+                        applied(ApplyResult.Status.UPDATED);
                     } catch (Exception e) {
                         onApplyError("Failed to update " + kind + " from " + sourceName + ". " + e + ". " + resource, e);
                     }
@@ -1067,6 +1341,7 @@ public class Controller {
         } else {
             if (!isAllowCreate()) {
                 LOG.warn("Creation disabled so not creating a " + kind + " from " + sourceName + " namespace " + namespace + " name " + getName(resource));
+                applied(ApplyResult.Status.SKIPPED);
             } else {
                 doCreateResource(resource, namespace, sourceName, resources);
             }
@@ -1084,6 +1359,7 @@ public class Controller {
                 answer = resources.inNamespace(getNamespace()).create(resource);
             }
             logGeneratedEntity("Created " + kind + ": ", namespace, resource, answer);
+            applied(ApplyResult.Status.CREATED);
         } catch (Exception e) {
             onApplyError("Failed to create " + kind + " from " + sourceName + ". " + e + ". " + resource, e);
         }
@@ -1099,6 +1375,7 @@ public class Controller {
                 answer = kubernetesClient.services().inNamespace(getNamespace()).create(service);
             }
             logGeneratedEntity("Created Service: ", namespace, service, answer);
+            applied(ApplyResult.Status.CREATED);
         } catch (Exception e) {
             onApplyError("Failed to create Service from " + sourceName + ". " + e + ". " + service, e);
         }
@@ -1109,7 +1386,7 @@ public class Controller {
             return false;
         }
         OpenShiftClient openshiftClient = getOpenShiftClientOrNull();
-        if (openshiftClient != null && openshiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.PROJECT)) {
+        if (supportsOpenShiftAPIGroup(OpenShiftAPIGroups.PROJECT)) {
             // It is preferable to iterate on the list of projects as regular user with the 'basic-role' bound
             // are not granted permission get operation on non-existing project resource that returns 403
             // instead of 404. Only more privileged roles like 'view' or 'cluster-reader' are granted this permission.
@@ -1127,7 +1404,7 @@ public class Controller {
             return false;
         }
         OpenShiftClient openshiftClient = getOpenShiftClientOrNull();
-        if (openshiftClient != null && openshiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.PROJECT)) {
+        if (supportsOpenShiftAPIGroup(OpenShiftAPIGroups.PROJECT)) {
             return openshiftClient.projects().withName(namespaceName).delete();
         } else {
             return kubernetesClient.namespaces().withName(namespaceName).delete();
@@ -1142,8 +1419,12 @@ public class Controller {
         if (Strings.isNullOrBlank(namespaceName)) {
             return;
         }
+        LiveResources live = liveResources;
+        if (live != null && live.hasNamespace(namespaceName)) {
+            return;
+        }
         OpenShiftClient openshiftClient = getOpenShiftClientOrNull();
-        if (openshiftClient != null && openshiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.PROJECT)) {
+        if (supportsOpenShiftAPIGroup(OpenShiftAPIGroups.PROJECT)) {
             ProjectRequest entity = new ProjectRequest();
             ObjectMeta metadata = getOrCreateMetadata(entity);
             metadata.setName(namespaceName);
@@ -1175,6 +1456,9 @@ public class Controller {
             }
             applyNamespace(entity);
         }
+        if (live != null) {
+            live.addNamespace(namespaceName);
+        }
     }
 
     /**
@@ -1190,6 +1474,7 @@ public class Controller {
             try {
                 Object answer = kubernetesClient.namespaces().create(entity);
                 logGeneratedEntity("Created namespace: ", namespace, entity, answer);
+                applied(ApplyResult.Status.CREATED);
                 return true;
             } catch (Exception e) {
                 onApplyError("Failed to create namespace: " + name + " due " + e.getMessage(), e);
@@ -1207,7 +1492,7 @@ public class Controller {
         String name = getName(entity);
         Objects.notNull(name, "No name for " + entity);
         OpenShiftClient openshiftClient = getOpenShiftClientOrNull();
-        if (openshiftClient == null || !openshiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.PROJECT)) {
+        if (!supportsOpenShiftAPIGroup(OpenShiftAPIGroups.PROJECT)) {
             LOG.warn("Cannot check for Project " + namespace + " as not running against OpenShift!");
             return false;
         }
@@ -1217,6 +1502,7 @@ public class Controller {
             try {
                 Object answer = openshiftClient.projectrequests().create(entity);
                 logGeneratedEntity("Created ProjectRequest: ", namespace, entity, answer);
+                applied(ApplyResult.Status.CREATED);
                 return true;
             } catch (Exception e) {
                 onApplyError("Failed to create ProjectRequest: " + name + " due " + e.getMessage(), e);
@@ -1231,12 +1517,16 @@ public class Controller {
         Objects.notNull(id, "No name for " + replicationController + " " + sourceName);
         if (isServicesOnlyMode()) {
             LOG.debug("Only processing Services right now so ignoring ReplicationController: " + namespace + ":" + id);
+            applied(ApplyResult.Status.SKIPPED);
             return;
         }
-        ReplicationController old = kubernetesClient.replicationControllers().inNamespace(namespace).withName(id).get();
+        ReplicationController old = getLiveResource(ReplicationController.class, replicationController, namespace, id, kubernetesClient.replicationControllers().inNamespace(namespace).withName(id));
+        replicationController = applyConfigHash(replicationController);
+        boolean configHashUnchanged = isConfigHashUnchanged(replicationController, old);
         if (isRunning(old)) {
-            if (UserConfigurationCompare.configEqual(replicationController, old)) {
+            if (configHashUnchanged || UserConfigurationCompare.configEqual(replicationController, old)) {
                 LOG.info("ReplicationController has not changed so not doing anything");
+                applied(ApplyResult.Status.UNCHANGED);
             } else {
                 ReplicationControllerSpec newSpec = replicationController.getSpec();
                 ReplicationControllerSpec oldSpec = old.getSpec();
@@ -1251,6 +1541,7 @@ public class Controller {
                     }
                     LOG.info("rollingUpgradePreserveScale " + rollingUpgradePreserveScale + " new replicas is " + (newSpec != null ? newSpec.getReplicas() : "<null>"));
                     kubernetesClient.replicationControllers().inNamespace(namespace).withName(id).rolling().replace(replicationController);
+                    applied(ApplyResult.Status.UPDATED);
                 } else if (isRecreateMode()) {
                     LOG.info("Deleting ReplicationController: " + id);
                     kubernetesClient.replicationControllers().inNamespace(namespace).withName(id).delete();
@@ -1260,6 +1551,7 @@ public class Controller {
                     try {
                         Object answer = kubernetesClient.replicationControllers().inNamespace(namespace).withName(id).replace(replicationController);
                         logGeneratedEntity("Updated replicationController: ", namespace, replicationController, answer);
+                        applied(ApplyResult.Status.UPDATED);
 
                         if (deletePodsOnReplicationControllerUpdate) {
                             kubernetesClient.pods().inNamespace(namespace).withLabels(newSpec.getSelector()).delete();
@@ -1275,6 +1567,7 @@ public class Controller {
         } else {
             if (!isAllowCreate()) {
                 LOG.warn("Creation disabled so not creating a ReplicationController from " + sourceName + " namespace " + namespace + " name " + getName(replicationController));
+                applied(ApplyResult.Status.SKIPPED);
             } else {
                 doCreateReplicationController(replicationController, namespace, sourceName);
             }
@@ -1300,6 +1593,7 @@ public class Controller {
                 answer =  kubernetesClient.replicationControllers().inNamespace(getNamespace()).create(replicationController);
             }
             logGeneratedEntity("Created ReplicationController: ", namespace, replicationController, answer);
+            applied(ApplyResult.Status.CREATED);
         } catch (Exception e) {
             onApplyError("Failed to create ReplicationController from " + sourceName + ". " + e + ". " + replicationController, e);
         }
@@ -1331,12 +1625,14 @@ public class Controller {
         Objects.notNull(id, "No name for " + pod + " " + sourceName);
         if (isServicesOnlyMode()) {
             LOG.debug("Only processing Services right now so ignoring Pod: " + namespace + ":" + id);
+            applied(ApplyResult.Status.SKIPPED);
             return;
         }
-        Pod old = kubernetesClient.pods().inNamespace(namespace).withName(id).get();
+        Pod old = getLiveResource(Pod.class, pod, namespace, id, kubernetesClient.pods().inNamespace(namespace).withName(id));
         if (isRunning(old)) {
             if (UserConfigurationCompare.configEqual(pod, old)) {
                 LOG.info("Pod has not changed so not doing anything");
+                applied(ApplyResult.Status.UNCHANGED);
             } else {
                 if (isRecreateMode()) {
                     LOG.info("Deleting Pod: " + id);
@@ -1347,6 +1643,7 @@ public class Controller {
                     try {
                         Object answer = kubernetesClient.pods().inNamespace(namespace).withName(id).replace(pod);
                         LOG.info("Updated Pod result: " + answer);
+                        applied(ApplyResult.Status.UPDATED);
                     } catch (Exception e) {
                         onApplyError("Failed to update Pod from " + sourceName + ". " + e + ". " + pod, e);
                     }
@@ -1355,6 +1652,7 @@ public class Controller {
         } else {
             if (!isAllowCreate()) {
                 LOG.warn("Creation disabled so not creating a pod from " + sourceName + " namespace " + namespace + " name " + getName(pod));
+                applied(ApplyResult.Status.SKIPPED);
             } else {
                 doCreatePod(pod, namespace, sourceName);
             }
@@ -1375,6 +1673,7 @@ public class Controller {
                 answer = kubernetesClient.pods().inNamespace(getNamespace()).create(pod);
             }
             LOG.info("Created Pod result: " + answer);
+            applied(ApplyResult.Status.CREATED);
         } catch (Exception e) {
             onApplyError("Failed to create Pod from " + sourceName + ". " + e + ". " + pod, e);
         }
@@ -1449,11 +1748,37 @@ public class Controller {
         return entity != null;
     }
 
+    /**
+     * When hash skip mode is enabled returns a copy of the entity annotated with the hash of its user configuration,
+     * so that the next apply of the same configuration can skip comparing and updating it; otherwise returns the entity.
+     * The given entity is never modified.
+     */
+    protected <T extends HasMetadata> T applyConfigHash(T entity) {
+        return hashSkipMode ? ConfigHash.withConfigHash(entity) : entity;
+    }
+
+    /**
+     * Returns true if hash skip mode is enabled and the old entity was applied from the same configuration as the
+     * entity returned by {@link #applyConfigHash(HasMetadata)}.
+     * <p>
+     * Only the hash annotated when the old entity was applied is compared, so if the old entity has since been
+     * changed on the server by something else, while keeping the annotation, it is still treated as unchanged
+     * and is not updated.
+     */
+    protected boolean isConfigHashUnchanged(HasMetadata entity, HasMetadata old) {
+        if (!hashSkipMode) {
+            return false;
+        }
+        String hash = ConfigHash.getAppliedConfigHash(entity);
+        return hash != null && hash.equals(ConfigHash.getAppliedConfigHash(old));
+    }
+
 
     /**
      * Logs an error applying some JSON to Kubernetes and optionally throws an exception
      */
     protected void onApplyError(String message, Exception e) {
+        applied(ApplyResult.Status.FAILED);
         LOG.error(message, e);
         if (throwExceptionOnError) {
             throw new RuntimeException(message, e);
@@ -1547,6 +1872,46 @@ public class Controller {
         this.rollingUpgrade = rollingUpgrade;
     }
 
+    public int getApplyThreads() {
+        return applyThreads;
+    }
+
+    /**
+     * Sets the number of threads used to apply independent resources of a list concurrently,
+     * when more than one the resources are applied in dependency order by an {@link ApplyEngine}
+     */
+    public void setApplyThreads(int applyThreads) {
+        this.applyThreads = applyThreads;
+    }
+
+    public boolean isPrefetchLiveResources() {
+        return prefetchLiveResources;
+    }
+
+    /**
+     * Sets whether applying a list first lists the live resources once per kind and namespace
+     * rather than looking up each resource as it is applied
+     */
+    public void setPrefetchLiveResources(boolean prefetchLiveResources) {
+        this.prefetchLiveResources = prefetchLiveResources;
+    }
+
+    public boolean isHashSkipMode() {
+        return hashSkipMode;
+    }
+
+    /**
+     * Sets whether applied resources are annotated with a hash of their configuration which is used to skip
+     * resources whose configuration has not changed without comparing them. Resources applied before this
+     * mode was enabled are updated once to add the annotation.
+     * <p>
+     * Note that a resource whose hash matches is never updated, even if it has been changed on the server since
+     * it was applied; so only enable this mode when resources are changed by applying their configuration.
+     */
+    public void setHashSkipMode(boolean hashSkipMode) {
+        this.hashSkipMode = hashSkipMode;
+    }
+
     public boolean isRollingUpgradePreserveScale() {
         return rollingUpgradePreserveScale;
     }
@@ -25,14 +25,6 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import io.fabric8.kubernetes.api.extensions.Templates;
 import io.fabric8.kubernetes.api.model.*;
-import io.fabric8.kubernetes.api.model.extensions.HTTPIngressPath;
-import io.fabric8.kubernetes.api.model.extensions.HTTPIngressRuleValue;
-import io.fabric8.kubernetes.api.model.extensions.Ingress;
-import io.fabric8.kubernetes.api.model.extensions.IngressBackend;
-import io.fabric8.kubernetes.api.model.extensions.IngressList;
-import io.fabric8.kubernetes.api.model.extensions.IngressRule;
-import io.fabric8.kubernetes.api.model.extensions.IngressSpec;
-import io.fabric8.kubernetes.api.model.extensions.IngressTLS;
 import io.fabric8.kubernetes.client.Config;
 import io.fabric8.kubernetes.client.ConfigBuilder;
 import io.fabric8.kubernetes.client.KubernetesClient;
@@ -56,8 +48,6 @@ import io.fabric8.utils.IOHelpers;
 import io.fabric8.utils.KubernetesServices;
 import io.fabric8.utils.Objects;
 import io.fabric8.utils.Strings;
-import io.fabric8.utils.Systems;
-import io.fabric8.utils.URLUtils;
 import io.fabric8.utils.ssl.TrustEverythingSSLTrustManager;
 import okhttp3.Credentials;
 import okhttp3.Interceptor;
@@ -108,8 +98,6 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.TimeUnit;
 
 import static io.fabric8.kubernetes.client.utils.Utils.isNotNullOrEmpty;
@@ -139,7 +127,6 @@ public final class KubernetesHelper {
     public static final String defaultApiVersion = "v1";
     public static final String defaultOsApiVersion = "v1";
 
-    private static final ConcurrentMap<URL, Boolean> IS_OPENSHIFT = new ConcurrentHashMap<>();
     private static final Config CONFIG = new ConfigBuilder().build();
 
     private static final String DATE_TIME_FORMAT = "yyyy-MM-dd'T'HH:mm:ssX";
@@ -513,6 +500,21 @@ public final class KubernetesHelper {
         return mapper.readValue(data, clazz);
     }
 
+    /**
+     * Returns a reader of the resources in the JSON stream which parses them one at a time
+     */
+    public static KubernetesResourceReader readJsonResources(InputStream in) throws IOException {
+        return new KubernetesResourceReader(OBJECT_MAPPER.getFactory().createParser(in));
+    }
+
+    /**
+     * Returns a reader of the resources in the YAML stream, which may contain multiple documents,
+     * which parses them one at a time
+     */
+    public static KubernetesResourceReader readYamlResources(InputStream in) throws IOException {
+        return new KubernetesResourceReader(createYamlObjectMapper().getFactory().createParser(in));
+    }
+
     public static void saveYaml(Object data, File file) throws IOException {
         ObjectMapper mapper = createYamlObjectMapper();
         mapper.writeValue(file, data);
@@ -687,6 +689,39 @@ public final class KubernetesHelper {
         return toFilteredPodMap(kubernetes.pods().inNamespace(namespace).list(), filter);
     }
 
+    /**
+     * Returns a map indexed by pod id of the pods in the namespace matching the label selector, which is
+     * evaluated by the API server so that only the matching pods are returned
+     */
+    public static Map<String, Pod> getPodMapWithLabels(KubernetesClient kubernetes, String namespace, Map<String, String> labelSelector) {
+        return toPodMap(getPodsWithLabels(kubernetes, namespace, labelSelector));
+    }
+
+    /**
+     * Returns a map indexed by pod id of the pods in the namespace matching both the label selector,
+     * which is evaluated by the API server, and the filter
+     */
+    public static Map<String, Pod> getFilteredPodMap(KubernetesClient kubernetes, String namespace, Map<String, String> labelSelector, Filter<Pod> filter) {
+        return toPodMap(Filters.filter(getPodsWithLabels(kubernetes, namespace, labelSelector), filter));
+    }
+
+    /**
+     * Lists the pods in the namespace matching the label selector; passing the selector to the API server
+     * rather than listing all the pods and filtering them. A null namespace uses the default namespace of the
+     * client and a null or empty selector lists all the pods.
+     */
+    public static List<Pod> getPodsWithLabels(KubernetesClient kubernetes, String namespace, Map<String, String> labelSelector) {
+        PodList podList;
+        boolean noSelector = labelSelector == null || labelSelector.isEmpty();
+        if (namespace != null) {
+            podList = noSelector ? kubernetes.pods().inNamespace(namespace).list() : kubernetes.pods().inNamespace(namespace).withLabels(labelSelector).list();
+        } else {
+            podList = noSelector ? kubernetes.pods().list() : kubernetes.pods().withLabels(labelSelector).list();
+        }
+        List<Pod> answer = podList != null ? podList.getItems() : null;
+        return notNullList(answer);
+    }
+
     public static Map<String, Service> getServiceMap(KubernetesClient kubernetes) {
         return getServiceMap(kubernetes, null);
     }
@@ -1318,201 +1353,13 @@ public final class KubernetesHelper {
      * @throws IllegalArgumentException if the URL cannot be found for the serviceName and namespace
      */
     public static String getServiceURL(KubernetesClient client, String serviceName, String serviceNamespace, String serviceProtocol, String servicePortName, boolean serviceExternal) {
-        Service srv = null;
-        String serviceHost = KubernetesServices.serviceToHostOrBlank(serviceName);
-        String servicePort = KubernetesServices.serviceToPortOrBlank(serviceName, servicePortName);
-        String serviceProto = serviceProtocol != null ? serviceProtocol : KubernetesServices.serviceToProtocol(serviceName, servicePort);
-
-        //Use specified or fallback namespace.
-        String actualNamespace = Strings.isNotBlank(serviceNamespace) ? serviceNamespace : client.getNamespace();
-
-        //1. Inside Kubernetes: Services as ENV vars
-        if (!serviceExternal && Strings.isNotBlank(serviceHost) && Strings.isNotBlank(servicePort) && Strings.isNotBlank(serviceProtocol)) {
-            return serviceProtocol + "://" + serviceHost + ":" + servicePort;
-            //2. Anywhere: When namespace is passed System / Env var. Mostly needed for integration tests.
-        } else if (Strings.isNotBlank(actualNamespace)) {
-            try {
-                srv = client.services().inNamespace(actualNamespace).withName(serviceName).get();
-            } catch (Exception e) {
-                LOGGER.warn("Could not lookup service:"+serviceName+" in namespace:"+actualNamespace+", due to: " + e.getMessage());
-            }
-        }
-
-        if (srv == null) {
-            // lets try use environment variables
-            String hostAndPort = Systems.getServiceHostAndPort(serviceName, "", "");
-            if (!hostAndPort.startsWith(":")) {
-                return serviceProto + "://" + hostAndPort;
-            }
-        }
-        if (srv == null) {
-            throw new IllegalArgumentException("No kubernetes service could be found for name: " + serviceName + " in namespace: " + actualNamespace);
-        }
-
-        String answer = getOrCreateAnnotations(srv).get(Annotations.Service.EXPOSE_URL);
-        if (Strings.isNotBlank(answer)) {
-            return answer;
-        }
-
-        try {
-            if (Strings.isNullOrBlank(servicePortName) && isOpenShift(client)) {
-                OpenShiftClient openShiftClient = client.adapt(OpenShiftClient.class);
-                Route route = openShiftClient.routes().inNamespace(actualNamespace).withName(serviceName).get();
-                if (route != null) {
-                    return (serviceProto + "://" + route.getSpec().getHost()).toLowerCase();
-                }
-            }
-        } catch (KubernetesClientException e) {
-            if (e.getCode() == 403) {
-                LOGGER.warn("Could not lookup route:"+serviceName+" in namespace:"+actualNamespace+", due to: " + e.getMessage());
-            } else {
-                throw e;
-            }
-        }
-
-        ServicePort port = findServicePortByName(srv, servicePortName);
-        if (port == null) {
-            throw new RuntimeException("Couldn't find port: " + servicePortName + " for service:" + serviceName);
-        }
-
-        String clusterIP = srv.getSpec().getClusterIP();
-        if ("None".equals(clusterIP)) {
-            throw new IllegalStateException("Service: " + serviceName + " in namespace:" + serviceNamespace + "is head-less. Search for endpoints instead.");
-        }
-
-        Integer portNumber = port.getPort();
-        if (Strings.isNullOrBlank(clusterIP)) {
-            IngressList ingresses = client.extensions().ingresses().inNamespace(serviceNamespace).list();
-            if (ingresses != null) {
-                List<Ingress> items = ingresses.getItems();
-                if (items != null) {
-                    for (Ingress item : items) {
-                        String ns = getNamespace(item);
-                        if (Objects.equal(serviceNamespace, ns)) {
-                            IngressSpec spec = item.getSpec();
-                            if (spec != null) {
-                                List<IngressRule> rules = spec.getRules();
-                                List<IngressTLS> tls = spec.getTls();
-                                if (rules != null) {
-                                    for (IngressRule rule : rules) {
-                                        HTTPIngressRuleValue http = rule.getHttp();
-                                        if (http != null) {
-                                            List<HTTPIngressPath> paths = http.getPaths();
-                                            if (paths != null) {
-                                                for (HTTPIngressPath path : paths) {
-                                                    IngressBackend backend = path.getBackend();
-                                                    if (backend != null) {
-                                                        String backendServiceName = backend.getServiceName();
-                                                        if (serviceName.equals(backendServiceName) && portsMatch(port, backend.getServicePort())) {
-                                                            String pathPostfix = path.getPath();
-                                                            if (tls != null) {
-                                                                for (IngressTLS tlsHost : tls) {
-                                                                    List<String> hosts = tlsHost.getHosts();
-                                                                    if (hosts != null) {
-                                                                        for (String host : hosts) {
-                                                                            if (Strings.isNotBlank(host)) {
-                                                                                if (Strings.isNullOrBlank(pathPostfix)) {
-                                                                                    pathPostfix = "/";
-                                                                                }
-                                                                                return "https://" + URLUtils.pathJoin(host, pathPostfix);
-                                                                            }
-                                                                        }
-                                                                    }
-                                                                }
-                                                            }
-                                                            answer = rule.getHost();
-                                                            if (Strings.isNotBlank(answer)) {
-                                                                if (Strings.isNullOrBlank(pathPostfix)) {
-                                                                    pathPostfix = "/";
-                                                                }
-                                                                return "http://" + URLUtils.pathJoin(answer, pathPostfix);
-                                                            }
-                                                        }
-                                                    }
-                                                }
-                                            }
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                }
-            }
-
-            // lets try use the status on GKE
-            ServiceStatus status = srv.getStatus();
-            if (status != null) {
-                LoadBalancerStatus loadBalancerStatus = status.getLoadBalancer();
-                if (loadBalancerStatus != null) {
-                    List<LoadBalancerIngress> loadBalancerIngresses = loadBalancerStatus.getIngress();
-                    if (loadBalancerIngresses != null) {
-                        for (LoadBalancerIngress loadBalancerIngress : loadBalancerIngresses) {
-                            String ip = loadBalancerIngress.getIp();
-                            if (Strings.isNotBlank(ip)) {
-                                clusterIP = ip;
-                                break;
-                            }
-                        }
-                    }
-                }
-            }
-        }
-
-        if (Strings.isNullOrBlank(clusterIP)) {
-            // on vanilla kubernetes we can use nodePort to access things externally
-            boolean found = false;
-            Integer nodePort = port.getNodePort();
-            if (nodePort != null) {
-                try {
-                    NodeList nodeList = client.nodes().list();
-                    if (nodeList != null) {
-                        List<Node> items = nodeList.getItems();
-                        if (items != null) {
-                            for (Node item : items) {
-                                NodeStatus status = item.getStatus();
-                                if (!found && status != null) {
-                                    List<NodeAddress> addresses = status.getAddresses();
-                                    if (addresses != null) {
-                                        for (NodeAddress address : addresses) {
-                                            String ip = address.getAddress();
-                                            if (Strings.isNotBlank(ip)) {
-                                                clusterIP = ip;
-                                                portNumber = nodePort;
-                                                found = true;
-                                                break;
-                                            }
-
-                                        }
-
-                                    }
-                                }
-                                if (!found) {
-                                    NodeSpec spec = item.getSpec();
-                                    if (spec != null) {
-                                        clusterIP = spec.getExternalID();
-                                        if (Strings.isNotBlank(clusterIP)) {
-                                            portNumber = nodePort;
-                                            break;
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                    }
-                } catch (Exception e) {
-                    // ignore could not find a node!
-                    LOG.warn("Could not find a node!: " + e, e);
-                }
-            }
-        }
-        return (serviceProto + "://" + clusterIP + ":" + portNumber).toLowerCase();
+        return new ServiceURLResolver(client, false).getServiceURL(serviceName, serviceNamespace, serviceProtocol, servicePortName, serviceExternal);
     }
 
     /**
      * Returns true if the given servicePort matches the intOrString value
      */
-    private static boolean portsMatch(ServicePort servicePort, IntOrString intOrString) {
+    static boolean portsMatch(ServicePort servicePort, IntOrString intOrString) {
         if (intOrString != null) {
             Integer port = servicePort.getPort();
             Integer intVal = intOrString.getIntVal();
@@ -1554,7 +1401,7 @@ public final class KubernetesHelper {
         }
 
         if (Strings.isNullOrBlank(servicePortName) && isOpenShift(client)) {
-            OpenShiftClient openShiftClient = client.adapt(OpenShiftClient.class);
+            OpenShiftClient openShiftClient = ClusterCapabilities.getOpenShiftClientOrNull(client);
             RouteList routeList = openShiftClient.routes().list();
             for (Route route : routeList.getItems()) {
                 if (route.getSpec().getTo().getName().equals(serviceName)) {
@@ -1770,6 +1617,76 @@ public final class KubernetesHelper {
         return Filters.filter(pods, podFilter);
     }
 
+    /**
+     * Lists the pods for the given replication controller from the API server using its selector
+     */
+    public static List<Pod> getPodsForReplicationController(KubernetesClient kubernetes, ReplicationController replicationController) {
+        ReplicationControllerSpec replicationControllerSpec = replicationController.getSpec();
+        if (replicationControllerSpec == null) {
+            LOG.warn("Cannot instantiate replication controller: " + getName(replicationController) + " due to missing ReplicationController.Spec!");
+            return Collections.emptyList();
+        }
+        return getPodsWithLabels(kubernetes, getNamespace(replicationController), replicationControllerSpec.getSelector());
+    }
+
+    /**
+     * Lists the pods for the given service from the API server using its selector
+     */
+    public static List<Pod> getPodsForService(KubernetesClient kubernetes, Service service) {
+        return getPodsWithLabels(kubernetes, getNamespace(service), getSelector(service));
+    }
+
+    /**
+     * Creates an index of the pods by their labels so that the pods for many services or replication controllers
+     * can be found without matching each selector against every pod
+     */
+    public static LabelIndex<Pod> createPodIndex(Iterable<Pod> pods) {
+        return new LabelIndex<>(pods);
+    }
+
+    /**
+     * Returns the pods for the given replication controller from the index of pods
+     */
+    public static List<Pod> getPodsForReplicationController(ReplicationController replicationController, LabelIndex<Pod> podIndex) {
+        ReplicationControllerSpec replicationControllerSpec = replicationController.getSpec();
+        if (replicationControllerSpec == null) {
+            LOG.warn("Cannot instantiate replication controller: " + getName(replicationController) + " due to missing ReplicationController.Spec!");
+            return Collections.emptyList();
+        }
+        return podIndex.select(replicationControllerSpec.getSelector());
+    }
+
+    /**
+     * Returns the pods for the given service from the index of pods
+     */
+    public static List<Pod> getPodsForService(Service service, LabelIndex<Pod> podIndex) {
+        return podIndex.select(getSelector(service));
+    }
+
+    /**
+     * Returns the pods for each of the given services indexed by service name; indexing the pods by label once
+     */
+    public static Map<String, List<Pod>> getPodsForServices(Iterable<Service> services, Iterable<Pod> pods) {
+        LabelIndex<Pod> podIndex = createPodIndex(pods);
+        Map<String, List<Pod>> answer = new LinkedHashMap<>();
+        for (Service service : services) {
+            answer.put(getName(service), getPodsForService(service, podIndex));
+        }
+        return answer;
+    }
+
+    /**
+     * Returns the pods for each of the given replication controllers indexed by name; indexing the pods by label once
+     */
+    public static Map<String, List<Pod>> getPodsForReplicationControllers(Iterable<ReplicationController> replicationControllers, Iterable<Pod> pods) {
+        LabelIndex<Pod> podIndex = createPodIndex(pods);
+        Map<String, List<Pod>> answer = new LinkedHashMap<>();
+        for (ReplicationController replicationController : replicationControllers) {
+            answer.put(getName(replicationController), getPodsForReplicationController(replicationController, podIndex));
+        }
+        return answer;
+    }
+
     /**
      * Looks up the service endpoints in DNS.
      * <p/>
@@ -2183,26 +2100,11 @@ public final class KubernetesHelper {
     }
 
 
+    /**
+     * Returns true if the client talks to OpenShift; the answer is cached per master URL by {@link ClusterCapabilities}
+     */
     public static boolean isOpenShift(KubernetesClient client) {
-        URL masterUrl = client.getMasterUrl();
-        if (IS_OPENSHIFT.containsKey(masterUrl)) {
-            return IS_OPENSHIFT.get(masterUrl);
-        } else {
-            RootPaths rootPaths = client.rootPaths();
-            if (rootPaths != null) {
-                List<String> paths = rootPaths.getPaths();
-                if (paths != null) {
-                    for (String path : paths) {
-                        if (java.util.Objects.equals("/oapi", path) || java.util.Objects.equals("oapi", path)) {
-                            IS_OPENSHIFT.putIfAbsent(masterUrl, true);
-                            return true;
-                        }
-                    }
-                }
-            }
-        }
-        IS_OPENSHIFT.putIfAbsent(masterUrl, false);
-        return false;
+        return ClusterCapabilities.isOpenShift(client);
     }
 
 
@@ -2211,10 +2113,8 @@ public final class KubernetesHelper {
      */
     public static List<HasMetadata> findKubernetesResourcesOnClasspath(Controller controller) throws IOException {
         String resourceName = "kubernetes.yml";
-        OpenShiftClient openShiftClient = controller.getOpenShiftClientOrNull();
-        if (openShiftClient != null &&
-                openShiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.IMAGE) &&
-                openShiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.ROUTE)) {
+        if (controller.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.IMAGE) &&
+                controller.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.ROUTE)) {
             resourceName = "openshift.yml";
         }
         URL configUrl = findConfigResource("/META-INF/fabric8/" + resourceName);
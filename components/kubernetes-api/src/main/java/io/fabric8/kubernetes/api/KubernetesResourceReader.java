@@ -0,0 +1,159 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesList;
+import io.fabric8.kubernetes.api.model.KubernetesResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Reads the resources of a JSON or YAML stream one at a time, so that large manifests can be processed
+ * without binding the whole document first.
+ * <p/>
+ * The stream can contain any number of resources, as multiple YAML documents separated by <code>---</code>
+ * or concatenated JSON values. The items of a <code>List</code> are returned one at a time as they are parsed;
+ * any other resource, including a <code>Template</code> which needs its parameters to be processed, is returned
+ * as a whole.
+ */
+public class KubernetesResourceReader implements Closeable {
+    private static final transient Logger LOG = LoggerFactory.getLogger(KubernetesResourceReader.class);
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final JsonParser parser;
+    private final Deque<HasMetadata> pending = new ArrayDeque<>();
+    private boolean inItems;
+    private boolean itemsInObject;
+
+    /**
+     * Creates a reader of the given parser, which must have an {@link com.fasterxml.jackson.core.ObjectCodec}
+     * such as those created by an {@link ObjectMapper}
+     */
+    public KubernetesResourceReader(JsonParser parser) {
+        this.parser = parser;
+    }
+
+    /**
+     * Returns the next resource or null if there are no more
+     */
+    public HasMetadata read() throws IOException {
+        while (pending.isEmpty()) {
+            JsonToken token = parser.nextToken();
+            if (inItems) {
+                if (token == JsonToken.END_ARRAY) {
+                    inItems = false;
+                    if (itemsInObject) {
+                        skipRestOfObject();
+                    }
+                } else if (token == JsonToken.START_OBJECT) {
+                    addResource(parser.<JsonNode>readValueAsTree());
+                } else if (token == null) {
+                    throw new IOException("Unexpected end of stream inside a list of resources");
+                } else {
+                    parser.skipChildren();
+                }
+            } else if (token == null) {
+                return null;
+            } else if (token == JsonToken.START_OBJECT) {
+                readObject();
+            } else if (token == JsonToken.START_ARRAY) {
+                inItems = true;
+                itemsInObject = false;
+            } else {
+                // ignore empty YAML documents
+                parser.skipChildren();
+            }
+        }
+        return pending.poll();
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    /**
+     * Reads the fields of a top level object until either the end of the object or the start of the
+     * items of a list, which are then read one at a time
+     */
+    protected void readObject() throws IOException {
+        ObjectNode object = OBJECT_MAPPER.createObjectNode();
+        String kind = null;
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            token = parser.nextToken();
+            if (name.equals("items") && token == JsonToken.START_ARRAY && (kind == null || kind.endsWith("List"))) {
+                inItems = true;
+                itemsInObject = true;
+                return;
+            }
+            JsonNode value = parser.readValueAsTree();
+            if (name.equals("kind") && value != null) {
+                kind = value.asText();
+            }
+            object.set(name, value);
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new IOException("Unexpected token " + token + " when reading a resource");
+        }
+        addResource(object);
+    }
+
+    protected void skipRestOfObject() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            parser.nextToken();
+            parser.skipChildren();
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new IOException("Unexpected token " + token + " after a list of resources");
+        }
+    }
+
+    protected void addResource(JsonNode node) throws IOException {
+        if (node == null || node.size() == 0) {
+            return;
+        }
+        Object resource = OBJECT_MAPPER.treeToValue(node, KubernetesResource.class);
+        if (resource instanceof KubernetesList) {
+            List<HasMetadata> items = ((KubernetesList) resource).getItems();
+            if (items != null) {
+                for (HasMetadata item : items) {
+                    if (item != null) {
+                        pending.add(item);
+                    }
+                }
+            }
+        } else if (resource instanceof HasMetadata) {
+            pending.add((HasMetadata) resource);
+        } else if (resource != null) {
+            LOG.warn("Ignoring resource which has no metadata: " + resource);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watcher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * An inverted index of resources by their labels; mapping each label key and value to the set of resources
+ * which have it, so that a label selector is answered by intersecting sets rather than by matching the selector
+ * against every resource.
+ * <p/>
+ * Resources are identified by their namespace and name. The index can be kept up to date by passing it as the
+ * {@link Watcher} of a watch on the resources, or by calling {@link #put(HasMetadata)} and {@link #remove(HasMetadata)}.
+ * Selections are returned in slot order; which is the order the resources were added unless some have been removed.
+ */
+public class LabelIndex<T extends HasMetadata> implements Watcher<T> {
+    private static final transient Logger LOG = LoggerFactory.getLogger(LabelIndex.class);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<T> items = new ArrayList<>();
+    private final List<Map<String, String>> itemLabels = new ArrayList<>();
+    private final Map<String, Integer> slots = new HashMap<>();
+    private final BitSet live = new BitSet();
+    private final BitSet labelled = new BitSet();
+    private final Map<String, Map<String, BitSet>> postings = new HashMap<>();
+
+    public LabelIndex() {
+    }
+
+    public LabelIndex(Iterable<T> resources) {
+        putAll(resources);
+    }
+
+    public void putAll(Iterable<T> resources) {
+        if (resources != null) {
+            lock.writeLock().lock();
+            try {
+                for (T resource : resources) {
+                    doPut(resource);
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Adds the resource or replaces the resource of the same namespace and name
+     */
+    public void put(T resource) {
+        lock.writeLock().lock();
+        try {
+            doPut(resource);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the resource of the same namespace and name, returning true if it was indexed
+     */
+    public boolean remove(T resource) {
+        if (resource == null) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            Integer slot = slots.remove(getKey(resource));
+            if (slot == null) {
+                return false;
+            }
+            clearSlot(slot);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            items.clear();
+            itemLabels.clear();
+            slots.clear();
+            live.clear();
+            labelled.clear();
+            postings.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slots.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the resources matching the label selector with the same semantics as
+     * {@link KubernetesHelper#filterLabels(Map, Map)}; or all the resources if the selector is null or empty
+     */
+    public List<T> select(Map<String, String> selector) {
+        lock.readLock().lock();
+        try {
+            BitSet matches = match(selector);
+            List<T> answer = new ArrayList<>(matches.cardinality());
+            for (int i = matches.nextSetBit(0); i >= 0; i = matches.nextSetBit(i + 1)) {
+                answer.add(items.get(i));
+            }
+            return answer;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the number of resources matching the label selector
+     */
+    public int count(Map<String, String> selector) {
+        lock.readLock().lock();
+        try {
+            return match(selector).cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void eventReceived(Action action, T resource) {
+        if (action == Action.ADDED || action == Action.MODIFIED) {
+            put(resource);
+        } else if (action == Action.DELETED) {
+            remove(resource);
+        }
+    }
+
+    @Override
+    public void onClose(KubernetesClientException cause) {
+        if (cause != null) {
+            LOG.warn("Watch closed so the label index may be out of date. " + cause, cause);
+        }
+    }
+
+    protected BitSet match(Map<String, String> selector) {
+        if (selector == null || selector.isEmpty()) {
+            return (BitSet) live.clone();
+        }
+        BitSet answer = null;
+        for (Map.Entry<String, String> entry : selector.entrySet()) {
+            String value = entry.getValue();
+            Map<String, BitSet> values = postings.get(entry.getKey());
+            BitSet bits;
+            if (value != null) {
+                bits = values != null ? values.get(value) : null;
+                if (bits == null) {
+                    return new BitSet();
+                }
+            } else {
+                // a null value matches the resources with labels which do not have the key
+                bits = (BitSet) labelled.clone();
+                if (values != null) {
+                    for (BitSet keyBits : values.values()) {
+                        bits.andNot(keyBits);
+                    }
+                }
+            }
+            if (answer == null) {
+                answer = (BitSet) bits.clone();
+            } else {
+                answer.and(bits);
+            }
+            if (answer.isEmpty()) {
+                break;
+            }
+        }
+        return answer;
+    }
+
+    private void doPut(T resource) {
+        if (resource == null) {
+            return;
+        }
+        String key = getKey(resource);
+        Integer slot = slots.get(key);
+        if (slot != null) {
+            clearSlot(slot);
+        } else {
+            slot = live.nextClearBit(0);
+            slots.put(key, slot);
+        }
+        // copy the labels so they can be removed from the index even if the resource is changed in place
+        Map<String, String> labels = getLabels(resource);
+        if (labels != null) {
+            labels = new HashMap<>(labels);
+        }
+        if (slot < items.size()) {
+            items.set(slot, resource);
+            itemLabels.set(slot, labels);
+        } else {
+            items.add(resource);
+            itemLabels.add(labels);
+        }
+        live.set(slot);
+        if (labels != null) {
+            labelled.set(slot);
+            for (Map.Entry<String, String> entry : labels.entrySet()) {
+                Map<String, BitSet> values = postings.get(entry.getKey());
+                if (values == null) {
+                    values = new HashMap<>();
+                    postings.put(entry.getKey(), values);
+                }
+                BitSet bits = values.get(entry.getValue());
+                if (bits == null) {
+                    bits = new BitSet();
+                    values.put(entry.getValue(), bits);
+                }
+                bits.set(slot);
+            }
+        }
+    }
+
+    private void clearSlot(int slot) {
+        Map<String, String> labels = itemLabels.get(slot);
+        items.set(slot, null);
+        itemLabels.set(slot, null);
+        live.clear(slot);
+        labelled.clear(slot);
+        if (labels != null) {
+            for (Map.Entry<String, String> entry : labels.entrySet()) {
+                Map<String, BitSet> values = postings.get(entry.getKey());
+                if (values != null) {
+                    BitSet bits = values.get(entry.getValue());
+                    if (bits != null) {
+                        bits.clear(slot);
+                        if (bits.isEmpty()) {
+                            values.remove(entry.getValue());
+                            if (values.isEmpty()) {
+                                postings.remove(entry.getKey());
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static Map<String, String> getLabels(HasMetadata resource) {
+        ObjectMeta metadata = resource != null ? resource.getMetadata() : null;
+        return metadata != null ? metadata.getLabels() : null;
+    }
+
+    private static String getKey(HasMetadata resource) {
+        String namespace = KubernetesHelper.getNamespace(resource);
+        String name = KubernetesHelper.getName(resource);
+        return (namespace != null ? namespace : "") + "/" + name;
+    }
+}
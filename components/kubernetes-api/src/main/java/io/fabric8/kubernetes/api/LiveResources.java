@@ -0,0 +1,308 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesResourceList;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.Watch;
+import io.fabric8.kubernetes.client.Watcher;
+import io.fabric8.kubernetes.client.dsl.MixedOperation;
+import io.fabric8.kubernetes.client.dsl.NonNamespaceOperation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.getKind;
+import static io.fabric8.kubernetes.api.KubernetesHelper.getName;
+
+/**
+ * An in memory index of the resources that exist in the cluster, listed once per kind and namespace
+ * and indexed by name, so that applying many resources doesn't need a GET for each of them.
+ * <p>
+ * Optionally each listed kind and namespace is watched to keep the index up to date. Resources the
+ * {@link Controller} changes are invalidated so the next lookup falls back to a GET, as is a whole
+ * kind and namespace if its watch closes. A kind and namespace which fails to load is looked up one
+ * resource at a time until it is retried after a while.
+ */
+public class LiveResources implements Closeable {
+    private static final transient Logger LOG = LoggerFactory.getLogger(LiveResources.class);
+
+    public static final long DEFAULT_RETRY_FAILED_LOAD_MILLIS = 60 * 1000L;
+
+    private final boolean watch;
+    private final ConcurrentMap<String, Index> indexes = new ConcurrentHashMap<>();
+    private final Set<String> namespaces = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    private final List<Watch> watches = new CopyOnWriteArrayList<>();
+    private final ConcurrentMap<String, Object> loadLocks = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Long> failedLoads = new ConcurrentHashMap<>();
+    private final long retryFailedLoadMillis;
+
+    public LiveResources(boolean watch) {
+        this(watch, DEFAULT_RETRY_FAILED_LOAD_MILLIS);
+    }
+
+    /**
+     * @param retryFailedLoadMillis how long to wait before trying to list a kind and namespace again after it failed
+     */
+    public LiveResources(boolean watch, long retryFailedLoadMillis) {
+        this.watch = watch;
+        this.retryFailedLoadMillis = retryFailedLoadMillis;
+    }
+
+    /**
+     * Lists the resources of the kind in the namespace unless they have already been loaded
+     */
+    public <T extends HasMetadata> void load(String kind, String namespace, MixedOperation<T, ?, ?, ?> operation) {
+        load(kind, namespace, operation.inNamespace(namespace));
+    }
+
+    /**
+     * Lists the resources of the operation unless they have already been loaded, indexing them by the given
+     * namespace; which can be any value such as an empty string for resources which are not namespaced
+     */
+    public <T extends HasMetadata> void load(String kind, String namespace, NonNamespaceOperation<T, ?, ?, ?> operation) {
+        final String key = getKey(kind, namespace);
+        if (indexes.containsKey(key) || hasRecentlyFailed(key)) {
+            return;
+        }
+        Object lock = loadLocks.computeIfAbsent(key, k -> new Object());
+        synchronized (lock) {
+            if (indexes.containsKey(key) || hasRecentlyFailed(key)) {
+                return;
+            }
+            final Index index = new Index();
+            Watch w = null;
+            if (watch) {
+                // start watching first so no change is missed between the list and the watch
+                try {
+                    w = operation.watch(new Watcher<T>() {
+                        @Override
+                        public void eventReceived(Action action, T resource) {
+                            String name = getName(resource);
+                            if (name != null) {
+                                if (action == Action.DELETED) {
+                                    index.put(name, null);
+                                } else if (action == Action.ADDED || action == Action.MODIFIED) {
+                                    index.put(name, resource);
+                                } else {
+                                    indexes.remove(key, index);
+                                }
+                            }
+                        }
+
+                        @Override
+                        public void onClose(KubernetesClientException cause) {
+                            indexes.remove(key, index);
+                        }
+                    });
+                } catch (Exception e) {
+                    LOG.warn("Failed to watch " + kind + " in namespace " + namespace + ". " + e, e);
+                    failedLoads.put(key, System.currentTimeMillis());
+                    return;
+                }
+                watches.add(w);
+            }
+            Object list;
+            try {
+                list = operation.list();
+            } catch (Exception e) {
+                LOG.warn("Failed to list " + kind + " in namespace " + namespace + " so will look them up one at a time. " + e, e);
+                list = null;
+            }
+            if (!(list instanceof KubernetesResourceList)) {
+                closeWatch(w);
+                failedLoads.put(key, System.currentTimeMillis());
+                return;
+            }
+            List<?> items = ((KubernetesResourceList<?>) list).getItems();
+            if (items != null) {
+                for (Object item : items) {
+                    if (item instanceof HasMetadata) {
+                        String name = getName((HasMetadata) item);
+                        if (name != null) {
+                            index.putListed(name, (HasMetadata) item);
+                        }
+                    }
+                }
+            }
+            index.setLoaded();
+            failedLoads.remove(key);
+            indexes.put(key, index);
+            LOG.debug("Loaded " + index.size() + " " + kind + " from namespace " + namespace);
+        }
+    }
+
+    /**
+     * Returns true if the index can tell whether the resource exists
+     */
+    public boolean isIndexed(String kind, String namespace, String name) {
+        Index index = indexes.get(getKey(kind, namespace));
+        return index != null && index.loaded && !index.invalidated.contains(name);
+    }
+
+    /**
+     * Returns the live resource or null if it does not exist, only valid if {@link #isIndexed} is true
+     */
+    public HasMetadata get(String kind, String namespace, String name) {
+        Index index = indexes.get(getKey(kind, namespace));
+        return index != null ? index.get(name) : null;
+    }
+
+    /**
+     * Returns the live resource or null if it does not exist or is not of the given type,
+     * only valid if {@link #isIndexed} is true
+     */
+    public <T extends HasMetadata> T get(String kind, String namespace, String name, Class<T> type) {
+        HasMetadata resource = get(kind, namespace, name);
+        return type.isInstance(resource) ? type.cast(resource) : null;
+    }
+
+    /**
+     * Returns the live resources of the kind in the namespace or null if they have not been loaded
+     */
+    public Collection<HasMetadata> list(String kind, String namespace) {
+        Index index = indexes.get(getKey(kind, namespace));
+        return index != null && index.loaded ? Collections.unmodifiableCollection(index.resources.values()) : null;
+    }
+
+    /**
+     * Returns a count which changes each time a resource of the kind in the namespace changes
+     * or -1 if they have not been loaded
+     */
+    public int getModificationCount(String kind, String namespace) {
+        Index index = indexes.get(getKey(kind, namespace));
+        return index != null && index.loaded ? index.modificationCount.get() : -1;
+    }
+
+    /**
+     * Marks the resource as changed so that it is looked up again
+     */
+    public void invalidate(HasMetadata entity, String namespace) {
+        String name = getName(entity);
+        if (name != null) {
+            Index index = indexes.get(getKey(getKind(entity), namespace));
+            if (index != null) {
+                index.invalidated.add(name);
+            }
+        }
+    }
+
+    public boolean hasNamespace(String namespace) {
+        return namespaces.contains(namespace);
+    }
+
+    public void addNamespace(String namespace) {
+        namespaces.add(namespace);
+    }
+
+    @Override
+    public void close() {
+        for (Watch w : watches) {
+            closeWatch(w);
+        }
+        watches.clear();
+        indexes.clear();
+        namespaces.clear();
+        failedLoads.clear();
+    }
+
+    /**
+     * Returns true if the kind and namespace could not be loaded recently so should be looked up one at a time
+     */
+    private boolean hasRecentlyFailed(String key) {
+        Long failed = failedLoads.get(key);
+        return failed != null && System.currentTimeMillis() - failed < retryFailedLoadMillis;
+    }
+
+    private void closeWatch(Watch w) {
+        if (w != null) {
+            watches.remove(w);
+            try {
+                w.close();
+            } catch (Exception e) {
+                LOG.debug("Failed to close watch " + w + ". " + e, e);
+            }
+        }
+    }
+
+    private static String getKey(String kind, String namespace) {
+        return kind + "/" + namespace;
+    }
+
+    /**
+     * The resources of a kind in a namespace
+     */
+    static class Index {
+        private final ConcurrentMap<String, HasMetadata> resources = new ConcurrentHashMap<>();
+        private final Set<String> invalidated = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        private final Set<String> deleted = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        private final AtomicInteger modificationCount = new AtomicInteger();
+        private volatile boolean loaded;
+
+        HasMetadata get(String name) {
+            return resources.get(name);
+        }
+
+        /**
+         * Records the latest state of the resource, null if it has been deleted
+         */
+        void put(String name, HasMetadata resource) {
+            synchronized (this) {
+                if (resource != null) {
+                    resources.put(name, resource);
+                    deleted.remove(name);
+                } else {
+                    resources.remove(name);
+                    if (!loaded) {
+                        // remember the deletion so the list response doesn't bring it back
+                        deleted.add(name);
+                    }
+                }
+            }
+            invalidated.remove(name);
+            modificationCount.incrementAndGet();
+        }
+
+        /**
+         * Records the resource from the list response unless a watch event about it has already been received,
+         * as the event is at least as recent as the list
+         */
+        synchronized void putListed(String name, HasMetadata resource) {
+            if (!deleted.contains(name)) {
+                resources.putIfAbsent(name, resource);
+            }
+        }
+
+        synchronized void setLoaded() {
+            loaded = true;
+            deleted.clear();
+        }
+
+        int size() {
+            return resources.size();
+        }
+    }
+}
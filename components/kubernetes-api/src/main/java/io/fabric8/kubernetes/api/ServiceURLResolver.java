@@ -0,0 +1,511 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.IntOrString;
+import io.fabric8.kubernetes.api.model.LoadBalancerIngress;
+import io.fabric8.kubernetes.api.model.LoadBalancerStatus;
+import io.fabric8.kubernetes.api.model.Node;
+import io.fabric8.kubernetes.api.model.NodeAddress;
+import io.fabric8.kubernetes.api.model.NodeList;
+import io.fabric8.kubernetes.api.model.NodeSpec;
+import io.fabric8.kubernetes.api.model.NodeStatus;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServicePort;
+import io.fabric8.kubernetes.api.model.ServiceStatus;
+import io.fabric8.kubernetes.api.model.extensions.HTTPIngressPath;
+import io.fabric8.kubernetes.api.model.extensions.HTTPIngressRuleValue;
+import io.fabric8.kubernetes.api.model.extensions.Ingress;
+import io.fabric8.kubernetes.api.model.extensions.IngressBackend;
+import io.fabric8.kubernetes.api.model.extensions.IngressList;
+import io.fabric8.kubernetes.api.model.extensions.IngressRule;
+import io.fabric8.kubernetes.api.model.extensions.IngressSpec;
+import io.fabric8.kubernetes.api.model.extensions.IngressTLS;
+import io.fabric8.kubernetes.client.Config;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.kubernetes.client.dsl.MixedOperation;
+import io.fabric8.openshift.api.model.Route;
+import io.fabric8.openshift.api.model.RouteSpec;
+import io.fabric8.openshift.client.OpenShiftClient;
+import io.fabric8.utils.KubernetesServices;
+import io.fabric8.utils.Strings;
+import io.fabric8.utils.Systems;
+import io.fabric8.utils.URLUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.findServicePortByName;
+import static io.fabric8.kubernetes.api.KubernetesHelper.getOrCreateAnnotations;
+import static io.fabric8.kubernetes.api.KubernetesHelper.isOpenShift;
+import static io.fabric8.kubernetes.api.KubernetesHelper.portsMatch;
+
+/**
+ * Resolves the URLs to access services; using the environment variables, routes, ingresses, load balancers
+ * or node ports.
+ * <p/>
+ * The shared resolver returned by {@link #getInstance(KubernetesClient)} lists the services, routes,
+ * ingresses and nodes once and keeps them up to date with watches, so that lookups are answered from memory
+ * with the ingress backends indexed by service name. There is one shared resolver per master URL, user and
+ * namespace, which uses the client most recently passed to {@link #getInstance(KubernetesClient)}; its watches
+ * stay open until it is closed, so it is meant for long running processes which look up URLs repeatedly.
+ * A resolver created without caching looks up the resources on each call, which suits one off lookups.
+ */
+public class ServiceURLResolver implements Closeable {
+    private static final transient Logger LOG = LoggerFactory.getLogger(ServiceURLResolver.class);
+
+    private static final ConcurrentMap<List<Object>, ServiceURLResolver> resolvers = new ConcurrentHashMap<>();
+
+    private static final String NODES_NAMESPACE = "";
+
+    private volatile KubernetesClient client;
+    private final List<Object> key;
+    private final LiveResources resources;
+    private final ConcurrentMap<String, IngressBackends> ingressBackends = new ConcurrentHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Returns the shared caching resolver for the master URL, user and namespace of the client,
+     * which from now on uses the given client to talk to the cluster
+     */
+    public static ServiceURLResolver getInstance(KubernetesClient client) {
+        List<Object> key = getKey(client);
+        ServiceURLResolver answer = resolvers.get(key);
+        if (answer == null) {
+            answer = new ServiceURLResolver(client, key);
+            ServiceURLResolver old = resolvers.putIfAbsent(key, answer);
+            if (old != null) {
+                answer = old;
+            }
+        }
+        if (answer.client != client) {
+            // use the latest client in case an earlier one has been closed, reconnecting to a cluster
+            // which may have been upgraded in the meantime
+            answer.client = client;
+            ClusterCapabilities.invalidate(client);
+        }
+        return answer;
+    }
+
+    public ServiceURLResolver(KubernetesClient client, boolean cache) {
+        this.client = client;
+        this.key = null;
+        this.resources = cache ? new LiveResources(true) : null;
+    }
+
+    private ServiceURLResolver(KubernetesClient client, List<Object> key) {
+        this.client = client;
+        this.key = key;
+        this.resources = new LiveResources(true);
+    }
+
+    /**
+     * Returns the key of the shared resolver for the client; the same cluster, credentials and namespace
+     * see the same resources
+     */
+    protected static List<Object> getKey(KubernetesClient client) {
+        Config config = client.getConfiguration();
+        return Arrays.<Object>asList(client.getMasterUrl(), client.getNamespace(), config.getUsername(),
+                config.getOauthToken(), config.getClientCertFile(), config.getClientCertData());
+    }
+
+    /**
+     * Closes the watches of the resolver, removing it if it is a shared resolver
+     */
+    @Override
+    public void close() {
+        if (key != null) {
+            resolvers.remove(key, this);
+        }
+        if (resources != null) {
+            resources.close();
+        }
+        ingressBackends.clear();
+    }
+
+    /**
+     * Returns the number of lookups answered from the cached resources
+     */
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    /**
+     * Returns the number of lookups which had to load or get resources from the API server
+     */
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    /**
+     * Returns the URL to access the service; using the environment variables, routes
+     * or service clusterIP address
+     *
+     * @throws IllegalArgumentException if the URL cannot be found for the serviceName and namespace
+     */
+    public String getServiceURL(String serviceName, String serviceNamespace, String serviceProtocol, String servicePortName, boolean serviceExternal) {
+        Service srv = null;
+        String serviceHost = KubernetesServices.serviceToHostOrBlank(serviceName);
+        String servicePort = KubernetesServices.serviceToPortOrBlank(serviceName, servicePortName);
+        String serviceProto = serviceProtocol != null ? serviceProtocol : KubernetesServices.serviceToProtocol(serviceName, servicePort);
+
+        //Use specified or fallback namespace.
+        String actualNamespace = Strings.isNotBlank(serviceNamespace) ? serviceNamespace : client.getNamespace();
+
+        //1. Inside Kubernetes: Services as ENV vars
+        if (!serviceExternal && Strings.isNotBlank(serviceHost) && Strings.isNotBlank(servicePort) && Strings.isNotBlank(serviceProtocol)) {
+            return serviceProtocol + "://" + serviceHost + ":" + servicePort;
+            //2. Anywhere: When namespace is passed System / Env var. Mostly needed for integration tests.
+        } else if (Strings.isNotBlank(actualNamespace)) {
+            try {
+                srv = getService(actualNamespace, serviceName);
+            } catch (Exception e) {
+                LOG.warn("Could not lookup service:"+serviceName+" in namespace:"+actualNamespace+", due to: " + e.getMessage());
+            }
+        }
+
+        if (srv == null) {
+            // lets try use environment variables
+            String hostAndPort = Systems.getServiceHostAndPort(serviceName, "", "");
+            if (!hostAndPort.startsWith(":")) {
+                return serviceProto + "://" + hostAndPort;
+            }
+        }
+        if (srv == null) {
+            throw new IllegalArgumentException("No kubernetes service could be found for name: " + serviceName + " in namespace: " + actualNamespace);
+        }
+
+        String answer = getOrCreateAnnotations(srv).get(Annotations.Service.EXPOSE_URL);
+        if (Strings.isNotBlank(answer)) {
+            return answer;
+        }
+
+        try {
+            if (Strings.isNullOrBlank(servicePortName) && isOpenShift(client)) {
+                Route route = getRoute(actualNamespace, serviceName);
+                if (route != null) {
+                    return (serviceProto + "://" + route.getSpec().getHost()).toLowerCase();
+                }
+            }
+        } catch (KubernetesClientException e) {
+            if (e.getCode() == 403) {
+                LOG.warn("Could not lookup route:"+serviceName+" in namespace:"+actualNamespace+", due to: " + e.getMessage());
+            } else {
+                throw e;
+            }
+        }
+
+        ServicePort port = findServicePortByName(srv, servicePortName);
+        if (port == null) {
+            throw new RuntimeException("Couldn't find port: " + servicePortName + " for service:" + serviceName);
+        }
+
+        String clusterIP = srv.getSpec().getClusterIP();
+        if ("None".equals(clusterIP)) {
+            throw new IllegalStateException("Service: " + serviceName + " in namespace:" + serviceNamespace + "is head-less. Search for endpoints instead.");
+        }
+
+        Integer portNumber = port.getPort();
+        if (Strings.isNullOrBlank(clusterIP)) {
+            answer = getIngressBackends(actualNamespace).findURL(serviceName, port);
+            if (answer != null) {
+                return answer;
+            }
+
+            // lets try use the status on GKE
+            ServiceStatus status = srv.getStatus();
+            if (status != null) {
+                LoadBalancerStatus loadBalancerStatus = status.getLoadBalancer();
+                if (loadBalancerStatus != null) {
+                    List<LoadBalancerIngress> loadBalancerIngresses = loadBalancerStatus.getIngress();
+                    if (loadBalancerIngresses != null) {
+                        for (LoadBalancerIngress loadBalancerIngress : loadBalancerIngresses) {
+                            String ip = loadBalancerIngress.getIp();
+                            if (Strings.isNotBlank(ip)) {
+                                clusterIP = ip;
+                                break;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+
+        if (Strings.isNullOrBlank(clusterIP)) {
+            // on vanilla kubernetes we can use nodePort to access things externally
+            Integer nodePort = port.getNodePort();
+            if (nodePort != null) {
+                try {
+                    String nodeAddress = findNodeAddress(getNodes());
+                    if (Strings.isNotBlank(nodeAddress)) {
+                        clusterIP = nodeAddress;
+                        portNumber = nodePort;
+                    }
+                } catch (Exception e) {
+                    // ignore could not find a node!
+                    LOG.warn("Could not find a node!: " + e, e);
+                }
+            }
+        }
+        return (serviceProto + "://" + clusterIP + ":" + portNumber).toLowerCase();
+    }
+
+    /**
+     * Returns the route which exposes the service; which is the route of the same name or any route to the service
+     */
+    public Route findRoute(String namespace, String serviceName) {
+        Route answer = getRoute(namespace, serviceName);
+        if (answer != null) {
+            return answer;
+        }
+        for (Route route : getRoutes(namespace)) {
+            RouteSpec spec = route.getSpec();
+            if (spec != null && spec.getTo() != null && serviceName.equals(spec.getTo().getName())) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    protected Service getService(String namespace, String name) {
+        return get(Service.class, "Service", namespace, name, client.services());
+    }
+
+    protected Route getRoute(String namespace, String name) {
+        OpenShiftClient openShiftClient = ClusterCapabilities.getOpenShiftClientOrNull(client);
+        if (openShiftClient == null) {
+            return null;
+        }
+        return get(Route.class, "Route", namespace, name, openShiftClient.routes());
+    }
+
+    protected List<Route> getRoutes(String namespace) {
+        OpenShiftClient openShiftClient = ClusterCapabilities.getOpenShiftClientOrNull(client);
+        if (openShiftClient == null) {
+            return Collections.emptyList();
+        }
+        List<Route> answer = list(Route.class, "Route", namespace, openShiftClient.routes());
+        return answer != null ? answer : notNull(openShiftClient.routes().inNamespace(namespace).list().getItems());
+    }
+
+    protected List<Node> getNodes() {
+        if (resources != null) {
+            if (resources.getModificationCount("Node", NODES_NAMESPACE) < 0) {
+                missCount.incrementAndGet();
+                resources.load("Node", NODES_NAMESPACE, client.nodes());
+            } else {
+                hitCount.incrementAndGet();
+            }
+            Collection<HasMetadata> nodes = resources.list("Node", NODES_NAMESPACE);
+            if (nodes != null) {
+                return castList(Node.class, nodes);
+            }
+        }
+        NodeList nodeList = client.nodes().list();
+        return nodeList != null ? notNull(nodeList.getItems()) : Collections.<Node>emptyList();
+    }
+
+    protected IngressBackends getIngressBackends(String namespace) {
+        if (resources != null) {
+            List<Ingress> ingresses = list(Ingress.class, "Ingress", namespace, client.extensions().ingresses());
+            int modificationCount = resources.getModificationCount("Ingress", namespace);
+            if (ingresses != null) {
+                IngressBackends answer = ingressBackends.get(namespace);
+                if (answer == null || answer.modificationCount != modificationCount) {
+                    answer = new IngressBackends(ingresses, modificationCount);
+                    ingressBackends.put(namespace, answer);
+                }
+                return answer;
+            }
+        }
+        IngressList ingresses = client.extensions().ingresses().inNamespace(namespace).list();
+        return new IngressBackends(ingresses != null ? notNull(ingresses.getItems()) : Collections.<Ingress>emptyList(), -1);
+    }
+
+    /**
+     * Returns the resource from the cache, loading the kind in the namespace if need be, or from the API server
+     * if it cannot be cached
+     */
+    protected <T extends HasMetadata> T get(Class<T> type, String kind, String namespace, String name, MixedOperation<T, ?, ?, ?> operation) {
+        if (resources != null) {
+            if (resources.isIndexed(kind, namespace, name)) {
+                hitCount.incrementAndGet();
+                return resources.get(kind, namespace, name, type);
+            }
+            missCount.incrementAndGet();
+            resources.load(kind, namespace, operation);
+            if (resources.isIndexed(kind, namespace, name)) {
+                return resources.get(kind, namespace, name, type);
+            }
+        }
+        return operation.inNamespace(namespace).withName(name).get();
+    }
+
+    /**
+     * Returns the cached resources of the kind in the namespace, loading them if need be,
+     * or null if they cannot be cached
+     */
+    protected <T extends HasMetadata> List<T> list(Class<T> type, String kind, String namespace, MixedOperation<T, ?, ?, ?> operation) {
+        if (resources == null) {
+            return null;
+        }
+        if (resources.getModificationCount(kind, namespace) < 0) {
+            missCount.incrementAndGet();
+            resources.load(kind, namespace, operation);
+        } else {
+            hitCount.incrementAndGet();
+        }
+        Collection<HasMetadata> answer = resources.list(kind, namespace);
+        return answer != null ? castList(type, answer) : null;
+    }
+
+    protected static String findNodeAddress(List<Node> nodes) {
+        for (Node item : nodes) {
+            NodeStatus status = item.getStatus();
+            if (status != null) {
+                List<NodeAddress> addresses = status.getAddresses();
+                if (addresses != null) {
+                    for (NodeAddress address : addresses) {
+                        String ip = address.getAddress();
+                        if (Strings.isNotBlank(ip)) {
+                            return ip;
+                        }
+                    }
+                }
+            }
+            NodeSpec spec = item.getSpec();
+            if (spec != null && Strings.isNotBlank(spec.getExternalID())) {
+                return spec.getExternalID();
+            }
+        }
+        return null;
+    }
+
+    private static <T> List<T> castList(Class<T> type, Collection<HasMetadata> resources) {
+        List<T> answer = new ArrayList<>(resources.size());
+        for (HasMetadata resource : resources) {
+            if (type.isInstance(resource)) {
+                answer.add(type.cast(resource));
+            }
+        }
+        return answer;
+    }
+
+    private static <T> List<T> notNull(List<T> list) {
+        return list != null ? list : Collections.<T>emptyList();
+    }
+
+    /**
+     * The URLs of the ingress backends of the services in a namespace indexed by service name
+     */
+    protected static class IngressBackends {
+        private final Map<String, List<IngressTarget>> targets = new HashMap<>();
+        private final int modificationCount;
+
+        public IngressBackends(List<Ingress> ingresses, int modificationCount) {
+            this.modificationCount = modificationCount;
+            for (Ingress item : ingresses) {
+                IngressSpec spec = item.getSpec();
+                if (spec == null || spec.getRules() == null) {
+                    continue;
+                }
+                String tlsHost = findTLSHost(spec.getTls());
+                for (IngressRule rule : spec.getRules()) {
+                    HTTPIngressRuleValue http = rule.getHttp();
+                    if (http == null || http.getPaths() == null) {
+                        continue;
+                    }
+                    for (HTTPIngressPath path : http.getPaths()) {
+                        IngressBackend backend = path.getBackend();
+                        if (backend == null || backend.getServiceName() == null) {
+                            continue;
+                        }
+                        String pathPostfix = Strings.isNullOrBlank(path.getPath()) ? "/" : path.getPath();
+                        String url = null;
+                        if (tlsHost != null) {
+                            url = "https://" + URLUtils.pathJoin(tlsHost, pathPostfix);
+                        } else if (Strings.isNotBlank(rule.getHost())) {
+                            url = "http://" + URLUtils.pathJoin(rule.getHost(), pathPostfix);
+                        }
+                        if (url != null) {
+                            List<IngressTarget> list = targets.get(backend.getServiceName());
+                            if (list == null) {
+                                list = new ArrayList<>();
+                                targets.put(backend.getServiceName(), list);
+                            }
+                            list.add(new IngressTarget(backend.getServicePort(), url));
+                        }
+                    }
+                }
+            }
+        }
+
+        /**
+         * Returns the URL of the first ingress backend for the service port or null if there is none
+         */
+        public String findURL(String serviceName, ServicePort port) {
+            List<IngressTarget> list = targets.get(serviceName);
+            if (list != null) {
+                for (IngressTarget target : list) {
+                    if (portsMatch(port, target.servicePort)) {
+                        return target.url;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private static String findTLSHost(List<IngressTLS> tls) {
+            if (tls != null) {
+                for (IngressTLS tlsHost : tls) {
+                    List<String> hosts = tlsHost.getHosts();
+                    if (hosts != null) {
+                        for (String host : hosts) {
+                            if (Strings.isNotBlank(host)) {
+                                return host;
+                            }
+                        }
+                    }
+                }
+            }
+            return null;
+        }
+    }
+
+    private static class IngressTarget {
+        private final IntOrString servicePort;
+        private final String url;
+
+        IngressTarget(IntOrString servicePort, String url) {
+            this.servicePort = servicePort;
+            this.url = url;
+        }
+    }
+}
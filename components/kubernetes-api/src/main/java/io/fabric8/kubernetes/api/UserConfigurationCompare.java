@@ -25,9 +25,14 @@ import java.beans.BeanInfo;
 import java.beans.IntrospectionException;
 import java.beans.Introspector;
 import java.beans.PropertyDescriptor;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Helper methods to compare the user configuration on entities
@@ -37,6 +42,7 @@ public class UserConfigurationCompare {
 
     protected static final Set<String> ignoredProperties = new HashSet<>(Collections.singletonList("status"));
 
+    private static final ConcurrentMap<Class<?>, DTOProperties> dtoProperties = new ConcurrentHashMap<>();
 
     /**
      * This method detects if the user has changed the configuration of an entity.
@@ -57,6 +63,8 @@ public class UserConfigurationCompare {
             return configEqualMap((Map) entity1, castTo(Map.class, entity2));
         } else if (entity2 instanceof ObjectMeta) {
             return configEqualObjectMeta((ObjectMeta) entity1, castTo(ObjectMeta.class, entity2));
+        } else if (entity1 instanceof List && entity2 instanceof List) {
+            return configEqualList((List) entity1, (List) entity2);
         } else if (entity1 instanceof Collection && entity2 instanceof Collection) {
             return collectionsEqual((Collection) entity1, (Collection) entity2);
         } else {
@@ -65,7 +73,7 @@ public class UserConfigurationCompare {
                 Object castEntity2 = castTo(aClass, entity2);
                 if (castEntity2 == null) {
                     return false;
-                } else if (aClass.getPackage().getName().startsWith("io.fabric8")) {
+                } else if (isKubernetesDTO(aClass)) {
                     return configEqualKubernetesDTO(entity1, entity2, aClass);
                 }
             }
@@ -109,34 +117,27 @@ public class UserConfigurationCompare {
         }
     }
 
+    static boolean isKubernetesDTO(Class<?> clazz) {
+        Package aPackage = clazz.getPackage();
+        return aPackage != null && aPackage.getName().startsWith("io.fabric8");
+    }
+
     /**
      * Compares 2 instances of the given Kubernetes DTO class to see if the user has changed their configuration.
      * <p/>
      * This method will ignore properties {@link #ignoredProperties} such as status or timestamp properties
      */
     protected static boolean configEqualKubernetesDTO(@NotNull Object entity1, @NotNull Object entity2, @NotNull Class<?> clazz) {
-        // lets iterate through the objects making sure we've not
-        BeanInfo beanInfo = null;
-        try {
-            beanInfo = Introspector.getBeanInfo(clazz);
-        } catch (IntrospectionException e) {
-            LOG.warn("Failed to get beanInfo for " + clazz.getName() + ". " + e, e);
+        DTOProperties properties = getDTOProperties(clazz);
+        if (properties == null) {
             return false;
         }
         try {
-            PropertyDescriptor[] propertyDescriptors = beanInfo.getPropertyDescriptors();
-            for (PropertyDescriptor propertyDescriptor : propertyDescriptors) {
-                String name = propertyDescriptor.getName();
-                if (ignoredProperties.contains(name)) {
-                    continue;
-                }
-                Method readMethod = propertyDescriptor.getReadMethod();
-                if (readMethod != null) {
-                    Object value1 = invokeMethod(entity1, readMethod);
-                    Object value2 = invokeMethod(entity2, readMethod);
-                    if (!configEqual(value1, value2)) {
-                        return false;
-                    }
+            for (PropertyAccessor property : properties.properties) {
+                Object value1 = property.get(entity1);
+                Object value2 = property.get(entity2);
+                if (!configEqual(value1, value2)) {
+                    return false;
                 }
             }
             return true;
@@ -145,6 +146,42 @@ public class UserConfigurationCompare {
         }
     }
 
+    /**
+     * Returns the cached accessors of the user configuration properties of the DTO class or null if it cannot be introspected
+     */
+    static DTOProperties getDTOProperties(Class<?> clazz) {
+        DTOProperties answer = dtoProperties.get(clazz);
+        if (answer == null) {
+            BeanInfo beanInfo;
+            try {
+                beanInfo = Introspector.getBeanInfo(clazz, Object.class);
+            } catch (IntrospectionException e) {
+                LOG.warn("Failed to get beanInfo for " + clazz.getName() + ". " + e, e);
+                return null;
+            }
+            List<PropertyAccessor> properties = new ArrayList<>();
+            PropertyAccessor nameProperty = null;
+            for (PropertyDescriptor propertyDescriptor : beanInfo.getPropertyDescriptors()) {
+                String name = propertyDescriptor.getName();
+                Method readMethod = propertyDescriptor.getReadMethod();
+                if (ignoredProperties.contains(name) || readMethod == null) {
+                    continue;
+                }
+                PropertyAccessor property = new PropertyAccessor(readMethod);
+                properties.add(property);
+                if (name.equals("name") && readMethod.getReturnType() == String.class) {
+                    nameProperty = property;
+                }
+            }
+            answer = new DTOProperties(properties.toArray(new PropertyAccessor[properties.size()]), nameProperty);
+            DTOProperties old = dtoProperties.putIfAbsent(clazz, answer);
+            if (old != null) {
+                answer = old;
+            }
+        }
+        return answer;
+    }
+
     protected static Object invokeMethod(@NotNull Object entity, Method readMethod) throws InvocationTargetException, IllegalAccessException {
         try {
             return readMethod.invoke(entity);
@@ -201,22 +238,63 @@ public class UserConfigurationCompare {
         return true;
     }
 
+    /**
+     * Compares 2 lists; lists of DTOs with unique names such as containers, ports or env vars are compared
+     * by name regardless of their order, any other lists are compared by position
+     */
     protected static boolean configEqualList(List v1, List v2) {
         int size1 = size(v1);
         int size2 = size(v2);
         if (size1 != size2) {
             return false;
+        } else if (size1 == 0) {
+            return true;
+        }
+        Map<String, Object> keyed1 = getKeyedItems(v1);
+        if (keyed1 != null) {
+            Map<String, Object> keyed2 = getKeyedItems(v2);
+            if (keyed2 != null) {
+                for (Map.Entry<String, Object> entry : keyed1.entrySet()) {
+                    Object value2 = keyed2.get(entry.getKey());
+                    if (value2 == null || !configEqual(entry.getValue(), value2)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
         }
-        int idx = 0;
+        Iterator iter2 = v2.iterator();
         for (Object value : v1) {
-            Object value2 = v2.get(idx++);
-            if (!configEqual(value, value2)) {
+            if (!iter2.hasNext() || !configEqual(value, iter2.next())) {
                 return false;
             }
         }
         return true;
     }
 
+    /**
+     * Returns the items of the list indexed by their name if they are all DTOs with a unique name, otherwise null
+     */
+    static Map<String, Object> getKeyedItems(List list) {
+        if (list == null || list.isEmpty()) {
+            return null;
+        }
+        Map<String, Object> answer = new HashMap<>(list.size() * 2);
+        for (Object item : list) {
+            if (item == null || !isKubernetesDTO(item.getClass())) {
+                return null;
+            }
+            DTOProperties properties = getDTOProperties(item.getClass());
+            if (properties == null || properties.nameProperty == null) {
+                return null;
+            }
+            Object name = properties.nameProperty.get(item);
+            if (name == null || answer.put((String) name, item) != null) {
+                return null;
+            }
+        }
+        return answer;
+    }
 
     protected static int size(Map map) {
         return (map == null) ? 0 : map.size();
@@ -226,4 +304,51 @@ public class UserConfigurationCompare {
         return (coll == null) ? 0 : coll.size();
     }
 
+    /**
+     * The accessors of the properties of a DTO class which are part of its user configuration
+     */
+    static class DTOProperties {
+        final PropertyAccessor[] properties;
+        final PropertyAccessor nameProperty;
+
+        DTOProperties(PropertyAccessor[] properties, PropertyAccessor nameProperty) {
+            this.properties = properties;
+            this.nameProperty = nameProperty;
+        }
+    }
+
+    /**
+     * Reads a property through a method handle, falling back to reflection if the getter is not accessible
+     */
+    static class PropertyAccessor {
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+        private final Method readMethod;
+        private final MethodHandle getter;
+
+        PropertyAccessor(Method readMethod) {
+            this.readMethod = readMethod;
+            MethodHandle handle = null;
+            try {
+                handle = MethodHandles.publicLookup().unreflect(readMethod).asType(GETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                LOG.debug("Cannot access " + readMethod + " through a method handle so using reflection. " + e);
+            }
+            this.getter = handle;
+        }
+
+        Object get(Object entity) {
+            try {
+                if (getter != null) {
+                    return getter.invokeExact(entity);
+                }
+                return invokeMethod(entity, readMethod);
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException("Failed to read " + readMethod + " on " + entity + ". " + e, e);
+            }
+        }
+    }
+
 }
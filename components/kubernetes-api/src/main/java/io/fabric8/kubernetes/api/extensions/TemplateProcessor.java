@@ -0,0 +1,356 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api.extensions;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.fabric8.kubernetes.api.KubernetesHelper;
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.KubernetesList;
+import io.fabric8.openshift.api.model.Parameter;
+import io.fabric8.utils.Strings;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Processes the objects of a template locally, substituting <code>${NAME}</code> parameter references.
+ * <p/>
+ * The objects are converted to a JSON tree once, recording the string values and object keys which contain
+ * references, so that each processing only has to copy the tree and substitute those. Callers which process
+ * the same template many times, for different parameter values, should hold on to the processor; it does
+ * not see changes made to the objects after it was created.
+ */
+public class TemplateProcessor {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+    private static final Pattern GENERATOR_PATTERN = Pattern.compile("\\[([a-zA-Z0-9\\-\\\\]+)\\]\\{([0-9]+)\\}");
+    private static final String ALPHABET = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    private static final String NUMERALS = "0123456789";
+    private static final String SYMBOLS = "~!@#$%^&*()-_+={}[]\\|<,>.?/\"';:`";
+    private static final int MAX_GENERATED_LENGTH = 255;
+    private static final Random RANDOM = new SecureRandom();
+
+    private final ObjectNode list;
+    private final List<Substitution> substitutions = new ArrayList<>();
+    private final List<Substitution> keySubstitutions = new ArrayList<>();
+
+    public TemplateProcessor(List<HasMetadata> objects) {
+        list = OBJECT_MAPPER.createObjectNode();
+        list.put("kind", "List");
+        list.put("apiVersion", KubernetesHelper.defaultApiVersion);
+        JsonNode items = OBJECT_MAPPER.valueToTree(objects);
+        list.set("items", items);
+        findSubstitutions(items, new ArrayList<>());
+    }
+
+    /**
+     * Returns the objects with the parameter references replaced by the parameter values
+     */
+    public KubernetesList process(List<Parameter> parameters, boolean failOnMissingParameterValue) throws IOException {
+        Map<String, String> values = resolveParameters(parameters, failOnMissingParameterValue);
+        ObjectNode answer = list.deepCopy();
+        for (Substitution substitution : substitutions) {
+            substitution.apply(answer, values);
+        }
+        // keys are renamed after the values below them, deepest first, so the recorded paths stay valid
+        for (Substitution substitution : keySubstitutions) {
+            substitution.apply(answer, values);
+        }
+        return OBJECT_MAPPER.readerFor(KubernetesList.class).readValue(answer);
+    }
+
+    /**
+     * Returns the values of the parameters with any references to other parameters replaced. Blank values of
+     * parameters with an <code>expression</code> generator are generated and stored on the parameter.
+     *
+     * @throws IllegalArgumentException if parameters reference each other in a cycle or if a value is missing
+     * and failOnMissingParameterValue is true
+     */
+    public static Map<String, String> resolveParameters(List<Parameter> parameters, boolean failOnMissingParameterValue) {
+        Map<String, String> rawValues = new HashMap<>();
+        if (parameters != null) {
+            for (Parameter parameter : parameters) {
+                String name = parameter.getName();
+                String value = parameter.getValue();
+                if (Strings.isNullOrBlank(value) && "expression".equals(parameter.getGenerate()) && Strings.isNotBlank(parameter.getFrom())) {
+                    value = generateValue(parameter.getFrom());
+                    parameter.setValue(value);
+                }
+                if (Strings.isNullOrBlank(value)) {
+                    if (failOnMissingParameterValue) {
+                        throw new IllegalArgumentException("No value available for parameter name: " + name);
+                    } else {
+                        value = "";
+                    }
+                }
+                rawValues.put(name, value);
+            }
+        }
+        Map<String, String> answer = new HashMap<>();
+        for (String name : rawValues.keySet()) {
+            resolveParameter(name, rawValues, answer, new LinkedHashSet<String>());
+        }
+        return answer;
+    }
+
+    private static String resolveParameter(String name, Map<String, String> rawValues, Map<String, String> resolved, Set<String> resolving) {
+        String answer = resolved.get(name);
+        if (answer != null) {
+            return answer;
+        }
+        if (!resolving.add(name)) {
+            throw new IllegalArgumentException("Template parameters reference each other in a cycle: " + Strings.join(resolving, " -> ") + " -> " + name);
+        }
+        String value = rawValues.get(name);
+        List<Object> segments = parseReferences(value);
+        if (segments == null) {
+            answer = value;
+        } else {
+            StringBuilder buffer = new StringBuilder();
+            for (Object segment : segments) {
+                if (segment instanceof Reference) {
+                    String reference = ((Reference) segment).name;
+                    if (rawValues.containsKey(reference)) {
+                        buffer.append(resolveParameter(reference, rawValues, resolved, resolving));
+                    } else {
+                        buffer.append("${").append(reference).append("}");
+                    }
+                } else {
+                    buffer.append(segment);
+                }
+            }
+            answer = buffer.toString();
+        }
+        resolving.remove(name);
+        resolved.put(name, answer);
+        return answer;
+    }
+
+    /**
+     * Generates a value from an expression such as <code>[a-zA-Z0-9]{8}</code> where each character range is
+     * replaced by the given number of random characters from it. The ranges can include <code>\w</code> for
+     * word characters, <code>\d</code> for digits, <code>\a</code> for letters and <code>\A</code> for symbols.
+     */
+    public static String generateValue(String expression) {
+        Matcher matcher = GENERATOR_PATTERN.matcher(expression);
+        StringBuffer buffer = new StringBuffer();
+        while (matcher.find()) {
+            String characters = expandCharacterRange(matcher.group(1));
+            int length = Integer.parseInt(matcher.group(2));
+            if (length > MAX_GENERATED_LENGTH) {
+                throw new IllegalArgumentException("Cannot generate more than " + MAX_GENERATED_LENGTH + " characters for expression: " + expression);
+            }
+            StringBuilder generated = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                generated.append(characters.charAt(RANDOM.nextInt(characters.length())));
+            }
+            matcher.appendReplacement(buffer, Matcher.quoteReplacement(generated.toString()));
+        }
+        matcher.appendTail(buffer);
+        return buffer.toString();
+    }
+
+    protected static String expandCharacterRange(String range) {
+        StringBuilder buffer = new StringBuilder();
+        for (int i = 0, length = range.length(); i < length; i++) {
+            char c = range.charAt(i);
+            if (c == '\\' && i + 1 < length) {
+                char escaped = range.charAt(++i);
+                switch (escaped) {
+                    case 'w':
+                        buffer.append(ALPHABET).append(NUMERALS).append('_');
+                        break;
+                    case 'd':
+                        buffer.append(NUMERALS);
+                        break;
+                    case 'a':
+                        buffer.append(ALPHABET);
+                        break;
+                    case 'A':
+                        buffer.append(SYMBOLS);
+                        break;
+                    default:
+                        buffer.append(escaped);
+                }
+            } else if (i + 2 < length && range.charAt(i + 1) == '-') {
+                char end = range.charAt(i + 2);
+                for (char from = c; from <= end; from++) {
+                    buffer.append(from);
+                }
+                i += 2;
+            } else {
+                buffer.append(c);
+            }
+        }
+        if (buffer.length() == 0) {
+            throw new IllegalArgumentException("Empty character range in generator expression: [" + range + "]");
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Splits the text into literal strings and {@link Reference}s or returns null if it contains no references
+     */
+    static List<Object> parseReferences(String text) {
+        if (text == null) {
+            return null;
+        }
+        int idx = text.indexOf("${");
+        if (idx < 0) {
+            return null;
+        }
+        List<Object> answer = new ArrayList<>();
+        int start = 0;
+        while (idx >= 0) {
+            int end = text.indexOf('}', idx + 2);
+            if (end < 0) {
+                break;
+            }
+            if (idx > start) {
+                answer.add(text.substring(start, idx));
+            }
+            answer.add(new Reference(text.substring(idx + 2, end)));
+            start = end + 1;
+            idx = text.indexOf("${", start);
+        }
+        if (start < text.length()) {
+            answer.add(text.substring(start));
+        }
+        return answer;
+    }
+
+    private void findSubstitutions(JsonNode node, List<Object> path) {
+        if (node.isObject()) {
+            Iterator<Map.Entry<String, JsonNode>> iter = node.fields();
+            while (iter.hasNext()) {
+                Map.Entry<String, JsonNode> entry = iter.next();
+                path.add(entry.getKey());
+                findSubstitutions(entry.getValue(), path);
+                List<Object> segments = parseReferences(entry.getKey());
+                if (segments != null) {
+                    keySubstitutions.add(new Substitution(itemsPath(path), segments, true));
+                }
+                path.remove(path.size() - 1);
+            }
+        } else if (node.isArray()) {
+            for (int i = 0, size = node.size(); i < size; i++) {
+                path.add(i);
+                findSubstitutions(node.get(i), path);
+                path.remove(path.size() - 1);
+            }
+        } else if (node.isTextual()) {
+            List<Object> segments = parseReferences(node.textValue());
+            if (segments != null) {
+                substitutions.add(new Substitution(itemsPath(path), segments, false));
+            }
+        }
+    }
+
+    private static List<Object> itemsPath(List<Object> path) {
+        List<Object> answer = new ArrayList<>(path.size() + 1);
+        answer.add("items");
+        answer.addAll(path);
+        return answer;
+    }
+
+    /**
+     * A reference to a parameter
+     */
+    static class Reference {
+        final String name;
+
+        Reference(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * A string value or an object key in the JSON tree which references parameters
+     */
+    static class Substitution {
+        private final Object[] path;
+        private final List<Object> segments;
+        private final boolean key;
+
+        Substitution(List<Object> path, List<Object> segments, boolean key) {
+            this.path = path.toArray();
+            this.segments = segments;
+            this.key = key;
+        }
+
+        void apply(ObjectNode root, Map<String, String> values) {
+            JsonNode parent = root;
+            int last = path.length - 1;
+            for (int i = 0; i < last; i++) {
+                Object key = path[i];
+                parent = key instanceof Integer ? parent.get((Integer) key) : parent.get((String) key);
+            }
+            StringBuilder buffer = new StringBuilder();
+            for (Object segment : segments) {
+                if (segment instanceof Reference) {
+                    String name = ((Reference) segment).name;
+                    String value = values.get(name);
+                    if (value != null) {
+                        buffer.append(value);
+                    } else {
+                        buffer.append("${").append(name).append("}");
+                    }
+                } else {
+                    buffer.append(segment);
+                }
+            }
+            Object name = path[last];
+            if (key) {
+                renameField((ObjectNode) parent, (String) name, buffer.toString());
+            } else if (name instanceof Integer) {
+                ArrayNode array = (ArrayNode) parent;
+                array.set((Integer) name, array.textNode(buffer.toString()));
+            } else {
+                ((ObjectNode) parent).put((String) name, buffer.toString());
+            }
+        }
+
+        /**
+         * Renames the field keeping the order of the fields
+         */
+        private static void renameField(ObjectNode node, String name, String newName) {
+            if (name.equals(newName)) {
+                return;
+            }
+            Map<String, JsonNode> fields = new LinkedHashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> iter = node.fields();
+            while (iter.hasNext()) {
+                Map.Entry<String, JsonNode> entry = iter.next();
+                fields.put(entry.getKey().equals(name) ? newName : entry.getKey(), entry.getValue());
+            }
+            node.removeAll();
+            node.setAll(fields);
+        }
+    }
+}
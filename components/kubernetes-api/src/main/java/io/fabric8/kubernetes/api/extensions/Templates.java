@@ -15,7 +15,6 @@
  */
 package io.fabric8.kubernetes.api.extensions;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.HasMetadata;
 import io.fabric8.kubernetes.api.model.KubernetesList;
@@ -39,7 +38,6 @@ import java.util.TreeSet;
  */
 public class Templates {
 
-    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
     private static final transient Logger LOG = LoggerFactory.getLogger(Templates.class);
 
     /**
@@ -196,31 +194,7 @@ public class Templates {
         }
         List<Parameter> parameters = entity != null ? entity.getParameters() : null;
         if (parameters != null && !parameters.isEmpty()) {
-            String json = "{\"kind\": \"List\", \"apiVersion\": \"" +
-                    KubernetesHelper.defaultApiVersion + "\",\n" +
-                    "  \"items\": " +
-                    KubernetesHelper.toJson(objects) +
-                    " }";
-
-            // lets make a few passes in case there's expressions in values
-            for (int i = 0; i < 5; i++) {
-                for (Parameter parameter : parameters) {
-                    String name = parameter.getName();
-                    String regex = "${" + name + "}";
-                    String value = parameter.getValue();
-
-                    // TODO generate random strings for passwords etc!
-                    if (Strings.isNullOrBlank(value)) {
-                        if (failOnMissingParameterValue) {
-                            throw new IllegalArgumentException("No value available for parameter name: " + name);
-                        } else {
-                            value = "";
-                        }
-                    }
-                    json = Strings.replaceAllWithoutRegex(json, regex, value);
-                }
-            }
-            return  OBJECT_MAPPER.readerFor(KubernetesList.class).readValue(json);
+            return new TemplateProcessor(objects).process(parameters, failOnMissingParameterValue);
         } else {
             KubernetesList answer = new KubernetesList();
             answer.setItems(objects);
@@ -0,0 +1,121 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.NamespaceBuilder;
+import io.fabric8.kubernetes.api.model.ReplicationControllerBuilder;
+import io.fabric8.kubernetes.api.model.SecretBuilder;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ApplyEngineTest {
+
+    @Test
+    public void testAppliesInDependencyOrder() throws Exception {
+        RecordingController controller = new RecordingController();
+        List<HasMetadata> entities = Arrays.<HasMetadata>asList(
+                new ReplicationControllerBuilder().withNewMetadata().withName("rc").endMetadata().build(),
+                new ServiceBuilder().withNewMetadata().withName("svc1").endMetadata().build(),
+                new SecretBuilder().withNewMetadata().withName("secret").endMetadata().build(),
+                new ServiceBuilder().withNewMetadata().withName("svc2").endMetadata().build(),
+                new NamespaceBuilder().withNewMetadata().withName("ns").endMetadata().build());
+
+        List<ApplyResult> results = new ApplyEngine(controller, 4).apply(entities, "test");
+
+        // results are in the order the entities were given
+        assertEquals(5, results.size());
+        assertEquals("rc", results.get(0).getName());
+        assertEquals("ns", results.get(4).getName());
+
+        List<String> applied = controller.applied;
+        assertEquals("ns", applied.get(0));
+        assertEquals("secret", applied.get(1));
+        assertTrue(applied.subList(2, 4).containsAll(Arrays.asList("svc1", "svc2")));
+        assertEquals("rc", applied.get(4));
+    }
+
+    @Test
+    public void testSameResourceAppliedInOrder() throws Exception {
+        RecordingController controller = new RecordingController();
+        List<HasMetadata> entities = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            entities.add(new ServiceBuilder().withNewMetadata().withName("svc").addToLabels("version", "" + i).endMetadata().build());
+        }
+
+        new ApplyEngine(controller, 4).apply(entities, "test");
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals("svc" + i, controller.versions.get(i));
+        }
+    }
+
+    @Test
+    public void testFailureIsTheSameWhateverTheThreadCount() throws Exception {
+        for (int threads : new int[]{1, 4}) {
+            RecordingController controller = new RecordingController();
+            controller.failOn = "svc1";
+            List<HasMetadata> entities = Arrays.<HasMetadata>asList(
+                    new ServiceBuilder().withNewMetadata().withName("svc1").endMetadata().build(),
+                    new ServiceBuilder().withNewMetadata().withName("svc2").endMetadata().build(),
+                    new ReplicationControllerBuilder().withNewMetadata().withName("rc").endMetadata().build());
+            try {
+                new ApplyEngine(controller, threads).apply(entities, "test");
+                fail("Should have failed with " + threads + " threads");
+            } catch (IllegalStateException e) {
+                assertEquals("Failed to apply svc1", e.getMessage());
+            }
+            // the rest of the tier is applied but the next tier is not started
+            assertTrue(controller.applied.containsAll(Arrays.asList("svc1", "svc2")));
+            assertFalse(controller.applied.contains("rc"));
+        }
+    }
+
+    private static class RecordingController extends Controller {
+        private final List<String> applied = Collections.synchronizedList(new ArrayList<String>());
+        private final List<String> versions = Collections.synchronizedList(new ArrayList<String>());
+        private String failOn;
+
+        RecordingController() {
+            super(null);
+        }
+
+        @Override
+        public ApplyResult applyWithResult(Object entity, String sourceName) {
+            HasMetadata hasMetadata = (HasMetadata) entity;
+            String name = KubernetesHelper.getName(hasMetadata);
+            applied.add(name);
+            if (name.equals(failOn)) {
+                throw new IllegalStateException("Failed to apply " + name);
+            }
+            String version = KubernetesHelper.getLabels(hasMetadata).get("version");
+            if (version != null) {
+                versions.add(name + version);
+            }
+            return new ApplyResult(KubernetesHelper.getKind(hasMetadata), null, name, ApplyResult.Status.CREATED, null, 0);
+        }
+    }
+}
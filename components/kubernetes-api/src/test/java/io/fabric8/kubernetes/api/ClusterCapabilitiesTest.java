@@ -0,0 +1,172 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.RootPaths;
+import io.fabric8.kubernetes.client.DefaultKubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.kubernetes.client.KubernetesClientException;
+import io.fabric8.openshift.client.DefaultOpenShiftClient;
+import io.fabric8.openshift.client.OpenShiftClient;
+import org.junit.After;
+import org.junit.Test;
+
+import java.net.URL;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ClusterCapabilitiesTest {
+
+    @After
+    public void tearDown() {
+        ClusterCapabilities.setTimeToLiveMillis(ClusterCapabilities.DEFAULT_TIME_TO_LIVE_MILLIS);
+        ClusterCapabilities.invalidateAll();
+    }
+
+    @Test
+    public void testCapabilitiesAreSharedUntilTheyExpire() throws Exception {
+        KubernetesClient client = new DefaultKubernetesClient("http://ttl.example.com:8443");
+
+        ClusterCapabilities capabilities = ClusterCapabilities.get(client);
+        assertSame(capabilities, ClusterCapabilities.get(client));
+
+        ClusterCapabilities.setTimeToLiveMillis(0);
+        ClusterCapabilities expiring = ClusterCapabilities.get(client);
+        assertNotSame(capabilities, expiring);
+        assertTrue(expiring.isExpired(System.currentTimeMillis()));
+        assertNotSame(expiring, ClusterCapabilities.get(client));
+    }
+
+    @Test
+    public void testInvalidateProbesAgain() throws Exception {
+        KubernetesClient client = new DefaultKubernetesClient("http://invalidate.example.com:8443");
+
+        ClusterCapabilities capabilities = ClusterCapabilities.get(client);
+        ClusterCapabilities.invalidate(client);
+
+        assertNotSame(capabilities, ClusterCapabilities.get(client));
+    }
+
+    @Test
+    public void testFailuresAreNotCached() throws Exception {
+        KubernetesClient client = new DefaultKubernetesClient("http://failing.example.com:8443");
+        StubCapabilities capabilities = new StubCapabilities(client.getMasterUrl(), null);
+
+        assertNull(capabilities.getOpenShiftClient(client));
+        assertNull(capabilities.getOpenShiftClient(client));
+        assertEquals(2, capabilities.adaptCount.get());
+
+        assertFalse(capabilities.supportsAPIGroup(client, "apps"));
+        assertEquals(3, capabilities.adaptCount.get());
+
+        capabilities.openShiftClient = new DefaultOpenShiftClient("http://failing.example.com:8443");
+        assertSame(capabilities.openShiftClient, capabilities.getOpenShiftClient(client));
+        assertTrue(capabilities.supportsAPIGroup(client, "apps"));
+        assertEquals(4, capabilities.adaptCount.get());
+    }
+
+    @Test
+    public void testAnswersAreCached() throws Exception {
+        KubernetesClient client = new DefaultKubernetesClient("http://openshift.example.com:8443");
+        StubCapabilities capabilities = new StubCapabilities(client.getMasterUrl(), new DefaultOpenShiftClient("http://openshift.example.com:8443"));
+
+        assertTrue(capabilities.supportsAPIGroup(client, "apps"));
+        assertTrue(capabilities.supportsAPIGroup(client, "apps"));
+        assertSame(capabilities.openShiftClient, capabilities.getOpenShiftClient(client));
+
+        assertEquals(1, capabilities.adaptCount.get());
+        assertEquals(1, capabilities.probeCount.get());
+    }
+
+    @Test
+    public void testUnreachableClusterIsNotOpenShift() throws Exception {
+        KubernetesClient client = new DefaultKubernetesClient("http://localhost:1");
+
+        assertFalse(ClusterCapabilities.isOpenShift(client));
+        assertNull(ClusterCapabilities.getOpenShiftClientOrNull(client));
+        assertFalse(ClusterCapabilities.supportsOpenShiftAPIGroup(client, "apps"));
+    }
+
+    @Test
+    public void testRootPathFailuresAreNotCached() throws Exception {
+        KubernetesClient client = new DefaultKubernetesClient("http://forbidden.example.com:8443");
+        final AtomicInteger probeCount = new AtomicInteger();
+        final AtomicReference<RootPaths> rootPaths = new AtomicReference<>();
+        ClusterCapabilities capabilities = new ClusterCapabilities(client.getMasterUrl(), Long.MAX_VALUE) {
+            @Override
+            protected RootPaths rootPaths(KubernetesClient client) {
+                probeCount.incrementAndGet();
+                if (rootPaths.get() == null) {
+                    throw new KubernetesClientException("Forbidden", 403, null);
+                }
+                return rootPaths.get();
+            }
+        };
+
+        assertFalse(capabilities.isOpenShiftCluster(client));
+        assertNull(capabilities.getOpenShiftClient(client));
+        assertEquals(2, probeCount.get());
+
+        RootPaths openShiftRootPaths = new RootPaths();
+        openShiftRootPaths.setPaths(Arrays.asList("/api", "/oapi"));
+        rootPaths.set(openShiftRootPaths);
+        assertTrue(capabilities.isOpenShiftCluster(client));
+        assertTrue(capabilities.isOpenShiftCluster(client));
+        assertEquals(3, probeCount.get());
+    }
+
+    /**
+     * Capabilities of an OpenShift cluster whose client can only be adapted once it is set
+     */
+    private static class StubCapabilities extends ClusterCapabilities {
+        private final AtomicInteger adaptCount = new AtomicInteger();
+        private final AtomicInteger probeCount = new AtomicInteger();
+        private volatile OpenShiftClient openShiftClient;
+
+        StubCapabilities(URL masterUrl, OpenShiftClient openShiftClient) {
+            super(masterUrl, Long.MAX_VALUE);
+            this.openShiftClient = openShiftClient;
+        }
+
+        @Override
+        protected boolean isOpenShiftCluster(KubernetesClient client) {
+            return true;
+        }
+
+        @Override
+        protected OpenShiftClient adapt(KubernetesClient client) {
+            adaptCount.incrementAndGet();
+            if (openShiftClient == null) {
+                throw new KubernetesClientException("Connection refused");
+            }
+            return openShiftClient;
+        }
+
+        @Override
+        protected boolean probeAPIGroup(OpenShiftClient openShiftClient, String apiGroup) {
+            probeCount.incrementAndGet();
+            return true;
+        }
+    }
+}
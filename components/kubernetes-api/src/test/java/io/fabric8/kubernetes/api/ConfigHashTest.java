@@ -0,0 +1,86 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import org.junit.Test;
+
+import static io.fabric8.kubernetes.api.KubernetesHelper.getOrCreateAnnotations;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+public class ConfigHashTest {
+
+    @Test
+    public void testHashIgnoresOrderAndServerFields() throws Exception {
+        Service entity1 = new ServiceBuilder().withNewMetadata().withName("foo").
+                addToLabels("label1", "value1").
+                addToLabels("label2", "value2").
+                endMetadata().
+                withNewSpec().
+                addToSelector("label1", "value1").
+                addNewPort().withPort(123).withNewTargetPort(456).endPort().
+                endSpec().
+                build();
+
+        Service entity2 = new ServiceBuilder().withNewMetadata().withName("foo").
+                addToLabels("label2", "value2").
+                addToLabels("label1", "value1").
+                withResourceVersion("2").
+                withUid("1234").
+                endMetadata().
+                withNewSpec().
+                addToSelector("label1", "value1").
+                addNewPort().withPort(123).withNewTargetPort(456).endPort().
+                endSpec().
+                withNewStatus().withNewLoadBalancer().endLoadBalancer().endStatus().
+                build();
+        getOrCreateAnnotations(entity2).put(Annotations.Config.APPLIED_CONFIG_HASH, "abc");
+
+        assertEquals(ConfigHash.canonicalJson(entity1), ConfigHash.canonicalJson(entity2));
+        assertEquals(ConfigHash.configHash(entity1), ConfigHash.configHash(entity2));
+    }
+
+    @Test
+    public void testHashChangesWithConfiguration() throws Exception {
+        Service entity1 = new ServiceBuilder().withNewMetadata().withName("foo").endMetadata().
+                withNewSpec().addNewPort().withPort(123).endPort().endSpec().
+                build();
+        Service entity2 = new ServiceBuilder().withNewMetadata().withName("foo").endMetadata().
+                withNewSpec().addNewPort().withPort(124).endPort().endSpec().
+                build();
+
+        assertNotEquals(ConfigHash.configHash(entity1), ConfigHash.configHash(entity2));
+    }
+
+    @Test
+    public void testWithConfigHashCopiesTheEntity() throws Exception {
+        Service entity = new ServiceBuilder().withNewMetadata().withName("foo").endMetadata().
+                withNewSpec().addNewPort().withPort(123).endPort().endSpec().
+                build();
+
+        Service copy = ConfigHash.withConfigHash(entity);
+
+        assertNotSame(entity, copy);
+        assertNull(ConfigHash.getAppliedConfigHash(entity));
+        assertEquals(ConfigHash.configHash(entity), ConfigHash.getAppliedConfigHash(copy));
+        assertEquals(ConfigHash.configHash(entity), ConfigHash.configHash(copy));
+        assertEquals(Integer.valueOf(123), copy.getSpec().getPorts().get(0).getPort());
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.HasMetadata;
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.Service;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KubernetesResourceReaderTest {
+
+    @Test
+    public void testReadMultipleYamlDocuments() throws Exception {
+        String yaml = "apiVersion: v1\n" +
+                "kind: Service\n" +
+                "metadata:\n" +
+                "  name: foo\n" +
+                "---\n" +
+                "apiVersion: v1\n" +
+                "kind: List\n" +
+                "items:\n" +
+                "- apiVersion: v1\n" +
+                "  kind: Pod\n" +
+                "  metadata:\n" +
+                "    name: bar\n" +
+                "- apiVersion: v1\n" +
+                "  kind: Service\n" +
+                "  metadata:\n" +
+                "    name: whatnot\n";
+
+        List<HasMetadata> resources = readAll(KubernetesHelper.readYamlResources(new ByteArrayInputStream(yaml.getBytes())));
+        assertEquals(3, resources.size());
+        assertTrue(resources.get(0) instanceof Service);
+        assertTrue(resources.get(1) instanceof Pod);
+        assertEquals("bar", KubernetesHelper.getName(resources.get(1)));
+        assertEquals("whatnot", KubernetesHelper.getName(resources.get(2)));
+    }
+
+    @Test
+    public void testReadJsonList() throws Exception {
+        String json = "{\"kind\": \"List\", \"apiVersion\": \"v1\", \"items\": [" +
+                "{\"kind\": \"Pod\", \"apiVersion\": \"v1\", \"metadata\": {\"name\": \"bar\"}}," +
+                "{\"kind\": \"Service\", \"apiVersion\": \"v1\", \"metadata\": {\"name\": \"foo\"}}" +
+                "]}";
+
+        List<HasMetadata> resources = readAll(KubernetesHelper.readJsonResources(new ByteArrayInputStream(json.getBytes())));
+        assertEquals(2, resources.size());
+        assertEquals("bar", KubernetesHelper.getName(resources.get(0)));
+        assertEquals("foo", KubernetesHelper.getName(resources.get(1)));
+    }
+
+    protected static List<HasMetadata> readAll(KubernetesResourceReader reader) throws Exception {
+        List<HasMetadata> answer = new ArrayList<>();
+        try {
+            HasMetadata resource;
+            while ((resource = reader.read()) != null) {
+                answer.add(resource);
+            }
+        } finally {
+            reader.close();
+        }
+        return answer;
+    }
+}
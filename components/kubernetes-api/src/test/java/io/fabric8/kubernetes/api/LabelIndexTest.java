@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
+import io.fabric8.kubernetes.client.Watcher;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class LabelIndexTest {
+
+    @Test
+    public void testSelectMatchesFilterLabels() throws Exception {
+        List<Pod> pods = new ArrayList<>();
+        pods.add(createPod("a", "app", "foo", "version", "1"));
+        pods.add(createPod("b", "app", "foo", "version", "2"));
+        pods.add(createPod("c", "app", "bar", "version", "1"));
+        pods.add(createPod("d", "other", "x"));
+        pods.add(new PodBuilder().withNewMetadata().withName("e").endMetadata().build());
+
+        LabelIndex<Pod> index = new LabelIndex<>(pods);
+
+        List<Map<String, String>> selectors = new ArrayList<>();
+        selectors.add(labels("app", "foo"));
+        selectors.add(labels("app", "foo", "version", "1"));
+        selectors.add(labels("version", "1"));
+        selectors.add(labels("app", "missing"));
+        selectors.add(labels("app", null));
+        selectors.add(labels("app", "bar", "other", null));
+        for (Map<String, String> selector : selectors) {
+            List<Pod> expected = new ArrayList<>();
+            for (Pod pod : pods) {
+                if (KubernetesHelper.filterLabels(selector, pod.getMetadata().getLabels())) {
+                    expected.add(pod);
+                }
+            }
+            assertEquals("selector " + selector, expected, index.select(selector));
+            assertEquals("selector " + selector, expected.size(), index.count(selector));
+        }
+        assertEquals(pods, index.select(Collections.<String, String>emptyMap()));
+    }
+
+    @Test
+    public void testWatchEventsUpdateIndex() throws Exception {
+        LabelIndex<Pod> index = new LabelIndex<>();
+        index.eventReceived(Watcher.Action.ADDED, createPod("a", "app", "foo"));
+        index.eventReceived(Watcher.Action.ADDED, createPod("b", "app", "foo"));
+        assertEquals(2, index.count(labels("app", "foo")));
+
+        index.eventReceived(Watcher.Action.MODIFIED, createPod("a", "app", "bar"));
+        assertEquals(1, index.count(labels("app", "foo")));
+        assertEquals("a", KubernetesHelper.getName(index.select(labels("app", "bar")).get(0)));
+
+        index.eventReceived(Watcher.Action.DELETED, createPod("b", "app", "foo"));
+        assertEquals(0, index.count(labels("app", "foo")));
+        assertEquals(1, index.size());
+
+        index.eventReceived(Watcher.Action.ADDED, createPod("c", "app", "foo"));
+        assertEquals("c", KubernetesHelper.getName(index.select(labels("app", "foo")).get(0)));
+        assertEquals(2, index.size());
+    }
+
+    protected static Pod createPod(String name, String... keyValues) {
+        return new PodBuilder().withNewMetadata().withName(name).withNamespace("default").withLabels(labels(keyValues)).endMetadata().build();
+    }
+
+    protected static Map<String, String> labels(String... keyValues) {
+        Map<String, String> answer = new HashMap<>();
+        for (int i = 0; i + 1 < keyValues.length; i += 2) {
+            answer.put(keyValues[i], keyValues[i + 1]);
+        }
+        return answer;
+    }
+}
@@ -0,0 +1,124 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import io.fabric8.kubernetes.api.model.ServiceListBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.openshift.client.server.mock.OpenShiftServer;
+import org.junit.Rule;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LiveResourcesTest {
+
+    @Rule
+    public OpenShiftServer server = new OpenShiftServer();
+
+    @Test
+    public void testLoadIndexesTheList() throws Exception {
+        server.expect().withPath("/api/v1/namespaces/test/services").andReturn(200, new ServiceListBuilder().addToItems(service("svc1")).build()).once();
+        KubernetesClient client = server.getKubernetesClient();
+
+        LiveResources live = new LiveResources(false);
+        live.load("Service", "test", client.services());
+
+        assertTrue(live.isIndexed("Service", "test", "svc1"));
+        assertEquals("svc1", KubernetesHelper.getName(live.get("Service", "test", "svc1", Service.class)));
+        assertTrue(live.isIndexed("Service", "test", "svc2"));
+        assertNull(live.get("Service", "test", "svc2", Service.class));
+        assertEquals(1, live.list("Service", "test").size());
+    }
+
+    @Test
+    public void testFailedLoadIsNotRetriedOnEveryCall() throws Exception {
+        server.expect().withPath("/api/v1/namespaces/test/services").andReturn(500, "boom").once();
+        server.expect().withPath("/api/v1/namespaces/test/services").andReturn(200, new ServiceListBuilder().addToItems(service("svc1")).build()).once();
+        KubernetesClient client = server.getKubernetesClient();
+
+        LiveResources live = new LiveResources(false);
+        live.load("Service", "test", client.services());
+        assertFalse(live.isIndexed("Service", "test", "svc1"));
+
+        live.load("Service", "test", client.services());
+        assertFalse(live.isIndexed("Service", "test", "svc1"));
+        assertNull(live.list("Service", "test"));
+    }
+
+    @Test
+    public void testFailedLoadIsRetriedLater() throws Exception {
+        server.expect().withPath("/api/v1/namespaces/test/services").andReturn(500, "boom").once();
+        server.expect().withPath("/api/v1/namespaces/test/services").andReturn(200, new ServiceListBuilder().addToItems(service("svc1")).build()).once();
+        KubernetesClient client = server.getKubernetesClient();
+
+        LiveResources live = new LiveResources(false, 0);
+        live.load("Service", "test", client.services());
+        assertFalse(live.isIndexed("Service", "test", "svc1"));
+
+        live.load("Service", "test", client.services());
+        assertTrue(live.isIndexed("Service", "test", "svc1"));
+    }
+
+    @Test
+    public void testDeleteBeforeListIsNotUndone() throws Exception {
+        LiveResources.Index index = new LiveResources.Index();
+        index.put("svc1", null);
+        index.put("svc2", service("svc2"));
+
+        index.putListed("svc1", service("svc1"));
+        index.putListed("svc2", service("stale"));
+        index.putListed("svc3", service("svc3"));
+        index.setLoaded();
+
+        assertNull(index.get("svc1"));
+        assertEquals("svc2", KubernetesHelper.getName(index.get("svc2")));
+        assertEquals("svc3", KubernetesHelper.getName(index.get("svc3")));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    public void testRecreatedAfterDeleteIsIndexed() throws Exception {
+        LiveResources.Index index = new LiveResources.Index();
+        index.put("svc1", null);
+        index.put("svc1", service("svc1"));
+        index.putListed("svc1", service("stale"));
+        index.setLoaded();
+
+        assertEquals("svc1", KubernetesHelper.getName(index.get("svc1")));
+    }
+
+    @Test
+    public void testInvalidatedResourceIsLookedUpAgain() throws Exception {
+        server.expect().withPath("/api/v1/namespaces/test/services").andReturn(200, new ServiceListBuilder().addToItems(service("svc1")).build()).once();
+        KubernetesClient client = server.getKubernetesClient();
+
+        LiveResources live = new LiveResources(false);
+        live.load("Service", "test", client.services());
+        live.invalidate(service("svc1"), "test");
+
+        assertFalse(live.isIndexed("Service", "test", "svc1"));
+        assertTrue(live.isIndexed("Service", "test", "svc2"));
+    }
+
+    private static Service service(String name) {
+        return new ServiceBuilder().withNewMetadata().withName(name).endMetadata().build();
+    }
+}
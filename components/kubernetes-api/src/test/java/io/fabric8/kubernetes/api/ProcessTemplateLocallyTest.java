@@ -15,23 +15,32 @@
  */
 package io.fabric8.kubernetes.api;
 
+import io.fabric8.kubernetes.api.extensions.TemplateProcessor;
 import io.fabric8.kubernetes.api.extensions.Templates;
 import io.fabric8.kubernetes.api.model.HasMetadata;
 import io.fabric8.kubernetes.api.model.KubernetesList;
 import io.fabric8.kubernetes.api.model.ReplicationController;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import io.fabric8.openshift.api.model.Parameter;
+import io.fabric8.openshift.api.model.ParameterBuilder;
 import io.fabric8.openshift.api.model.Template;
 
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import static io.fabric8.kubernetes.api.KubernetesHelper.toJson;
 import static io.fabric8.kubernetes.api.ParseExamplesTest.assertNotEmpty;
 import static io.fabric8.kubernetes.api.ParseTest.assertParseExampleFile;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Parses the example JSON
@@ -57,4 +66,63 @@ public class ProcessTemplateLocallyTest {
         System.out.println("Created JSON: " + toJson(list));
     }
 
+    @Test
+    public void testResolveNestedParameters() throws Exception {
+        List<Parameter> parameters = Arrays.asList(
+                new ParameterBuilder().withName("IMAGE").withValue("${REGISTRY}/jenkins:${VERSION}").build(),
+                new ParameterBuilder().withName("REGISTRY").withValue("docker.io/${ORG}").build(),
+                new ParameterBuilder().withName("ORG").withValue("fabric8").build(),
+                new ParameterBuilder().withName("VERSION").withValue("1.0").build(),
+                new ParameterBuilder().withName("PASSWORD").withGenerate("expression").withFrom("[a-z0-9]{12}").build());
+
+        Map<String, String> values = TemplateProcessor.resolveParameters(parameters, true);
+        assertEquals("docker.io/fabric8/jenkins:1.0", values.get("IMAGE"));
+        assertTrue("Generated password " + values.get("PASSWORD"), values.get("PASSWORD").matches("[a-z0-9]{12}"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCyclicParametersFail() throws Exception {
+        List<Parameter> parameters = Arrays.asList(
+                new ParameterBuilder().withName("A").withValue("${B}").build(),
+                new ParameterBuilder().withName("B").withValue("${A}").build());
+
+        TemplateProcessor.resolveParameters(parameters, true);
+    }
+
+    @Test
+    public void testSubstitutesKeysAndValues() throws Exception {
+        Service service = new ServiceBuilder().withNewMetadata().withName("${APP}").
+                addToLabels("${APP}-group", "${GROUP}").
+                addToAnnotations("${DOMAIN}/expose", "true").
+                endMetadata().
+                withNewSpec().addToSelector("app", "${APP}").endSpec().
+                build();
+        TemplateProcessor processor = new TemplateProcessor(Arrays.<HasMetadata>asList(service));
+
+        KubernetesList list = processor.process(Arrays.asList(
+                new ParameterBuilder().withName("APP").withValue("cheese").build(),
+                new ParameterBuilder().withName("GROUP").withValue("io.fabric8").build(),
+                new ParameterBuilder().withName("DOMAIN").withValue("fabric8.io").build()), true);
+
+        Service answer = (Service) list.getItems().get(0);
+        assertEquals("cheese", answer.getMetadata().getName());
+        assertEquals(Collections.singletonMap("cheese-group", "io.fabric8"), answer.getMetadata().getLabels());
+        assertEquals(Collections.singletonMap("fabric8.io/expose", "true"), answer.getMetadata().getAnnotations());
+        assertEquals("cheese", answer.getSpec().getSelector().get("app"));
+    }
+
+    @Test
+    public void testProcessorCanBeReused() throws Exception {
+        Service service = new ServiceBuilder().withNewMetadata().withName("${APP}").addToLabels("${APP}", "${APP}").endMetadata().build();
+        TemplateProcessor processor = new TemplateProcessor(Arrays.<HasMetadata>asList(service));
+
+        KubernetesList first = processor.process(Arrays.asList(new ParameterBuilder().withName("APP").withValue("foo").build()), true);
+        KubernetesList second = processor.process(Arrays.asList(new ParameterBuilder().withName("APP").withValue("bar").build()), true);
+
+        assertEquals("foo", first.getItems().get(0).getMetadata().getName());
+        assertEquals(Collections.singletonMap("foo", "foo"), first.getItems().get(0).getMetadata().getLabels());
+        assertEquals("bar", second.getItems().get(0).getMetadata().getName());
+        assertEquals(Collections.singletonMap("bar", "bar"), second.getItems().get(0).getMetadata().getLabels());
+        assertEquals("${APP}", service.getMetadata().getName());
+    }
 }
@@ -0,0 +1,95 @@
+/**
+ *  Copyright 2005-2016 Red Hat, Inc.
+ *
+ *  Red Hat licenses this file to you under the Apache License, version
+ *  2.0 (the "License"); you may not use this file except in compliance
+ *  with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ *  implied.  See the License for the specific language governing
+ *  permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.IntOrString;
+import io.fabric8.kubernetes.api.model.Service;
+import io.fabric8.kubernetes.api.model.ServiceBuilder;
+import io.fabric8.kubernetes.api.model.ServicePort;
+import io.fabric8.kubernetes.api.model.ServicePortBuilder;
+import io.fabric8.kubernetes.api.model.extensions.Ingress;
+import io.fabric8.kubernetes.api.model.extensions.IngressBuilder;
+import io.fabric8.kubernetes.client.KubernetesClient;
+import io.fabric8.openshift.client.server.mock.OpenShiftServer;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class ServiceURLResolverTest {
+
+    @Rule
+    public OpenShiftServer server = new OpenShiftServer();
+
+    @Test
+    public void testIngressBackendsIndexedByServiceAndPort() throws Exception {
+        Ingress ingress = new IngressBuilder().withNewMetadata().withName("foo").endMetadata().
+                withNewSpec().
+                addNewRule().withHost("foo.example.com").
+                withNewHttp().
+                addNewPath().withPath("/api").withNewBackend().withServiceName("foo").withServicePort(new IntOrString(8080)).endBackend().endPath().
+                addNewPath().withNewBackend().withServiceName("foo").withServicePort(new IntOrString("admin")).endBackend().endPath().
+                endHttp().
+                endRule().
+                endSpec().
+                build();
+
+        ServiceURLResolver.IngressBackends backends = new ServiceURLResolver.IngressBackends(Arrays.asList(ingress), 0);
+
+        ServicePort http = new ServicePortBuilder().withName("http").withPort(8080).build();
+        ServicePort admin = new ServicePortBuilder().withName("admin").withPort(9090).build();
+        ServicePort other = new ServicePortBuilder().withName("other").withPort(1234).build();
+        assertEquals("http://foo.example.com/api", backends.findURL("foo", http));
+        assertEquals("http://foo.example.com/", backends.findURL("foo", admin));
+        assertNull(backends.findURL("foo", other));
+        assertNull(backends.findURL("bar", http));
+    }
+
+    @Test
+    public void testSharedResolverPerNamespace() throws Exception {
+        KubernetesClient client = server.getKubernetesClient();
+        KubernetesClient other = server.getKubernetesClient().inNamespace("other");
+
+        ServiceURLResolver resolver = ServiceURLResolver.getInstance(client);
+        try {
+            assertSame(resolver, ServiceURLResolver.getInstance(client));
+            assertNotSame(resolver, ServiceURLResolver.getInstance(other));
+        } finally {
+            resolver.close();
+            ServiceURLResolver.getInstance(other).close();
+        }
+        assertNotSame(resolver, ServiceURLResolver.getInstance(client));
+        ServiceURLResolver.getInstance(client).close();
+    }
+
+    @Test
+    public void testServiceURLDefaultsToTheNamespaceOfTheClient() throws Exception {
+        Service service = new ServiceBuilder().withNewMetadata().withName("foo").withNamespace("other").endMetadata().
+                withNewSpec().withClusterIP("10.0.0.1").addNewPort().withName("http").withPort(80).endPort().endSpec().
+                build();
+        server.expect().withPath("/api/v1/namespaces/other/services/foo").andReturn(200, service).once();
+        KubernetesClient client = server.getKubernetesClient().inNamespace("other");
+
+        String url = new ServiceURLResolver(client, false).getServiceURL("foo", null, "http", "http", false);
+
+        assertEquals("http://10.0.0.1:80", url);
+    }
+}
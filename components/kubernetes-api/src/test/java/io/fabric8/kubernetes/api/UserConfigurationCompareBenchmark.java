@@ -0,0 +1,195 @@
+/**
+ * Copyright 2005-2016 Red Hat, Inc.
+ * <p>
+ * Red Hat licenses this file to you under the Apache License, version
+ * 2.0 (the "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package io.fabric8.kubernetes.api;
+
+import io.fabric8.kubernetes.api.model.Container;
+import io.fabric8.kubernetes.api.model.ContainerBuilder;
+import io.fabric8.kubernetes.api.model.ContainerPortBuilder;
+import io.fabric8.kubernetes.api.model.EnvVar;
+import io.fabric8.kubernetes.api.model.ObjectMeta;
+import io.fabric8.kubernetes.api.model.VolumeMountBuilder;
+import io.fabric8.openshift.api.model.DeploymentConfig;
+import io.fabric8.openshift.api.model.DeploymentConfigBuilder;
+import io.fabric8.openshift.api.model.Template;
+import io.fabric8.openshift.api.model.TemplateBuilder;
+import io.fabric8.utils.Objects;
+
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compares the time taken by {@link UserConfigurationCompare} to compare large DeploymentConfig and Template
+ * entities against the previous reflective implementation.
+ * <p/>
+ * Run it via: <code>mvn -Pcompare-benchmark</code>
+ */
+public class UserConfigurationCompareBenchmark {
+    private static final int WARMUP_SECONDS = 5;
+    private static final int MEASURE_SECONDS = 10;
+
+    public static void main(String... args) {
+        DeploymentConfig deploymentConfig1 = createDeploymentConfig("big", 10, 50);
+        DeploymentConfig deploymentConfig2 = createDeploymentConfig("big", 10, 50);
+        Template template1 = createTemplate(50);
+        Template template2 = createTemplate(50);
+
+        System.out.println("Comparing a DeploymentConfig with 10 containers of 50 env vars and a Template of 50 DeploymentConfigs");
+        run("DeploymentConfig reflective", deploymentConfig1, deploymentConfig2, false);
+        run("DeploymentConfig cached    ", deploymentConfig1, deploymentConfig2, true);
+        run("Template reflective        ", template1, template2, false);
+        run("Template cached            ", template1, template2, true);
+    }
+
+    protected static void run(String name, Object entity1, Object entity2, boolean cached) {
+        measure(entity1, entity2, cached, WARMUP_SECONDS);
+        long nanosPerOp = measure(entity1, entity2, cached, MEASURE_SECONDS);
+        System.out.println(name + ": " + nanosPerOp + " ns/op");
+    }
+
+    protected static long measure(Object entity1, Object entity2, boolean cached, int seconds) {
+        long start = System.nanoTime();
+        long end = start + seconds * 1000000000L;
+        int count = 0;
+        long now;
+        do {
+            boolean equal = cached ? UserConfigurationCompare.configEqual(entity1, entity2) : ReflectiveCompare.configEqual(entity1, entity2);
+            if (!equal) {
+                throw new IllegalStateException("Entities should be equal");
+            }
+            count++;
+            now = System.nanoTime();
+        } while (now < end);
+        return (now - start) / count;
+    }
+
+    protected static Template createTemplate(int deploymentConfigs) {
+        TemplateBuilder builder = new TemplateBuilder().withNewMetadata().withName("big").endMetadata();
+        for (int i = 0; i < deploymentConfigs; i++) {
+            builder.addToObjects(createDeploymentConfig("dc" + i, 2, 20));
+        }
+        return builder.build();
+    }
+
+    protected static DeploymentConfig createDeploymentConfig(String name, int containerCount, int envCount) {
+        List<Container> containers = new ArrayList<>();
+        for (int i = 0; i < containerCount; i++) {
+            List<EnvVar> env = new ArrayList<>();
+            for (int j = 0; j < envCount; j++) {
+                env.add(new EnvVar("ENV_" + j, "value" + j, null));
+            }
+            containers.add(new ContainerBuilder().
+                    withName("container" + i).
+                    withImage("fabric8/container" + i + ":1.0").
+                    withArgs("--port", "8080", "--verbose").
+                    withEnv(env).
+                    addToPorts(new ContainerPortBuilder().withName("http").withContainerPort(8080).build()).
+                    addToPorts(new ContainerPortBuilder().withName("jolokia").withContainerPort(8778).build()).
+                    addToVolumeMounts(new VolumeMountBuilder().withName("config").withMountPath("/etc/config").build()).
+                    build());
+        }
+        return new DeploymentConfigBuilder().
+                withNewMetadata().withName(name).addToLabels("project", name).addToLabels("provider", "fabric8").endMetadata().
+                withNewSpec().
+                    withReplicas(1).
+                    addToSelector("project", name).
+                    withNewTemplate().
+                        withNewMetadata().addToLabels("project", name).endMetadata().
+                        withNewSpec().withContainers(containers).endSpec().
+                    endTemplate().
+                endSpec().
+                build();
+    }
+
+    /**
+     * The previous implementation of {@link UserConfigurationCompare} which introspects each DTO on every
+     * compare and matches every item of a collection against every item of the other
+     */
+    static class ReflectiveCompare {
+        protected static final Collection<String> ignoredProperties = Collections.singletonList("status");
+
+        public static boolean configEqual(Object entity1, Object entity2) {
+            if (entity1 == entity2) {
+                return true;
+            } else if (entity1 == null || entity2 == null) {
+                return false;
+            } else if (entity1 instanceof Map && entity2 instanceof Map) {
+                return configEqualMap((Map) entity1, (Map) entity2);
+            } else if (entity1 instanceof ObjectMeta && entity2 instanceof ObjectMeta) {
+                return UserConfigurationCompare.configEqualObjectMeta((ObjectMeta) entity1, (ObjectMeta) entity2);
+            } else if (entity1 instanceof Collection && entity2 instanceof Collection) {
+                return subCollection((Collection) entity1, (Collection) entity2) && subCollection((Collection) entity2, (Collection) entity1);
+            } else {
+                Class<?> aClass = UserConfigurationCompare.getCommonDenominator(entity1.getClass(), entity2.getClass());
+                if (aClass != null && aClass.getPackage().getName().startsWith("io.fabric8")) {
+                    return configEqualKubernetesDTO(entity1, entity2, aClass);
+                }
+                return Objects.equal(entity1, entity2);
+            }
+        }
+
+        static boolean subCollection(Collection<?> left, Collection<?> right) {
+            for (Object candidate : left) {
+                boolean found = false;
+                for (Object item : right) {
+                    if (configEqual(candidate, item)) {
+                        found = true;
+                        break;
+                    }
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        static boolean configEqualMap(Map<?, ?> entity1, Map<?, ?> entity2) {
+            if (entity1.size() != entity2.size()) {
+                return false;
+            }
+            for (Map.Entry<?, ?> entry : entity1.entrySet()) {
+                if (!configEqual(entry.getValue(), entity2.get(entry.getKey()))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        static boolean configEqualKubernetesDTO(Object entity1, Object entity2, Class<?> clazz) {
+            try {
+                BeanInfo beanInfo = Introspector.getBeanInfo(clazz);
+                for (PropertyDescriptor propertyDescriptor : beanInfo.getPropertyDescriptors()) {
+                    Method readMethod = propertyDescriptor.getReadMethod();
+                    if (readMethod != null && !ignoredProperties.contains(propertyDescriptor.getName())) {
+                        if (!configEqual(readMethod.invoke(entity1), readMethod.invoke(entity2))) {
+                            return false;
+                        }
+                    }
+                }
+                return true;
+            } catch (Exception e) {
+                return false;
+            }
+        }
+    }
+}
@@ -15,10 +15,14 @@
  */
 package io.fabric8.kubernetes.api;
 
+import io.fabric8.kubernetes.api.model.EnvVar;
 import io.fabric8.kubernetes.api.model.Pod;
+import io.fabric8.kubernetes.api.model.PodBuilder;
 import io.fabric8.kubernetes.api.model.ReplicationController;
 import org.junit.Test;
 
+import java.util.Arrays;
+
 import static org.junit.Assert.*;
 
 public class UserConfigurationCompareTest {
@@ -33,4 +37,42 @@ public class UserConfigurationCompareTest {
 
         assertEquals(null, UserConfigurationCompare.getCommonDenominator(ReplicationController.class, Pod.class));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testNamedListsComparedByName() {
+        Pod entity1 = createPod(new EnvVar("A", "1", null), new EnvVar("B", "2", null));
+        Pod entity2 = createPod(new EnvVar("B", "2", null), new EnvVar("A", "1", null));
+
+        assertTrue(UserConfigurationCompare.configEqual(entity1, entity2));
+    }
+
+    @Test
+    public void testNamedListsNotEqual() {
+        Pod entity1 = createPod(new EnvVar("A", "1", null), new EnvVar("B", "2", null));
+        Pod entity2 = createPod(new EnvVar("A", "1", null), new EnvVar("C", "2", null));
+
+        assertFalse(UserConfigurationCompare.configEqual(entity1, entity2));
+    }
+
+    @Test
+    public void testOrderedListsComparedByPosition() {
+        Pod entity1 = createPod(new EnvVar("A", "1", null));
+        Pod entity2 = createPod(new EnvVar("A", "1", null));
+        entity2.getSpec().getContainers().get(0).setArgs(Arrays.asList("--second", "--first"));
+
+        assertFalse(UserConfigurationCompare.configEqual(entity1, entity2));
+    }
+
+    protected static Pod createPod(EnvVar... env) {
+        return new PodBuilder().withNewMetadata().withName("foo").endMetadata().
+                withNewSpec().
+                    addNewContainer().
+                        withName("jenkins").
+                        withImage("fabric8/jenkins").
+                        withArgs("--first", "--second").
+                        withEnv(env).
+                    endContainer().
+                endSpec().
+                build();
+    }
+}
@@ -15,6 +15,7 @@
  */
 package io.fabric8.kubernetes.assertions;
 
+import io.fabric8.kubernetes.api.ClusterCapabilities;
 import io.fabric8.kubernetes.api.Controller;
 import io.fabric8.kubernetes.api.KubernetesHelper;
 import io.fabric8.kubernetes.api.model.HasMetadata;
@@ -127,8 +128,8 @@ public class KubernetesAssert extends AbstractAssert<KubernetesAssert, Kubernete
     public HasPodSelectionAssert deployment(String deploymentName) {
         String namespace = namespace();
         String qualifiedName = namespace + "." + deploymentName;
-        OpenShiftClient openShiftClient = new Controller(client).getOpenShiftClientOrNull();
-        if (openShiftClient != null && openShiftClient.supportsOpenShiftAPIGroup(OpenShiftAPIGroups.APPS)) {
+        if (ClusterCapabilities.supportsOpenShiftAPIGroup(client, OpenShiftAPIGroups.APPS)) {
+            OpenShiftClient openShiftClient = ClusterCapabilities.getOpenShiftClientOrNull(client);
             DeploymentConfig deployment = openShiftClient.deploymentConfigs().inNamespace(namespace).withName(deploymentName).get();
             assertThat(deployment).describedAs("DeploymentConfig: " + qualifiedName).isNotNull().metadata().name().isEqualTo(deploymentName);
             return new DeploymentConfigPodsAssert(client, deployment);
@@ -238,8 +239,7 @@ public class KubernetesAssert extends AbstractAssert<KubernetesAssert, Kubernete
      * Asserts that we can find the given replication controller and match it to a list of pods, returning the pods for further assertions
      */
     public PodsAssert podsForReplicationController(ReplicationController replicationController) {
-        List<Pod> allPods = getPods(replicationController.getMetadata().getNamespace());
-        List<Pod> pods = KubernetesHelper.getPodsForReplicationController(replicationController, allPods);
+        List<Pod> pods = KubernetesHelper.getPodsForReplicationController(client, replicationController);
         return podList(pods);
     }
 
@@ -256,8 +256,7 @@ public class KubernetesAssert extends AbstractAssert<KubernetesAssert, Kubernete
      * Asserts that we can find the given service and match it to a list of pods, returning the pods for further assertions
      */
     public PodsAssert podsForService(Service service) {
-        List<Pod> allPods = getPods(service.getMetadata().getNamespace());
-        List<Pod> pods = KubernetesHelper.getPodsForService(service, allPods);
+        List<Pod> pods = KubernetesHelper.getPodsForService(client, service);
         return podList(pods);
     }
 
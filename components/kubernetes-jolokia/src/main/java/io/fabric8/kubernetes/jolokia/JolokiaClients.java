@@ -129,15 +129,10 @@ public class JolokiaClients {
      */
     public J4pClient clientForReplicationController(ReplicationController replicationController) {
         Objects.requireNonNull(replicationController, "ReplicationController");
-        PodList podList = kubernetes.pods().inNamespace(replicationController.getMetadata().getNamespace()).list();
-        List<Pod> items = null;
-        if (podList != null) {
-            items = podList.getItems();
-        }
-        if (items == null || items.isEmpty()) {
+        List<Pod> pods = KubernetesHelper.getPodsForReplicationController(kubernetes, replicationController);
+        if (pods.isEmpty()) {
             throw new IllegalArgumentException("No pods found for ReplicationController " + KubernetesHelper.summaryText(replicationController));
         }
-        List<Pod> pods = KubernetesHelper.getPodsForReplicationController(replicationController, items);
         return clientForPod(pods);
     }
 
@@ -166,7 +161,7 @@ public class JolokiaClients {
      * Returns all the clients for the first working pod for the given replication controller
      */
     public List<J4pClient> clientsForReplicationController(ReplicationController replicationController) {
-        List<Pod> pods = KubernetesHelper.getPodsForReplicationController(replicationController, kubernetes.pods().inNamespace(replicationController.getMetadata().getNamespace()).list().getItems());
+        List<Pod> pods = KubernetesHelper.getPodsForReplicationController(kubernetes, replicationController);
         return clientsForPod(pods);
     }
 
@@ -175,8 +170,7 @@ public class JolokiaClients {
      */
     public List<J4pClient> clientsForReplicationController(String replicationControllerName, String namespace) {
         ReplicationController replicationController = requireReplicationController(replicationControllerName, namespace);
-        List<Pod> pods = KubernetesHelper.getPodsForReplicationController(replicationController,
-                kubernetes.pods().inNamespace(namespace).list().getItems());
+        List<Pod> pods = KubernetesHelper.getPodsForReplicationController(kubernetes, replicationController);
         return clientsForPod(pods);
     }
 
@@ -186,8 +180,7 @@ public class JolokiaClients {
      * Returns a client for the first working pod for the given service
      */
     public J4pClient clientForService(String serviceName, String namespace) {
-        List<Pod> pods = KubernetesHelper.getPodsForService(requireService(serviceName, namespace),
-                kubernetes.pods().inNamespace(namespace).list().getItems());
+        List<Pod> pods = KubernetesHelper.getPodsForService(kubernetes, requireService(serviceName, namespace));
         return clientForPod(pods);
     }
 
@@ -196,8 +189,7 @@ public class JolokiaClients {
      * Returns a client for the first working pod for the given service
      */
     public J4pClient clientForService(String serviceName) {
-        List<Pod> pods = KubernetesHelper.getPodsForService(requireService(serviceName),
-                kubernetes.pods().list().getItems());
+        List<Pod> pods = KubernetesHelper.getPodsForService(kubernetes, requireService(serviceName));
         return clientForPod(pods);
     }
 
@@ -205,7 +197,7 @@ public class JolokiaClients {
      * Returns a client for the first working pod for the given service
      */
     public J4pClient clientForService(Service service) {
-        List<Pod> pods = KubernetesHelper.getPodsForService(service, kubernetes.pods().inNamespace(service.getMetadata().getNamespace()).list().getItems());
+        List<Pod> pods = KubernetesHelper.getPodsForService(kubernetes, service);
         return clientForPod(pods);
     }
 
@@ -213,8 +205,7 @@ public class JolokiaClients {
      * Returns all the clients for the first working pod for the given service
      */
     public List<J4pClient> clientsForService(String serviceName, String namespace) {
-        List<Pod> pods = KubernetesHelper.getPodsForService(requireService(serviceName, namespace),
-                kubernetes.pods().inNamespace(namespace).list().getItems());
+        List<Pod> pods = KubernetesHelper.getPodsForService(kubernetes, requireService(serviceName, namespace));
         return clientsForPod(pods);
     }
 
@@ -222,8 +213,7 @@ public class JolokiaClients {
      * Returns all the clients for the first working pod for the given service
      */
     public List<J4pClient> clientsForService(String serviceName) {
-        List<Pod> pods = KubernetesHelper.getPodsForService(requireService(serviceName),
-                kubernetes.pods().list().getItems());
+        List<Pod> pods = KubernetesHelper.getPodsForService(kubernetes, requireService(serviceName));
         return clientsForPod(pods);
     }
 
@@ -231,7 +221,7 @@ public class JolokiaClients {
      * Returns all the clients the first working pod for the given service
      */
     public List<J4pClient> clientsForService(Service service) {
-        List<Pod> pods = KubernetesHelper.getPodsForService(service, kubernetes.pods().inNamespace(service.getMetadata().getNamespace()).list().getItems());
+        List<Pod> pods = KubernetesHelper.getPodsForService(kubernetes, service);
         return clientsForPod(pods);
     }
 